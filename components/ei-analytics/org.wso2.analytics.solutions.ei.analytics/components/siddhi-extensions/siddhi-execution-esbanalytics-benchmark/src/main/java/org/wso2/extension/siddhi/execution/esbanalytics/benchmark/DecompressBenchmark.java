@@ -0,0 +1,119 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.benchmark;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.extension.siddhi.execution.esbanalytics.decompress.DecompressStreamProcessorExtension;
+import org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.FlowDataDecoder;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of decompressing a single synthetic message flow, end to end through
+ * {@link DecompressStreamProcessorExtension#process} and for the flowData decoding step alone.
+ * Run with {@code -prof gc} to get the allocation rate per flow.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class DecompressBenchmark {
+
+    @Param({"10", "100"})
+    private int mediatorCount;
+
+    @Param({"10"})
+    private int payloadCount;
+
+    @Param({"2048"})
+    private int payloadSize;
+
+    @Param({"true", "false"})
+    private boolean compressed;
+
+    private SiddhiManager siddhiManager;
+    private SiddhiAppRuntime siddhiAppRuntime;
+    private InputHandler inputHandler;
+    private String flowData;
+    private Object[] flowEntry;
+    private long decompressedEvents;
+
+    @Setup
+    public void setup() throws IOException {
+
+        SyntheticFlowGenerator generator = new SyntheticFlowGenerator(mediatorCount, payloadCount, payloadSize, 1L);
+        flowData = generator.generateFlowData("urn_uuid_benchmark", System.currentTimeMillis(), compressed);
+        flowEntry = new Object[]{compressed, -1234, "urn_uuid_benchmark", flowData};
+
+        siddhiManager = new SiddhiManager();
+        siddhiManager.setExtension("esbAnalytics:decompress", DecompressStreamProcessorExtension.class);
+        siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime("@app:name('DecompressBenchmark') " +
+                "define stream FlowEntryStream (meta_compressed bool, meta_tenantId int, messageId string, " +
+                "flowData string); " +
+                "@info(name = 'decompress') from FlowEntryStream#esbAnalytics:decompress(meta_compressed, " +
+                "meta_tenantId, messageId, flowData) insert into DecompressedEventStream;");
+        siddhiAppRuntime.addCallback("DecompressedEventStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                decompressedEvents += events.length;
+            }
+        });
+        inputHandler = siddhiAppRuntime.getInputHandler("FlowEntryStream");
+        siddhiAppRuntime.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        siddhiAppRuntime.shutdown();
+        siddhiManager.shutdown();
+    }
+
+    @Benchmark
+    public long process() throws InterruptedException {
+
+        inputHandler.send(flowEntry);
+        return decompressedEvents;
+    }
+
+    @Benchmark
+    public Map<String, Object> decode() throws IOException {
+        return FlowDataDecoder.getInstance().decode(flowData, compressed);
+    }
+}
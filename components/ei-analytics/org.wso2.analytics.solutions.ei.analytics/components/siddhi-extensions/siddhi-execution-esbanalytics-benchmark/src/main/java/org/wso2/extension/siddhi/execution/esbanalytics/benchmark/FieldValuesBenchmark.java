@@ -0,0 +1,143 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.benchmark;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wso2.carbon.analytics.spark.core.util.AnalyticsConstants;
+import org.wso2.carbon.analytics.spark.core.util.PublishingPayload;
+import org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.CompressedEventUtils;
+import org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.FieldPlan;
+import org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.FlowDataDecoder;
+import org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.PayloadIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of building the decompressed rows of an already decoded synthetic message flow, through each
+ * of the {@link CompressedEventUtils#getFieldValues} variants. Run with {@code -prof gc} to get the allocation
+ * rate per flow.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class FieldValuesBenchmark {
+
+    private static final long TIMESTAMP = 1532330675154L;
+    private static final int TENANT_ID = -1234;
+
+    @Param({"10", "100"})
+    private int mediatorCount;
+
+    @Param({"10"})
+    private int payloadCount;
+
+    @Param({"2048"})
+    private int payloadSize;
+
+    private List<String> columns;
+    private FieldPlan fieldPlan;
+    private List<List<Object>> events;
+    private List<PublishingPayload> payloads;
+    private String host;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws IOException {
+
+        SyntheticFlowGenerator generator = new SyntheticFlowGenerator(mediatorCount, payloadCount, payloadSize, 1L);
+        // Decode the flow, so that the rows are built from the objects Kryo produces
+        Map<String, Object> flow = FlowDataDecoder.getInstance().decode(
+                generator.generateFlowData("urn_uuid_benchmark", TIMESTAMP, false), false);
+        events = (List<List<Object>>) flow.get(AnalyticsConstants.EVENTS_ATTRIBUTE);
+        payloads = (List<PublishingPayload>) flow.get(AnalyticsConstants.PAYLOADS_ATTRIBUTE);
+        host = (String) flow.get(AnalyticsConstants.HOST_ATTRIBUTE);
+        columns = readColumns();
+        fieldPlan = FieldPlan.compile(columns);
+    }
+
+    @Benchmark
+    public void payloadIndex(Blackhole blackhole) {
+
+        PayloadIndex payloadIndex = PayloadIndex.build(payloads, events.size(), fieldPlan);
+        for (int i = 0; i < events.size(); i++) {
+            blackhole.consume(CompressedEventUtils.getFieldValues(fieldPlan, events.get(i), payloadIndex, i,
+                    TIMESTAMP, TENANT_ID, host));
+        }
+    }
+
+    @Benchmark
+    public void payloadList(Blackhole blackhole) {
+
+        for (int i = 0; i < events.size(); i++) {
+            blackhole.consume(CompressedEventUtils.getFieldValues(fieldPlan, events.get(i), payloads, i,
+                    TIMESTAMP, TENANT_ID, host));
+        }
+    }
+
+    @Benchmark
+    public void columnNames(Blackhole blackhole) {
+
+        for (int i = 0; i < events.size(); i++) {
+            blackhole.consume(CompressedEventUtils.getFieldValues(columns, events.get(i), payloads, i,
+                    TIMESTAMP, TENANT_ID, host));
+        }
+    }
+
+    /**
+     * Read the output columns from the decompressed event definition bundled with the extension
+     */
+    private static List<String> readColumns() throws IOException {
+
+        List<String> columns = new ArrayList<>();
+        try (InputStream definition = FieldPlan.class.getClassLoader()
+                .getResourceAsStream("decompressedEventDefinition")) {
+            for (String line : IOUtils.toString(definition, StandardCharsets.UTF_8).split("\n")) {
+                if (!StringUtils.startsWithIgnoreCase(line, "#") && StringUtils.isNotEmpty(line)) {
+                    String[] fieldDef = StringUtils.deleteWhitespace(line).split(":");
+                    if (fieldDef.length == 2) {
+                        columns.add(fieldDef[0]);
+                    }
+                }
+            }
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.benchmark;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.config.InMemoryConfigManager;
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.h2.jdbcx.JdbcDataSource;
+import org.wso2.extension.siddhi.execution.esbanalytics.decompress.DecompressStreamProcessorExtension;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Offline load driver for EI_Analytics_StatApp. It runs the Siddhi app on an embedded Siddhi runtime with its
+ * stores backed by an in-memory H2 database, and pushes synthetic org.wso2.esb.analytics.stream.FlowEntry:1.0.0
+ * events in to it at a target rate. Sustained throughput, end to end latency percentiles and heap usage are
+ * reported once the run completes.
+ * <p>
+ * End to end latency of a flow is measured from the time its flow entry is sent, until its last component event
+ * is inserted in to ESBEventTable. Options are given as {@code --name=value}, see {@link #usage()}.
+ */
+public class StatAppLoadDriver {
+
+    private static final Logger log = Logger.getLogger(StatAppLoadDriver.class);
+    private static final String DEFAULT_SIDDHI_APP = "features/ei-analytics-feature/" +
+            "org.wso2.analytics.solutions.ei.analytics.feature/src/main/resources/siddhi-files/" +
+            "EI_Analytics_StatApp.siddhi";
+    private static final String FLOW_ENTRY_STREAM = "FlowEntryEventStream";
+    private static final String TABLE_INSERT_STREAM = "ESBEventTableInsertAsyncStream";
+    private static final String H2_URL = "jdbc:h2:mem:EI_ANALYTICS;DB_CLOSE_DELAY=-1;MODE=MySQL";
+
+    private final Map<String, String> options;
+    private final long[] latencies;
+    private final AtomicInteger latencyCount = new AtomicInteger();
+    private final AtomicLong completedFlows = new AtomicLong();
+    private final AtomicLong insertedEvents = new AtomicLong();
+    private volatile boolean measuring;
+    private long peakHeapUsed;
+
+    private StatAppLoadDriver(Map<String, String> options) {
+
+        this.options = options;
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, 2L * intOption("tps") * intOption("duration"));
+        this.latencies = new long[capacity];
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        Map<String, String> options = new HashMap<>();
+        options.put("app", DEFAULT_SIDDHI_APP);
+        options.put("tps", "500");
+        options.put("duration", "60");
+        options.put("warmup", "15");
+        options.put("mediators", "10");
+        options.put("payloads", "10");
+        options.put("payload-size", "2048");
+        options.put("compressed", "true");
+        options.put("tenants", "1");
+        options.put("distinct-flows", "1000");
+        options.put("store", "rdbms");
+        for (String arg : args) {
+            if ("--help".equals(arg) || !arg.startsWith("--") || !arg.contains("=")) {
+                System.out.println(usage());
+                return;
+            }
+            String[] option = arg.substring(2).split("=", 2);
+            if (!options.containsKey(option[0])) {
+                System.out.println("Unknown option '" + option[0] + "'\n" + usage());
+                return;
+            }
+            options.put(option[0], option[1]);
+        }
+        new StatAppLoadDriver(options).run();
+        // Scheduler threads of the app triggers outlive the runtime
+        System.exit(0);
+    }
+
+    private static String usage() {
+
+        return "Usage: StatAppLoadDriver [--name=value]...\n" +
+                "  --app             Path of the EI_Analytics_StatApp.siddhi file (default: " + DEFAULT_SIDDHI_APP +
+                ")\n" +
+                "  --tps             Target flow entries per second (default: 500)\n" +
+                "  --duration        Measured duration in seconds (default: 60)\n" +
+                "  --warmup          Warm up duration in seconds, not included in the results (default: 15)\n" +
+                "  --mediators       Component events per flow (default: 10)\n" +
+                "  --payloads        Distinct payloads per flow (default: 10)\n" +
+                "  --payload-size    Approximate payload size in characters (default: 2048)\n" +
+                "  --compressed      Whether flow data is GZIP compressed (default: true)\n" +
+                "  --tenants         Number of tenants the flow entries are spread over (default: 1)\n" +
+                "  --distinct-flows  Number of distinct flows generated up front and replayed (default: 1000)\n" +
+                "  --store           rdbms to back the stores with an in-memory H2 database, or memory to use\n" +
+                "                    in-memory tables and aggregations (default: rdbms)";
+    }
+
+    private void run() throws IOException, InterruptedException {
+
+        int tps = intOption("tps");
+        int mediators = intOption("mediators");
+        int tenants = intOption("tenants");
+        boolean compressed = Boolean.parseBoolean(options.get("compressed"));
+
+        log.info("Generating " + options.get("distinct-flows") + " distinct flows of " + mediators + " components");
+        SyntheticFlowGenerator generator = new SyntheticFlowGenerator(mediators, intOption("payloads"),
+                intOption("payload-size"), 1L);
+        String[] flowData = new String[intOption("distinct-flows")];
+        long flowDataBytes = 0;
+        for (int i = 0; i < flowData.length; i++) {
+            flowData[i] = generator.generateFlowData("urn_uuid_" + UUID.randomUUID(), System.currentTimeMillis(),
+                    compressed);
+            flowDataBytes += flowData[i].length();
+        }
+
+        Map<String, String> properties = new HashMap<>();
+        // Required by the @PartitionById aggregations
+        properties.put("shardId", "load-driver");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(null, null, properties));
+        siddhiManager.setExtension("esbAnalytics:decompress", DecompressStreamProcessorExtension.class);
+        // Used by the esbBulkInsert sink, while the rdbms stores connect to the same database by its URL
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(H2_URL);
+        dataSource.setUser("sa");
+        siddhiManager.setDataSource("EI_ANALYTICS", dataSource);
+        String siddhiApp = prepareSiddhiApp(FileUtils.readFileToString(new File(options.get("app")),
+                StandardCharsets.UTF_8), options.get("store"));
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.addCallback(TABLE_INSERT_STREAM, new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                // Callbacks are subscribed after the queries, hence events are already inserted in to the table
+                long now = System.currentTimeMillis();
+                for (Event event : events) {
+                    if (measuring) {
+                        insertedEvents.incrementAndGet();
+                    }
+                    // componentIndex of the last component of a flow
+                    if ((Integer) event.getData(6) == mediators - 1) {
+                        recordLatency(now - (Long) event.getData(19));
+                    }
+                }
+            }
+        });
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler(FLOW_ENTRY_STREAM);
+        siddhiAppRuntime.start();
+
+        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        log.info("Warming up for " + options.get("warmup") + " seconds at " + tps + " flows per second");
+        send(inputHandler, flowData, compressed, tenants, tps, TimeUnit.SECONDS.toNanos(intOption("warmup")),
+                memoryMXBean);
+
+        latencyCount.set(0);
+        completedFlows.set(0);
+        insertedEvents.set(0);
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        System.gc();
+        peakHeapUsed = 0;
+        measuring = true;
+        log.info("Measuring for " + options.get("duration") + " seconds at " + tps + " flows per second");
+        long startTime = System.nanoTime();
+        long sentFlows = send(inputHandler, flowData, compressed, tenants, tps,
+                TimeUnit.SECONDS.toNanos(intOption("duration")), memoryMXBean);
+        long sendTime = System.nanoTime() - startTime;
+        // Wait for the asynchronous table inserts to drain
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (completedFlows.get() < sentFlows && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        long elapsedTime = System.nanoTime() - startTime;
+        measuring = false;
+
+        report(sentFlows, sendTime, elapsedTime, flowDataBytes / flowData.length, gcCount() - gcCountBefore,
+                gcTime() - gcTimeBefore, memoryMXBean);
+        siddhiAppRuntime.shutdown();
+        siddhiManager.shutdown();
+    }
+
+    /**
+     * Send flow entries at the target rate for the given duration. Flow entries are sent from the current
+     * thread, so when the app cannot keep up, fewer flow entries than targeted are sent.
+     *
+     * @return Number of flow entries sent
+     */
+    private long send(InputHandler inputHandler, String[] flowData, boolean compressed, int tenants, int tps,
+                      long durationNanos, MemoryMXBean memoryMXBean) throws InterruptedException {
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / tps;
+        long startTime = System.nanoTime();
+        long nextReportTime = startTime + TimeUnit.SECONDS.toNanos(5);
+        long sent = 0;
+        long now;
+        while ((now = System.nanoTime()) - startTime < durationNanos) {
+            long sendTime = startTime + sent * intervalNanos;
+            if (sendTime > now) {
+                LockSupport.parkNanos(sendTime - now);
+                continue;
+            }
+            inputHandler.send(System.currentTimeMillis(), new Object[]{compressed, (int) (sent % tenants),
+                    "urn:uuid:" + sent, flowData[(int) (sent % flowData.length)]});
+            sent++;
+            if (now >= nextReportTime) {
+                peakHeapUsed = Math.max(peakHeapUsed, memoryMXBean.getHeapMemoryUsage().getUsed());
+                log.info(String.format(Locale.ENGLISH, "Sent %d flow entries, %.1f per second", sent,
+                        sent * 1e9 / (now - startTime)));
+                nextReportTime += TimeUnit.SECONDS.toNanos(5);
+            }
+        }
+        return sent;
+    }
+
+    private void recordLatency(long latencyMillis) {
+
+        if (!measuring) {
+            return;
+        }
+        completedFlows.incrementAndGet();
+        int index = latencyCount.getAndIncrement();
+        if (index < latencies.length) {
+            latencies[index] = latencyMillis;
+        }
+    }
+
+    private void report(long sentFlows, long sendTime, long elapsedTime, long averageFlowDataSize, long gcCount,
+                        long gcTime, MemoryMXBean memoryMXBean) {
+
+        peakHeapUsed = Math.max(peakHeapUsed, memoryMXBean.getHeapMemoryUsage().getUsed());
+        int recorded = Math.min(latencyCount.get(), latencies.length);
+        long[] sorted = Arrays.copyOf(latencies, recorded);
+        Arrays.sort(sorted);
+        StringBuilder report = new StringBuilder("\nEI_Analytics_StatApp load test results\n");
+        report.append(String.format(Locale.ENGLISH, "  Flow data          : %s, %d components, %d bytes " +
+                        "Base64 on average%n", Boolean.parseBoolean(options.get("compressed")) ? "compressed" :
+                        "uncompressed", intOption("mediators"), averageFlowDataSize));
+        report.append(String.format(Locale.ENGLISH, "  Target rate        : %d flows/s%n", intOption("tps")));
+        report.append(String.format(Locale.ENGLISH, "  Sent               : %d flows, %.1f flows/s%n", sentFlows,
+                sentFlows * 1e9 / sendTime));
+        report.append(String.format(Locale.ENGLISH, "  Completed          : %d flows, %.1f flows/s, " +
+                        "%.1f table inserts/s%n", completedFlows.get(), completedFlows.get() * 1e9 / elapsedTime,
+                insertedEvents.get() * 1e9 / elapsedTime));
+        report.append(String.format(Locale.ENGLISH, "  Latency (ms)       : p50 %d, p90 %d, p99 %d, p99.9 %d, " +
+                        "max %d%n", percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+        report.append(String.format(Locale.ENGLISH, "  Heap (MB)          : peak used %d, max %d%n",
+                peakHeapUsed >> 20, memoryMXBean.getHeapMemoryUsage().getMax() >> 20));
+        report.append(String.format(Locale.ENGLISH, "  GC                 : %d collections, %d ms%n", gcCount,
+                gcTime));
+        log.info(report);
+    }
+
+    /**
+     * Make the Siddhi app runnable offline. Sources are removed, so that flow entries can be sent through an input
+     * handler, and the EI_ANALYTICS datasource is replaced with an in-memory H2 database or with in-memory stores.
+     * In-memory stores need no Siddhi store extension, which is handy for profiling the Siddhi side alone. With
+     * in-memory stores, the esbBulkInsert sink is replaced with a query inserting in to the in-memory ESBEventTable.
+     *
+     * @param siddhiApp Siddhi app as deployed
+     * @param store     rdbms or memory
+     * @return Siddhi app to be run by the load driver
+     */
+    static String prepareSiddhiApp(String siddhiApp, String store) {
+
+        String prepared = siddhiApp.replaceAll("@source\\s*\\((?:[^()]|\\((?:[^()]|\\([^()]*\\))*\\))*\\)", "");
+        if ("memory".equalsIgnoreCase(store)) {
+            prepared = prepared.replaceAll("@store\\s*\\((?:[^()]|\\([^()]*\\))*\\)", "");
+            prepared = prepared.replaceAll("@sink\\s*\\((?:[^()]|\\((?:[^()]|\\([^()]*\\))*\\))*\\)", "") +
+                    "\nfrom " + TABLE_INSERT_STREAM + " select * insert into ESBEventTable;\n";
+            // In-memory tables accept a single key per index annotation
+            Matcher indexMatcher = Pattern.compile("@Index\\s*\\(([^()]*)\\)").matcher(prepared);
+            StringBuffer indexed = new StringBuffer();
+            while (indexMatcher.find()) {
+                StringBuilder indexes = new StringBuilder();
+                for (String key : indexMatcher.group(1).split(",")) {
+                    indexes.append("@Index(").append(key.trim()).append(") ");
+                }
+                indexMatcher.appendReplacement(indexed, Matcher.quoteReplacement(indexes.toString().trim()));
+            }
+            indexMatcher.appendTail(indexed);
+            return indexed.toString();
+        }
+        // Only the stores are pointed at the database URL, the sinks find the EI_ANALYTICS datasource
+        Matcher storeMatcher = Pattern.compile("@store\\s*\\((?:[^()]|\\([^()]*\\))*\\)").matcher(prepared);
+        StringBuffer stored = new StringBuffer();
+        while (storeMatcher.find()) {
+            storeMatcher.appendReplacement(stored, Matcher.quoteReplacement(storeMatcher.group().replaceAll(
+                    "datasource\\s*=\\s*'EI_ANALYTICS'", "jdbc.url = '" + H2_URL + "', username = 'sa', " +
+                            "password = '', jdbc.driver.name = 'org.h2.Driver'")));
+        }
+        storeMatcher.appendTail(stored);
+        return stored.toString();
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(options.get(name).trim());
+    }
+
+    private static long gcCount() {
+
+        long count = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gcBean.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+
+        long time = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(gcBean.getCollectionTime(), 0);
+        }
+        return time;
+    }
+}
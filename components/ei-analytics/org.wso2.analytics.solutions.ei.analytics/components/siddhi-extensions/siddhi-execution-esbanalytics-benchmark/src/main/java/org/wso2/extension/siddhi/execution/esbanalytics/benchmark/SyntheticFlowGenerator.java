@@ -0,0 +1,220 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.benchmark;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+import org.wso2.carbon.analytics.spark.core.util.AnalyticsConstants;
+import org.wso2.carbon.analytics.spark.core.util.PublishingPayload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates synthetic EI message flows, in the same Kryo layout the EI publisher uses and the decompress
+ * extension registers: a HashMap holding the component events, the payloads and the host of the flow.
+ * Flows are deterministic for a given seed. Instances are not thread safe.
+ */
+public class SyntheticFlowGenerator {
+
+    private static final String[] COMPONENT_TYPES = {"Sequence", "Mediator", "Mediator", "Mediator", "Endpoint"};
+    private static final String[] MEDIATOR_NAMES = {"LogMediator", "PropertyMediator", "PayloadFactoryMediator",
+            "FilterMediator", "CallMediator", "SendMediator", "EnrichMediator"};
+    private static final String[] PAYLOAD_WORDS = {"order", "customer", "status", "amount", "currency", "item",
+            "quantity", "price", "address", "city", "country", "true", "false", "pending", "shipped", "USD"};
+    private static final int BEFORE_PAYLOAD_INDEX = 8;
+    private static final int AFTER_PAYLOAD_INDEX = 9;
+
+    private final int mediatorCount;
+    private final int payloadCount;
+    private final int payloadSize;
+    private final Random random;
+    private final Kryo kryo;
+
+    /**
+     * @param mediatorCount Number of component events in a flow, including the proxy service
+     * @param payloadCount  Number of distinct payloads in a flow, shared among the before and after payload
+     *                      slots of the component events
+     * @param payloadSize   Approximate size of a payload in characters
+     * @param seed          Seed of the generated values
+     */
+    public SyntheticFlowGenerator(int mediatorCount, int payloadCount, int payloadSize, long seed) {
+
+        this.mediatorCount = Math.max(mediatorCount, 1);
+        this.payloadCount = Math.max(payloadCount, 0);
+        this.payloadSize = Math.max(payloadSize, 0);
+        this.random = new Random(seed);
+        this.kryo = new Kryo();
+        /* Same registration IDs as the decompress extension */
+        this.kryo.register(HashMap.class, 111);
+        this.kryo.register(ArrayList.class, 222);
+        this.kryo.register(PublishingPayload.class, 333);
+    }
+
+    /**
+     * Generate the aggregated event of a message flow
+     *
+     * @param messageFlowId Message flow id of the flow
+     * @param startTime     Start time of the flow, in milliseconds
+     * @return Aggregated event holding the events, payloads, host and message flow id
+     */
+    public Map<String, Object> generateFlow(String messageFlowId, long startTime) {
+
+        String proxyName = "proxy_" + random.nextInt(16);
+        String entryPointHashcode = String.valueOf(proxyName.hashCode());
+        List<List<Object>> events = new ArrayList<>(mediatorCount);
+        long componentStartTime = startTime;
+        for (int i = 0; i < mediatorCount; i++) {
+            String componentType;
+            String componentName;
+            if (i == 0) {
+                componentType = "Proxy Service";
+                componentName = proxyName;
+            } else {
+                componentType = COMPONENT_TYPES[(i - 1) % COMPONENT_TYPES.length];
+                componentName = "Mediator".equals(componentType) ?
+                        MEDIATOR_NAMES[random.nextInt(MEDIATOR_NAMES.length)] :
+                        ("Sequence".equals(componentType) ? "PROXY_INSEQ" : "AnonymousEndpoint");
+            }
+            String componentId = proxyName + "@" + i + ":" + componentName;
+            long duration = 1 + random.nextInt(500);
+            List<Object> event = new ArrayList<>(17);
+            event.add(messageFlowId);
+            event.add(componentType);
+            event.add(componentName);
+            event.add(i);
+            event.add(componentId);
+            event.add(componentStartTime);
+            event.add(componentStartTime + duration);
+            event.add(duration);
+            event.add(null);
+            event.add(null);
+            event.add(contextPropertyMap(messageFlowId, proxyName, i));
+            event.add(transportPropertyMap(messageFlowId));
+            event.add(i + 1 < mediatorCount ? "[" + (i + 1) + "]" : null);
+            event.add(proxyName);
+            event.add(entryPointHashcode);
+            event.add(random.nextInt(100) == 0 ? 1 : 0);
+            event.add(String.valueOf(componentId.hashCode()));
+            events.add(event);
+            componentStartTime += 1 + random.nextInt(10);
+        }
+
+        List<PublishingPayload> payloads = new ArrayList<>(payloadCount);
+        for (int i = 0; i < payloadCount; i++) {
+            PublishingPayload publishingPayload = new PublishingPayload();
+            publishingPayload.setPayload(payload());
+            publishingPayload.setEvents(new HashMap<>());
+            payloads.add(publishingPayload);
+        }
+        // Spread the before and after payload slots of the events over the distinct payloads
+        if (payloadCount > 0) {
+            for (int i = 0; i < mediatorCount; i++) {
+                addSlot(payloads.get((2 * i) % payloadCount), i, BEFORE_PAYLOAD_INDEX);
+                addSlot(payloads.get((2 * i + 1) % payloadCount), i, AFTER_PAYLOAD_INDEX);
+            }
+        }
+
+        Map<String, Object> flow = new HashMap<>();
+        flow.put(AnalyticsConstants.EVENTS_ATTRIBUTE, events);
+        flow.put(AnalyticsConstants.PAYLOADS_ATTRIBUTE, payloads);
+        flow.put(AnalyticsConstants.HOST_ATTRIBUTE, "10.100.7." + random.nextInt(256));
+        flow.put("messageFlowId", messageFlowId);
+        return flow;
+    }
+
+    /**
+     * Serialize an aggregated event with Kryo, optionally GZIP compress it, and Base64 encode it,
+     * as the EI publisher does for the flowData attribute
+     *
+     * @param flow       Aggregated event
+     * @param compressed Whether to GZIP compress the serialized bytes
+     * @return Base64 encoded flow data
+     * @throws IOException if compressing fails
+     */
+    public String encode(Map<String, Object> flow, boolean compressed) throws IOException {
+
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        if (compressed) {
+            try (GZIPOutputStream gzipStream = new GZIPOutputStream(byteStream);
+                 Output output = new Output(gzipStream)) {
+                kryo.writeObject(output, flow);
+            }
+        } else {
+            try (Output output = new Output(byteStream)) {
+                kryo.writeObject(output, flow);
+            }
+        }
+        return Base64.getEncoder().encodeToString(byteStream.toByteArray());
+    }
+
+    /**
+     * Generate and encode a message flow
+     *
+     * @param messageFlowId Message flow id of the flow
+     * @param startTime     Start time of the flow, in milliseconds
+     * @param compressed    Whether to GZIP compress the serialized bytes
+     * @return Base64 encoded flow data
+     * @throws IOException if compressing fails
+     */
+    public String generateFlowData(String messageFlowId, long startTime, boolean compressed) throws IOException {
+        return encode(generateFlow(messageFlowId, startTime), compressed);
+    }
+
+    private static void addSlot(PublishingPayload publishingPayload, int eventIndex, int slot) {
+        publishingPayload.getEvents().computeIfAbsent(eventIndex, k -> new ArrayList<>()).add(slot);
+    }
+
+    private String contextPropertyMap(String messageFlowId, String proxyName, int componentIndex) {
+
+        return "{mediation.flow.statistics.collected=true, mediation.flow.trace.collected=true, " +
+                "mediation.flow.statistics.statistic.id=" + messageFlowId + ", " +
+                "mediation.flow.statistics.parent.index=" + componentIndex + ", IsClientDoingSOAP11=true, " +
+                "TRANSPORT_IN_NAME=http, proxy.name=" + proxyName + ", IsClientDoingREST=true, " +
+                "mediation.flow.statistics.index.object=org.apache.synapse.aspects.flow.statistics.util." +
+                "UniqueIdentifierObject@" + Integer.toHexString(random.nextInt()) + "}";
+    }
+
+    private String transportPropertyMap(String messageFlowId) {
+
+        return "{content-length=" + payloadSize + ", Accept=*/*, Connection=keep-alive, " +
+                "User-Agent=Synapse-PT-HttpComponents-NIO, Host=localhost:8280, To=/services/proxy, " +
+                "accept-encoding=gzip, deflate, Content-Type=application/json, MessageID=" + messageFlowId + "}";
+    }
+
+    private String payload() {
+
+        StringBuilder builder = new StringBuilder(payloadSize + 16);
+        builder.append('{');
+        while (builder.length() < payloadSize - 1) {
+            builder.append('"').append(PAYLOAD_WORDS[random.nextInt(PAYLOAD_WORDS.length)]).append("\":\"")
+                    .append(PAYLOAD_WORDS[random.nextInt(PAYLOAD_WORDS.length)]).append(random.nextInt(1000))
+                    .append("\",");
+        }
+        builder.append('}');
+        return builder.toString();
+    }
+}
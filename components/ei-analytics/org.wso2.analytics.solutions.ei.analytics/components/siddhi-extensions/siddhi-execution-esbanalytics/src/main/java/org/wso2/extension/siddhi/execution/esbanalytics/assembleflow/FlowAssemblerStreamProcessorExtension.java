@@ -0,0 +1,415 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.assembleflow;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.SystemParameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.SchedulingProcessor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.Scheduler;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.core.util.timestamp.TimestampGenerator;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import org.apache.log4j.Logger;
+import org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.ESBAnalyticsConstants;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.ConfigUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assemble the decompressed component events of each message flow in to a single flow document
+ */
+@Extension(
+        name = "assembleFlow",
+        namespace = "esbAnalytics",
+        description = "This extension assembles the decompressed component events of each message flow, keyed by " +
+                "tenant and message flow id, in to a flow document. The document is a JSON object holding the " +
+                "message flow id, entry point, start and end time of the flow and a components array, in " +
+                "component index order, where each component holds its id, name, type, hash code, timings, " +
+                "fault count and the indexes of its children. One event is emitted per flow, carrying the " +
+                "attributes of the first component event received, as soon as the root component and all its " +
+                "descendants are received. Flows which are not complete within the completion timeout are " +
+                "emitted as they are, unless their root component was never received, in which case they are " +
+                "dropped. Flow documents longer than the maximum flow length are not emitted, in which case " +
+                "the flow attribute is null and the flow is marked as not complete, so that it is read from its " +
+                "component events instead.",
+        parameters = {
+                @Parameter(name = "component.attribute",
+                        description = "Attributes of the decompressed event, given in exact names. The " +
+                                "metaTenantId, messageFlowId, componentIndex, componentId, componentName, " +
+                                "componentType, hashCode, startTime, endTime, duration, faultCount, children, " +
+                                "entryPoint and entryPointHashcode attributes are required",
+                        type = {DataType.STRING, DataType.INT, DataType.LONG},
+                        dynamic = true)
+        },
+        returnAttributes = {
+                @ReturnAttribute(name = "flow",
+                        description = "Flow document as a JSON string, or null if it exceeds the maximum flow " +
+                                "length",
+                        type = {DataType.STRING}),
+                @ReturnAttribute(name = "componentCount",
+                        description = "Number of components in the flow document",
+                        type = {DataType.INT}),
+                @ReturnAttribute(name = "flowStartTime",
+                        description = "Earliest start time of the components",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "flowEndTime",
+                        description = "Latest end time of the components",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "flowFaultCount",
+                        description = "Number of components with a positive fault count",
+                        type = {DataType.INT}),
+                @ReturnAttribute(name = "complete",
+                        description = "Whether all components of the flow were received, and its flow document " +
+                                "is emitted",
+                        type = {DataType.BOOL})
+        },
+        systemParameter = {
+                @SystemParameter(name = "completion.timeout.millis",
+                        description = "Time in milliseconds, from its first component event, within which a flow " +
+                                "should be complete. Incomplete flows are emitted or dropped when it elapses",
+                        defaultValue = "30000",
+                        possibleParameters = "Any positive integer"),
+                @SystemParameter(name = "max.flows",
+                        description = "Maximum number of incomplete flows held at once. When exceeded, the oldest " +
+                                "flows are handled as timed out, which bounds the memory used",
+                        defaultValue = "10000",
+                        possibleParameters = "Any positive integer"),
+                @SystemParameter(name = "max.flow.length",
+                        description = "Maximum number of characters of an emitted flow document. This should not " +
+                                "exceed the length of the column the flow documents are stored in. Each component " +
+                                "adds a few hundred characters to a flow document",
+                        defaultValue = "20000",
+                        possibleParameters = "Any positive integer")
+        },
+        examples = {
+                @Example(
+                        syntax = "from DecompressedEventStream#esbAnalytics:assembleFlow(metaTenantId, " +
+                                "messageFlowId, componentIndex, componentId, componentName, componentType, " +
+                                "hashCode, startTime, endTime, duration, faultCount, children, entryPoint, " +
+                                "entryPointHashcode) select metaTenantId, messageFlowId, entryPoint, " +
+                                "flowStartTime as startTime, flowEndTime as endTime, componentCount, " +
+                                "flowFaultCount as faultCount, complete, flow insert into FlowStream;",
+                        description = "This query emits one flow document per message flow, holding all its " +
+                                "components."
+                )
+        }
+)
+public class FlowAssemblerStreamProcessorExtension
+        extends StreamProcessor<FlowAssemblerStreamProcessorExtension.FlowAssemblerState>
+        implements SchedulingProcessor {
+
+    private static final Logger log = Logger.getLogger(FlowAssemblerStreamProcessorExtension.class);
+    // System parameters of the extension
+    private static final String COMPLETION_TIMEOUT_CONFIG = "completion.timeout.millis";
+    private static final String MAX_FLOWS_CONFIG = "max.flows";
+    private static final String MAX_FLOW_LENGTH_CONFIG = "max.flow.length";
+    private static final List<String> COMPONENT_ATTRIBUTES = Arrays.asList(
+            ESBAnalyticsConstants.META_TENANT_ID_ATTRIBUTE, "messageFlowId", "componentIndex", "componentId",
+            "componentName", "componentType", "hashCode", "startTime", "endTime", "duration", "faultCount",
+            "children", "entryPoint", "entryPointHashcode");
+
+    private String siddhiAppName;
+    private Map<String, ExpressionExecutor> componentAttributes;
+    private List<Attribute> attributeList = new ArrayList<>();
+    private long completionTimeout;
+    private int maxFlows;
+    private int maxFlowLength;
+    private TimestampGenerator timestampGenerator;
+    private Scheduler scheduler;
+
+    /**
+     * Add the incoming component events to their flows, and hand over the flows which are complete or timed out
+     * to the next processor
+     *
+     * @param streamEventChunk      Incoming component events chunk, or a timer event
+     * @param nextProcessor         Next event processor to hand over the flows
+     * @param streamEventCloner     Event cloner to copy the first event of a flow
+     * @param complexEventPopulater Event populator to add the flow document to the output event
+     * @param state                 Flows being assembled by the query
+     */
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           FlowAssemblerState state) {
+
+        ComplexEventChunk<StreamEvent> flowChunk = new ComplexEventChunk<>(false);
+        synchronized (state) {
+            long currentTime = this.timestampGenerator.currentTime();
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                streamEventChunk.remove();
+                if (streamEvent.getType() == ComplexEvent.Type.CURRENT) {
+                    add(state, streamEvent, currentTime, streamEventCloner, flowChunk, complexEventPopulater);
+                }
+            }
+            expire(state, currentTime, flowChunk, complexEventPopulater);
+            if (state.timeoutTime == -1 && !state.flows.isEmpty()) {
+                state.timeoutTime = state.flows.values().iterator().next().getFirstSeenTime() +
+                        this.completionTimeout;
+                this.scheduler.notifyAt(state.timeoutTime);
+            }
+        }
+        if (flowChunk.getFirst() != null) {
+            nextProcessor.process(flowChunk);
+        }
+    }
+
+    /**
+     * Add a component event to its flow, and emit the flow if it becomes complete
+     */
+    private void add(FlowAssemblerState state, StreamEvent streamEvent, long currentTime,
+                     StreamEventCloner streamEventCloner, ComplexEventChunk<StreamEvent> flowChunk,
+                     ComplexEventPopulater complexEventPopulater) {
+
+        int metaTenantId = (Integer) execute(ESBAnalyticsConstants.META_TENANT_ID_ATTRIBUTE, streamEvent);
+        String messageFlowId = (String) execute("messageFlowId", streamEvent);
+        String key = metaTenantId + ":" + messageFlowId;
+        FlowAssembly flowAssembly = state.flows.get(key);
+        if (flowAssembly == null) {
+            flowAssembly = new FlowAssembly(streamEventCloner.copyStreamEvent(streamEvent), currentTime);
+            state.flows.put(key, flowAssembly);
+        }
+        flowAssembly.add(messageFlowId, (String) execute("entryPoint", streamEvent),
+                (String) execute("entryPointHashcode", streamEvent), new FlowAssembly.Component(
+                        toInt(execute("componentIndex", streamEvent)),
+                        (String) execute("componentId", streamEvent),
+                        (String) execute("componentName", streamEvent),
+                        (String) execute("componentType", streamEvent),
+                        (String) execute("hashCode", streamEvent),
+                        toLong(execute("startTime", streamEvent)),
+                        toLong(execute("endTime", streamEvent)),
+                        toLong(execute("duration", streamEvent)),
+                        toInt(execute("faultCount", streamEvent)),
+                        (String) execute("children", streamEvent)));
+        if (flowAssembly.isComplete()) {
+            state.flows.remove(key);
+            emit(flowAssembly, flowChunk, complexEventPopulater);
+        }
+    }
+
+    /**
+     * Handle the flows which are not complete within the completion timeout, or exceed the maximum number of
+     * flows held. Flows are held in the order of their first component event, so only the oldest are checked.
+     */
+    private void expire(FlowAssemblerState state, long currentTime, ComplexEventChunk<StreamEvent> flowChunk,
+                        ComplexEventPopulater complexEventPopulater) {
+
+        Iterator<FlowAssembly> iterator = state.flows.values().iterator();
+        while (iterator.hasNext()) {
+            FlowAssembly flowAssembly = iterator.next();
+            if (flowAssembly.getFirstSeenTime() + this.completionTimeout > currentTime
+                    && state.flows.size() <= this.maxFlows) {
+                break;
+            }
+            iterator.remove();
+            if (flowAssembly.hasRoot()) {
+                emit(flowAssembly, flowChunk, complexEventPopulater);
+            } else if (log.isDebugEnabled()) {
+                log.debug("Dropping " + flowAssembly.getComponentCount() + " component events of a message flow " +
+                        "without its root component in " + this.siddhiAppName);
+            }
+        }
+        if (state.timeoutTime != -1 && state.timeoutTime <= currentTime) {
+            state.timeoutTime = -1;
+        }
+    }
+
+    private void emit(FlowAssembly flowAssembly, ComplexEventChunk<StreamEvent> flowChunk,
+                      ComplexEventPopulater complexEventPopulater) {
+
+        StreamEvent flowEvent = flowAssembly.getFirstEvent();
+        String flow = flowAssembly.toJson();
+        boolean complete = flowAssembly.isComplete();
+        if (flow.length() > this.maxFlowLength) {
+            // Emitted without the document, which would not fit in to the flow column, so that readers fall back
+            // to the component events of the flow
+            if (log.isDebugEnabled()) {
+                log.debug("Flow document of " + flowAssembly.getComponentCount() + " components, with " +
+                        flow.length() + " characters, exceeds the maximum flow length of " + this.maxFlowLength +
+                        " in " + this.siddhiAppName);
+            }
+            flow = null;
+            complete = false;
+        }
+        complexEventPopulater.populateComplexEvent(flowEvent, new Object[]{flow, flowAssembly.getComponentCount(),
+                flowAssembly.getStartTime(), flowAssembly.getEndTime(), flowAssembly.getFaultCount(), complete});
+        flowChunk.add(flowEvent);
+    }
+
+    private Object execute(String attributeName, StreamEvent streamEvent) {
+        return this.componentAttributes.get(attributeName).execute(streamEvent);
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    private static int toInt(Object value) {
+        return value == null ? 0 : ((Number) value).intValue();
+    }
+
+    /**
+     * The init method of the StreamProcessor, this method will be called before other methods
+     *
+     * @param metaStreamEvent              the  stream event meta
+     * @param inputDefinition              the incoming stream definition
+     * @param attributeExpressionExecutors the executors of each function parameters
+     * @param configReader                 this hold the {@link StreamProcessor} extensions configuration reader.
+     * @param streamEventClonerHolder      stream event cloner holder
+     * @param outputExpectsExpiredEvents   whether the output expects expired events
+     * @param findToBeExecuted             whether find will be executed on this processor
+     * @param siddhiQueryContext           The context of the Siddhi query
+     * @return Factory of the flows being assembled per query
+     */
+    @Override
+    protected StateFactory<FlowAssemblerState> init(MetaStreamEvent metaStreamEvent,
+                                                    AbstractDefinition inputDefinition,
+                                                    ExpressionExecutor[] attributeExpressionExecutors,
+                                                    ConfigReader configReader,
+                                                    StreamEventClonerHolder streamEventClonerHolder,
+                                                    boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                    SiddhiQueryContext siddhiQueryContext) {
+
+        this.siddhiAppName = siddhiQueryContext.getSiddhiAppContext().getName();
+        this.componentAttributes = new HashMap<>();
+        for (ExpressionExecutor expressionExecutor : attributeExpressionExecutors) {
+            if (expressionExecutor instanceof VariableExpressionExecutor) {
+                String variableName = ((VariableExpressionExecutor) expressionExecutor).getAttribute().getName();
+                if (COMPONENT_ATTRIBUTES.contains(variableName)) {
+                    this.componentAttributes.put(variableName, expressionExecutor);
+                }
+            }
+        }
+        if (!this.componentAttributes.keySet().containsAll(COMPONENT_ATTRIBUTES)) {
+            List<String> missingAttributes = new ArrayList<>(COMPONENT_ATTRIBUTES);
+            missingAttributes.removeAll(this.componentAttributes.keySet());
+            throw new SiddhiAppCreationException("Cannot find required attributes " + missingAttributes + " in " +
+                    this.siddhiAppName + ". Please provide " + COMPONENT_ATTRIBUTES + " attributes in exact " +
+                    "names to esbAnalytics:assembleFlow");
+        }
+        this.completionTimeout = ConfigUtils.readIntConfig(configReader, COMPLETION_TIMEOUT_CONFIG, "30000",
+                "esbAnalytics:assembleFlow", this.siddhiAppName);
+        this.maxFlows = ConfigUtils.readIntConfig(configReader, MAX_FLOWS_CONFIG, "10000",
+                "esbAnalytics:assembleFlow", this.siddhiAppName);
+        this.maxFlowLength = ConfigUtils.readIntConfig(configReader, MAX_FLOW_LENGTH_CONFIG, "20000",
+                "esbAnalytics:assembleFlow", this.siddhiAppName);
+        this.timestampGenerator = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator();
+
+        List<Attribute> outputAttributes = new ArrayList<>();
+        outputAttributes.add(new Attribute("flow", Attribute.Type.STRING));
+        outputAttributes.add(new Attribute("componentCount", Attribute.Type.INT));
+        outputAttributes.add(new Attribute("flowStartTime", Attribute.Type.LONG));
+        outputAttributes.add(new Attribute("flowEndTime", Attribute.Type.LONG));
+        outputAttributes.add(new Attribute("flowFaultCount", Attribute.Type.INT));
+        outputAttributes.add(new Attribute("complete", Attribute.Type.BOOL));
+        this.attributeList = outputAttributes;
+        return FlowAssemblerState::new;
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void stop() {
+        // Flows being assembled are kept in the state, so that they are persisted along with the Siddhi app
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return this.attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    @Override
+    public Scheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    @Override
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Flows being assembled by the query, in the order of their first component event
+     */
+    static class FlowAssemblerState extends State {
+
+        private static final String FLOWS = "flows";
+
+        private final Map<String, FlowAssembly> flows = new LinkedHashMap<>();
+        private long timeoutTime = -1;
+
+        @Override
+        public boolean canDestroy() {
+            return flows.isEmpty();
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put(FLOWS, new LinkedHashMap<>(flows));
+            return snapshot;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void restore(Map<String, Object> state) {
+
+            flows.clear();
+            flows.putAll((Map<String, FlowAssembly>) state.get(FLOWS));
+            // The restored flows are timed out along with the flows of the next incoming events
+            timeoutTime = -1;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.assembleflow;
+
+import io.siddhi.core.event.stream.StreamEvent;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Component events of a message flow received so far. The flow is complete once its root component and every
+ * component listed as a child of a received component have been received.
+ */
+class FlowAssembly implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int ROOT_INDEX = 0;
+
+    private final StreamEvent firstEvent;
+    private final long firstSeenTime;
+    private final Map<Integer, Component> components = new TreeMap<>();
+    private final Set<Integer> pendingIndexes = new HashSet<>();
+    private String messageFlowId;
+    private String entryPoint;
+    private String entryPointHashcode;
+
+    /**
+     * @param firstEvent    Copy of the first component event received for the flow
+     * @param firstSeenTime Time the first component event was received at
+     */
+    FlowAssembly(StreamEvent firstEvent, long firstSeenTime) {
+
+        this.firstEvent = firstEvent;
+        this.firstSeenTime = firstSeenTime;
+        this.pendingIndexes.add(ROOT_INDEX);
+    }
+
+    /**
+     * Add a component event to the flow. A component re-published with the same index replaces the earlier one.
+     *
+     * @param messageFlowId      Message flow id
+     * @param entryPoint         Entry point of the flow
+     * @param entryPointHashcode Hash code of the entry point
+     * @param component          Component values
+     */
+    void add(String messageFlowId, String entryPoint, String entryPointHashcode, Component component) {
+
+        this.messageFlowId = messageFlowId;
+        if (entryPoint != null) {
+            this.entryPoint = entryPoint;
+        }
+        if (entryPointHashcode != null) {
+            this.entryPointHashcode = entryPointHashcode;
+        }
+        components.put(component.componentIndex, component);
+        pendingIndexes.remove(component.componentIndex);
+        for (int child : component.children) {
+            if (!components.containsKey(child)) {
+                pendingIndexes.add(child);
+            }
+        }
+    }
+
+    boolean isComplete() {
+        return pendingIndexes.isEmpty();
+    }
+
+    boolean hasRoot() {
+        return components.containsKey(ROOT_INDEX);
+    }
+
+    StreamEvent getFirstEvent() {
+        return firstEvent;
+    }
+
+    long getFirstSeenTime() {
+        return firstSeenTime;
+    }
+
+    int getComponentCount() {
+        return components.size();
+    }
+
+    long getStartTime() {
+
+        long startTime = Long.MAX_VALUE;
+        for (Component component : components.values()) {
+            startTime = Math.min(startTime, component.startTime);
+        }
+        return startTime;
+    }
+
+    long getEndTime() {
+
+        long endTime = Long.MIN_VALUE;
+        for (Component component : components.values()) {
+            endTime = Math.max(endTime, component.endTime);
+        }
+        return endTime;
+    }
+
+    int getFaultCount() {
+
+        int faultCount = 0;
+        for (Component component : components.values()) {
+            if (component.faultCount > 0) {
+                faultCount++;
+            }
+        }
+        return faultCount;
+    }
+
+    /**
+     * Write the flow document, holding the flow level values and the components in index order. Component
+     * keys are the same as the ESBEventTable columns, and children are given as component indexes.
+     *
+     * @return Flow document as a JSON string
+     */
+    String toJson() {
+
+        StringBuilder json = new StringBuilder(128 + components.size() * 256);
+        json.append('{');
+        appendField(json, "messageFlowId", messageFlowId).append(',');
+        appendField(json, "entryPoint", entryPoint).append(',');
+        appendField(json, "entryPointHashcode", entryPointHashcode).append(',');
+        json.append("\"startTime\":").append(getStartTime()).append(',');
+        json.append("\"endTime\":").append(getEndTime()).append(',');
+        json.append("\"complete\":").append(isComplete()).append(',');
+        json.append("\"components\":[");
+        boolean first = true;
+        for (Component component : components.values()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"componentIndex\":").append(component.componentIndex).append(',');
+            appendField(json, "componentId", component.componentId).append(',');
+            appendField(json, "componentName", component.componentName).append(',');
+            appendField(json, "componentType", component.componentType).append(',');
+            appendField(json, "hashCode", component.hashCode).append(',');
+            json.append("\"startTime\":").append(component.startTime).append(',');
+            json.append("\"endTime\":").append(component.endTime).append(',');
+            json.append("\"duration\":").append(component.duration).append(',');
+            json.append("\"faultCount\":").append(component.faultCount).append(',');
+            json.append("\"children\":[");
+            for (int i = 0; i < component.children.length; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append(component.children[i]);
+            }
+            json.append("]}");
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static StringBuilder appendField(StringBuilder json, String name, String value) {
+
+        json.append('"').append(name).append("\":");
+        if (value == null) {
+            return json.append("null");
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            switch (character) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (character < 0x20) {
+                        json.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        json.append(character);
+                    }
+                    break;
+            }
+        }
+        return json.append('"');
+    }
+
+    /**
+     * Values of a component event kept in the flow document
+     */
+    static class Component implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private static final int[] NO_CHILDREN = new int[0];
+
+        private final int componentIndex;
+        private final String componentId;
+        private final String componentName;
+        private final String componentType;
+        private final String hashCode;
+        private final long startTime;
+        private final long endTime;
+        private final long duration;
+        private final int faultCount;
+        private final int[] children;
+
+        Component(int componentIndex, String componentId, String componentName, String componentType,
+                  String hashCode, long startTime, long endTime, long duration, int faultCount, String children) {
+
+            this.componentIndex = componentIndex;
+            this.componentId = componentId;
+            this.componentName = componentName;
+            this.componentType = componentType;
+            this.hashCode = hashCode;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.duration = duration;
+            this.faultCount = faultCount;
+            this.children = parseChildren(children);
+        }
+
+        /**
+         * Parse the children attribute of a component event, a list of component indexes such as [1, 2]
+         *
+         * @param children Children attribute, may be null
+         * @return Indexes of the child components
+         */
+        static int[] parseChildren(String children) {
+
+            if (children == null) {
+                return NO_CHILDREN;
+            }
+            String list = children.trim();
+            if (list.startsWith("[")) {
+                list = list.substring(1);
+            }
+            if (list.endsWith("]")) {
+                list = list.substring(0, list.length() - 1);
+            }
+            if (list.trim().isEmpty() || "null".equals(list.trim())) {
+                return NO_CHILDREN;
+            }
+            String[] values = list.split(",");
+            int[] indexes = new int[values.length];
+            int count = 0;
+            for (String value : values) {
+                try {
+                    indexes[count] = Integer.parseInt(value.trim());
+                    count++;
+                } catch (NumberFormatException e) {
+                    // Entries which are not component indexes cannot be pending components, hence skipped
+                }
+            }
+            return count == indexes.length ? indexes : Arrays.copyOf(indexes, count);
+        }
+    }
+}
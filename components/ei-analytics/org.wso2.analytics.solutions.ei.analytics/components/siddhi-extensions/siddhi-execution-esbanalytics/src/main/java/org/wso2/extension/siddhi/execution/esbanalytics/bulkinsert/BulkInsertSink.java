@@ -0,0 +1,553 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.bulkinsert;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.ServiceDeploymentInfo;
+import io.siddhi.core.stream.output.sink.Sink;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.core.util.transport.DynamicOptions;
+import io.siddhi.core.util.transport.OptionHolder;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.definition.StreamDefinition;
+import org.apache.log4j.Logger;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.ConfigUtils;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.DataSourceUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+
+/**
+ * Insert the events of a stream in to a database table in bulk, several rows per statement
+ */
+@Extension(
+        name = "esbBulkInsert",
+        namespace = "sink",
+        description = "This sink inserts the events of a stream in to a database table with the same columns " +
+                "as the stream attributes, such as a table created by the rdbms store. Events are buffered, and " +
+                "written in a single transaction once a batch is full, or when the flush interval passes. " +
+                "MySQL, MariaDB, PostgreSQL and H2 get a single insert statement with a row per event in its " +
+                "VALUES clause, and other databases get a JDBC batch of single row inserts. A full batch is " +
+                "written on the thread publishing the event which fills it, so that publishers are slowed " +
+                "down to the rate the database accepts. When the database cannot be reached, the publishing " +
+                "event is reported to Siddhi as unpublished, and is retried or dropped as set by on.error, while " +
+                "the events buffered before it are kept. When the database rejects a batch, its rows are written " +
+                "again one at a time, and only the rows which are rejected on their own are logged and dropped.",
+        parameters = {
+                @Parameter(name = "datasource",
+                        description = "Name of the datasource of the table. It is looked up in the Siddhi " +
+                                "context, among the Carbon datasources of the server, and then through JNDI",
+                        type = {DataType.STRING}),
+                @Parameter(name = "table.name",
+                        description = "Name of the table in the database",
+                        type = {DataType.STRING}),
+                @Parameter(name = "batch.size",
+                        description = "Number of buffered rows which are written together, in a single " +
+                                "transaction. Where the database allows it, they are inserted with a single " +
+                                "statement, unless they have more than 32767 values, in which case each " +
+                                "statement inserts as many rows as have at most 32767 values",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "500"),
+                @Parameter(name = "flush.interval",
+                        description = "Time in milliseconds after which buffered rows are written, even if the " +
+                                "batch is not full",
+                        type = {DataType.LONG},
+                        optional = true,
+                        defaultValue = "1000")
+        },
+        examples = {
+                @Example(
+                        syntax = "@Async(buffer.size = '8192', workers = '4', batch.size.max = '2000') " +
+                                "@sink(type = 'esbBulkInsert', datasource = 'EI_ANALYTICS', " +
+                                "table.name = 'ESBEventTable', on.error = 'wait', @map(type = 'passThrough')) " +
+                                "define stream ESBEventTableInsertAsyncStream (metaTenantId int, " +
+                                "messageFlowId string, componentId string, duration long);",
+                        description = "This inserts the events of ESBEventTableInsertAsyncStream in to " +
+                                "ESBEventTable, 500 rows per insert statement, or the rows buffered in the last " +
+                                "second. The async workers wait while the database cannot be reached."
+                )
+        }
+)
+public class BulkInsertSink extends Sink<State> {
+
+    private static final Logger log = Logger.getLogger(BulkInsertSink.class);
+    private static final Pattern TABLE_NAME_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    // Databases which accept several rows in the VALUES clause of an insert statement
+    private static final Set<String> MULTI_ROW_PRODUCTS = new HashSet<>(Arrays.asList("mysql", "mariadb",
+            "postgresql", "h2"));
+    // Bind parameters accepted in a statement by all of the above, as older PostgreSQL drivers accept no more
+    private static final int MAX_BIND_PARAMETERS = 32767;
+
+    private String siddhiAppName;
+    private SiddhiAppContext siddhiAppContext;
+    private String dataSourceName;
+    private String tableName;
+    private Attribute.Type[] columnTypes;
+    private String insertPrefix;
+    private String rowPlaceholders;
+    private String batchInsertSql;
+    private int batchSize;
+    private int statementRows;
+    private long flushInterval;
+    private volatile DataSource dataSource;
+    private volatile boolean multiRow;
+    private List<Object[]> bufferedRows = new ArrayList<>();
+    private ScheduledFuture<?> flushTask;
+
+    @Override
+    public Class[] getSupportedInputEventClasses() {
+        return new Class[]{Event.class, Event[].class};
+    }
+
+    @Override
+    protected ServiceDeploymentInfo exposeServiceDeploymentInfo() {
+        return null;
+    }
+
+    @Override
+    public String[] getSupportedDynamicOptions() {
+        return new String[0];
+    }
+
+    /**
+     * The init method of the Sink, this method will be called before other methods
+     *
+     * @param outputStreamDefinition Definition of the stream, whose attributes are the columns of the table
+     * @param optionHolder           Options of the sink
+     * @param sinkConfigReader       Unused, the sink has no system parameters
+     * @param siddhiAppContext       The context of the Siddhi app
+     * @return null, as the buffered rows are not persisted
+     */
+    @Override
+    protected StateFactory<State> init(StreamDefinition outputStreamDefinition, OptionHolder optionHolder,
+                                       ConfigReader sinkConfigReader, SiddhiAppContext siddhiAppContext) {
+
+        this.siddhiAppName = siddhiAppContext.getName();
+        this.siddhiAppContext = siddhiAppContext;
+        this.dataSourceName = optionHolder.validateAndGetStaticValue("datasource");
+        this.tableName = optionHolder.validateAndGetStaticValue("table.name");
+        // The table name is concatenated in to the insert statements
+        if (!TABLE_NAME_PATTERN.matcher(this.tableName).matches()) {
+            throw new SiddhiAppCreationException("Table name '" + this.tableName + "' of the esbBulkInsert sink " +
+                    "of " + outputStreamDefinition.getId() + " in " + this.siddhiAppName + " is not a valid " +
+                    "table name");
+        }
+        this.batchSize = ConfigUtils.readIntOption(optionHolder, "batch.size", "500", "esbBulkInsert",
+                this.siddhiAppName);
+        this.flushInterval = ConfigUtils.readIntOption(optionHolder, "flush.interval", "1000", "esbBulkInsert",
+                this.siddhiAppName);
+
+        List<Attribute> attributes = outputStreamDefinition.getAttributeList();
+        this.columnTypes = new Attribute.Type[attributes.size()];
+        StringBuilder columns = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < attributes.size(); i++) {
+            this.columnTypes[i] = attributes.get(i).getType();
+            columns.append(i == 0 ? "" : ", ").append(attributes.get(i).getName());
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        this.statementRows = Math.max(1, Math.min(this.batchSize, MAX_BIND_PARAMETERS / Math.max(1,
+                attributes.size())));
+        if (this.statementRows < this.batchSize) {
+            log.info("The esbBulkInsert sink of " + outputStreamDefinition.getId() + " in " + this.siddhiAppName +
+                    " inserts " + this.statementRows + " rows per statement, as a batch of " + this.batchSize +
+                    " rows of " + attributes.size() + " columns exceeds " + MAX_BIND_PARAMETERS + " values");
+        }
+        this.insertPrefix = "INSERT INTO " + this.tableName + " (" + columns + ") VALUES ";
+        this.rowPlaceholders = "(" + placeholders + ")";
+        return null;
+    }
+
+    /**
+     * Buffer the rows of the events, and write the buffered rows once a batch is full
+     *
+     * @param payload        Event or events, as mapped by the passThrough mapper
+     * @param dynamicOptions Unused, the sink has no dynamic options
+     * @param state          Unused, the buffered rows are not persisted
+     * @throws ConnectionUnavailableException if the database cannot be reached, in which case the rows of the
+     *                                        payload are not kept
+     */
+    @Override
+    public void publish(Object payload, DynamicOptions dynamicOptions, State state)
+            throws ConnectionUnavailableException {
+
+        Event[] events = payload instanceof Event[] ? (Event[]) payload : new Event[]{(Event) payload};
+        List<Object[]> rows = null;
+        synchronized (this) {
+            for (Event event : events) {
+                this.bufferedRows.add(event.getData());
+            }
+            if (this.bufferedRows.size() >= this.batchSize) {
+                rows = this.bufferedRows;
+                this.bufferedRows = new ArrayList<>();
+            }
+        }
+        if (rows != null) {
+            try {
+                write(rows);
+            } catch (ConnectionUnavailableException e) {
+                if (rows.size() < events.length) {
+                    // Rows of the payload were written one at a time before the connection failed, so the rest
+                    // are kept instead of having Siddhi publish the whole payload again
+                    requeue(rows);
+                    log.warn("Unable to write " + rows.size() + " rows of the esbBulkInsert sink of " +
+                            this.tableName + " in " + this.siddhiAppName + ", hence they are kept for the next " +
+                            "flush: " + e.getMessage());
+                    return;
+                }
+                // Siddhi handles the rows of the payload as set by on.error, so only the rows before them are kept
+                requeue(rows.subList(0, rows.size() - events.length));
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Write the buffered rows, whether or not the batch is full
+     */
+    private void flush() {
+
+        List<Object[]> rows;
+        synchronized (this) {
+            if (this.bufferedRows.isEmpty()) {
+                return;
+            }
+            rows = this.bufferedRows;
+            this.bufferedRows = new ArrayList<>();
+        }
+        try {
+            write(rows);
+        } catch (ConnectionUnavailableException e) {
+            requeue(rows);
+            log.warn("Unable to write " + rows.size() + " buffered rows of the esbBulkInsert sink of " +
+                    this.tableName + " in " + this.siddhiAppName + ", hence they are kept for the next flush: " +
+                    e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Error while writing " + rows.size() + " buffered rows of the esbBulkInsert sink of " +
+                    this.tableName + " in " + this.siddhiAppName + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Put rows which could not be written back in front of the buffered rows
+     *
+     * @param rows Rows in arrival order
+     */
+    private synchronized void requeue(List<Object[]> rows) {
+        this.bufferedRows.addAll(0, rows);
+    }
+
+    /**
+     * Write rows in a single transaction, in statements within the bind parameter limit. When the database rejects
+     * the rows, they are written again one at a time.
+     *
+     * @param rows Rows in arrival order, from which the rows written one at a time are removed if the connection
+     *             fails meanwhile
+     * @throws ConnectionUnavailableException if the database cannot be reached, in which case the rows left in the
+     *                                        list are not written
+     */
+    private void write(List<Object[]> rows) throws ConnectionUnavailableException {
+
+        Connection connection;
+        try {
+            connection = lookupDataSource().getConnection();
+        } catch (SQLException e) {
+            throw new ConnectionUnavailableException("Unable to connect to datasource " + this.dataSourceName +
+                    " of the esbBulkInsert sink in " + this.siddhiAppName + ": " + e.getMessage(), e);
+        }
+        try {
+            connection.setAutoCommit(false);
+            for (int start = 0; start < rows.size(); start += this.statementRows) {
+                insert(connection, rows.subList(start, Math.min(rows.size(), start + this.statementRows)));
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollback(connection);
+            if (isConnectionFailure(e)) {
+                throw connectionFailed(e);
+            }
+            log.warn("Unable to insert " + rows.size() + " rows of the esbBulkInsert sink in to " +
+                    this.tableName + " in " + this.siddhiAppName + ", hence they are inserted one at a time: " +
+                    e.getMessage());
+            insertEach(connection, rows);
+        } finally {
+            close(connection);
+        }
+    }
+
+    /**
+     * Insert rows one at a time, each in a transaction of its own, dropping the rows rejected by the database
+     *
+     * @param connection Connection to the database, which is not in auto commit mode
+     * @param rows       Rows in arrival order, from which the written and dropped rows are removed if the
+     *                   connection fails
+     * @throws ConnectionUnavailableException if the database cannot be reached
+     */
+    private void insertEach(Connection connection, List<Object[]> rows) throws ConnectionUnavailableException {
+
+        int done = 0;
+        int dropped = 0;
+        try {
+            for (Object[] row : rows) {
+                try {
+                    insert(connection, Collections.singletonList(row));
+                    connection.commit();
+                } catch (SQLException e) {
+                    rollback(connection);
+                    if (isConnectionFailure(e)) {
+                        throw e;
+                    }
+                    dropped++;
+                    log.error("Dropping a row of the esbBulkInsert sink, which could not be inserted in to " +
+                            this.tableName + " in " + this.siddhiAppName + ": " + e.getMessage());
+                }
+                done++;
+            }
+        } catch (SQLException e) {
+            rows.subList(0, done).clear();
+            throw connectionFailed(e);
+        }
+        if (dropped > 0) {
+            log.error("Dropped " + dropped + " of " + rows.size() + " rows of the esbBulkInsert sink, which were " +
+                    "rejected by " + this.tableName + " in " + this.siddhiAppName);
+        }
+    }
+
+    /**
+     * Check whether a statement failed because of the connection, rather than the rows
+     *
+     * @param e Failure of the statement
+     * @return true for SQL states of class 08, which are connection exceptions
+     */
+    private static boolean isConnectionFailure(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+
+    private ConnectionUnavailableException connectionFailed(SQLException e) {
+        return new ConnectionUnavailableException("Connection to datasource " + this.dataSourceName +
+                " of the esbBulkInsert sink in " + this.siddhiAppName + " failed: " + e.getMessage(), e);
+    }
+
+    /**
+     * Insert a batch of rows, in a single statement where the database allows it
+     *
+     * @param connection Connection to the database
+     * @param rows       Rows of the batch
+     * @throws SQLException if the rows cannot be inserted
+     */
+    private void insert(Connection connection, List<Object[]> rows) throws SQLException {
+
+        if (this.multiRow) {
+            try (PreparedStatement statement = connection.prepareStatement(insertSql(rows.size()))) {
+                int index = 1;
+                for (Object[] row : rows) {
+                    for (int i = 0; i < this.columnTypes.length; i++) {
+                        bind(statement, index++, this.columnTypes[i], row[i]);
+                    }
+                }
+                statement.executeUpdate();
+            }
+        } else {
+            try (PreparedStatement statement = connection.prepareStatement(insertSql(1))) {
+                for (Object[] row : rows) {
+                    for (int i = 0; i < this.columnTypes.length; i++) {
+                        bind(statement, i + 1, this.columnTypes[i], row[i]);
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Build the insert statement of a number of rows. The statement of the most rows per statement is built once.
+     *
+     * @param rowCount Number of rows in the VALUES clause
+     * @return Insert statement
+     */
+    private String insertSql(int rowCount) {
+
+        if (rowCount == this.statementRows && this.batchInsertSql != null) {
+            return this.batchInsertSql;
+        }
+        StringBuilder sql = new StringBuilder(this.insertPrefix.length() +
+                rowCount * (this.rowPlaceholders.length() + 2));
+        sql.append(this.insertPrefix);
+        for (int i = 0; i < rowCount; i++) {
+            sql.append(i == 0 ? "" : ", ").append(this.rowPlaceholders);
+        }
+        if (rowCount == this.statementRows) {
+            this.batchInsertSql = sql.toString();
+        }
+        return sql.toString();
+    }
+
+    private static void bind(PreparedStatement statement, int index, Attribute.Type type, Object value)
+            throws SQLException {
+
+        switch (type) {
+            case STRING:
+                if (value == null) {
+                    statement.setNull(index, Types.VARCHAR);
+                } else {
+                    statement.setString(index, (String) value);
+                }
+                break;
+            case INT:
+                if (value == null) {
+                    statement.setNull(index, Types.INTEGER);
+                } else {
+                    statement.setInt(index, (Integer) value);
+                }
+                break;
+            case LONG:
+                if (value == null) {
+                    statement.setNull(index, Types.BIGINT);
+                } else {
+                    statement.setLong(index, (Long) value);
+                }
+                break;
+            case DOUBLE:
+                if (value == null) {
+                    statement.setNull(index, Types.DOUBLE);
+                } else {
+                    statement.setDouble(index, (Double) value);
+                }
+                break;
+            case FLOAT:
+                if (value == null) {
+                    statement.setNull(index, Types.FLOAT);
+                } else {
+                    statement.setFloat(index, (Float) value);
+                }
+                break;
+            case BOOL:
+                if (value == null) {
+                    statement.setNull(index, Types.BOOLEAN);
+                } else {
+                    statement.setBoolean(index, (Boolean) value);
+                }
+                break;
+            default:
+                if (value == null) {
+                    statement.setNull(index, Types.JAVA_OBJECT);
+                } else {
+                    statement.setObject(index, value);
+                }
+                break;
+        }
+    }
+
+    private void rollback(Connection connection) {
+
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            log.warn("Unable to roll back the rows of the esbBulkInsert sink of " + this.tableName + " in " +
+                    this.siddhiAppName + ": " + e.getMessage());
+        }
+    }
+
+    private void close(Connection connection) {
+
+        try {
+            connection.setAutoCommit(true);
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("Unable to close the connection of the esbBulkInsert sink of " + this.tableName + " in " +
+                    this.siddhiAppName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Look up the datasource in the Siddhi context, among the Carbon datasources, and then through JNDI
+     *
+     * @return The datasource
+     * @throws ConnectionUnavailableException if the datasource is not found
+     */
+    private DataSource lookupDataSource() throws ConnectionUnavailableException {
+
+        if (this.dataSource == null) {
+            DataSource foundDataSource = DataSourceUtils.lookupDataSource(this.siddhiAppContext.getSiddhiContext(),
+                    this.dataSourceName);
+            if (foundDataSource == null) {
+                throw new ConnectionUnavailableException("Datasource " + this.dataSourceName + " of the " +
+                        "esbBulkInsert sink in " + this.siddhiAppName + " is not found");
+            }
+            this.dataSource = foundDataSource;
+        }
+        return this.dataSource;
+    }
+
+    @Override
+    public synchronized void connect() throws ConnectionUnavailableException {
+
+        try (Connection connection = lookupDataSource().getConnection()) {
+            String productName = connection.getMetaData().getDatabaseProductName();
+            this.multiRow = productName != null && MULTI_ROW_PRODUCTS.contains(productName.toLowerCase(
+                    Locale.ENGLISH));
+        } catch (SQLException e) {
+            throw new ConnectionUnavailableException("Unable to connect to datasource " + this.dataSourceName +
+                    " of the esbBulkInsert sink in " + this.siddhiAppName + ": " + e.getMessage(), e);
+        }
+        if (this.flushTask == null) {
+            this.flushTask = this.siddhiAppContext.getScheduledExecutorService().scheduleWithFixedDelay(
+                    this::flush, this.flushInterval, this.flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void disconnect() {
+
+        if (this.flushTask != null) {
+            this.flushTask.cancel(false);
+            this.flushTask = null;
+        }
+        flush();
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to destroy
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.configchange;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.SystemParameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.core.util.timestamp.TimestampGenerator;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import org.wso2.extension.siddhi.execution.esbanalytics.payloadstore.PayloadReferences;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.ConfigUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pass on a config entry only when it is new or its content has changed, so that configs resent unchanged are not
+ * written to the config table again
+ */
+@Extension(
+        name = "configChanged",
+        namespace = "esbAnalytics",
+        description = "This extension passes on a config entry event only when its hash code is not cached, or " +
+                "the digest of its config data differs from the cached one. Config entries resent unchanged are " +
+                "dropped, except once per refresh interval, so that the timestamp of their stored row is kept " +
+                "recent for the purging of the config table. The digests of the most recently seen hash codes " +
+                "are cached, up to the configured number of entries.",
+        parameters = {
+                @Parameter(name = "hashcode",
+                        description = "Hash code identifying the config entry",
+                        type = {DataType.STRING},
+                        dynamic = true),
+                @Parameter(name = "config.data",
+                        description = "Config data of the config entry",
+                        type = {DataType.STRING},
+                        dynamic = true)
+        },
+        systemParameter = {
+                @SystemParameter(name = "max.entries",
+                        description = "Maximum number of hash codes whose config digest is cached. When more " +
+                                "config entries are seen, the least recently seen ones are forgotten, and passed " +
+                                "on again the next time they arrive",
+                        defaultValue = "10000",
+                        possibleParameters = "Any positive integer"),
+                @SystemParameter(name = "refresh.interval.millis",
+                        description = "Time in milliseconds after which an unchanged config entry is passed on " +
+                                "again",
+                        defaultValue = "86400000",
+                        possibleParameters = "Any positive integer")
+        },
+        examples = {
+                @Example(
+                        syntax = "from ConfigEntryEventStream#esbAnalytics:configChanged(hashcode, configData) " +
+                                "select meta_tenantId as metaTenantId, hashcode, entryName, configData, " +
+                                "eventTimestamp() as eventTimestamp update or insert into ConfigEntryTable on " +
+                                "ConfigEntryTable.hashcode == hashcode;",
+                        description = "This query writes a config entry to ConfigEntryTable only when it is new " +
+                                "or has changed, or once a day when it is resent unchanged."
+                )
+        }
+)
+public class ConfigChangedStreamProcessorExtension extends StreamProcessor<State> {
+
+    // System parameters of the extension
+    private static final String MAX_ENTRIES_CONFIG = "max.entries";
+    private static final String REFRESH_INTERVAL_CONFIG = "refresh.interval.millis";
+
+    private String siddhiAppName;
+    private ExpressionExecutor hashcodeExecutor;
+    private ExpressionExecutor configDataExecutor;
+    private int maxEntries;
+    private long refreshInterval;
+    private Map<String, CachedConfig> cachedConfigs;
+    private TimestampGenerator timestampGenerator;
+
+    /**
+     * Pass on the new and changed config entries to the next processor
+     *
+     * @param streamEventChunk      Incoming config entry events chunk
+     * @param nextProcessor         Next event processor to hand over the config entries
+     * @param streamEventCloner     Unused, the config entries are forwarded
+     * @param complexEventPopulater Unused, no attributes are added to the config entries
+     * @param state                 Unused, the cached digests are not persisted
+     */
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           State state) {
+
+        long currentTime = this.timestampGenerator.currentTime();
+        synchronized (this.cachedConfigs) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType() != ComplexEvent.Type.CURRENT || !isChanged(streamEvent, currentTime)) {
+                    streamEventChunk.remove();
+                }
+            }
+        }
+        if (streamEventChunk.getFirst() != null) {
+            nextProcessor.process(streamEventChunk);
+        }
+    }
+
+    /**
+     * Compare the config data of a config entry with the cached digest of its hash code, and cache its digest
+     *
+     * @param streamEvent Config entry event
+     * @param currentTime Current time
+     * @return Whether the config entry is passed on
+     */
+    private boolean isChanged(StreamEvent streamEvent, long currentTime) {
+
+        String hashcode = (String) this.hashcodeExecutor.execute(streamEvent);
+        String configData = (String) this.configDataExecutor.execute(streamEvent);
+        if (hashcode == null) {
+            return true;
+        }
+        String digest = configData == null ? null : PayloadReferences.reference(configData);
+        CachedConfig cachedConfig = this.cachedConfigs.get(hashcode);
+        if (cachedConfig != null && (digest == null ? cachedConfig.digest == null : digest.equals(
+                cachedConfig.digest)) && currentTime - cachedConfig.forwardedTime < this.refreshInterval) {
+            return false;
+        }
+        this.cachedConfigs.put(hashcode, new CachedConfig(digest, currentTime));
+        return true;
+    }
+
+    /**
+     * The init method of the StreamProcessor, this method will be called before other methods
+     *
+     * @param metaStreamEvent              the  stream event meta
+     * @param inputDefinition              the incoming stream definition
+     * @param attributeExpressionExecutors the executors of each function parameters
+     * @param configReader                 this hold the {@link StreamProcessor} extensions configuration reader.
+     * @param streamEventClonerHolder      stream event cloner holder
+     * @param outputExpectsExpiredEvents   whether the output expects expired events
+     * @param findToBeExecuted             whether find will be executed on this processor
+     * @param siddhiQueryContext           The context of the Siddhi query
+     * @return null, as the cached digests are not persisted
+     */
+    @Override
+    protected StateFactory<State> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                       ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       StreamEventClonerHolder streamEventClonerHolder,
+                                       boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                       SiddhiQueryContext siddhiQueryContext) {
+
+        this.siddhiAppName = siddhiQueryContext.getSiddhiAppContext().getName();
+        if (attributeExpressionExecutors.length != 2) {
+            throw new SiddhiAppCreationException("esbAnalytics:configChanged in " + this.siddhiAppName +
+                    " expects the hash code and config data, but found " + attributeExpressionExecutors.length +
+                    " parameters");
+        }
+        for (ExpressionExecutor executor : attributeExpressionExecutors) {
+            if (executor.getReturnType() != Attribute.Type.STRING) {
+                throw new SiddhiAppCreationException("Parameters of esbAnalytics:configChanged in " +
+                        this.siddhiAppName + " should be of type STRING, but found " + executor.getReturnType());
+            }
+        }
+        this.hashcodeExecutor = attributeExpressionExecutors[0];
+        this.configDataExecutor = attributeExpressionExecutors[1];
+        this.maxEntries = ConfigUtils.readIntConfig(configReader, MAX_ENTRIES_CONFIG, "10000",
+                "esbAnalytics:configChanged", this.siddhiAppName);
+        this.refreshInterval = ConfigUtils.readIntConfig(configReader, REFRESH_INTERVAL_CONFIG, "86400000",
+                "esbAnalytics:configChanged", this.siddhiAppName);
+        // Access ordered, so that the least recently seen hash code is evicted first
+        this.cachedConfigs = new LinkedHashMap<String, CachedConfig>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedConfig> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.timestampGenerator = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator();
+        return null;
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void stop() {
+
+        synchronized (this.cachedConfigs) {
+            this.cachedConfigs.clear();
+        }
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    /**
+     * Digest of the config data last passed on for a hash code, and when it was passed on
+     */
+    private static class CachedConfig {
+
+        private final String digest;
+        private final long forwardedTime;
+
+        private CachedConfig(String digest, long forwardedTime) {
+            this.digest = digest;
+            this.forwardedTime = forwardedTime;
+        }
+    }
+}
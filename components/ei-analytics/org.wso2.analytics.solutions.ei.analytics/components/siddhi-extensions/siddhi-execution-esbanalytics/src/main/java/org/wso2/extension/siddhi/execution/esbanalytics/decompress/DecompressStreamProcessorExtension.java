@@ -18,12 +18,12 @@
 
 package org.wso2.extension.siddhi.execution.esbanalytics.decompress;
 
-import com.esotericsoftware.kryo.Kryo;
-import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.KryoException;
 import io.siddhi.annotation.Example;
 import io.siddhi.annotation.Extension;
 import io.siddhi.annotation.Parameter;
 import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.SystemParameter;
 import io.siddhi.annotation.util.DataType;
 import io.siddhi.core.config.SiddhiQueryContext;
 import io.siddhi.core.event.ComplexEventChunk;
@@ -34,6 +34,7 @@ import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
 import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
 import io.siddhi.core.exception.SiddhiAppCreationException;
 import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
 import io.siddhi.core.executor.ExpressionExecutor;
 import io.siddhi.core.executor.VariableExpressionExecutor;
 import io.siddhi.core.query.processor.ProcessingMode;
@@ -42,24 +43,39 @@ import io.siddhi.core.query.processor.stream.StreamProcessor;
 import io.siddhi.core.util.config.ConfigReader;
 import io.siddhi.core.util.snapshot.state.State;
 import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.core.util.timestamp.TimestampGenerator;
 import io.siddhi.query.api.definition.AbstractDefinition;
 import io.siddhi.query.api.definition.Attribute;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.wso2.carbon.analytics.spark.core.util.AnalyticsConstants;
-import org.wso2.carbon.analytics.spark.core.util.CompressedEventAnalyticsUtils;
 import org.wso2.carbon.analytics.spark.core.util.PublishingPayload;
 import org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.CompressedEventUtils;
+import org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.DecompressMetrics;
+import org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.ESBAnalyticsConstants;
+import org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.FieldPlan;
+import org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.FlowDataDecoder;
+import org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.PayloadIndex;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.ConfigUtils;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.RecentKeyFilter;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import javax.xml.bind.DatatypeConverter;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.ESBAnalyticsConstants.TYPE_BOOL;
 import static org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.ESBAnalyticsConstants.TYPE_DOUBLE;
@@ -78,7 +94,9 @@ import static org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.E
                 " Integrator",
         parameters = {
                 @Parameter(name = "meta.compressed",
-                        description = "Compressed state of the message",
+                        description = "Compressed state of the message. The codec of compressed messages is " +
+                                "detected from the leading bytes of the flow data. GZIP, LZ4 frame and Zstandard " +
+                                "are supported, and GZIP is assumed when no other codec matches",
                         type = {DataType.BOOL}),
                 @Parameter(name = "meta.tenant.id",
                         description = "Tenant id",
@@ -88,7 +106,14 @@ import static org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.E
                         type = {DataType.STRING}),
                 @Parameter(name = "flow.data",
                         description = "Compressed stream events chunk",
-                        type = {DataType.STRING})
+                        type = {DataType.STRING}),
+                @Parameter(name = "exclude.columns",
+                        description = "Comma separated list of heavy columns which are not read by the query, " +
+                                "and hence are left null in the decompressed events. Supported columns are " +
+                                "beforePayload, afterPayload, contextPropertyMap, transportPropertyMap and children",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "none")
         },
         returnAttributes = {
                 @ReturnAttribute(name = "messageFlowId",
@@ -152,6 +177,48 @@ import static org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.E
                         description = "Event timestamp",
                         type = {DataType.LONG})
         },
+        systemParameter = {
+                @SystemParameter(name = "parallelism",
+                        description = "Number of worker threads used to decode the compressed events of an " +
+                                "incoming chunk in parallel. The decompressed events are always emitted in the " +
+                                "order of the compressed events, and at most this many events are decoded ahead " +
+                                "of the one being emitted. When set to 1, events are decoded one after " +
+                                "another on the thread which delivers the chunk",
+                        defaultValue = "1",
+                        possibleParameters = "Any positive integer"),
+                @SystemParameter(name = "max.output.chunk.size",
+                        description = "Maximum number of decompressed events handed over to the next processor " +
+                                "in a single chunk. Decompressed events are built as they are emitted, and large " +
+                                "aggregated flows are emitted in several chunks, which bounds the number of " +
+                                "decompressed events held at once. The decoded flow data is still held until its " +
+                                "last event is emitted, as a flow is serialized as a single object. When set to " +
+                                "0, all decompressed events of an incoming chunk are emitted together",
+                        defaultValue = "0",
+                        possibleParameters = "Any non negative integer"),
+                @SystemParameter(name = "dedup.window.millis",
+                        description = "Time window in milliseconds within which a compressed event with an " +
+                                "already seen meta tenant id and message id is dropped without being " +
+                                "decompressed. This suppresses events re-published by the EI publisher. " +
+                                "Message ids of a chunk which fails before its events are handed over are " +
+                                "forgotten, so that a re-published copy is processed. When set to 0, duplicate " +
+                                "events are not checked",
+                        defaultValue = "0",
+                        possibleParameters = "Any non negative integer"),
+                @SystemParameter(name = "dedup.capacity",
+                        description = "Maximum number of message ids remembered per deduplication window. " +
+                                "When more distinct message ids arrive within a window, older ids are " +
+                                "forgotten early, which bounds the memory used for deduplication",
+                        defaultValue = "100000",
+                        possibleParameters = "Any positive integer"),
+                @SystemParameter(name = "metrics.enabled",
+                        description = "Whether decompression metrics of each query are exposed through JMX, as " +
+                                "the org.wso2.extension.siddhi.execution.esbanalytics:type=DecompressMetrics " +
+                                "MXBean. These include event and byte counts, and histograms of the flow sizes, " +
+                                "events per flow, decode time, the Base64 decode, inflate and deserialize time " +
+                                "within it, and row build time",
+                        defaultValue = "true",
+                        possibleParameters = {"true", "false"})
+        },
         examples = {
                 @Example(
                         syntax = "define stream inputStream(meta_compressed bool, meta_tenantId int," +
@@ -160,26 +227,33 @@ import static org.wso2.extension.siddhi.execution.esbanalytics.decompress.util.E
                                 "messageId, flowData) insert all events into outputStream;",
                         description = "This query uses the incoming esb analytics message to produce decompressed " +
                                 "esb analytics events."
+                ),
+                @Example(
+                        syntax = "define stream inputStream(meta_compressed bool, meta_tenantId int," +
+                                " messageId string, flowData string); " + "@info( name = 'query') from " +
+                                "inputStream#esbAnalytics:decompress(meta_compressed, meta_tenantId, " +
+                                "messageId, flowData, 'beforePayload,afterPayload,contextPropertyMap," +
+                                "transportPropertyMap,children') select componentId, duration, faultCount " +
+                                "insert into outputStream;",
+                        description = "This query produces decompressed esb analytics events for statistics only. " +
+                                "The payload and property map columns are left null, so that the large payload " +
+                                "strings are not retained by the output events."
                 )
         }
 )
 public class DecompressStreamProcessorExtension extends StreamProcessor<State> {
 
-    private static final ThreadLocal<Kryo> kryoTL = ThreadLocal.withInitial(() -> {
-
-        Kryo kryo = new Kryo();
-        /* Class registering precedence matters. Hence intentionally giving a registration ID */
-        kryo.register(HashMap.class, 111);
-        kryo.register(ArrayList.class, 222);
-        kryo.register(PublishingPayload.class, 333);
-        return kryo;
-    });
-
     private String siddhiAppName;
     private Map<String, String> fields = new LinkedHashMap<>();
-    private List<String> columns;
+    private FieldPlan fieldPlan;
     private Map<String, VariableExpressionExecutor> compressedEventAttributes;
     private List<Attribute> attributeList = new ArrayList<>();
+    private int parallelism = 1;
+    private int maxOutputChunkSize = 0;
+    private RecentKeyFilter messageIdFilter;
+    private TimestampGenerator timestampGenerator;
+    private DecompressMetrics metrics;
+    private volatile ForkJoinPool decodePool;
 
     /**
      * Get the definitions of the output fields in the decompressed event
@@ -221,50 +295,281 @@ public class DecompressStreamProcessorExtension extends StreamProcessor<State> {
                            StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
                            State state) {
 
+        List<StreamEvent> compressedEvents = new ArrayList<>();
+        List<Callable<DecodedFlow>> decodeTasks = new ArrayList<>();
+        List<Future<DecodedFlow>> futures = null;
         ComplexEventChunk<StreamEvent> decompressedStreamEventChunk = new ComplexEventChunk<>(false);
-        while (streamEventChunk.hasNext()) {
-            StreamEvent compressedEvent = streamEventChunk.next();
-            String eventString = (String) this.compressedEventAttributes.get(AnalyticsConstants.DATA_COLUMN)
-                    .execute(compressedEvent);
-            if (!eventString.isEmpty()) {
-                ByteArrayInputStream unzippedByteArray;
-                Boolean isCompressed = (Boolean) this.compressedEventAttributes.
-                        get(AnalyticsConstants.META_FIELD_COMPRESSED).execute(compressedEvent);
-                if (isCompressed) {
-                    unzippedByteArray = CompressedEventAnalyticsUtils.decompress(eventString);
-                } else {
-                    unzippedByteArray = new ByteArrayInputStream(DatatypeConverter.parseBase64Binary(eventString));
+        int decompressedEventCount = 0;
+        int emittedFlowCount = 0;
+        boolean emitted = false;
+        try {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent compressedEvent = streamEventChunk.next();
+                String eventString = (String) this.compressedEventAttributes.get(AnalyticsConstants.DATA_COLUMN)
+                        .execute(compressedEvent);
+                if (this.metrics != null) {
+                    this.metrics.recordCompressedEvent();
                 }
-                Input input = new Input(unzippedByteArray);
-
-                // Suppress checking for obvious uncompressed event string
-                @SuppressWarnings("unchecked")
-                Map<String, Object> aggregatedEvent = kryoTL.get().readObjectOrNull(input, HashMap.class);
-                @SuppressWarnings("unchecked")
-                ArrayList<List<Object>> eventsList = (ArrayList<List<Object>>) aggregatedEvent.get(
-                        AnalyticsConstants.EVENTS_ATTRIBUTE);
-                @SuppressWarnings("unchecked")
-                ArrayList<PublishingPayload> payloadsList = (ArrayList<PublishingPayload>) aggregatedEvent.get(
-                        AnalyticsConstants.PAYLOADS_ATTRIBUTE);
-
-                String host = (String) aggregatedEvent.get(AnalyticsConstants.HOST_ATTRIBUTE);
+                if (eventString.isEmpty()) {
+                    if (this.metrics != null) {
+                        this.metrics.recordEmptyEvent();
+                    }
+                    throw new SiddhiAppRuntimeException("Empty message flow data event in " + this.siddhiAppName);
+                }
+                boolean isCompressed = (Boolean) this.compressedEventAttributes.
+                        get(AnalyticsConstants.META_FIELD_COMPRESSED).execute(compressedEvent);
                 int metaTenantId = (int) this.compressedEventAttributes.get(AnalyticsConstants.META_FIELD_TENANT_ID)
                         .execute(compressedEvent);
-                // Iterate over the array of events
-                for (int i = 0; i < eventsList.size(); i++) {
+                if (this.messageIdFilter != null && isDuplicate(compressedEvent, metaTenantId)) {
+                    // Drop events re-published by the EI publisher before doing any decoding work
+                    if (this.metrics != null) {
+                        this.metrics.recordDuplicateEvent();
+                    }
+                    continue;
+                }
+                long timestamp = compressedEvent.getTimestamp();
+                compressedEvents.add(compressedEvent);
+                decodeTasks.add(() -> decompress(eventString, isCompressed, metaTenantId, timestamp));
+            }
+
+            ForkJoinPool pool = decodeTasks.size() < 2 ? null : this.decodePool;
+            futures = submitAhead(pool, decodeTasks);
+            for (int i = 0; i < compressedEvents.size(); i++) {
+                StreamEvent compressedEvent = compressedEvents.get(i);
+                if (futures != null) {
+                    // Keep the workers one window ahead of the emitter
+                    submit(pool, decodeTasks, futures, i + this.parallelism);
+                }
+                DecodedFlow decodedFlow = futures == null ? call(decodeTasks.get(i)) : await(futures, i);
+                long rowBuildStartTime = this.metrics != null ? System.nanoTime() : 0;
+                long handOverNanos = 0;
+                // Build the decompressed events as they are emitted, instead of building every row of the flow first
+                for (int j = 0; j < decodedFlow.eventsList.size(); j++) {
+                    Object[] decompressedFields = CompressedEventUtils.getFieldValues(fieldPlan,
+                            decodedFlow.eventsList.get(j), decodedFlow.payloadIndex, j, decodedFlow.timestamp,
+                            decodedFlow.metaTenantId, decodedFlow.host);
                     StreamEvent decompressedEvent = streamEventCloner.copyStreamEvent(compressedEvent);
-                    // Create a new event with the decompressed fields
-                    Object[] decompressedFields = CompressedEventUtils.getFieldValues(
-                            columns, eventsList.get(i), payloadsList, i,
-                            compressedEvent.getTimestamp(), metaTenantId, host);
                     complexEventPopulater.populateComplexEvent(decompressedEvent, decompressedFields);
                     decompressedStreamEventChunk.add(decompressedEvent);
+                    decompressedEventCount++;
+                    // Hand over a bounded chunk, instead of holding every decompressed event of the input chunk
+                    if (this.maxOutputChunkSize > 0 && decompressedEventCount >= this.maxOutputChunkSize) {
+                        long handOverStartTime = this.metrics != null ? System.nanoTime() : 0;
+                        nextProcessor.process(decompressedStreamEventChunk);
+                        decompressedStreamEventChunk = new ComplexEventChunk<>(false);
+                        decompressedEventCount = 0;
+                        emitted = true;
+                        emittedFlowCount = i;
+                        if (this.metrics != null) {
+                            handOverNanos += System.nanoTime() - handOverStartTime;
+                        }
+                    }
+                }
+                if (this.metrics != null) {
+                    this.metrics.recordFlow(decodedFlow.compressedBytes, decodedFlow.decompressedBytes,
+                            decodedFlow.eventsList.size(), decodedFlow.decodeNanos,
+                            System.nanoTime() - rowBuildStartTime - handOverNanos);
+                    this.metrics.recordDecodeStages(decodedFlow.base64Nanos, decodedFlow.inflateNanos,
+                            decodedFlow.deserializeNanos, decodedFlow.compressed);
+                }
+            }
+            if (decompressedEventCount > 0 || !emitted) {
+                nextProcessor.process(decompressedStreamEventChunk);
+            }
+        } catch (RuntimeException e) {
+            if (this.messageIdFilter != null) {
+                // Flows which were not handed over are lost with the chunk, hence they must not be dropped as
+                // duplicates when the EI publisher re-publishes them
+                forgetMessageIds(compressedEvents, emittedFlowCount);
+            }
+            throw e;
+        } finally {
+            if (futures != null) {
+                for (Future<DecodedFlow> future : futures) {
+                    if (future != null) {
+                        future.cancel(false);
+                    }
                 }
-            } else {
-                throw new SiddhiAppRuntimeException("Empty message flow data event in " + this.siddhiAppName);
             }
         }
-        nextProcessor.process(decompressedStreamEventChunk);
+    }
+
+    /**
+     * Check whether a compressed event with the same tenant and message id was already processed within
+     * the deduplication window. Events without a message id are never treated as duplicates.
+     *
+     * @param compressedEvent Compressed event
+     * @param metaTenantId    Tenant id of the compressed event
+     * @return true if the event is a duplicate
+     */
+    private boolean isDuplicate(StreamEvent compressedEvent, int metaTenantId) {
+
+        String messageId = (String) this.compressedEventAttributes.get(ESBAnalyticsConstants.MESSAGE_ID)
+                .execute(compressedEvent);
+        if (messageId == null || messageId.isEmpty()) {
+            return false;
+        }
+        return !this.messageIdFilter.accept(metaTenantId, messageId, this.timestampGenerator.currentTime());
+    }
+
+    /**
+     * Forget the message ids of compressed events recorded by the deduplication filter
+     *
+     * @param compressedEvents Compressed events accepted by the deduplication filter, in arrival order
+     * @param fromIndex        Index of the first compressed event to forget
+     */
+    private void forgetMessageIds(List<StreamEvent> compressedEvents, int fromIndex) {
+
+        for (int i = fromIndex; i < compressedEvents.size(); i++) {
+            StreamEvent compressedEvent = compressedEvents.get(i);
+            String messageId = (String) this.compressedEventAttributes.get(ESBAnalyticsConstants.MESSAGE_ID)
+                    .execute(compressedEvent);
+            if (messageId != null && !messageId.isEmpty()) {
+                int metaTenantId = (int) this.compressedEventAttributes.get(
+                        AnalyticsConstants.META_FIELD_TENANT_ID).execute(compressedEvent);
+                this.messageIdFilter.forget(metaTenantId, messageId);
+            }
+        }
+    }
+
+    /**
+     * Submit the first window of decode tasks of a chunk to the worker pool. At most parallelism tasks are
+     * submitted ahead of the one being emitted, so that the decoded flows held at once are bounded by the window
+     * rather than by the size of the chunk.
+     *
+     * @param pool        Decompression worker pool, or null if the tasks are to be run inline
+     * @param decodeTasks Decode task of each compressed event, in arrival order
+     * @return Futures of the decode tasks in arrival order, which are null until submitted, or null if the tasks
+     * are to be run inline
+     */
+    private List<Future<DecodedFlow>> submitAhead(ForkJoinPool pool, List<Callable<DecodedFlow>> decodeTasks) {
+
+        if (pool == null) {
+            return null;
+        }
+        List<Future<DecodedFlow>> futures = new ArrayList<>(Collections.nCopies(decodeTasks.size(), null));
+        for (int i = 0; i < this.parallelism; i++) {
+            submit(pool, decodeTasks, futures, i);
+        }
+        return futures;
+    }
+
+    /**
+     * Submit a decode task to the worker pool, if there is such a task
+     *
+     * @param pool        Decompression worker pool
+     * @param decodeTasks Decode task of each compressed event, in arrival order
+     * @param futures     Futures of the decode tasks in arrival order
+     * @param index       Index of the decode task
+     */
+    private void submit(ForkJoinPool pool, List<Callable<DecodedFlow>> decodeTasks,
+                        List<Future<DecodedFlow>> futures, int index) {
+
+        if (index >= decodeTasks.size()) {
+            return;
+        }
+        try {
+            futures.set(index, pool.submit(decodeTasks.get(index)));
+        } catch (RejectedExecutionException e) {
+            throw new SiddhiAppRuntimeException("Decompression worker pool of " + this.siddhiAppName +
+                    " is not accepting tasks", e);
+        }
+    }
+
+    /**
+     * Run a decode task on the current thread
+     *
+     * @param decodeTask Decode task of a compressed event
+     * @return Decoded flow of the compressed event
+     */
+    private DecodedFlow call(Callable<DecodedFlow> decodeTask) {
+
+        try {
+            return decodeTask.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SiddhiAppRuntimeException("Unable to decode message flow data in " +
+                    this.siddhiAppName + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Wait for a submitted decode task and release its future, so that the decoded flow can be garbage
+     * collected once it is emitted
+     *
+     * @param futures Futures of the decode tasks in arrival order
+     * @param index   Index of the decode task
+     * @return Decoded flow of the compressed event
+     */
+    private DecodedFlow await(List<Future<DecodedFlow>> futures, int index) {
+
+        try {
+            return futures.get(index).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SiddhiAppRuntimeException("Interrupted while decoding message flow data in " +
+                    this.siddhiAppName, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SiddhiAppRuntimeException("Unable to decode message flow data in " +
+                    this.siddhiAppName + ": " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            futures.set(index, null);
+        }
+    }
+
+    /**
+     * Decode the flow data of a compressed event, and index its payloads. The decompressed events are built
+     * from the decoded flow by the emitter. This does not touch the stream events, hence it is safe to be called
+     * from the decompression workers.
+     *
+     * @param flowData     Base64 encoded flow data
+     * @param isCompressed Whether the flow data is GZIP compressed
+     * @param metaTenantId Tenant id of the compressed event
+     * @param timestamp    Timestamp of the compressed event
+     * @return Decoded flow of the compressed event
+     */
+    private DecodedFlow decompress(String flowData, boolean isCompressed, int metaTenantId, long timestamp) {
+
+        long decodeStartTime = this.metrics != null ? System.nanoTime() : 0;
+        FlowDataDecoder decoder = FlowDataDecoder.getInstance();
+        Map<String, Object> aggregatedEvent;
+        try {
+            aggregatedEvent = decoder.decode(flowData, isCompressed, this.metrics != null);
+        } catch (IOException | KryoException e) {
+            if (this.metrics != null) {
+                this.metrics.recordFailedEvent();
+            }
+            throw new SiddhiAppRuntimeException("Unable to decode message flow data in " +
+                    this.siddhiAppName + ": " + e.getMessage(), e);
+        }
+        @SuppressWarnings("unchecked")
+        ArrayList<List<Object>> eventsList = (ArrayList<List<Object>>) aggregatedEvent.get(
+                AnalyticsConstants.EVENTS_ATTRIBUTE);
+        @SuppressWarnings("unchecked")
+        ArrayList<PublishingPayload> payloadsList = (ArrayList<PublishingPayload>) aggregatedEvent.get(
+                AnalyticsConstants.PAYLOADS_ATTRIBUTE);
+
+        DecodedFlow decodedFlow = new DecodedFlow();
+        decodedFlow.eventsList = eventsList;
+        // Invert the payloads once, instead of scanning all of them for every event
+        decodedFlow.payloadIndex = PayloadIndex.build(payloadsList, eventsList.size(), fieldPlan);
+        decodedFlow.host = (String) aggregatedEvent.get(AnalyticsConstants.HOST_ATTRIBUTE);
+        decodedFlow.metaTenantId = metaTenantId;
+        decodedFlow.timestamp = timestamp;
+        if (this.metrics != null) {
+            decodedFlow.compressedBytes = decoder.getCompressedBytes();
+            decodedFlow.decompressedBytes = decoder.getDecompressedBytes();
+            decodedFlow.decodeNanos = System.nanoTime() - decodeStartTime;
+            decodedFlow.base64Nanos = decoder.getBase64Nanos();
+            decodedFlow.inflateNanos = decoder.getDecompressNanos();
+            decodedFlow.deserializeNanos = decoder.getDeserializeNanos();
+            decodedFlow.compressed = isCompressed;
+        }
+        return decodedFlow;
     }
 
     /**
@@ -284,8 +589,11 @@ public class DecompressStreamProcessorExtension extends StreamProcessor<State> {
         this.siddhiAppName = siddhiQueryContext.getSiddhiAppContext().getName();
         // Get attributes from the compressed event
         this.compressedEventAttributes = new HashMap<>();
+        Set<String> excludedColumns = new HashSet<>();
         for (ExpressionExecutor expressionExecutor : attributeExpressionExecutors) {
-            if (expressionExecutor instanceof VariableExpressionExecutor) {
+            if (expressionExecutor instanceof ConstantExpressionExecutor) {
+                excludedColumns.addAll(getExcludedColumns((ConstantExpressionExecutor) expressionExecutor));
+            } else if (expressionExecutor instanceof VariableExpressionExecutor) {
                 VariableExpressionExecutor variable = (VariableExpressionExecutor) expressionExecutor;
                 String variableName = variable.getAttribute().getName();
                 switch (variableName) {
@@ -298,6 +606,9 @@ public class DecompressStreamProcessorExtension extends StreamProcessor<State> {
                     case AnalyticsConstants.META_FIELD_TENANT_ID:
                         this.compressedEventAttributes.put(AnalyticsConstants.META_FIELD_TENANT_ID, variable);
                         break;
+                    case ESBAnalyticsConstants.MESSAGE_ID:
+                        this.compressedEventAttributes.put(ESBAnalyticsConstants.MESSAGE_ID, variable);
+                        break;
                     default:
                         break;
                 }
@@ -342,15 +653,77 @@ public class DecompressStreamProcessorExtension extends StreamProcessor<State> {
             }
             outputAttributes.add(new Attribute(fieldName, type));
         }
-        this.columns = new ArrayList<>(this.fields.keySet());
+        this.fieldPlan = FieldPlan.compile(new ArrayList<>(this.fields.keySet()), excludedColumns);
+        this.parallelism = ConfigUtils.readIntConfig(configReader, ESBAnalyticsConstants.PARALLELISM_CONFIG, "1", 1,
+                "esbAnalytics:decompress", this.siddhiAppName);
+        this.maxOutputChunkSize = ConfigUtils.readIntConfig(configReader,
+                ESBAnalyticsConstants.MAX_OUTPUT_CHUNK_SIZE_CONFIG, "0", 0, "esbAnalytics:decompress",
+                this.siddhiAppName);
+        int dedupWindow = ConfigUtils.readIntConfig(configReader, ESBAnalyticsConstants.DEDUP_WINDOW_CONFIG, "0", 0,
+                "esbAnalytics:decompress", this.siddhiAppName);
+        if (dedupWindow > 0) {
+            if (this.compressedEventAttributes.get(ESBAnalyticsConstants.MESSAGE_ID) == null) {
+                throw new SiddhiAppCreationException("Cannot find the messageId attribute in " +
+                        this.siddhiAppName + ", which is required when " + ESBAnalyticsConstants.DEDUP_WINDOW_CONFIG +
+                        " is set. Please provide the messageId attribute in exact name");
+            }
+            this.messageIdFilter = new RecentKeyFilter(dedupWindow,
+                    ConfigUtils.readIntConfig(configReader, ESBAnalyticsConstants.DEDUP_CAPACITY_CONFIG, "100000", 1,
+                            "esbAnalytics:decompress", this.siddhiAppName));
+            this.timestampGenerator = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator();
+        }
+        if (Boolean.parseBoolean(configReader.readConfig(ESBAnalyticsConstants.METRICS_ENABLED_CONFIG, "true")
+                .trim())) {
+            this.metrics = new DecompressMetrics(this.siddhiAppName, siddhiQueryContext.getName());
+        }
 
         this.attributeList = outputAttributes;
         return null;
     }
 
+    /**
+     * Get the columns to be excluded from the decompressed event
+     *
+     * @param executor Executor of the exclude.columns parameter
+     * @return Names of the excluded columns
+     */
+    private Set<String> getExcludedColumns(ConstantExpressionExecutor executor) {
+
+        if (executor.getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppCreationException("The exclude.columns parameter of esbAnalytics:decompress in " +
+                    this.siddhiAppName + " should be a string, but found " + executor.getReturnType());
+        }
+        Set<String> excludedColumns = new HashSet<>();
+        for (String column : ((String) executor.getValue()).split(",")) {
+            String columnName = column.trim();
+            if (columnName.isEmpty() || "none".equalsIgnoreCase(columnName)) {
+                continue;
+            }
+            if (!ESBAnalyticsConstants.EXCLUDABLE_COLUMNS.contains(columnName)) {
+                throw new SiddhiAppCreationException("Column '" + columnName + "' cannot be excluded from " +
+                        "esbAnalytics:decompress in " + this.siddhiAppName + ". Supported columns are " +
+                        ESBAnalyticsConstants.EXCLUDABLE_COLUMNS);
+            }
+            excludedColumns.add(columnName);
+        }
+        return excludedColumns;
+    }
+
     @Override
-    public void start() {
+    public synchronized void start() {
 
+        if (this.metrics != null) {
+            this.metrics.register();
+        }
+        if (this.parallelism > 1 && this.decodePool == null) {
+            String threadNamePrefix = "esbAnalytics-decompress-" + this.siddhiAppName + "-";
+            AtomicInteger threadCount = new AtomicInteger();
+            this.decodePool = new ForkJoinPool(this.parallelism, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(threadNamePrefix + threadCount.incrementAndGet());
+                return thread;
+            }, null, false);
+        }
     }
 
     /**
@@ -359,8 +732,18 @@ public class DecompressStreamProcessorExtension extends StreamProcessor<State> {
      * This will be called before shutting down the system.
      */
     @Override
-    public void stop() {
+    public synchronized void stop() {
 
+        if (this.decodePool != null) {
+            this.decodePool.shutdown();
+            this.decodePool = null;
+        }
+        if (this.messageIdFilter != null) {
+            this.messageIdFilter.clear();
+        }
+        if (this.metrics != null) {
+            this.metrics.unregister();
+        }
     }
 
     @Override
@@ -372,5 +755,24 @@ public class DecompressStreamProcessorExtension extends StreamProcessor<State> {
     public ProcessingMode getProcessingMode() {
         return ProcessingMode.SLIDE;
     }
-}
 
+    /**
+     * Component events and indexed payloads of a decoded compressed event, from which its decompressed events
+     * are built
+     */
+    private static final class DecodedFlow {
+
+        private List<List<Object>> eventsList;
+        private PayloadIndex payloadIndex;
+        private String host;
+        private int metaTenantId;
+        private long timestamp;
+        private long compressedBytes;
+        private long decompressedBytes;
+        private long decodeNanos;
+        private long base64Nanos;
+        private long inflateNanos;
+        private long deserializeNanos;
+        private boolean compressed;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Input stream which decodes a Base64 encoded string on the fly, without materializing the decoded bytes.
+ * Characters outside the Base64 alphabet are skipped, the same way DatatypeConverter.parseBase64Binary does.
+ * Instances are reusable through {@link #reset(String)} and are not thread safe.
+ */
+public class Base64StringInputStream extends InputStream {
+
+    private static final int SKIP = -1;
+    private static final int PADDING = -2;
+    private static final int[] DECODE_TABLE = new int[128];
+
+    static {
+        Arrays.fill(DECODE_TABLE, SKIP);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE_TABLE[alphabet.charAt(i)] = i;
+        }
+        DECODE_TABLE['='] = PADDING;
+    }
+
+    private String source;
+    private int position;
+    private int length;
+    private boolean paddingReached;
+    // Bytes of a partially consumed quantum, kept in the low order bits of an int
+    private int pending;
+    private int pendingCount;
+    private long decodedBytes;
+
+    /**
+     * Point this stream at a new Base64 string and discard any state from the previous one
+     *
+     * @param source Base64 encoded string
+     */
+    public void reset(String source) {
+
+        this.source = source;
+        this.position = 0;
+        this.length = source.length();
+        this.paddingReached = false;
+        this.pending = 0;
+        this.pendingCount = 0;
+        this.decodedBytes = 0;
+    }
+
+    /**
+     * Drop the reference to the current source string, so that it can be garbage collected
+     */
+    public void release() {
+
+        this.source = null;
+        this.position = 0;
+        this.length = 0;
+    }
+
+    /**
+     * @return Number of bytes decoded from the current source string so far
+     */
+    public long getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    /**
+     * Decode the next bytes without consuming them, so that they are read again by the following read calls
+     *
+     * @param bytes Buffer the bytes are decoded in to
+     * @param len   Maximum number of bytes to decode
+     * @return Number of bytes decoded, or -1 if the end of the encoded data is reached
+     */
+    public int peek(byte[] bytes, int len) {
+
+        int savedPosition = position;
+        boolean savedPaddingReached = paddingReached;
+        int savedPending = pending;
+        int savedPendingCount = pendingCount;
+        long savedDecodedBytes = decodedBytes;
+        int count = read(bytes, 0, len);
+        position = savedPosition;
+        paddingReached = savedPaddingReached;
+        pending = savedPending;
+        pendingCount = savedPendingCount;
+        decodedBytes = savedDecodedBytes;
+        return count;
+    }
+
+    @Override
+    public int read() {
+
+        if (pendingCount == 0 && !decodeQuantum()) {
+            return -1;
+        }
+        pendingCount--;
+        decodedBytes++;
+        return (pending >>> (pendingCount * 8)) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int len) {
+
+        if (len == 0) {
+            return 0;
+        }
+        int count = 0;
+        while (count < len) {
+            if (pendingCount > 0) {
+                pendingCount--;
+                bytes[offset + count++] = (byte) (pending >>> (pendingCount * 8));
+                continue;
+            }
+            // Fast path for complete quantums which fit in the remaining space of the caller's buffer
+            if (len - count >= 3 && length - position >= 4) {
+                int c0 = lookup(source.charAt(position));
+                int c1 = lookup(source.charAt(position + 1));
+                int c2 = lookup(source.charAt(position + 2));
+                int c3 = lookup(source.charAt(position + 3));
+                if ((c0 | c1 | c2 | c3) >= 0) {
+                    int bits = (c0 << 18) | (c1 << 12) | (c2 << 6) | c3;
+                    bytes[offset + count++] = (byte) (bits >>> 16);
+                    bytes[offset + count++] = (byte) (bits >>> 8);
+                    bytes[offset + count++] = (byte) bits;
+                    position += 4;
+                    continue;
+                }
+            }
+            if (!decodeQuantum()) {
+                break;
+            }
+        }
+        decodedBytes += count;
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public int available() {
+        return pendingCount + ((length - position) / 4) * 3;
+    }
+
+    /**
+     * Decode the next quantum of up to four Base64 characters in to the pending bytes
+     *
+     * @return false if the end of the encoded data is reached
+     */
+    private boolean decodeQuantum() {
+
+        int bits = 0;
+        int sextets = 0;
+        while (sextets < 4 && !paddingReached && position < length) {
+            int value = lookup(source.charAt(position++));
+            if (value >= 0) {
+                bits = (bits << 6) | value;
+                sextets++;
+            } else if (value == PADDING) {
+                paddingReached = true;
+            }
+        }
+        switch (sextets) {
+            case 4:
+                pending = bits;
+                pendingCount = 3;
+                return true;
+            case 3:
+                pending = bits >>> 2;
+                pendingCount = 2;
+                return true;
+            case 2:
+                pending = bits >>> 4;
+                pendingCount = 1;
+                return true;
+            default:
+                // A single dangling sextet does not carry a full byte
+                return false;
+        }
+    }
+
+    private static int lookup(char character) {
+        return character < 128 ? DECODE_TABLE[character] : SKIP;
+    }
+}
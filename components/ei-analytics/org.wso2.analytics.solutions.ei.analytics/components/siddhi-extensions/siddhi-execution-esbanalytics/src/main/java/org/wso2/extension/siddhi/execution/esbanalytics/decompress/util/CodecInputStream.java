@@ -0,0 +1,48 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream which decompresses the flow data of one aggregated event at a time. Instances are owned by a
+ * single {@link FlowDataDecoder}, re-pointed at the flow data of each event through {@link #reset(InputStream)},
+ * and are not thread safe.
+ */
+public abstract class CodecInputStream extends InputStream {
+
+    /**
+     * Start decompressing a new compressed stream, reading and validating its header
+     *
+     * @param source Stream of compressed bytes
+     * @throws IOException if the source is not in the format of the codec
+     */
+    public abstract void reset(InputStream source) throws IOException;
+
+    /**
+     * Drop the reference to the current source stream, and any resources held for it
+     */
+    public abstract void release();
+
+    /**
+     * @return Total number of uncompressed bytes produced for the current source so far
+     */
+    public abstract long getDecompressedBytes();
+}
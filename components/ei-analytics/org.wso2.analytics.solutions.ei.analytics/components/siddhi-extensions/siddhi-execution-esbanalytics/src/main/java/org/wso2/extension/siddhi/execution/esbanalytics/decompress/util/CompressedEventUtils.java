@@ -18,7 +18,6 @@
 
 package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
 
-import org.wso2.carbon.analytics.spark.core.util.AnalyticsConstants;
 import org.wso2.carbon.analytics.spark.core.util.PublishingPayload;
 
 import java.util.List;
@@ -29,7 +28,9 @@ import java.util.List;
 public class CompressedEventUtils {
 
     /**
-     * Get attributes to be populated in the uncompressed message as an object array
+     * Get attributes to be populated in the uncompressed message as an object array.
+     * The field plan is compiled on every call, hence {@link #getFieldValues(FieldPlan, List, List, int, long, int,
+     * String)} should be preferred when the columns are known in advance.
      *
      * @param columns      List of output column names
      * @param event        event
@@ -44,27 +45,30 @@ public class CompressedEventUtils {
                                           List<PublishingPayload> payloadsList, int eventIndex, long timestamp,
                                           int metaTenantId, String host) {
 
-        Object[] fieldsVals = new Object[columns.size()];
-        int eventFieldIndex = 0;
+        return getFieldValues(FieldPlan.compile(columns), event, payloadsList, eventIndex, timestamp,
+                metaTenantId, host);
+    }
+
+    /**
+     * Get attributes to be populated in the uncompressed message as an object array
+     *
+     * @param fieldPlan    Compiled plan of the output columns
+     * @param event        event
+     * @param payloadsList List of payloads
+     * @param eventIndex   Index of the event
+     * @param timestamp    Timestamp
+     * @param metaTenantId Teanant ID field
+     * @param host         Host
+     * @return An array of objects of attributes to be populated in to the decompressed stream
+     */
+    public static Object[] getFieldValues(FieldPlan fieldPlan, List<Object> event,
+                                          List<PublishingPayload> payloadsList, int eventIndex, long timestamp,
+                                          int metaTenantId, String host) {
+
+        Object[] fieldsVals = new Object[fieldPlan.size()];
         // Adding component attributes
         if (event != null) {
-            for (int i = 0; i < columns.size(); i++) {
-                switch (columns.get(i)) {
-                    case AnalyticsConstants.TIMESTAMP_FIELD:
-                        fieldsVals[i] = timestamp;
-                        break;
-                    case ESBAnalyticsConstants.META_TENANT_ID_ATTRIBUTE:
-                        fieldsVals[i] = metaTenantId;
-                        break;
-                    case AnalyticsConstants.HOST_ATTRIBUTE:
-                        fieldsVals[i] = host;
-                        break;
-                    default:
-                        fieldsVals[i] = event.get(eventFieldIndex);
-                        eventFieldIndex++;
-                        break;
-                }
-            }
+            fieldPlan.populate(fieldsVals, event, timestamp, metaTenantId, host);
         }
 
         // Adding payloads
@@ -81,4 +85,30 @@ public class CompressedEventUtils {
         }
         return fieldsVals;
     }
+
+    /**
+     * Get attributes to be populated in the uncompressed message as an object array, taking the payloads
+     * from the payload index of the aggregated event
+     *
+     * @param fieldPlan    Compiled plan of the output columns
+     * @param event        event
+     * @param payloadIndex Payload index of the aggregated event
+     * @param eventIndex   Index of the event
+     * @param timestamp    Timestamp
+     * @param metaTenantId Teanant ID field
+     * @param host         Host
+     * @return An array of objects of attributes to be populated in to the decompressed stream
+     */
+    public static Object[] getFieldValues(FieldPlan fieldPlan, List<Object> event, PayloadIndex payloadIndex,
+                                          int eventIndex, long timestamp, int metaTenantId, String host) {
+
+        Object[] fieldsVals = new Object[fieldPlan.size()];
+        // Adding component attributes
+        if (event != null) {
+            fieldPlan.populate(fieldsVals, event, timestamp, metaTenantId, host);
+        }
+        // Adding payloads
+        payloadIndex.populate(fieldsVals, eventIndex);
+        return fieldsVals;
+    }
 }
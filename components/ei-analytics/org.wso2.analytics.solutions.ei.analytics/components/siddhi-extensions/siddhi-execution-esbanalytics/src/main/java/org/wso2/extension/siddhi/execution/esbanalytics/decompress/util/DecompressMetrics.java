@@ -0,0 +1,261 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
+
+import org.apache.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Decompression metrics of an esbAnalytics:decompress query, registered as an MXBean named
+ * {@code org.wso2.extension.siddhi.execution.esbanalytics:type=DecompressMetrics,siddhiApp=<app>,query=<query>}.
+ * Recording methods are thread safe and lock free, so they can be called from the decompression workers.
+ */
+public class DecompressMetrics implements DecompressMetricsMXBean {
+
+    private static final Logger log = Logger.getLogger(DecompressMetrics.class);
+    private static final String DOMAIN = "org.wso2.extension.siddhi.execution.esbanalytics";
+
+    private final String siddhiAppName;
+    private final String queryName;
+    private final LongAdder compressedEvents = new LongAdder();
+    private final LongAdder decompressedEvents = new LongAdder();
+    private final LongAdder emptyEvents = new LongAdder();
+    private final LongAdder failedEvents = new LongAdder();
+    private final LongAdder duplicateEvents = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder decompressedBytes = new LongAdder();
+    private final Log2Histogram compressedBytesPerFlow = new Log2Histogram();
+    private final Log2Histogram decompressedBytesPerFlow = new Log2Histogram();
+    private final Log2Histogram eventsPerFlow = new Log2Histogram();
+    private final Log2Histogram decodeTime = new Log2Histogram();
+    private final Log2Histogram base64DecodeTime = new Log2Histogram();
+    private final Log2Histogram inflateTime = new Log2Histogram();
+    private final Log2Histogram deserializeTime = new Log2Histogram();
+    private final Log2Histogram rowBuildTime = new Log2Histogram();
+    private ObjectName objectName;
+
+    public DecompressMetrics(String siddhiAppName, String queryName) {
+
+        this.siddhiAppName = siddhiAppName;
+        this.queryName = queryName;
+    }
+
+    /**
+     * Register this as an MXBean in the platform MBean server, replacing any previous registration
+     * of the same query. Failures are logged, since metrics are not essential for processing.
+     */
+    public synchronized void register() {
+
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":type=DecompressMetrics,siddhiApp=" +
+                    ObjectName.quote(siddhiAppName) + ",query=" + ObjectName.quote(queryName));
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(this, name);
+            this.objectName = name;
+        } catch (JMException e) {
+            log.warn("Unable to register decompression metrics of query '" + queryName + "' in " +
+                    siddhiAppName + ": " + e.getMessage(), e);
+        }
+    }
+
+    public synchronized void unregister() {
+
+        if (objectName == null) {
+            return;
+        }
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Unable to unregister decompression metrics of query '" + queryName + "' in " +
+                    siddhiAppName + ": " + e.getMessage(), e);
+        }
+        objectName = null;
+    }
+
+    public void recordCompressedEvent() {
+        compressedEvents.increment();
+    }
+
+    public void recordEmptyEvent() {
+        emptyEvents.increment();
+    }
+
+    public void recordFailedEvent() {
+        failedEvents.increment();
+    }
+
+    public void recordDuplicateEvent() {
+        duplicateEvents.increment();
+    }
+
+    /**
+     * Record a successfully decompressed flow
+     *
+     * @param compressedSize   Base64 decoded size of the flow data
+     * @param decompressedSize Size of the flow data after inflating
+     * @param eventCount       Number of component events in the flow
+     * @param decodeNanos      Time taken to decode the flow
+     * @param rowBuildNanos    Time taken to build the decompressed rows of the flow
+     */
+    public void recordFlow(long compressedSize, long decompressedSize, int eventCount, long decodeNanos,
+                           long rowBuildNanos) {
+
+        decompressedEvents.add(eventCount);
+        compressedBytes.add(compressedSize);
+        decompressedBytes.add(decompressedSize);
+        compressedBytesPerFlow.record(compressedSize);
+        decompressedBytesPerFlow.record(decompressedSize);
+        eventsPerFlow.record(eventCount);
+        decodeTime.record(decodeNanos / 1000);
+        rowBuildTime.record(rowBuildNanos / 1000);
+    }
+
+    /**
+     * Record the time taken by each decoding stage of a flow
+     *
+     * @param base64Nanos      Time spent Base64 decoding the flow data
+     * @param inflateNanos     Time spent inflating the flow data
+     * @param deserializeNanos Time spent in Kryo deserialization
+     * @param compressed       Whether the flow data is compressed. Inflate time is recorded only for compressed flows
+     */
+    public void recordDecodeStages(long base64Nanos, long inflateNanos, long deserializeNanos, boolean compressed) {
+
+        base64DecodeTime.record(base64Nanos / 1000);
+        if (compressed) {
+            inflateTime.record(inflateNanos / 1000);
+        }
+        deserializeTime.record(deserializeNanos / 1000);
+    }
+
+    @Override
+    public String getSiddhiAppName() {
+        return siddhiAppName;
+    }
+
+    @Override
+    public String getQueryName() {
+        return queryName;
+    }
+
+    @Override
+    public long getCompressedEvents() {
+        return compressedEvents.sum();
+    }
+
+    @Override
+    public long getDecompressedEvents() {
+        return decompressedEvents.sum();
+    }
+
+    @Override
+    public long getEmptyEvents() {
+        return emptyEvents.sum();
+    }
+
+    @Override
+    public long getFailedEvents() {
+        return failedEvents.sum();
+    }
+
+    @Override
+    public long getDuplicateEvents() {
+        return duplicateEvents.sum();
+    }
+
+    @Override
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    @Override
+    public long getDecompressedBytes() {
+        return decompressedBytes.sum();
+    }
+
+    @Override
+    public Log2Histogram.Snapshot getCompressedBytesPerFlow() {
+        return compressedBytesPerFlow.snapshot();
+    }
+
+    @Override
+    public Log2Histogram.Snapshot getDecompressedBytesPerFlow() {
+        return decompressedBytesPerFlow.snapshot();
+    }
+
+    @Override
+    public Log2Histogram.Snapshot getEventsPerFlow() {
+        return eventsPerFlow.snapshot();
+    }
+
+    @Override
+    public Log2Histogram.Snapshot getDecodeTimeMicros() {
+        return decodeTime.snapshot();
+    }
+
+    @Override
+    public Log2Histogram.Snapshot getBase64DecodeTimeMicros() {
+        return base64DecodeTime.snapshot();
+    }
+
+    @Override
+    public Log2Histogram.Snapshot getInflateTimeMicros() {
+        return inflateTime.snapshot();
+    }
+
+    @Override
+    public Log2Histogram.Snapshot getDeserializeTimeMicros() {
+        return deserializeTime.snapshot();
+    }
+
+    @Override
+    public Log2Histogram.Snapshot getRowBuildTimeMicros() {
+        return rowBuildTime.snapshot();
+    }
+
+    @Override
+    public void reset() {
+
+        compressedEvents.reset();
+        decompressedEvents.reset();
+        emptyEvents.reset();
+        failedEvents.reset();
+        duplicateEvents.reset();
+        compressedBytes.reset();
+        decompressedBytes.reset();
+        compressedBytesPerFlow.reset();
+        decompressedBytesPerFlow.reset();
+        eventsPerFlow.reset();
+        decodeTime.reset();
+        base64DecodeTime.reset();
+        inflateTime.reset();
+        deserializeTime.reset();
+        rowBuildTime.reset();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
+
+/**
+ * JMX view of the decompression metrics of an esbAnalytics:decompress query.
+ * Times are in microseconds and sizes are in bytes.
+ */
+public interface DecompressMetricsMXBean {
+
+    String getSiddhiAppName();
+
+    String getQueryName();
+
+    /**
+     * @return Number of compressed events received, including empty, failed and duplicate events
+     */
+    long getCompressedEvents();
+
+    long getDecompressedEvents();
+
+    long getEmptyEvents();
+
+    long getFailedEvents();
+
+    long getDuplicateEvents();
+
+    /**
+     * @return Total number of Base64 decoded bytes read from the flowData attributes
+     */
+    long getCompressedBytes();
+
+    /**
+     * @return Total number of bytes read by Kryo, after inflating compressed flows
+     */
+    long getDecompressedBytes();
+
+    Log2Histogram.Snapshot getCompressedBytesPerFlow();
+
+    Log2Histogram.Snapshot getDecompressedBytesPerFlow();
+
+    Log2Histogram.Snapshot getEventsPerFlow();
+
+    /**
+     * @return Time taken to decode a flow, including Base64 decoding, inflating and Kryo deserialization
+     */
+    Log2Histogram.Snapshot getDecodeTimeMicros();
+
+    /**
+     * @return Time spent Base64 decoding a flow. The decoding stages are streamed in to each other, hence each
+     * stage is timed by the reads made from its stream
+     */
+    Log2Histogram.Snapshot getBase64DecodeTimeMicros();
+
+    /**
+     * @return Time spent inflating a compressed flow, excluding the Base64 decoding of its input. Uncompressed
+     * flows are not recorded
+     */
+    Log2Histogram.Snapshot getInflateTimeMicros();
+
+    /**
+     * @return Time spent in Kryo deserialization of a flow, excluding the reads of the earlier stages
+     */
+    Log2Histogram.Snapshot getDeserializeTimeMicros();
+
+    /**
+     * @return Time taken to build the decompressed rows of a flow, once it is decoded
+     */
+    Log2Histogram.Snapshot getRowBuildTimeMicros();
+
+    void reset();
+}
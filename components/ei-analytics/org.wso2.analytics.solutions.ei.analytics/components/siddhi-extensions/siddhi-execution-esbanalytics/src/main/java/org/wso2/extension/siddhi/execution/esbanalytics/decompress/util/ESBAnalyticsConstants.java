@@ -17,6 +17,10 @@
  */
 package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Contain constants required for the CompressedEventUtils class
  */
@@ -28,6 +32,17 @@ public class ESBAnalyticsConstants {
     // Attribute for the tenant ID
     public static final String META_TENANT_ID_ATTRIBUTE = "metaTenantId";
 
+    // Heavy payload columns of the decompressed event, which can be excluded from the output
+    public static final List<String> EXCLUDABLE_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            "beforePayload", "afterPayload", "contextPropertyMap", "transportPropertyMap", "children"));
+
+    // System parameters of the decompress extension
+    public static final String PARALLELISM_CONFIG = "parallelism";
+    public static final String MAX_OUTPUT_CHUNK_SIZE_CONFIG = "max.output.chunk.size";
+    public static final String DEDUP_WINDOW_CONFIG = "dedup.window.millis";
+    public static final String DEDUP_CAPACITY_CONFIG = "dedup.capacity";
+    public static final String METRICS_ENABLED_CONFIG = "metrics.enabled";
+
     // Uncompressed message data types
     public static final String TYPE_DOUBLE = "double";
     public static final String TYPE_FLOAT = "float";
@@ -0,0 +1,128 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
+
+import org.wso2.carbon.analytics.spark.core.util.AnalyticsConstants;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable plan describing where each slot of a decompressed event is taken from.
+ * It is compiled once from the decompressed event definition, so that populating an event
+ * does not need to compare column names.
+ */
+public final class FieldPlan {
+
+    // Slot sources other than a field of the component event. Non negative sources are event field indexes
+    public static final int SOURCE_TIMESTAMP = -1;
+    public static final int SOURCE_TENANT_ID = -2;
+    public static final int SOURCE_HOST = -3;
+    public static final int SOURCE_EXCLUDED = -4;
+
+    private final int[] slotSources;
+
+    private FieldPlan(int[] slotSources) {
+        this.slotSources = slotSources;
+    }
+
+    /**
+     * Compile the plan for the given output columns. Columns other than the timestamp, tenant id and host
+     * are read from the component event, in the order they appear.
+     *
+     * @param columns List of output column names
+     * @return Compiled field plan
+     */
+    public static FieldPlan compile(List<String> columns) {
+        return compile(columns, Collections.emptySet());
+    }
+
+    /**
+     * Compile the plan for the given output columns, leaving the excluded columns unpopulated.
+     * Excluded columns still consume their field of the component event.
+     *
+     * @param columns         List of output column names
+     * @param excludedColumns Names of the columns which are always left null
+     * @return Compiled field plan
+     */
+    public static FieldPlan compile(List<String> columns, Set<String> excludedColumns) {
+
+        int[] slotSources = new int[columns.size()];
+        int eventFieldIndex = 0;
+        for (int i = 0; i < slotSources.length; i++) {
+            switch (columns.get(i)) {
+                case AnalyticsConstants.TIMESTAMP_FIELD:
+                    slotSources[i] = SOURCE_TIMESTAMP;
+                    break;
+                case ESBAnalyticsConstants.META_TENANT_ID_ATTRIBUTE:
+                    slotSources[i] = SOURCE_TENANT_ID;
+                    break;
+                case AnalyticsConstants.HOST_ATTRIBUTE:
+                    slotSources[i] = SOURCE_HOST;
+                    break;
+                default:
+                    slotSources[i] = excludedColumns.contains(columns.get(i)) ? SOURCE_EXCLUDED : eventFieldIndex;
+                    eventFieldIndex++;
+                    break;
+            }
+        }
+        return new FieldPlan(slotSources);
+    }
+
+    /**
+     * @return Number of slots in the decompressed event
+     */
+    public int size() {
+        return slotSources.length;
+    }
+
+    /**
+     * @param slot Slot of the decompressed event
+     * @return Whether the slot is excluded from the decompressed event
+     */
+    public boolean isExcluded(int slot) {
+        return slot >= 0 && slot < slotSources.length && slotSources[slot] == SOURCE_EXCLUDED;
+    }
+
+    /**
+     * Copy the values of a component event in to the slots of a decompressed event
+     *
+     * @param fieldValues  Slots of the decompressed event
+     * @param event        Component event
+     * @param timestamp    Timestamp
+     * @param metaTenantId Tenant ID field
+     * @param host         Host
+     */
+    void populate(Object[] fieldValues, List<Object> event, long timestamp, int metaTenantId, String host) {
+
+        for (int i = 0; i < slotSources.length; i++) {
+            int source = slotSources[i];
+            if (source >= 0) {
+                fieldValues[i] = event.get(source);
+            } else if (source == SOURCE_TIMESTAMP) {
+                fieldValues[i] = timestamp;
+            } else if (source == SOURCE_TENANT_ID) {
+                fieldValues[i] = metaTenantId;
+            } else if (source == SOURCE_HOST) {
+                fieldValues[i] = host;
+            }
+        }
+    }
+}
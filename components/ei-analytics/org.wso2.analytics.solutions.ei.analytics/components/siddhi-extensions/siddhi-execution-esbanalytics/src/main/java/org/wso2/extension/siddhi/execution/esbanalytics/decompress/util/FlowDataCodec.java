@@ -0,0 +1,45 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
+
+/**
+ * Compression codec of the flow data attribute. Codecs are discovered through {@link java.util.ServiceLoader},
+ * and the codec of a compressed event is detected from the leading magic bytes of its flow data.
+ * Implementations must be thread safe, while the streams they create are used by a single thread.
+ */
+public interface FlowDataCodec {
+
+    /**
+     * @return Name of the codec
+     */
+    String getName();
+
+    /**
+     * @return Leading bytes of every stream compressed with this codec
+     */
+    byte[] getMagic();
+
+    /**
+     * Create a new reusable decompressing stream
+     *
+     * @param bufferSize Size of the buffer used to read the compressed bytes
+     * @return Decompressing stream, to be owned by a single decoder
+     */
+    CodecInputStream newInputStream(int bufferSize);
+}
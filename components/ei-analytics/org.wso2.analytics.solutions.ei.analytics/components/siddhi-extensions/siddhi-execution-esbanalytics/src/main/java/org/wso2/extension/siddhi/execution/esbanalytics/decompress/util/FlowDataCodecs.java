@@ -0,0 +1,118 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Registry of the flow data codecs found through {@link ServiceLoader}. A codec which cannot be loaded, for
+ * example because its library is not installed, is skipped with a warning, and GZIP is always available.
+ */
+public final class FlowDataCodecs {
+
+    private static final Logger log = Logger.getLogger(FlowDataCodecs.class);
+
+    private static final FlowDataCodec DEFAULT_CODEC = new GzipCodec();
+    private static final List<FlowDataCodec> CODECS = loadCodecs();
+    private static final int MAX_MAGIC_LENGTH = CODECS.stream().mapToInt(codec -> codec.getMagic().length)
+            .max().orElse(0);
+
+    private FlowDataCodecs() {
+    }
+
+    /**
+     * @return Codecs available for decoding, the default codec first
+     */
+    public static List<FlowDataCodec> getCodecs() {
+        return CODECS;
+    }
+
+    /**
+     * @return Codec used for compressed flow data which matches no other codec
+     */
+    public static FlowDataCodec getDefaultCodec() {
+        return DEFAULT_CODEC;
+    }
+
+    /**
+     * @return Number of leading bytes needed to detect the codec of compressed flow data
+     */
+    static int getMaxMagicLength() {
+        return MAX_MAGIC_LENGTH;
+    }
+
+    /**
+     * Detect the codec of compressed flow data from its leading bytes
+     *
+     * @param header Leading bytes of the compressed flow data
+     * @param length Number of leading bytes available
+     * @return Index of the codec in {@link #getCodecs()}, 0 for the default codec when no codec matches
+     */
+    static int detect(byte[] header, int length) {
+
+        for (int i = 1; i < CODECS.size(); i++) {
+            if (startsWith(header, length, CODECS.get(i).getMagic())) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean startsWith(byte[] header, int length, byte[] magic) {
+
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<FlowDataCodec> loadCodecs() {
+
+        List<FlowDataCodec> codecs = new ArrayList<>();
+        codecs.add(DEFAULT_CODEC);
+        Iterator<FlowDataCodec> iterator = ServiceLoader.load(FlowDataCodec.class,
+                FlowDataCodec.class.getClassLoader()).iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                FlowDataCodec codec = iterator.next();
+                if (codec.getClass() != DEFAULT_CODEC.getClass()) {
+                    codecs.add(codec);
+                }
+            } catch (ServiceConfigurationError | LinkageError e) {
+                log.warn("Skipping flow data codec which could not be loaded: " + e.getMessage());
+            }
+        }
+        return Collections.unmodifiableList(codecs);
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import org.wso2.carbon.analytics.spark.core.util.PublishingPayload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decodes the flowData attribute of an EI analytics event in to the aggregated event map.
+ * Base64 characters are streamed through a reusable decompressing stream straight in to a pooled Kryo input, so no
+ * intermediate buffer holding the whole message is allocated. The codec of compressed flow data is detected from its
+ * magic bytes, falling back to GZIP. One decoder is kept per thread.
+ */
+public class FlowDataDecoder {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<FlowDataDecoder> decoderTL = ThreadLocal.withInitial(FlowDataDecoder::new);
+
+    private final Kryo kryo;
+    private final Input input;
+    private final Base64StringInputStream base64Stream;
+    // Decompressing streams of the codecs in FlowDataCodecs, created on first use
+    private final CodecInputStream[] codecStreams;
+    private final byte[] magic;
+    // Streams timing the reads of each stage, used only when stage times are requested
+    private final TimedInputStream timedBase64Stream;
+    private final TimedInputStream timedCodecStream;
+    private long compressedBytes;
+    private long decompressedBytes;
+    private long base64Nanos;
+    private long decompressNanos;
+    private long deserializeNanos;
+
+    private FlowDataDecoder() {
+
+        this.kryo = new Kryo();
+        /* Class registering precedence matters. Hence intentionally giving a registration ID */
+        this.kryo.register(HashMap.class, 111);
+        this.kryo.register(ArrayList.class, 222);
+        this.kryo.register(PublishingPayload.class, 333);
+        this.input = new Input(BUFFER_SIZE);
+        this.base64Stream = new Base64StringInputStream();
+        this.codecStreams = new CodecInputStream[FlowDataCodecs.getCodecs().size()];
+        this.magic = new byte[FlowDataCodecs.getMaxMagicLength()];
+        this.timedBase64Stream = new TimedInputStream();
+        this.timedCodecStream = new TimedInputStream();
+    }
+
+    /**
+     * @return The decoder bound to the current thread
+     */
+    public static FlowDataDecoder getInstance() {
+        return decoderTL.get();
+    }
+
+    /**
+     * Decode a Base64 encoded, optionally compressed, Kryo serialized aggregated event
+     *
+     * @param flowData   Base64 encoded flow data
+     * @param compressed Whether the encoded bytes are compressed
+     * @return Aggregated event holding the events, payloads and host of the message flow
+     * @throws IOException if the flow data is not a valid stream of its codec
+     */
+    public Map<String, Object> decode(String flowData, boolean compressed) throws IOException {
+        return decode(flowData, compressed, false);
+    }
+
+    /**
+     * Decode a Base64 encoded, optionally compressed, Kryo serialized aggregated event, optionally timing the
+     * Base64 decoding, decompressing and deserializing stages. The stages are streamed in to each other, hence
+     * each one is timed by the reads made from its stream.
+     *
+     * @param flowData   Base64 encoded flow data
+     * @param compressed Whether the encoded bytes are compressed
+     * @param timeStages Whether the time taken by each stage is measured
+     * @return Aggregated event holding the events, payloads and host of the message flow
+     * @throws IOException if the flow data is not a valid stream of its codec
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> decode(String flowData, boolean compressed, boolean timeStages) throws IOException {
+
+        CodecInputStream codecStream = null;
+        long codecResetNanos = 0;
+        try {
+            base64Stream.reset(flowData);
+            InputStream decodedStream = base64Stream;
+            if (timeStages) {
+                timedBase64Stream.reset(base64Stream);
+                decodedStream = timedBase64Stream;
+            }
+            if (compressed) {
+                codecStream = getCodecStream(FlowDataCodecs.detect(magic, base64Stream.peek(magic, magic.length)));
+                long codecResetStartTime = timeStages ? System.nanoTime() : 0;
+                codecStream.reset(decodedStream);
+                if (timeStages) {
+                    codecResetNanos = System.nanoTime() - codecResetStartTime;
+                    timedCodecStream.reset(codecStream);
+                    input.setInputStream(timedCodecStream);
+                } else {
+                    input.setInputStream(codecStream);
+                }
+            } else {
+                input.setInputStream(decodedStream);
+            }
+            long deserializeStartTime = timeStages ? System.nanoTime() : 0;
+            Map<String, Object> aggregatedEvent = kryo.readObjectOrNull(input, HashMap.class);
+            if (timeStages) {
+                recordStageTimes(compressed, codecResetNanos, System.nanoTime() - deserializeStartTime);
+            }
+            return aggregatedEvent;
+        } finally {
+            compressedBytes = base64Stream.getDecodedBytes();
+            decompressedBytes = codecStream != null ? codecStream.getDecompressedBytes() : compressedBytes;
+            input.setInputStream(null);
+            timedCodecStream.release();
+            timedBase64Stream.release();
+            if (codecStream != null) {
+                codecStream.release();
+            }
+            base64Stream.release();
+        }
+    }
+
+    private void recordStageTimes(boolean compressed, long codecResetNanos, long readNanos) {
+
+        long deserializeNanos = readNanos;
+        base64Nanos = timedBase64Stream.getNanos();
+        if (compressed) {
+            // Reads of the codec stream include the Base64 reads it makes, and its header is read on reset
+            long codecNanos = timedCodecStream.getNanos();
+            decompressNanos = Math.max(0, codecResetNanos + codecNanos - base64Nanos);
+            deserializeNanos -= codecNanos;
+        } else {
+            decompressNanos = 0;
+            deserializeNanos -= base64Nanos;
+        }
+        this.deserializeNanos = Math.max(0, deserializeNanos);
+    }
+
+    private CodecInputStream getCodecStream(int codecIndex) {
+
+        CodecInputStream codecStream = codecStreams[codecIndex];
+        if (codecStream == null) {
+            codecStream = FlowDataCodecs.getCodecs().get(codecIndex).newInputStream(BUFFER_SIZE);
+            codecStreams[codecIndex] = codecStream;
+        }
+        return codecStream;
+    }
+
+    /**
+     * @return Number of Base64 decoded bytes read by the last decode call
+     */
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * @return Number of bytes read by Kryo in the last decode call, after inflating compressed flow data
+     */
+    public long getDecompressedBytes() {
+        return decompressedBytes;
+    }
+
+    /**
+     * @return Time spent Base64 decoding the flow data in the last decode call which timed its stages, in
+     * nanoseconds
+     */
+    public long getBase64Nanos() {
+        return base64Nanos;
+    }
+
+    /**
+     * @return Time spent decompressing the flow data in the last decode call which timed its stages, in
+     * nanoseconds. This is 0 for uncompressed flow data
+     */
+    public long getDecompressNanos() {
+        return decompressNanos;
+    }
+
+    /**
+     * @return Time spent in Kryo deserialization in the last decode call which timed its stages, excluding the
+     * reads of the earlier stages, in nanoseconds
+     */
+    public long getDeserializeNanos() {
+        return deserializeNanos;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
+
+/**
+ * GZIP codec, used by the WSO2 EI publisher. Compressed flow data which does not match the magic bytes of
+ * any codec is decoded with this codec.
+ */
+public class GzipCodec implements FlowDataCodec {
+
+    private static final byte[] MAGIC = {(byte) 0x1f, (byte) 0x8b};
+
+    @Override
+    public String getName() {
+        return "gzip";
+    }
+
+    @Override
+    public byte[] getMagic() {
+        return MAGIC.clone();
+    }
+
+    @Override
+    public CodecInputStream newInputStream(int bufferSize) {
+        return new GzipInflaterInputStream(bufferSize);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Input stream which inflates a single member GZIP stream using a reusable {@link Inflater} and input buffer.
+ * Unlike {@link java.util.zip.GZIPInputStream}, re-pointing it at a new source through {@link #reset(InputStream)}
+ * does not allocate a new inflater. The trailer is not verified, since the Kryo payload carries its own structure.
+ * Instances are not thread safe.
+ */
+public class GzipInflaterInputStream extends CodecInputStream {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int DEFLATE_METHOD = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final Inflater inflater = new Inflater(true);
+    private final byte[] buffer;
+    private final byte[] singleByte = new byte[1];
+    private InputStream source;
+
+    public GzipInflaterInputStream(int bufferSize) {
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void reset(InputStream source) throws IOException {
+
+        this.source = source;
+        this.inflater.reset();
+        readHeader();
+    }
+
+    @Override
+    public void release() {
+        this.source = null;
+    }
+
+    @Override
+    public long getDecompressedBytes() {
+        return inflater.getBytesWritten();
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+        try {
+            int inflated;
+            while ((inflated = inflater.inflate(bytes, offset, len)) == 0) {
+                if (inflater.finished() || inflater.needsDictionary()) {
+                    return -1;
+                }
+                if (inflater.needsInput()) {
+                    fill();
+                }
+            }
+            return inflated;
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage() != null ? e.getMessage() : "Invalid ZLIB data format");
+        }
+    }
+
+    private void fill() throws IOException {
+
+        int read = source.read(buffer, 0, buffer.length);
+        if (read == -1) {
+            throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+        inflater.setInput(buffer, 0, read);
+    }
+
+    private void readHeader() throws IOException {
+
+        if (readUnsignedShort() != GZIP_MAGIC) {
+            throw new ZipException("Not in GZIP format");
+        }
+        if (readUnsignedByte() != DEFLATE_METHOD) {
+            throw new ZipException("Unsupported compression method");
+        }
+        int flags = readUnsignedByte();
+        // Skip modification time, extra flags and operating system
+        skipBytes(6);
+        if ((flags & FEXTRA) == FEXTRA) {
+            skipBytes(readUnsignedShort());
+        }
+        if ((flags & FNAME) == FNAME) {
+            skipZeroTerminated();
+        }
+        if ((flags & FCOMMENT) == FCOMMENT) {
+            skipZeroTerminated();
+        }
+        if ((flags & FHCRC) == FHCRC) {
+            skipBytes(2);
+        }
+    }
+
+    private int readUnsignedShort() throws IOException {
+
+        int low = readUnsignedByte();
+        return (readUnsignedByte() << 8) | low;
+    }
+
+    private int readUnsignedByte() throws IOException {
+
+        int value = source.read();
+        if (value == -1) {
+            throw new EOFException("Unexpected end of GZIP header");
+        }
+        return value;
+    }
+
+    private void skipBytes(int count) throws IOException {
+
+        for (int i = 0; i < count; i++) {
+            readUnsignedByte();
+        }
+    }
+
+    private void skipZeroTerminated() throws IOException {
+
+        while (readUnsignedByte() != 0) {
+            // Skip until the terminating zero byte
+        }
+    }
+}
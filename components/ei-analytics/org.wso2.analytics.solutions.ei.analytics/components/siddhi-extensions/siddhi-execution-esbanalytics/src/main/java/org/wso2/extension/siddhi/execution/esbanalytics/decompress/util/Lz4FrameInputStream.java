@@ -0,0 +1,204 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
+
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream which decompresses a single LZ4 frame using reusable block buffers. Unlike
+ * net.jpountz.lz4.LZ4FrameInputStream, re-pointing it at a new source through {@link #reset(InputStream)} does
+ * not allocate new buffers, unless the frame uses a larger block size than seen before. Frames of linked blocks
+ * or with a dictionary are rejected, and checksums are not verified, since the Kryo payload carries its own
+ * structure. Instances are not thread safe.
+ */
+public class Lz4FrameInputStream extends CodecInputStream {
+
+    private static final int MAGIC = 0x184d2204;
+    private static final int SUPPORTED_VERSION = 1;
+    private static final int FLAG_BLOCK_INDEPENDENCE = 0x20;
+    private static final int FLAG_BLOCK_CHECKSUM = 0x10;
+    private static final int FLAG_CONTENT_SIZE = 0x08;
+    private static final int FLAG_DICTIONARY_ID = 0x01;
+    private static final int UNCOMPRESSED_BLOCK = 0x80000000;
+
+    private final LZ4SafeDecompressor decompressor;
+    private final byte[] singleByte = new byte[1];
+    private byte[] compressedBlock = new byte[0];
+    private byte[] block = new byte[0];
+    private int blockPosition;
+    private int blockLimit;
+    private int maxBlockSize;
+    private boolean blockChecksum;
+    private boolean finished;
+    private long decompressedBytes;
+    private InputStream source;
+
+    public Lz4FrameInputStream(LZ4SafeDecompressor decompressor) {
+        this.decompressor = decompressor;
+    }
+
+    @Override
+    public void reset(InputStream source) throws IOException {
+
+        this.source = source;
+        this.blockPosition = 0;
+        this.blockLimit = 0;
+        this.finished = false;
+        this.decompressedBytes = 0;
+        readHeader();
+    }
+
+    @Override
+    public void release() {
+        this.source = null;
+    }
+
+    @Override
+    public long getDecompressedBytes() {
+        return decompressedBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+        while (blockPosition == blockLimit) {
+            if (finished) {
+                return -1;
+            }
+            readBlock();
+        }
+        int count = Math.min(len, blockLimit - blockPosition);
+        System.arraycopy(block, blockPosition, bytes, offset, count);
+        blockPosition += count;
+        return count;
+    }
+
+    private void readHeader() throws IOException {
+
+        if (readIntLE() != MAGIC) {
+            throw new IOException("Not in LZ4 frame format");
+        }
+        int flags = readUnsignedByte();
+        if ((flags >>> 6) != SUPPORTED_VERSION) {
+            throw new IOException("Unsupported LZ4 frame version " + (flags >>> 6));
+        }
+        if ((flags & FLAG_BLOCK_INDEPENDENCE) == 0) {
+            throw new IOException("LZ4 frames of linked blocks are not supported");
+        }
+        if ((flags & FLAG_DICTIONARY_ID) != 0) {
+            throw new IOException("LZ4 frames with a dictionary are not supported");
+        }
+        int blockSizeId = (readUnsignedByte() >>> 4) & 0x07;
+        if (blockSizeId < 4) {
+            throw new IOException("Invalid LZ4 frame block size " + blockSizeId);
+        }
+        // 64 KB, 256 KB, 1 MB and 4 MB for block size ids 4 to 7
+        this.maxBlockSize = 1 << (2 * blockSizeId + 8);
+        this.blockChecksum = (flags & FLAG_BLOCK_CHECKSUM) != 0;
+        if ((flags & FLAG_CONTENT_SIZE) != 0) {
+            skipBytes(8);
+        }
+        // Skip header checksum
+        skipBytes(1);
+        if (block.length < maxBlockSize) {
+            block = new byte[maxBlockSize];
+            compressedBlock = new byte[maxBlockSize];
+        }
+    }
+
+    private void readBlock() throws IOException {
+
+        int blockSize = readIntLE();
+        if (blockSize == 0) {
+            // End mark. The optional content checksum is left unread
+            finished = true;
+            return;
+        }
+        boolean uncompressed = (blockSize & UNCOMPRESSED_BLOCK) != 0;
+        blockSize &= ~UNCOMPRESSED_BLOCK;
+        if (blockSize > maxBlockSize) {
+            throw new IOException("LZ4 block of " + blockSize + " bytes exceeds the maximum block size " +
+                    maxBlockSize);
+        }
+        if (uncompressed) {
+            readFully(block, blockSize);
+            blockLimit = blockSize;
+        } else {
+            readFully(compressedBlock, blockSize);
+            try {
+                blockLimit = decompressor.decompress(compressedBlock, 0, blockSize, block, 0, maxBlockSize);
+            } catch (LZ4Exception e) {
+                throw new IOException("Invalid LZ4 block: " + e.getMessage(), e);
+            }
+        }
+        if (blockChecksum) {
+            skipBytes(4);
+        }
+        blockPosition = 0;
+        decompressedBytes += blockLimit;
+    }
+
+    private void readFully(byte[] bytes, int len) throws IOException {
+
+        int count = 0;
+        while (count < len) {
+            int read = source.read(bytes, count, len - count);
+            if (read == -1) {
+                throw new EOFException("Unexpected end of LZ4 frame");
+            }
+            count += read;
+        }
+    }
+
+    private int readIntLE() throws IOException {
+
+        return readUnsignedByte() | (readUnsignedByte() << 8) | (readUnsignedByte() << 16) |
+                (readUnsignedByte() << 24);
+    }
+
+    private int readUnsignedByte() throws IOException {
+
+        int value = source.read();
+        if (value == -1) {
+            throw new EOFException("Unexpected end of LZ4 frame");
+        }
+        return value;
+    }
+
+    private void skipBytes(int count) throws IOException {
+
+        for (int i = 0; i < count; i++) {
+            readUnsignedByte();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
+
+import org.wso2.carbon.analytics.spark.core.util.PublishingPayload;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted view of the payloads of an aggregated event, mapping each component event to the
+ * (slot, payload) pairs which belong to it. Built once per aggregated event, so that populating
+ * a component event only touches its own payloads.
+ */
+public final class PayloadIndex {
+
+    private static final PayloadIndex EMPTY = new PayloadIndex(new int[1], new int[0], new String[0]);
+
+    // Entries of event i are held in [offsets[i], offsets[i + 1]) of the slots and payloads arrays
+    private final int[] offsets;
+    private final int[] slots;
+    private final String[] payloads;
+
+    private PayloadIndex(int[] offsets, int[] slots, String[] payloads) {
+        this.offsets = offsets;
+        this.slots = slots;
+        this.payloads = payloads;
+    }
+
+    /**
+     * Invert the payloads list of an aggregated event
+     *
+     * @param payloadsList List of payloads, may be null
+     * @param eventCount   Number of component events in the aggregated event
+     * @param fieldPlan    Compiled plan of the output columns. Payloads of excluded slots are left out
+     * @return Payload index of the aggregated event
+     */
+    public static PayloadIndex build(List<PublishingPayload> payloadsList, int eventCount, FieldPlan fieldPlan) {
+
+        if (payloadsList == null || payloadsList.isEmpty() || eventCount == 0) {
+            return EMPTY;
+        }
+        int[] offsets = new int[eventCount + 1];
+        for (PublishingPayload publishingPayload : payloadsList) {
+            for (Map.Entry<Integer, List<Integer>> entry : publishingPayload.getEvents().entrySet()) {
+                int eventIndex = entry.getKey();
+                if (entry.getValue() != null && eventIndex >= 0 && eventIndex < eventCount) {
+                    for (int slot : entry.getValue()) {
+                        if (!fieldPlan.isExcluded(slot)) {
+                            offsets[eventIndex + 1]++;
+                        }
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < eventCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] slots = new int[offsets[eventCount]];
+        String[] payloads = new String[offsets[eventCount]];
+        int[] cursors = new int[eventCount];
+        System.arraycopy(offsets, 0, cursors, 0, eventCount);
+        // Payloads are added in list order, so a later payload still overrides an earlier one for the same slot
+        for (PublishingPayload publishingPayload : payloadsList) {
+            String payload = publishingPayload.getPayload();
+            for (Map.Entry<Integer, List<Integer>> entry : publishingPayload.getEvents().entrySet()) {
+                int eventIndex = entry.getKey();
+                if (entry.getValue() != null && eventIndex >= 0 && eventIndex < eventCount) {
+                    for (int slot : entry.getValue()) {
+                        if (!fieldPlan.isExcluded(slot)) {
+                            slots[cursors[eventIndex]] = slot;
+                            payloads[cursors[eventIndex]] = payload;
+                            cursors[eventIndex]++;
+                        }
+                    }
+                }
+            }
+        }
+        return new PayloadIndex(offsets, slots, payloads);
+    }
+
+    /**
+     * Set the payloads of a component event in to the slots of its decompressed event
+     *
+     * @param fieldValues Slots of the decompressed event
+     * @param eventIndex  Index of the component event
+     */
+    void populate(Object[] fieldValues, int eventIndex) {
+
+        if (eventIndex + 1 >= offsets.length) {
+            return;
+        }
+        for (int i = offsets[eventIndex]; i < offsets[eventIndex + 1]; i++) {
+            fieldValues[slots[i]] = payloads[i];
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream which accumulates the time spent reading from its source. Used by {@link FlowDataDecoder} to time
+ * the streamed decoding stages separately. Instances are reusable through {@link #reset(InputStream)} and are not
+ * thread safe.
+ */
+public class TimedInputStream extends InputStream {
+
+    private InputStream source;
+    private long nanos;
+
+    /**
+     * Point this stream at a new source and clear the accumulated time
+     *
+     * @param source Stream to read from
+     */
+    public void reset(InputStream source) {
+
+        this.source = source;
+        this.nanos = 0;
+    }
+
+    /**
+     * Drop the reference to the current source stream
+     */
+    public void release() {
+        this.source = null;
+    }
+
+    /**
+     * @return Time spent in reads from the current source, in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        long startTime = System.nanoTime();
+        try {
+            return source.read();
+        } finally {
+            nanos += System.nanoTime() - startTime;
+        }
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int len) throws IOException {
+
+        long startTime = System.nanoTime();
+        try {
+            return source.read(bytes, offset, len);
+        } finally {
+            nanos += System.nanoTime() - startTime;
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        return source.available();
+    }
+}
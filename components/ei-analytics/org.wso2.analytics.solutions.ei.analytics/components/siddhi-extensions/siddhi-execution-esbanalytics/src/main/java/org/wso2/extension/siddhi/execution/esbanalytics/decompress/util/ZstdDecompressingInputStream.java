@@ -0,0 +1,82 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.decompress.util;
+
+import com.github.luben.zstd.RecyclingBufferPool;
+import com.github.luben.zstd.ZstdInputStreamNoFinalizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream which decompresses a Zstandard stream. The native decompression context is created for each
+ * source and freed on {@link #release()}, while the read buffers are recycled across sources.
+ * Instances are not thread safe.
+ */
+public class ZstdDecompressingInputStream extends CodecInputStream {
+
+    private ZstdInputStreamNoFinalizer zstdStream;
+    private long decompressedBytes;
+
+    @Override
+    public void reset(InputStream source) throws IOException {
+
+        release();
+        this.zstdStream = new ZstdInputStreamNoFinalizer(source, RecyclingBufferPool.INSTANCE);
+        this.decompressedBytes = 0;
+    }
+
+    @Override
+    public void release() {
+
+        if (zstdStream != null) {
+            try {
+                zstdStream.close();
+            } catch (IOException e) {
+                // Closing only frees the native context, as the Base64 source holds no resources
+            }
+            zstdStream = null;
+        }
+    }
+
+    @Override
+    public long getDecompressedBytes() {
+        return decompressedBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        int value = zstdStream.read();
+        if (value != -1) {
+            decompressedBytes++;
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int len) throws IOException {
+
+        int read = zstdStream.read(bytes, offset, len);
+        if (read > 0) {
+            decompressedBytes += read;
+        }
+        return read;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.firstseen;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.Set;
+
+/**
+ * Tell whether a key is seen for the first time, so that newly discovered components are found without a table
+ * lookup per event
+ */
+@Extension(
+        name = "firstSeen",
+        namespace = "esbAnalytics",
+        description = "This function returns true the first time a key is given for a named set, and false " +
+                "afterwards. The named sets are shared by all queries of the Siddhi app, so a set can be warmed " +
+                "with the keys already stored in a table by one query, and used as a filter by another. Keys " +
+                "already seen are checked without locking, hence it adds next to no cost to the events it " +
+                "filters. Sets are held in memory only, and are warmed again when the Siddhi app restarts. A key " +
+                "is marked as seen when it is first given, before the event it filters is written anywhere. If " +
+                "that write fails, the key is not passed on again until the Siddhi app restarts, after which the " +
+                "warmed set lacks it and its next occurrence passes. Null keys return false.",
+        parameters = {
+                @Parameter(name = "set.name",
+                        description = "Name of the set of seen keys",
+                        type = {DataType.STRING}),
+                @Parameter(name = "key",
+                        description = "Key to check",
+                        type = {DataType.STRING, DataType.INT, DataType.LONG},
+                        dynamic = true)
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Whether the key is seen for the first time",
+                type = {DataType.BOOL}),
+        examples = {
+                @Example(
+                        syntax = "from DecompressedEventStream[esbAnalytics:firstSeen('componentIds', " +
+                                "componentId)] select componentId, componentName, componentType insert into " +
+                                "ComponentNameTableStream;",
+                        description = "This query passes on an event only the first time its component id is " +
+                                "seen."
+                )
+        }
+)
+public class FirstSeenFunctionExtension extends FunctionExecutor<State> {
+
+    private Set<Object> seenKeys;
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+
+        String siddhiAppName = siddhiQueryContext.getSiddhiAppContext().getName();
+        if (attributeExpressionExecutors.length != 2) {
+            throw new SiddhiAppCreationException("esbAnalytics:firstSeen in " + siddhiAppName + " expects the " +
+                    "set name and the key, but found " + attributeExpressionExecutors.length + " parameters");
+        }
+        if (!(attributeExpressionExecutors[0] instanceof ConstantExpressionExecutor) ||
+                attributeExpressionExecutors[0].getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppCreationException("The set name of esbAnalytics:firstSeen in " + siddhiAppName +
+                    " should be a constant of type STRING");
+        }
+        String setName = (String) ((ConstantExpressionExecutor) attributeExpressionExecutors[0]).getValue();
+        this.seenKeys = SeenKeys.get(siddhiQueryContext.getSiddhiAppContext(), setName);
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+
+        Object key = data[1];
+        if (key == null) {
+            return false;
+        }
+        // Look up before adding, as adding locks the bin of the key even when it is already present. The key is not
+        // removed when the write of the event fails downstream, which is only known to the query writing it
+        return !this.seenKeys.contains(key) && this.seenKeys.add(key);
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        // Only called with one parameter, which init rejects
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.BOOL;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.firstseen;
+
+import io.siddhi.core.config.SiddhiAppContext;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named sets of seen keys, shared by the queries of a Siddhi app. Sets of a Siddhi app are released along with its
+ * context.
+ */
+final class SeenKeys {
+
+    private static final Map<SiddhiAppContext, Map<String, Set<Object>>> SEEN_KEYS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private SeenKeys() {
+    }
+
+    /**
+     * Get the named set of seen keys of a Siddhi app, creating it if it does not exist yet
+     *
+     * @param siddhiAppContext Context of the Siddhi app
+     * @param name             Name of the set
+     * @return Concurrent set of seen keys
+     */
+    static Set<Object> get(SiddhiAppContext siddhiAppContext, String name) {
+
+        Map<String, Set<Object>> namedSets = SEEN_KEYS.computeIfAbsent(siddhiAppContext,
+                context -> new ConcurrentHashMap<>());
+        return namedSets.computeIfAbsent(name, setName -> ConcurrentHashMap.newKeySet());
+    }
+}
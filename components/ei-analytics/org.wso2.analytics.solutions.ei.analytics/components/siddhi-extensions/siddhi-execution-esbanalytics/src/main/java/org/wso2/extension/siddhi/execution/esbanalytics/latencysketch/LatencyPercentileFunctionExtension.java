@@ -0,0 +1,125 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.latencysketch;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+/**
+ * Estimate a percentile of the latencies held by a latency sketch
+ */
+@Extension(
+        name = "latencyPercentile",
+        namespace = "esbAnalytics",
+        description = "This function returns the given percentile of the latencies held by a latency sketch, " +
+                "such as one aggregated by the latencySketch incremental aggregator. The estimate is within one " +
+                "percent of the actual latency at that percentile, and never outside the smallest and largest " +
+                "latencies. Null or empty sketches return null.",
+        parameters = {
+                @Parameter(name = "latency.sketch",
+                        description = "Latency sketch",
+                        type = {DataType.OBJECT},
+                        dynamic = true),
+                @Parameter(name = "percentile",
+                        description = "Percentile between 0 and 100",
+                        type = {DataType.DOUBLE, DataType.FLOAT, DataType.INT, DataType.LONG},
+                        dynamic = true)
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Estimated latency at the percentile",
+                type = {DataType.DOUBLE}),
+        examples = {
+                @Example(
+                        syntax = "from ESBStatAgg within 0L, 9999999999999L per 'hours' select componentId, " +
+                                "esbAnalytics:latencyPercentile(durationSketch, 95.0) as p95Duration, " +
+                                "esbAnalytics:latencyPercentile(durationSketch, 99.0) as p99Duration;",
+                        description = "This query returns the 95th and 99th percentiles of the durations of " +
+                                "each component per hour."
+                )
+        }
+)
+public class LatencyPercentileFunctionExtension extends FunctionExecutor<State> {
+
+    private String siddhiAppName;
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+
+        this.siddhiAppName = siddhiQueryContext.getSiddhiAppContext().getName();
+        if (attributeExpressionExecutors.length != 2) {
+            throw new SiddhiAppCreationException("esbAnalytics:latencyPercentile in " + this.siddhiAppName +
+                    " expects the latency sketch and the percentile, but found " +
+                    attributeExpressionExecutors.length + " parameters");
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.OBJECT) {
+            throw new SiddhiAppCreationException("The latency sketch of esbAnalytics:latencyPercentile in " +
+                    this.siddhiAppName + " should be of type OBJECT, but found " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        switch (attributeExpressionExecutors[1].getReturnType()) {
+            case DOUBLE:
+            case FLOAT:
+            case INT:
+            case LONG:
+                break;
+            default:
+                throw new SiddhiAppCreationException("The percentile of esbAnalytics:latencyPercentile in " +
+                        this.siddhiAppName + " should be numeric, but found " +
+                        attributeExpressionExecutors[1].getReturnType());
+        }
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+
+        if (!(data[0] instanceof LatencySketch) || data[1] == null) {
+            return null;
+        }
+        double percentile = ((Number) data[1]).doubleValue();
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile of esbAnalytics:latencyPercentile in " +
+                    this.siddhiAppName + " should be between 0 and 100, but found " + percentile);
+        }
+        return ((LatencySketch) data[0]).quantile(percentile / 100);
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        // Only called with one parameter, which init rejects
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.DOUBLE;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.latencysketch;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch of latencies. Values are counted in buckets whose bounds grow geometrically, so that
+ * any quantile is estimated within a relative error of {@link #RELATIVE_ACCURACY}, whatever the number of values.
+ * Sketches of disjoint sets of values merge in to the exact sketch of their union, which lets sketches of
+ * fine grained time buckets and of different nodes be rolled up. Values of zero or less share a single bucket.
+ * Sketches are serialized as variable length encoded non empty buckets.
+ */
+public final class LatencySketch implements Serializable {
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final long serialVersionUID = 1L;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final int INITIAL_CAPACITY = 32;
+    private static final long[] EMPTY = new long[0];
+
+    // counts[i] holds the number of values in bucket offset + i, which covers
+    // (GAMMA^(offset + i - 1), GAMMA^(offset + i)]
+    private transient long[] counts = EMPTY;
+    private transient int offset;
+    private transient long zeroCount;
+    private transient long count;
+    private transient long min = Long.MAX_VALUE;
+    private transient long max = Long.MIN_VALUE;
+
+    /**
+     * Add a value to the sketch
+     *
+     * @param value Latency
+     */
+    public synchronized void add(long value) {
+
+        if (value > 0) {
+            increment(bucketIndex(value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add all values of another sketch to this sketch. The other sketch is not modified.
+     *
+     * @param other Sketch to merge
+     */
+    public void merge(LatencySketch other) {
+
+        if (other == this) {
+            throw new IllegalArgumentException("A latency sketch cannot be merged in to itself");
+        }
+        long[] otherCounts;
+        int otherOffset;
+        long otherZeroCount;
+        long otherCount;
+        long otherMin;
+        long otherMax;
+        // The other sketch may still be updated, hence its buckets are copied before they are merged
+        synchronized (other) {
+            otherCounts = Arrays.copyOf(other.counts, other.counts.length);
+            otherOffset = other.offset;
+            otherZeroCount = other.zeroCount;
+            otherCount = other.count;
+            otherMin = other.min;
+            otherMax = other.max;
+        }
+        if (otherCount == 0) {
+            return;
+        }
+        synchronized (this) {
+            for (int i = 0; i < otherCounts.length; i++) {
+                if (otherCounts[i] > 0) {
+                    increment(otherOffset + i, otherCounts[i]);
+                }
+            }
+            zeroCount += otherZeroCount;
+            count += otherCount;
+            min = Math.min(min, otherMin);
+            max = Math.max(max, otherMax);
+        }
+    }
+
+    /**
+     * Estimate a quantile of the values of the sketch
+     *
+     * @param quantile Quantile between 0 and 1
+     * @return Estimated value of the quantile, or null if the sketch is empty
+     */
+    public synchronized Double quantile(double quantile) {
+
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile should be between 0 and 1, but found " + quantile);
+        }
+        if (count == 0) {
+            return null;
+        }
+        double rank = quantile * (count - 1);
+        if (rank < zeroCount) {
+            return (double) Math.min(min, 0);
+        }
+        long cumulativeCount = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            cumulativeCount += counts[i];
+            if (cumulativeCount > rank) {
+                double value = 2 * Math.pow(GAMMA, offset + i) / (GAMMA + 1);
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return (double) max;
+    }
+
+    /**
+     * @return Number of values in the sketch
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Smallest value in the sketch, or Long.MAX_VALUE if it is empty
+     */
+    public synchronized long getMin() {
+        return min;
+    }
+
+    /**
+     * @return Largest value in the sketch, or Long.MIN_VALUE if it is empty
+     */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    private static int bucketIndex(long value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+    private void increment(int index, long increment) {
+
+        if (counts.length == 0) {
+            counts = new long[INITIAL_CAPACITY];
+            offset = index - INITIAL_CAPACITY / 2;
+        } else if (index < offset || index >= offset + counts.length) {
+            grow(index);
+        }
+        counts[index - offset] += increment;
+    }
+
+    /**
+     * Grow the buckets to hold the given index, at least doubling their number so that growing is amortized
+     *
+     * @param index Bucket index to hold
+     */
+    private void grow(int index) {
+
+        int start = Math.min(offset, index);
+        int end = Math.max(offset + counts.length, index + 1);
+        int length = Math.max(end - start, counts.length * 2);
+        if (index < offset) {
+            start = end - length;
+        }
+        long[] grownCounts = new long[length];
+        System.arraycopy(counts, 0, grownCounts, offset - start, counts.length);
+        counts = grownCounts;
+        offset = start;
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+
+        out.defaultWriteObject();
+        writeVarLong(out, count);
+        if (count == 0) {
+            return;
+        }
+        writeVarLong(out, zeroCount);
+        writeVarLong(out, zigZag(min));
+        writeVarLong(out, zigZag(max));
+        int nonEmptyBuckets = 0;
+        for (long bucketCount : counts) {
+            if (bucketCount > 0) {
+                nonEmptyBuckets++;
+            }
+        }
+        writeVarLong(out, nonEmptyBuckets);
+        // Bucket indexes are written as the difference to the previous non empty bucket
+        int previousIndex = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                writeVarLong(out, zigZag(offset + i - previousIndex));
+                writeVarLong(out, counts[i]);
+                previousIndex = offset + i;
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+        counts = EMPTY;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+        count = readVarLong(in);
+        if (count == 0) {
+            return;
+        }
+        zeroCount = readVarLong(in);
+        min = unZigZag(readVarLong(in));
+        max = unZigZag(readVarLong(in));
+        long nonEmptyBuckets = readVarLong(in);
+        int index = 0;
+        for (long i = 0; i < nonEmptyBuckets; i++) {
+            index += (int) unZigZag(readVarLong(in));
+            increment(index, readVarLong(in));
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ObjectOutputStream out, long value) throws IOException {
+
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(ObjectInputStream in) throws IOException {
+
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length value in latency sketch");
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.latencysketch;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.query.selector.attribute.aggregator.incremental.IncrementalAttributeAggregator;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.Expression;
+
+/**
+ * Incremental aggregator of latency sketches, from which percentiles of any time range are estimated
+ */
+@Extension(
+        name = "latencySketch",
+        namespace = "incrementalAggregator",
+        description = "This incremental aggregator keeps a mergeable latency sketch of the given latencies per " +
+                "aggregation bucket. The sketches of each granularity are merged from those of the finer one, " +
+                "the sketches of different nodes are merged when the aggregation is retrieved, and the sketches " +
+                "of the buckets within a retrieved time range are merged as well, so that percentiles of long " +
+                "time ranges are estimated from the rollups. Percentiles are read from the aggregated sketch " +
+                "with esbAnalytics:latencyPercentile. Latency sketches can be aggregated too, such as those " +
+                "emitted by esbAnalytics:preAggregate.",
+        parameters = {
+                @Parameter(name = "latency",
+                        description = "Latency, or a latency sketch",
+                        type = {DataType.LONG, DataType.INT, DataType.OBJECT})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Latency sketch of the bucket",
+                type = {DataType.OBJECT}),
+        examples = {
+                @Example(
+                        syntax = "define aggregation ESBStatAgg from ESBStatStream select componentId, " +
+                                "avg(duration) as avgDuration, latencySketch(duration) as durationSketch group by " +
+                                "componentId aggregate by startTime every sec...years;",
+                        description = "This aggregation keeps a sketch of the durations of each component per " +
+                                "bucket, along with their average."
+                )
+        }
+)
+public class LatencySketchIncrementalAttributeAggregator extends IncrementalAttributeAggregator {
+
+    private Attribute[] baseAttributes;
+    private Expression[] baseAttributesInitialValues;
+
+    @Override
+    public void init(String attributeName, Attribute.Type attributeType) {
+
+        if (attributeName == null) {
+            throw new SiddhiAppCreationException("Latency sketch incremental attribute aggregation cannot be " +
+                    "executed when no parameters are given");
+        }
+        if (attributeType != Attribute.Type.LONG && attributeType != Attribute.Type.INT &&
+                attributeType != Attribute.Type.OBJECT) {
+            throw new SiddhiAppCreationException("Latency sketch incremental attribute aggregator expects an " +
+                    "attribute of type LONG, INT or OBJECT, but found " + attributeType);
+        }
+        Attribute latencySketch = new Attribute("AGG_LATENCY_SKETCH_".concat(attributeName), Attribute.Type.OBJECT);
+        this.baseAttributes = new Attribute[]{latencySketch};
+        this.baseAttributesInitialValues = new Expression[]{
+                Expression.function("esbAnalytics", "latencySketchOf", Expression.variable(attributeName))};
+    }
+
+    @Override
+    public Expression aggregate() {
+        return Expression.variable(this.baseAttributes[0].getName());
+    }
+
+    @Override
+    public Attribute[] getBaseAttributes() {
+        return this.baseAttributes;
+    }
+
+    @Override
+    public Expression[] getBaseAttributeInitialValues() {
+        return this.baseAttributesInitialValues;
+    }
+
+    @Override
+    public Expression[] getBaseAggregators() {
+        return new Expression[]{Expression.function("esbAnalytics", "mergeLatencySketches",
+                Expression.variable(this.baseAttributes[0].getName()))};
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.OBJECT;
+    }
+}
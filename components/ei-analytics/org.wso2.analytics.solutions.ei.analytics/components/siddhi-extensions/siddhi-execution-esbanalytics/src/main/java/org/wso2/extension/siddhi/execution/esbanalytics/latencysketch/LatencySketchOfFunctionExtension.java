@@ -0,0 +1,107 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.latencysketch;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+/**
+ * Wrap a latency in a latency sketch, so that it can be merged with other sketches
+ */
+@Extension(
+        name = "latencySketchOf",
+        namespace = "esbAnalytics",
+        description = "This function returns a latency sketch holding the given latency. A latency sketch is " +
+                "returned as it is. It provides the initial values of the latencySketch incremental aggregator, " +
+                "and is not meant to be used directly. Null values are returned as null.",
+        parameters = {
+                @Parameter(name = "latency",
+                        description = "Latency, or a latency sketch",
+                        type = {DataType.LONG, DataType.INT, DataType.OBJECT},
+                        dynamic = true)
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Latency sketch",
+                type = {DataType.OBJECT}),
+        examples = {
+                @Example(
+                        syntax = "from ESBStatStream select componentId, esbAnalytics:latencySketchOf(duration) " +
+                                "as durationSketch insert into SketchStream;",
+                        description = "This query wraps the duration of each event in a latency sketch."
+                )
+        }
+)
+public class LatencySketchOfFunctionExtension extends FunctionExecutor<State> {
+
+    private String siddhiAppName;
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+
+        this.siddhiAppName = siddhiQueryContext.getSiddhiAppContext().getName();
+        if (attributeExpressionExecutors.length != 1) {
+            throw new SiddhiAppCreationException("esbAnalytics:latencySketchOf in " + this.siddhiAppName +
+                    " expects exactly one parameter, but found " + attributeExpressionExecutors.length);
+        }
+        Attribute.Type type = attributeExpressionExecutors[0].getReturnType();
+        if (type != Attribute.Type.LONG && type != Attribute.Type.INT && type != Attribute.Type.OBJECT) {
+            throw new SiddhiAppCreationException("The parameter of esbAnalytics:latencySketchOf in " +
+                    this.siddhiAppName + " should be of type LONG, INT or OBJECT, but found " + type);
+        }
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        // Only called with more than one parameter, which init rejects
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+
+        if (data == null || data instanceof LatencySketch) {
+            return data;
+        }
+        if (!(data instanceof Number)) {
+            throw new IllegalArgumentException("esbAnalytics:latencySketchOf in " + this.siddhiAppName +
+                    " expects a latency or a latency sketch, but found " + data.getClass().getName());
+        }
+        LatencySketch latencySketch = new LatencySketch();
+        latencySketch.add(((Number) data).longValue());
+        return latencySketch;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.OBJECT;
+    }
+}
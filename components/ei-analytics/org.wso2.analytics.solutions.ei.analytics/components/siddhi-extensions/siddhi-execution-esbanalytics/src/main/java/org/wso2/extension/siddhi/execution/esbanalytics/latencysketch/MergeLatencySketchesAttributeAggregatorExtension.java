@@ -0,0 +1,164 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.latencysketch;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Merge latency sketches in to a single latency sketch
+ */
+@Extension(
+        name = "mergeLatencySketches",
+        namespace = "esbAnalytics",
+        description = "This attribute aggregator merges the latency sketches of the incoming events in to a " +
+                "single latency sketch. It is the base aggregator of the latencySketch incremental aggregator, " +
+                "which rolls up sketches across granularities and nodes, and is not meant to be used directly. " +
+                "Removing sketches, as sliding windows do, is not supported.",
+        parameters = {
+                @Parameter(name = "latency.sketch",
+                        description = "Latency sketch to merge",
+                        type = {DataType.OBJECT},
+                        dynamic = true)
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Merged latency sketch",
+                type = {DataType.OBJECT}),
+        examples = {
+                @Example(
+                        syntax = "from SketchStream#window.timeBatch(1 min) select componentId, " +
+                                "esbAnalytics:mergeLatencySketches(durationSketch) as durationSketch group by " +
+                                "componentId insert into MergedSketchStream;",
+                        description = "This query merges the duration sketches of each component per minute."
+                )
+        }
+)
+public class MergeLatencySketchesAttributeAggregatorExtension
+        extends AttributeAggregatorExecutor<MergeLatencySketchesAttributeAggregatorExtension.SketchState> {
+
+    private String siddhiAppName;
+
+    @Override
+    protected StateFactory<SketchState> init(ExpressionExecutor[] attributeExpressionExecutors,
+                                             ProcessingMode processingMode, boolean outputExpectsExpiredEvents,
+                                             ConfigReader configReader, SiddhiQueryContext siddhiQueryContext) {
+
+        this.siddhiAppName = siddhiQueryContext.getSiddhiAppContext().getName();
+        if (attributeExpressionExecutors.length != 1) {
+            throw new SiddhiAppCreationException("esbAnalytics:mergeLatencySketches in " + this.siddhiAppName +
+                    " expects exactly one parameter, but found " + attributeExpressionExecutors.length);
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.OBJECT) {
+            throw new SiddhiAppCreationException("The parameter of esbAnalytics:mergeLatencySketches in " +
+                    this.siddhiAppName + " should be of type OBJECT, but found " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        return SketchState::new;
+    }
+
+    @Override
+    public Object processAdd(Object data, SketchState state) {
+
+        if (state.latencySketch == null) {
+            state.latencySketch = new LatencySketch();
+        }
+        if (data instanceof LatencySketch) {
+            state.latencySketch.merge((LatencySketch) data);
+        } else if (data != null) {
+            throw new SiddhiAppRuntimeException("esbAnalytics:mergeLatencySketches in " + this.siddhiAppName +
+                    " expects latency sketches, but found " + data.getClass().getName());
+        }
+        // The sketch is handed out as it is, as a new sketch is started after each reset
+        return state.latencySketch;
+    }
+
+    @Override
+    public Object processAdd(Object[] data, SketchState state) {
+        // Only called with more than one parameter, which init rejects
+        return null;
+    }
+
+    @Override
+    public Object processRemove(Object data, SketchState state) {
+        throw new SiddhiAppRuntimeException("esbAnalytics:mergeLatencySketches in " + this.siddhiAppName +
+                " does not support removing latency sketches");
+    }
+
+    @Override
+    public Object processRemove(Object[] data, SketchState state) {
+        return processRemove((Object) data, state);
+    }
+
+    @Override
+    public Object reset(SketchState state) {
+
+        // Sketches already handed out may still be read, hence they are left as they are
+        state.latencySketch = null;
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.OBJECT;
+    }
+
+    /**
+     * Latency sketch merged so far
+     */
+    static class SketchState extends State {
+
+        private static final String LATENCY_SKETCH_KEY = "latencySketch";
+
+        private LatencySketch latencySketch;
+
+        @Override
+        public boolean canDestroy() {
+            return latencySketch == null;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put(LATENCY_SKETCH_KEY, latencySketch);
+            return snapshot;
+        }
+
+        @Override
+        public void restore(Map<String, Object> snapshot) {
+            latencySketch = (LatencySketch) snapshot.get(LATENCY_SKETCH_KEY);
+        }
+    }
+}
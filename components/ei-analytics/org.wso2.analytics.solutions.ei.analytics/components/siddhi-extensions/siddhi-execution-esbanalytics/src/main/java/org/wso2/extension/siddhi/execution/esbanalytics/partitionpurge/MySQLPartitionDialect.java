@@ -0,0 +1,78 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.partitionpurge;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Partition maintenance of MySQL tables partitioned by RANGE on the event timestamp, ending with a
+ * pmax partition of VALUES LESS THAN MAXVALUE
+ */
+class MySQLPartitionDialect extends PartitionDialect {
+
+    private static final String LIST_PARTITIONS_QUERY = "SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL";
+
+    @Override
+    List<String> listPartitions(Connection connection, String tableName) throws SQLException {
+
+        List<String> partitions = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(LIST_PARTITIONS_QUERY)) {
+            statement.setString(1, tableName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    partitions.add(resultSet.getString(1));
+                }
+            }
+        }
+        return partitions;
+    }
+
+    @Override
+    void dropPartitions(Connection connection, String tableName, List<String> partitions) throws SQLException {
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE " + tableName + " DROP PARTITION " + String.join(", ", partitions));
+        }
+    }
+
+    @Override
+    void addPartitions(Connection connection, String tableName, long lowerBound, List<Long> dayStarts)
+            throws SQLException {
+
+        // The new day partitions are split off the overflow partition, which is empty as long as they are added
+        // ahead of time
+        StringBuilder sql = new StringBuilder("ALTER TABLE ").append(tableName).append(" REORGANIZE PARTITION ")
+                .append(OVERFLOW_PARTITION).append(" INTO (");
+        for (long dayStart : dayStarts) {
+            sql.append("PARTITION ").append(partitionName(dayStart)).append(" VALUES LESS THAN (")
+                    .append(dayStart + DAY_MILLIS).append("), ");
+        }
+        sql.append("PARTITION ").append(OVERFLOW_PARTITION).append(" VALUES LESS THAN MAXVALUE)");
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql.toString());
+        }
+    }
+}
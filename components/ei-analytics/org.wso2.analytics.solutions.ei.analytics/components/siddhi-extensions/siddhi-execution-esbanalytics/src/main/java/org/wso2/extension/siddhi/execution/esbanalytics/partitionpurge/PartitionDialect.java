@@ -0,0 +1,125 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.partitionpurge;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Partition maintenance statements of a database which supports range partitioning of a table by its event
+ * timestamp. Tables are partitioned by UTC day. The day partition pYYYYMMDD holds the rows with an event timestamp
+ * before the end of that day which are not held by an earlier partition, and the overflow partition pmax holds the
+ * rows after the last day partition.
+ */
+abstract class PartitionDialect {
+
+    static final String OVERFLOW_PARTITION = "pmax";
+    static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private static final Pattern DAY_PARTITION_PATTERN = Pattern.compile("p\\d{8}");
+    private static final DateTimeFormatter DAY_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyyMMdd", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+    /**
+     * Find the dialect of the database of a connection
+     *
+     * @param connection Connection to the database
+     * @return Dialect of the database, or null if partition maintenance is not supported for the database
+     * @throws SQLException If the database metadata cannot be read
+     */
+    static PartitionDialect forConnection(Connection connection) throws SQLException {
+
+        String productName = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ENGLISH);
+        if (productName.contains("mysql") || productName.contains("mariadb")) {
+            return new MySQLPartitionDialect();
+        } else if (productName.contains("postgresql")) {
+            return new PostgreSQLPartitionDialect();
+        }
+        return null;
+    }
+
+    /**
+     * @param dayStart Start of a UTC day in milliseconds
+     * @return Name of the partition of the day
+     */
+    static String partitionName(long dayStart) {
+        return "p" + DAY_FORMATTER.format(Instant.ofEpochMilli(dayStart));
+    }
+
+    /**
+     * @param partitionName Name of a partition
+     * @return Start of the UTC day of the partition in milliseconds, or -1 if it is not a day partition
+     */
+    static long dayStart(String partitionName) {
+
+        if (!DAY_PARTITION_PATTERN.matcher(partitionName).matches()) {
+            return -1;
+        }
+        return LocalDate.parse(partitionName.substring(1), DAY_FORMATTER).atStartOfDay(ZoneOffset.UTC).toInstant()
+                .toEpochMilli();
+    }
+
+    /**
+     * @param timestamp Timestamp in milliseconds
+     * @return Start of the UTC day of the timestamp in milliseconds
+     */
+    static long dayStartOf(long timestamp) {
+        return Math.floorDiv(timestamp, DAY_MILLIS) * DAY_MILLIS;
+    }
+
+    /**
+     * List the partitions of a table
+     *
+     * @param connection Connection to the database
+     * @param tableName  Name of the table
+     * @return Names of the partitions of the table, empty if the table is not partitioned
+     * @throws SQLException If the partitions cannot be listed
+     */
+    abstract List<String> listPartitions(Connection connection, String tableName) throws SQLException;
+
+    /**
+     * Drop partitions of a table along with their rows
+     *
+     * @param connection Connection to the database
+     * @param tableName  Name of the table
+     * @param partitions Names of the partitions to drop
+     * @throws SQLException If the partitions cannot be dropped
+     */
+    abstract void dropPartitions(Connection connection, String tableName, List<String> partitions)
+            throws SQLException;
+
+    /**
+     * Add day partitions after the last day partition of a table
+     *
+     * @param connection Connection to the database
+     * @param tableName  Name of the table
+     * @param lowerBound End of the last day partition of the table, or Long.MIN_VALUE if it has none
+     * @param dayStarts  Starts of the days to add partitions for, in ascending order
+     * @throws SQLException If the partitions cannot be added
+     */
+    abstract void addPartitions(Connection connection, String tableName, long lowerBound, List<Long> dayStarts)
+            throws SQLException;
+}
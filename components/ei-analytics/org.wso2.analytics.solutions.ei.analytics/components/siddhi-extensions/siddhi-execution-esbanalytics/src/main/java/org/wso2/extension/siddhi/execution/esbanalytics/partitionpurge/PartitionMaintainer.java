@@ -0,0 +1,111 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.partitionpurge;
+
+import org.apache.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Maintains the day partitions of a table through the dialect of its database. Day partitions which end at or
+ * before the purging time are dropped, and partitions are added from the end of the last day partition, or from the
+ * current day if that is later, up to a number of days after the current day.
+ */
+class PartitionMaintainer {
+
+    private static final Logger log = Logger.getLogger(PartitionMaintainer.class);
+
+    private final String tableName;
+    private final int partitionsAhead;
+    private final String siddhiAppName;
+
+    /**
+     * @param tableName       Name of the table in the database
+     * @param partitionsAhead Number of days after the current day, for which partitions are added
+     * @param siddhiAppName   Name of the Siddhi app, used in log messages
+     */
+    PartitionMaintainer(String tableName, int partitionsAhead, String siddhiAppName) {
+
+        this.tableName = tableName;
+        this.partitionsAhead = partitionsAhead;
+        this.siddhiAppName = siddhiAppName;
+    }
+
+    /**
+     * Drop the day partitions of the table which end at or before the purging time, and add the partitions up to
+     * the configured number of days after the current day
+     *
+     * @param connection  Connection to the database
+     * @param dialect     Dialect of the database
+     * @param purgingTime Timestamp before which rows are no longer retained
+     * @param currentTime Current time
+     * @return Whether the table is partitioned, and the number of partitions dropped
+     */
+    Object[] maintain(Connection connection, PartitionDialect dialect, long purgingTime, long currentTime) {
+
+        boolean partitioned = false;
+        int droppedPartitions = 0;
+        try {
+            TreeMap<Long, String> dayPartitions = new TreeMap<>();
+            for (String partition : dialect.listPartitions(connection, this.tableName)) {
+                partitioned = true;
+                long dayStart = PartitionDialect.dayStart(partition);
+                if (dayStart >= 0) {
+                    dayPartitions.put(dayStart, partition);
+                }
+            }
+            if (!partitioned) {
+                return new Object[]{false, 0};
+            }
+
+            long lowerBound = dayPartitions.isEmpty() ? Long.MIN_VALUE :
+                    dayPartitions.lastKey() + PartitionDialect.DAY_MILLIS;
+            // A day partition only holds rows older than the purging time if its day ends at or before it
+            List<String> expiredPartitions = new ArrayList<>(
+                    dayPartitions.headMap(purgingTime - PartitionDialect.DAY_MILLIS, true).values());
+            if (!expiredPartitions.isEmpty()) {
+                dialect.dropPartitions(connection, this.tableName, expiredPartitions);
+                droppedPartitions = expiredPartitions.size();
+            }
+
+            List<Long> newDayStarts = new ArrayList<>();
+            long lastDayStart = PartitionDialect.dayStartOf(currentTime) +
+                    this.partitionsAhead * PartitionDialect.DAY_MILLIS;
+            for (long dayStart = Math.max(lowerBound, PartitionDialect.dayStartOf(currentTime));
+                 dayStart <= lastDayStart; dayStart += PartitionDialect.DAY_MILLIS) {
+                newDayStarts.add(dayStart);
+            }
+            if (!newDayStarts.isEmpty()) {
+                dialect.addPartitions(connection, this.tableName, lowerBound, newDayStarts);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Dropped " + droppedPartitions + " and added " + newDayStarts.size() + " day partitions " +
+                        "of " + this.tableName + " in " + this.siddhiAppName);
+            }
+        } catch (SQLException e) {
+            log.error("Error while maintaining the day partitions of " + this.tableName + " in " +
+                    this.siddhiAppName + ", after dropping " + droppedPartitions + " partitions", e);
+        }
+        return new Object[]{partitioned, droppedPartitions};
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.partitionpurge;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Partition maintenance of PostgreSQL tables declared with PARTITION BY RANGE on the event timestamp. The partition
+ * pYYYYMMDD of a table is the table named &lt;table&gt;_pYYYYMMDD, and &lt;table&gt;_pmax is its default partition.
+ */
+class PostgreSQLPartitionDialect extends PartitionDialect {
+
+    private static final String LIST_PARTITIONS_QUERY = "SELECT child.relname FROM pg_inherits " +
+            "JOIN pg_class child ON child.oid = pg_inherits.inhrelid " +
+            "JOIN pg_class parent ON parent.oid = pg_inherits.inhparent " +
+            "WHERE parent.relname = ? AND pg_table_is_visible(parent.oid)";
+
+    @Override
+    List<String> listPartitions(Connection connection, String tableName) throws SQLException {
+
+        // Unquoted table names are folded to lower case by PostgreSQL
+        String prefix = tableName.toLowerCase(Locale.ENGLISH) + "_";
+        List<String> partitions = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(LIST_PARTITIONS_QUERY)) {
+            statement.setString(1, tableName.toLowerCase(Locale.ENGLISH));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String childName = resultSet.getString(1);
+                    partitions.add(childName.startsWith(prefix) ? childName.substring(prefix.length()) : childName);
+                }
+            }
+        }
+        return partitions;
+    }
+
+    @Override
+    void dropPartitions(Connection connection, String tableName, List<String> partitions) throws SQLException {
+
+        try (Statement statement = connection.createStatement()) {
+            for (String partition : partitions) {
+                statement.executeUpdate("DROP TABLE " + tableName + "_" + partition);
+            }
+        }
+    }
+
+    @Override
+    void addPartitions(Connection connection, String tableName, long lowerBound, List<Long> dayStarts)
+            throws SQLException {
+
+        String from = lowerBound == Long.MIN_VALUE ? "MINVALUE" : String.valueOf(lowerBound);
+        try (Statement statement = connection.createStatement()) {
+            for (long dayStart : dayStarts) {
+                long to = dayStart + DAY_MILLIS;
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + tableName + "_" + partitionName(dayStart) +
+                        " PARTITION OF " + tableName + " FOR VALUES FROM (" + from + ") TO (" + to + ")");
+                from = String.valueOf(to);
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.partitionpurge;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.SystemParameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.core.util.timestamp.TimestampGenerator;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import org.apache.log4j.Logger;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.ConfigUtils;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.DataSourceUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+
+/**
+ * Retire the data of a day partitioned table by dropping its whole day partitions, instead of deleting its rows
+ */
+@Extension(
+        name = "purgePartitions",
+        namespace = "esbAnalytics",
+        description = "This extension maintains the day partitions of a table which is partitioned by its event " +
+                "timestamp, each time an event arrives. Day partitions which only hold rows older than the " +
+                "purging time are dropped, which takes the same time regardless of the number of rows they hold, " +
+                "and the partitions of the coming days are added. Tables are read and written through their " +
+                "logical name, so queries on them are not affected. MySQL and PostgreSQL tables created with the " +
+                "EI Analytics partitioning scripts are supported. For any other table, nothing is done and " +
+                "the partitioned attribute is false, so that its rows can be deleted as before.",
+        parameters = {
+                @Parameter(name = "datasource",
+                        description = "Name of the datasource of the table. It is looked up in the Siddhi " +
+                                "context, among the Carbon datasources of the server, and then through JNDI",
+                        type = {DataType.STRING}),
+                @Parameter(name = "table.name",
+                        description = "Name of the table in the database",
+                        type = {DataType.STRING}),
+                @Parameter(name = "purging.time",
+                        description = "Timestamp in milliseconds before which rows are no longer retained",
+                        type = {DataType.LONG},
+                        dynamic = true)
+        },
+        returnAttributes = {
+                @ReturnAttribute(name = "partitioned",
+                        description = "Whether the table is partitioned by day",
+                        type = {DataType.BOOL}),
+                @ReturnAttribute(name = "droppedPartitions",
+                        description = "Number of day partitions dropped",
+                        type = {DataType.INT})
+        },
+        systemParameter = {
+                @SystemParameter(name = "partitions.ahead",
+                        description = "Number of days after the current day, for which partitions are added " +
+                                "ahead of time",
+                        defaultValue = "7",
+                        possibleParameters = "Any positive integer")
+        },
+        examples = {
+                @Example(
+                        syntax = "from TablePurgingTriggerStream#esbAnalytics:purgePartitions('EI_ANALYTICS', " +
+                                "'ESBEventTable', convert(time:dateSub(triggered_time, 2, 'week'), 'long')) " +
+                                "select convert(time:dateSub(triggered_time, 2, 'week'), 'long') as purgingTime, " +
+                                "partitioned insert into ESBEventTablePurgeStream;",
+                        description = "This query drops the day partitions of ESBEventTable older than two weeks, " +
+                                "and reports whether the table is partitioned, so that its rows are deleted " +
+                                "otherwise."
+                )
+        }
+)
+public class PurgePartitionsStreamProcessorExtension extends StreamProcessor<State> {
+
+    private static final Logger log = Logger.getLogger(PurgePartitionsStreamProcessorExtension.class);
+    // System parameters of the extension
+    private static final String PARTITIONS_AHEAD_CONFIG = "partitions.ahead";
+    private static final Pattern TABLE_NAME_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private String siddhiAppName;
+    private String dataSourceName;
+    private String tableName;
+    private ExpressionExecutor purgingTimeExecutor;
+    private PartitionMaintainer partitionMaintainer;
+    private List<Attribute> attributeList = new ArrayList<>();
+    private DataSource dataSource;
+    private TimestampGenerator timestampGenerator;
+
+    /**
+     * Maintain the partitions of the table for each incoming event, and hand the event over to the next processor
+     *
+     * @param streamEventChunk      Incoming events chunk
+     * @param nextProcessor         Next event processor to hand over the events
+     * @param streamEventCloner     Unused, the incoming events are forwarded
+     * @param complexEventPopulater Event populator to add the outcome of the maintenance to the event
+     * @param state                 Unused, the extension is stateless
+     */
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           State state) {
+
+        while (streamEventChunk.hasNext()) {
+            StreamEvent streamEvent = streamEventChunk.next();
+            if (streamEvent.getType() != ComplexEvent.Type.CURRENT) {
+                streamEventChunk.remove();
+                continue;
+            }
+            long purgingTime = (Long) this.purgingTimeExecutor.execute(streamEvent);
+            complexEventPopulater.populateComplexEvent(streamEvent,
+                    maintainPartitions(purgingTime, this.timestampGenerator.currentTime()));
+        }
+        if (streamEventChunk.getFirst() != null) {
+            nextProcessor.process(streamEventChunk);
+        }
+    }
+
+    /**
+     * Drop the day partitions of the table which end at or before the purging time, and add the partitions up to
+     * the configured number of days after the current day
+     *
+     * @param purgingTime Timestamp before which rows are no longer retained
+     * @param currentTime Current time
+     * @return Whether the table is partitioned, and the number of partitions dropped
+     */
+    private Object[] maintainPartitions(long purgingTime, long currentTime) {
+
+        DataSource tableDataSource = lookupDataSource();
+        if (tableDataSource == null) {
+            return new Object[]{false, 0};
+        }
+        try (Connection connection = tableDataSource.getConnection()) {
+            PartitionDialect dialect = PartitionDialect.forConnection(connection);
+            if (dialect == null) {
+                return new Object[]{false, 0};
+            }
+            return this.partitionMaintainer.maintain(connection, dialect, purgingTime, currentTime);
+        } catch (SQLException e) {
+            log.error("Error while connecting to datasource " + this.dataSourceName + " to maintain the day " +
+                    "partitions of " + this.tableName + " in " + this.siddhiAppName, e);
+            return new Object[]{false, 0};
+        }
+    }
+
+    /**
+     * Look up the datasource in the Siddhi context, among the Carbon datasources, and then through JNDI. The lookup
+     * is repeated until the datasource is found, as it may be registered after the Siddhi app is deployed.
+     *
+     * @return The datasource, or null if it is not found
+     */
+    private DataSource lookupDataSource() {
+
+        if (this.dataSource == null) {
+            DataSource foundDataSource = DataSourceUtils.lookupDataSource(
+                    this.siddhiQueryContext.getSiddhiAppContext().getSiddhiContext(), this.dataSourceName);
+            if (foundDataSource == null) {
+                log.warn("Datasource " + this.dataSourceName + " of esbAnalytics:purgePartitions in " +
+                        this.siddhiAppName + " is not found, hence " + this.tableName + " is treated as not " +
+                        "partitioned");
+                return null;
+            }
+            this.dataSource = foundDataSource;
+        }
+        return this.dataSource;
+    }
+
+    /**
+     * The init method of the StreamProcessor, this method will be called before other methods
+     *
+     * @param metaStreamEvent              the  stream event meta
+     * @param inputDefinition              the incoming stream definition
+     * @param attributeExpressionExecutors the executors of each function parameters
+     * @param configReader                 this hold the {@link StreamProcessor} extensions configuration reader.
+     * @param streamEventClonerHolder      stream event cloner holder
+     * @param outputExpectsExpiredEvents   whether the output expects expired events
+     * @param findToBeExecuted             whether find will be executed on this processor
+     * @param siddhiQueryContext           The context of the Siddhi query
+     * @return null, as the extension is stateless
+     */
+    @Override
+    protected StateFactory<State> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                       ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       StreamEventClonerHolder streamEventClonerHolder,
+                                       boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                       SiddhiQueryContext siddhiQueryContext) {
+
+        this.siddhiAppName = siddhiQueryContext.getSiddhiAppContext().getName();
+        if (attributeExpressionExecutors.length != 3) {
+            throw new SiddhiAppCreationException("esbAnalytics:purgePartitions in " + this.siddhiAppName +
+                    " expects the datasource, table name and purging time, but found " +
+                    attributeExpressionExecutors.length + " parameters");
+        }
+        this.dataSourceName = readConstantString(attributeExpressionExecutors[0], "datasource");
+        this.tableName = readConstantString(attributeExpressionExecutors[1], "table name");
+        // The table name is concatenated in to the partition maintenance statements
+        if (!TABLE_NAME_PATTERN.matcher(this.tableName).matches()) {
+            throw new SiddhiAppCreationException("The table name of esbAnalytics:purgePartitions in " +
+                    this.siddhiAppName + " should only contain letters, digits and underscores, but found '" +
+                    this.tableName + "'");
+        }
+        if (attributeExpressionExecutors[2].getReturnType() != Attribute.Type.LONG) {
+            throw new SiddhiAppCreationException("The purging time of esbAnalytics:purgePartitions in " +
+                    this.siddhiAppName + " should be of type LONG, but found " +
+                    attributeExpressionExecutors[2].getReturnType());
+        }
+        this.purgingTimeExecutor = attributeExpressionExecutors[2];
+        this.partitionMaintainer = new PartitionMaintainer(this.tableName, ConfigUtils.readIntConfig(configReader,
+                PARTITIONS_AHEAD_CONFIG, "7", "esbAnalytics:purgePartitions", this.siddhiAppName), this.siddhiAppName);
+        this.timestampGenerator = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator();
+
+        List<Attribute> outputAttributes = new ArrayList<>();
+        outputAttributes.add(new Attribute("partitioned", Attribute.Type.BOOL));
+        outputAttributes.add(new Attribute("droppedPartitions", Attribute.Type.INT));
+        this.attributeList = outputAttributes;
+        return null;
+    }
+
+    /**
+     * Read a constant string parameter of the extension
+     *
+     * @param executor Executor of the parameter
+     * @param name     Name of the parameter, used in the error message
+     * @return Value of the parameter
+     */
+    private String readConstantString(ExpressionExecutor executor, String name) {
+
+        if (!(executor instanceof ConstantExpressionExecutor) || executor.getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppCreationException("The " + name + " of esbAnalytics:purgePartitions in " +
+                    this.siddhiAppName + " should be a constant of type STRING");
+        }
+        return (String) ((ConstantExpressionExecutor) executor).getValue();
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void stop() {
+        this.dataSource = null;
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return this.attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+}
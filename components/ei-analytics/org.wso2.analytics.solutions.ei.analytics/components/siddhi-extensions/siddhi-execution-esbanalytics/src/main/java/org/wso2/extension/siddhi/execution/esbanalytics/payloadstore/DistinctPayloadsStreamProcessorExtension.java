@@ -0,0 +1,257 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.payloadstore;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.SystemParameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.core.util.timestamp.TimestampGenerator;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.ConfigUtils;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.RecentKeyFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Emit each distinct payload of the component events once, along with its content addressed reference, so that
+ * payloads shared by many component events are written to the payload store once
+ */
+@Extension(
+        name = "distinctPayloads",
+        namespace = "esbAnalytics",
+        description = "This extension emits one event per distinct payload found in the given payload attributes " +
+                "of the incoming component events, holding the reference returned by esbAnalytics:payloadRef and " +
+                "the payload itself. A payload already emitted for the same tenant within the deduplication " +
+                "window is not emitted again. Each emitted event carries the attributes of the component event " +
+                "the payload was found in. The emitted events are meant to be upserted in to a payload table " +
+                "keyed by the tenant and reference, so payloads emitted again after the window only refresh " +
+                "their row.",
+        parameters = {
+                @Parameter(name = "meta.tenant.id",
+                        description = "Tenant id of the component event. Payloads are deduplicated per tenant",
+                        type = {DataType.INT},
+                        dynamic = true),
+                @Parameter(name = "payload.attribute",
+                        description = "Payload attributes of the component event, such as beforePayload, " +
+                                "afterPayload, contextPropertyMap and transportPropertyMap. Any number of " +
+                                "attributes can be given. Null values are skipped",
+                        type = {DataType.STRING},
+                        dynamic = true)
+        },
+        returnAttributes = {
+                @ReturnAttribute(name = "payloadRef",
+                        description = "Reference of the payload",
+                        type = {DataType.STRING}),
+                @ReturnAttribute(name = "payload",
+                        description = "The payload",
+                        type = {DataType.STRING})
+        },
+        systemParameter = {
+                @SystemParameter(name = "dedup.window.millis",
+                        description = "Time window in milliseconds within which an already emitted payload is " +
+                                "not emitted again. Payloads still in use are emitted again at most every two " +
+                                "windows, which refreshes their row for the purging of the payload table. Hence " +
+                                "this may be at most half of the payload retention margin",
+                        defaultValue = "3600000",
+                        possibleParameters = "Any positive integer"),
+                @SystemParameter(name = "dedup.capacity",
+                        description = "Maximum number of payload references remembered per deduplication window. " +
+                                "When more distinct payloads arrive within a window, older references are " +
+                                "forgotten early and their payloads may be written again",
+                        defaultValue = "100000",
+                        possibleParameters = "Any positive integer"),
+                @SystemParameter(name = "payload.retention.margin.millis",
+                        description = "Time in milliseconds by which the payload table is retained longer than " +
+                                "the component events referencing its payloads. A component event may reference " +
+                                "a payload emitted up to two deduplication windows before it, so a longer window " +
+                                "is rejected, as its payloads could be purged while still referenced",
+                        defaultValue = "86400000",
+                        possibleParameters = "Any positive integer")
+        },
+        examples = {
+                @Example(
+                        syntax = "from DecompressedEventStream#esbAnalytics:distinctPayloads(metaTenantId, " +
+                                "beforePayload, afterPayload, contextPropertyMap, transportPropertyMap) select " +
+                                "metaTenantId, payloadRef, payload, eventTimestamp update or insert into " +
+                                "ESBPayloadTable on ESBPayloadTable.metaTenantId == metaTenantId and " +
+                                "ESBPayloadTable.payloadRef == payloadRef;",
+                        description = "This query writes each distinct payload of the component events once in " +
+                                "to ESBPayloadTable."
+                )
+        }
+)
+public class DistinctPayloadsStreamProcessorExtension extends StreamProcessor<State> {
+
+    // System parameters of the extension
+    private static final String DEDUP_WINDOW_CONFIG = "dedup.window.millis";
+    private static final String DEDUP_CAPACITY_CONFIG = "dedup.capacity";
+    private static final String RETENTION_MARGIN_CONFIG = "payload.retention.margin.millis";
+
+    private String siddhiAppName;
+    private ExpressionExecutor metaTenantIdExecutor;
+    private ExpressionExecutor[] payloadExecutors;
+    private List<Attribute> attributeList = new ArrayList<>();
+    private RecentKeyFilter payloadFilter;
+    private TimestampGenerator timestampGenerator;
+
+    /**
+     * Find the distinct payloads of the incoming component events, and hand them over to the next processor
+     *
+     * @param streamEventChunk      Incoming component events chunk
+     * @param nextProcessor         Next event processor to hand over the payloads
+     * @param streamEventCloner     Event cloner to copy the component event of a payload
+     * @param complexEventPopulater Event populator to add the payload reference and payload to the output event
+     * @param state                 Unused, the remembered payload references are not persisted
+     */
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           State state) {
+
+        ComplexEventChunk<StreamEvent> payloadChunk = new ComplexEventChunk<>(false);
+        long currentTime = this.timestampGenerator.currentTime();
+        while (streamEventChunk.hasNext()) {
+            StreamEvent streamEvent = streamEventChunk.next();
+            streamEventChunk.remove();
+            if (streamEvent.getType() != ComplexEvent.Type.CURRENT) {
+                continue;
+            }
+            int metaTenantId = (Integer) this.metaTenantIdExecutor.execute(streamEvent);
+            for (ExpressionExecutor payloadExecutor : this.payloadExecutors) {
+                String payload = (String) payloadExecutor.execute(streamEvent);
+                if (payload == null) {
+                    continue;
+                }
+                String payloadRef = PayloadReferences.reference(payload);
+                if (this.payloadFilter.accept(metaTenantId, payloadRef, currentTime)) {
+                    StreamEvent payloadEvent = streamEventCloner.copyStreamEvent(streamEvent);
+                    complexEventPopulater.populateComplexEvent(payloadEvent, new Object[]{payloadRef, payload});
+                    payloadChunk.add(payloadEvent);
+                }
+            }
+        }
+        if (payloadChunk.getFirst() != null) {
+            nextProcessor.process(payloadChunk);
+        }
+    }
+
+    /**
+     * The init method of the StreamProcessor, this method will be called before other methods
+     *
+     * @param metaStreamEvent              the  stream event meta
+     * @param inputDefinition              the incoming stream definition
+     * @param attributeExpressionExecutors the executors of each function parameters
+     * @param configReader                 this hold the {@link StreamProcessor} extensions configuration reader.
+     * @param streamEventClonerHolder      stream event cloner holder
+     * @param outputExpectsExpiredEvents   whether the output expects expired events
+     * @param findToBeExecuted             whether find will be executed on this processor
+     * @param siddhiQueryContext           The context of the Siddhi query
+     * @return null, as the remembered payload references are not persisted
+     */
+    @Override
+    protected StateFactory<State> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                       ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       StreamEventClonerHolder streamEventClonerHolder,
+                                       boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                       SiddhiQueryContext siddhiQueryContext) {
+
+        this.siddhiAppName = siddhiQueryContext.getSiddhiAppContext().getName();
+        if (attributeExpressionExecutors.length < 2) {
+            throw new SiddhiAppCreationException("esbAnalytics:distinctPayloads in " + this.siddhiAppName +
+                    " expects the meta tenant id and at least one payload attribute, but found " +
+                    attributeExpressionExecutors.length + " parameters");
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.INT) {
+            throw new SiddhiAppCreationException("The meta tenant id of esbAnalytics:distinctPayloads in " +
+                    this.siddhiAppName + " should be of type INT, but found " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        this.metaTenantIdExecutor = attributeExpressionExecutors[0];
+        this.payloadExecutors = new ExpressionExecutor[attributeExpressionExecutors.length - 1];
+        for (int i = 1; i < attributeExpressionExecutors.length; i++) {
+            if (attributeExpressionExecutors[i].getReturnType() != Attribute.Type.STRING) {
+                throw new SiddhiAppCreationException("Payload attributes of esbAnalytics:distinctPayloads in " +
+                        this.siddhiAppName + " should be of type STRING, but found " +
+                        attributeExpressionExecutors[i].getReturnType());
+            }
+            this.payloadExecutors[i - 1] = attributeExpressionExecutors[i];
+        }
+        int dedupWindow = ConfigUtils.readIntConfig(configReader, DEDUP_WINDOW_CONFIG, "3600000",
+                "esbAnalytics:distinctPayloads", this.siddhiAppName);
+        int retentionMargin = ConfigUtils.readIntConfig(configReader, RETENTION_MARGIN_CONFIG, "86400000",
+                "esbAnalytics:distinctPayloads", this.siddhiAppName);
+        if (2L * dedupWindow > retentionMargin) {
+            throw new SiddhiAppCreationException("System parameter '" + DEDUP_WINDOW_CONFIG + "' of " +
+                    "esbAnalytics:distinctPayloads in " + this.siddhiAppName + " should be at most half of '" +
+                    RETENTION_MARGIN_CONFIG + "', which is " + retentionMargin + ", but found " + dedupWindow);
+        }
+        // Payload references are remembered per tenant and for a bounded time, the same way as message ids
+        this.payloadFilter = new RecentKeyFilter(dedupWindow,
+                ConfigUtils.readIntConfig(configReader, DEDUP_CAPACITY_CONFIG, "100000",
+                        "esbAnalytics:distinctPayloads", this.siddhiAppName));
+        this.timestampGenerator = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator();
+
+        List<Attribute> outputAttributes = new ArrayList<>();
+        outputAttributes.add(new Attribute("payloadRef", Attribute.Type.STRING));
+        outputAttributes.add(new Attribute("payload", Attribute.Type.STRING));
+        this.attributeList = outputAttributes;
+        return null;
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void stop() {
+        this.payloadFilter.clear();
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return this.attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.payloadstore;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+/**
+ * Replace a payload by its content addressed reference
+ */
+@Extension(
+        name = "payloadRef",
+        namespace = "esbAnalytics",
+        description = "This function returns the content addressed reference of a payload, which is 'sha256:' " +
+                "followed by the hex encoded SHA-256 digest of the payload. It is used to store a compact " +
+                "reference in place of the payload columns of a component event, while the payload itself is " +
+                "stored once per distinct content through esbAnalytics:distinctPayloads. Null payloads are " +
+                "returned as null.",
+        parameters = {
+                @Parameter(name = "payload",
+                        description = "Payload or property map to be referenced",
+                        type = {DataType.STRING},
+                        dynamic = true)
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Reference of the payload",
+                type = {DataType.STRING}),
+        examples = {
+                @Example(
+                        syntax = "from DecompressedEventStream select messageFlowId, componentIndex, " +
+                                "esbAnalytics:payloadRef(beforePayload) as beforePayload insert into " +
+                                "ReferencedEventStream;",
+                        description = "This query replaces the before payload of each component event by its " +
+                                "reference."
+                )
+        }
+)
+public class PayloadRefFunctionExtension extends FunctionExecutor<State> {
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+
+        if (attributeExpressionExecutors.length != 1) {
+            throw new SiddhiAppCreationException("esbAnalytics:payloadRef in " +
+                    siddhiQueryContext.getSiddhiAppContext().getName() + " expects exactly one parameter, but " +
+                    "found " + attributeExpressionExecutors.length);
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppCreationException("The parameter of esbAnalytics:payloadRef in " +
+                    siddhiQueryContext.getSiddhiAppContext().getName() + " should be of type STRING, but found " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        // Only called with more than one parameter, which init rejects
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        return PayloadReferences.reference((String) data);
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.STRING;
+    }
+}
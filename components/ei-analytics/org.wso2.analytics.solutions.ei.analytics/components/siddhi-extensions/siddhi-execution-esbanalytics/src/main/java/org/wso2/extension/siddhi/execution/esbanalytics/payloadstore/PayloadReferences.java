@@ -0,0 +1,74 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.payloadstore;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content addressed references of payloads. A reference is the SHA-256 digest of the UTF-8 bytes of the payload,
+ * so identical payloads always get the same reference and are stored once.
+ */
+public final class PayloadReferences {
+
+    public static final String REFERENCE_PREFIX = "sha256:";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException("SHA-256 is not supported by the Java platform", e);
+        }
+    });
+
+    private PayloadReferences() {
+    }
+
+    /**
+     * @param payload Payload, may be null
+     * @return Reference of the payload, or null if the payload is null
+     */
+    public static String reference(String payload) {
+
+        if (payload == null) {
+            return null;
+        }
+        byte[] digest = DIGEST.get().digest(payload.getBytes(StandardCharsets.UTF_8));
+        char[] reference = new char[REFERENCE_PREFIX.length() + digest.length * 2];
+        REFERENCE_PREFIX.getChars(0, REFERENCE_PREFIX.length(), reference, 0);
+        int position = REFERENCE_PREFIX.length();
+        for (byte value : digest) {
+            reference[position++] = HEX_DIGITS[(value >> 4) & 0xF];
+            reference[position++] = HEX_DIGITS[value & 0xF];
+        }
+        return new String(reference);
+    }
+
+    /**
+     * @param value Value of a payload column
+     * @return Whether the value is a payload reference, rather than a payload stored inline
+     */
+    public static boolean isReference(String value) {
+        return value != null && value.length() == REFERENCE_PREFIX.length() + 64
+                && value.startsWith(REFERENCE_PREFIX);
+    }
+}
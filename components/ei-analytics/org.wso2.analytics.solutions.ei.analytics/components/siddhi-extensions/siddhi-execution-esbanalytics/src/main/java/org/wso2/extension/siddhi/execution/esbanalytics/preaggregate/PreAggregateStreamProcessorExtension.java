@@ -0,0 +1,429 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.preaggregate;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.SystemParameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.SchedulingProcessor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.Scheduler;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.core.util.timestamp.TimestampGenerator;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import org.wso2.extension.siddhi.execution.esbanalytics.latencysketch.LatencySketch;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.ConfigUtils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-aggregate decompressed EI component events per group and second, so that an incremental aggregation
+ * ingests one partial row per group and second, instead of every component event
+ */
+@Extension(
+        name = "preAggregate",
+        namespace = "esbAnalytics",
+        description = "This extension pre-aggregates the durations and faults of decompressed component events " +
+                "by the given group by attributes and the second of their start time. Partial rows holding the " +
+                "total, minimum and maximum duration, the number of invocations and the number of faulty " +
+                "invocations of each group, along with a latency sketch of its durations, are emitted every " +
+                "flush interval, carrying the attributes of the first event of the group. Incremental " +
+                "aggregations fed by these rows must sum the totals and counts, take the minimum and maximum of " +
+                "the bounds, and derive the average duration as the total duration divided by the number of " +
+                "invocations. Duration percentiles are aggregated by the latencySketch incremental aggregator " +
+                "over the sketches.",
+        parameters = {
+                @Parameter(name = "start.time",
+                        description = "Start time of the component, in milliseconds. Events are aggregated per " +
+                                "second of this time",
+                        type = {DataType.LONG},
+                        dynamic = true),
+                @Parameter(name = "duration",
+                        description = "Duration of the component",
+                        type = {DataType.LONG, DataType.INT},
+                        dynamic = true),
+                @Parameter(name = "fault.count",
+                        description = "Fault count of the component. Events with a positive fault count are " +
+                                "counted as faulty invocations",
+                        type = {DataType.INT, DataType.LONG},
+                        dynamic = true),
+                @Parameter(name = "group.by.attribute",
+                        description = "Attributes the events are grouped by. Any number of attributes can be given",
+                        type = {DataType.STRING, DataType.INT, DataType.LONG, DataType.BOOL},
+                        dynamic = true)
+        },
+        returnAttributes = {
+                @ReturnAttribute(name = "totalDuration",
+                        description = "Sum of the durations of the group",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "minDuration",
+                        description = "Minimum duration of the group",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "maxDuration",
+                        description = "Maximum duration of the group",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "noOfInvocation",
+                        description = "Number of events in the group",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "noOfFaults",
+                        description = "Number of events in the group with a positive fault count",
+                        type = {DataType.LONG}),
+                @ReturnAttribute(name = "durationSketch",
+                        description = "Latency sketch of the durations of the group",
+                        type = {DataType.OBJECT})
+        },
+        systemParameter = {
+                @SystemParameter(name = "flush.interval.millis",
+                        description = "Time in milliseconds the partial rows are held for before they are " +
+                                "emitted. Longer intervals merge more events in to a row, while delaying the " +
+                                "statistics by up to the interval",
+                        defaultValue = "1000",
+                        possibleParameters = "Any positive integer"),
+                @SystemParameter(name = "max.groups",
+                        description = "Maximum number of partial rows held at once. When reached, all held " +
+                                "rows are emitted before the flush interval elapses, which bounds the memory used",
+                        defaultValue = "10000",
+                        possibleParameters = "Any positive integer")
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream DecompressedEventStream (metaTenantId int, componentId string, " +
+                                "entryPoint string, hashCode string, duration long, faultCount int, " +
+                                "startTime long); " + "@info( name = 'query') from DecompressedEventStream" +
+                                "#esbAnalytics:preAggregate(startTime, duration, faultCount, metaTenantId, " +
+                                "componentId, entryPoint, hashCode) select metaTenantId, componentId, entryPoint, " +
+                                "hashCode, totalDuration, minDuration, maxDuration, noOfInvocation, noOfFaults, " +
+                                "startTime insert into PreAggregatedStatStream;",
+                        description = "This query emits one row per tenant, component, entry point, hash code " +
+                                "and second, holding the statistics of the component events of that second."
+                )
+        }
+)
+public class PreAggregateStreamProcessorExtension
+        extends StreamProcessor<PreAggregateStreamProcessorExtension.PreAggregateState>
+        implements SchedulingProcessor {
+
+    // System parameters of the extension
+    private static final String FLUSH_INTERVAL_CONFIG = "flush.interval.millis";
+    private static final String MAX_GROUPS_CONFIG = "max.groups";
+
+    private static final long MILLIS_PER_SECOND = 1000;
+
+    private String siddhiAppName;
+    private ExpressionExecutor startTimeExecutor;
+    private ExpressionExecutor durationExecutor;
+    private ExpressionExecutor faultCountExecutor;
+    private ExpressionExecutor[] groupByExecutors;
+    private List<Attribute> attributeList = new ArrayList<>();
+    private long flushInterval;
+    private int maxGroups;
+    private TimestampGenerator timestampGenerator;
+    private Scheduler scheduler;
+
+    /**
+     * Add the incoming events to their partial rows, and hand over the partial rows to the next processor
+     * when the flush interval elapses or too many rows are held
+     *
+     * @param streamEventChunk      Incoming component events chunk, or a timer event
+     * @param nextProcessor         Next event processor to hand over the partial rows
+     * @param streamEventCloner     Event cloner to copy the first event of a group
+     * @param complexEventPopulater Event populator to add the aggregated values to the partial rows
+     * @param state                 Partial rows held by the query
+     */
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           PreAggregateState state) {
+
+        ComplexEventChunk<StreamEvent> partialRowChunk = new ComplexEventChunk<>(false);
+        synchronized (state) {
+            long currentTime = this.timestampGenerator.currentTime();
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                streamEventChunk.remove();
+                if (streamEvent.getType() == ComplexEvent.Type.TIMER) {
+                    if (state.flushTime != -1 && streamEvent.getTimestamp() >= state.flushTime) {
+                        flush(state, partialRowChunk, complexEventPopulater);
+                    }
+                } else if (streamEvent.getType() == ComplexEvent.Type.CURRENT) {
+                    add(state, streamEvent, streamEventCloner);
+                    if (state.groups.size() >= this.maxGroups) {
+                        flush(state, partialRowChunk, complexEventPopulater);
+                    }
+                }
+            }
+            if (state.flushTime == -1 && !state.groups.isEmpty()) {
+                state.flushTime = currentTime + this.flushInterval;
+                this.scheduler.notifyAt(state.flushTime);
+            }
+        }
+        if (partialRowChunk.getFirst() != null) {
+            nextProcessor.process(partialRowChunk);
+        }
+    }
+
+    /**
+     * Add a component event to the partial row of its group and second
+     *
+     * @param state             Partial rows held by the query
+     * @param streamEvent       Component event
+     * @param streamEventCloner Event cloner to copy the first event of a group
+     */
+    private void add(PreAggregateState state, StreamEvent streamEvent, StreamEventCloner streamEventCloner) {
+
+        long startTime = toLong(this.startTimeExecutor.execute(streamEvent));
+        long duration = toLong(this.durationExecutor.execute(streamEvent));
+        boolean faulty = toLong(this.faultCountExecutor.execute(streamEvent)) > 0;
+        Object[] groupKey = new Object[this.groupByExecutors.length + 1];
+        for (int i = 0; i < this.groupByExecutors.length; i++) {
+            groupKey[i] = this.groupByExecutors[i].execute(streamEvent);
+        }
+        groupKey[this.groupByExecutors.length] = Math.floorDiv(startTime, MILLIS_PER_SECOND);
+
+        List<Object> key = Arrays.asList(groupKey);
+        PartialRow partialRow = state.groups.get(key);
+        if (partialRow == null) {
+            partialRow = new PartialRow(streamEventCloner.copyStreamEvent(streamEvent));
+            state.groups.put(key, partialRow);
+        }
+        partialRow.add(duration, faulty);
+    }
+
+    /**
+     * Move all partial rows to the output chunk
+     *
+     * @param state                 Partial rows held by the query
+     * @param partialRowChunk       Chunk to be handed over to the next processor
+     * @param complexEventPopulater Event populator to add the aggregated values to the partial rows
+     */
+    private void flush(PreAggregateState state, ComplexEventChunk<StreamEvent> partialRowChunk,
+                       ComplexEventPopulater complexEventPopulater) {
+
+        for (PartialRow partialRow : state.groups.values()) {
+            StreamEvent partialRowEvent = partialRow.firstEvent;
+            complexEventPopulater.populateComplexEvent(partialRowEvent, new Object[]{partialRow.totalDuration,
+                    partialRow.minDuration, partialRow.maxDuration, partialRow.invocations, partialRow.faults,
+                    partialRow.durationSketch});
+            partialRowChunk.add(partialRowEvent);
+        }
+        state.groups.clear();
+        state.flushTime = -1;
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    /**
+     * The init method of the StreamProcessor, this method will be called before other methods
+     *
+     * @param metaStreamEvent              the  stream event meta
+     * @param inputDefinition              the incoming stream definition
+     * @param attributeExpressionExecutors the executors of each function parameters
+     * @param configReader                 this hold the {@link StreamProcessor} extensions configuration reader.
+     * @param streamEventClonerHolder      stream event cloner holder
+     * @param outputExpectsExpiredEvents   whether the output expects expired events
+     * @param findToBeExecuted             whether find will be executed on this processor
+     * @param siddhiQueryContext           The context of the Siddhi query
+     * @return Factory of the partial rows held per query
+     */
+    @Override
+    protected StateFactory<PreAggregateState> init(MetaStreamEvent metaStreamEvent,
+                                                   AbstractDefinition inputDefinition,
+                                                   ExpressionExecutor[] attributeExpressionExecutors,
+                                                   ConfigReader configReader,
+                                                   StreamEventClonerHolder streamEventClonerHolder,
+                                                   boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                   SiddhiQueryContext siddhiQueryContext) {
+
+        this.siddhiAppName = siddhiQueryContext.getSiddhiAppContext().getName();
+        if (attributeExpressionExecutors.length < 4) {
+            throw new SiddhiAppCreationException("esbAnalytics:preAggregate in " + this.siddhiAppName + " expects " +
+                    "the start time, duration and fault count attributes, followed by at least one group by " +
+                    "attribute, but found " + attributeExpressionExecutors.length + " parameters");
+        }
+        this.startTimeExecutor = getNumericAttribute(attributeExpressionExecutors[0], "start.time");
+        this.durationExecutor = getNumericAttribute(attributeExpressionExecutors[1], "duration");
+        this.faultCountExecutor = getNumericAttribute(attributeExpressionExecutors[2], "fault.count");
+        this.groupByExecutors = Arrays.copyOfRange(attributeExpressionExecutors, 3,
+                attributeExpressionExecutors.length);
+        for (ExpressionExecutor groupByExecutor : this.groupByExecutors) {
+            if (!(groupByExecutor instanceof VariableExpressionExecutor)) {
+                throw new SiddhiAppCreationException("Group by parameters of esbAnalytics:preAggregate in " +
+                        this.siddhiAppName + " should be attributes");
+            }
+        }
+        this.flushInterval = ConfigUtils.readIntConfig(configReader, FLUSH_INTERVAL_CONFIG, "1000",
+                "esbAnalytics:preAggregate", this.siddhiAppName);
+        this.maxGroups = ConfigUtils.readIntConfig(configReader, MAX_GROUPS_CONFIG, "10000",
+                "esbAnalytics:preAggregate", this.siddhiAppName);
+        this.timestampGenerator = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator();
+
+        List<Attribute> outputAttributes = new ArrayList<>();
+        outputAttributes.add(new Attribute("totalDuration", Attribute.Type.LONG));
+        outputAttributes.add(new Attribute("minDuration", Attribute.Type.LONG));
+        outputAttributes.add(new Attribute("maxDuration", Attribute.Type.LONG));
+        outputAttributes.add(new Attribute("noOfInvocation", Attribute.Type.LONG));
+        outputAttributes.add(new Attribute("noOfFaults", Attribute.Type.LONG));
+        outputAttributes.add(new Attribute("durationSketch", Attribute.Type.OBJECT));
+        this.attributeList = outputAttributes;
+        return PreAggregateState::new;
+    }
+
+    /**
+     * Validate an attribute parameter holding a numeric value
+     *
+     * @param executor Executor of the parameter
+     * @param name     Name of the parameter
+     * @return Executor of the parameter
+     */
+    private ExpressionExecutor getNumericAttribute(ExpressionExecutor executor, String name) {
+
+        if (!(executor instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The " + name + " parameter of esbAnalytics:preAggregate in " +
+                    this.siddhiAppName + " should be an attribute");
+        }
+        if (executor.getReturnType() != Attribute.Type.LONG && executor.getReturnType() != Attribute.Type.INT) {
+            throw new SiddhiAppCreationException("The " + name + " parameter of esbAnalytics:preAggregate in " +
+                    this.siddhiAppName + " should be a long or an int, but found " + executor.getReturnType());
+        }
+        return executor;
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void stop() {
+        // Partial rows are kept in the state, so that they are persisted along with the Siddhi app
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return this.attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    @Override
+    public Scheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    @Override
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Aggregated values of the component events of a group within a second
+     */
+    private static class PartialRow implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final StreamEvent firstEvent;
+        private final LatencySketch durationSketch = new LatencySketch();
+        private long totalDuration;
+        private long minDuration = Long.MAX_VALUE;
+        private long maxDuration = Long.MIN_VALUE;
+        private long invocations;
+        private long faults;
+
+        private PartialRow(StreamEvent firstEvent) {
+            this.firstEvent = firstEvent;
+        }
+
+        private void add(long duration, boolean faulty) {
+
+            totalDuration += duration;
+            minDuration = Math.min(minDuration, duration);
+            maxDuration = Math.max(maxDuration, duration);
+            invocations++;
+            durationSketch.add(duration);
+            if (faulty) {
+                faults++;
+            }
+        }
+    }
+
+    /**
+     * Partial rows held by the query, in the order their groups were first seen
+     */
+    static class PreAggregateState extends State {
+
+        private static final String GROUPS = "groups";
+
+        private final Map<List<Object>, PartialRow> groups = new LinkedHashMap<>();
+        private long flushTime = -1;
+
+        @Override
+        public boolean canDestroy() {
+            return groups.isEmpty();
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put(GROUPS, new LinkedHashMap<>(groups));
+            return snapshot;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void restore(Map<String, Object> state) {
+
+            groups.clear();
+            groups.putAll((Map<List<Object>, PartialRow>) state.get(GROUPS));
+            // The restored rows are flushed along with the rows of the next incoming events
+            flushTime = -1;
+        }
+    }
+}
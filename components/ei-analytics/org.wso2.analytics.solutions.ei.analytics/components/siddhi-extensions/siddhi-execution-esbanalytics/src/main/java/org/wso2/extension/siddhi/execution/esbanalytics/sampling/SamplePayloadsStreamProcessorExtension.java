@@ -0,0 +1,328 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.sampling;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.SystemParameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.core.util.timestamp.TimestampGenerator;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.ConfigUtils;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.RecentKeyFilter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sample the component events whose payloads are captured, with a sampling rate and a rate limit per tenant and
+ * component, while always keeping faulted message flows
+ */
+@Extension(
+        name = "samplePayloads",
+        namespace = "esbAnalytics",
+        description = "This extension passes on a sample of the incoming component events, so that the payloads " +
+                "and property maps of a bounded number of component events are stored. The sampling policy of a " +
+                "component event is looked up by its tenant id and component name. A policy keeps the given " +
+                "fraction of the message flows, chosen by a hash of the message flow id so that the same message " +
+                "flows are kept across components, and may also limit the number of component events kept per " +
+                "second for each tenant and component. Component events of a message flow which has a faulted " +
+                "component are always kept, from the chunk the fault arrives in until the faulted flows window " +
+                "elapses. Component events of the flow dropped in earlier chunks are not recovered. Events which " +
+                "do not pass through this extension, such as those used for statistics, are not affected.",
+        parameters = {
+                @Parameter(name = "meta.tenant.id",
+                        description = "Tenant id of the component event",
+                        type = {DataType.INT},
+                        dynamic = true),
+                @Parameter(name = "component.name",
+                        description = "Component name of the component event",
+                        type = {DataType.STRING},
+                        dynamic = true),
+                @Parameter(name = "message.flow.id",
+                        description = "Message flow id of the component event",
+                        type = {DataType.STRING},
+                        dynamic = true),
+                @Parameter(name = "fault.count",
+                        description = "Fault count of the component event",
+                        type = {DataType.INT},
+                        dynamic = true)
+        },
+        systemParameter = {
+                @SystemParameter(name = "sampling.policies",
+                        description = "Sampling policies separated by semicolons, each of the form " +
+                                "<tenant id>/<component name>=<rate>[:<max rows per second>]. The tenant id or " +
+                                "the component name can be *, which matches any. The rate is the fraction of " +
+                                "message flows kept, between 0 and 1, and a max rows per second of 0 does not " +
+                                "limit the component events kept. Component events matched by no policy are kept",
+                        defaultValue = "*/*=1.0",
+                        possibleParameters = "-1234/OrderProxy=0.1:50;*/*=1.0:500"),
+                @SystemParameter(name = "keep.faulted.flows",
+                        description = "Whether the component events of faulted message flows are always kept",
+                        defaultValue = "true",
+                        possibleParameters = {"true", "false"}),
+                @SystemParameter(name = "faulted.flows.window.millis",
+                        description = "Minimum time in milliseconds a faulted message flow is remembered for, so " +
+                                "that its component events arriving in later chunks are kept as well",
+                        defaultValue = "60000",
+                        possibleParameters = "Any positive integer"),
+                @SystemParameter(name = "faulted.flows.capacity",
+                        description = "Maximum number of faulted message flows remembered per window. When more " +
+                                "flows fault within a window, older flows are forgotten early, which bounds the " +
+                                "memory used",
+                        defaultValue = "10000",
+                        possibleParameters = "Any positive integer")
+        },
+        examples = {
+                @Example(
+                        syntax = "from DecompressedEventStream#esbAnalytics:samplePayloads(metaTenantId, " +
+                                "componentName, messageFlowId, faultCount) select * insert into " +
+                                "SampledEventStream;",
+                        description = "This query passes on the component events selected by the configured " +
+                                "sampling policies to SampledEventStream."
+                )
+        }
+)
+public class SamplePayloadsStreamProcessorExtension extends StreamProcessor<State> {
+
+    // System parameters of the extension
+    private static final String SAMPLING_POLICIES_CONFIG = "sampling.policies";
+    private static final String KEEP_FAULTED_FLOWS_CONFIG = "keep.faulted.flows";
+    private static final String FAULTED_FLOWS_WINDOW_CONFIG = "faulted.flows.window.millis";
+    private static final String FAULTED_FLOWS_CAPACITY_CONFIG = "faulted.flows.capacity";
+
+    private String siddhiAppName;
+    private ExpressionExecutor metaTenantIdExecutor;
+    private ExpressionExecutor componentNameExecutor;
+    private ExpressionExecutor messageFlowIdExecutor;
+    private ExpressionExecutor faultCountExecutor;
+    private SamplingPolicies samplingPolicies;
+    // Faulted message flows seen within the window, per tenant, or null if faulted flows are not kept
+    private RecentKeyFilter faultedFlows;
+    // Token buckets of the rate limited policies, per tenant and component
+    private final Map<String, TokenBucket> tokenBuckets = new HashMap<>();
+    private TimestampGenerator timestampGenerator;
+
+    /**
+     * Pass on the sampled component events to the next processor
+     *
+     * @param streamEventChunk      Incoming component events chunk
+     * @param nextProcessor         Next event processor to hand over the sampled component events
+     * @param streamEventCloner     Unused, the sampled component events are forwarded
+     * @param complexEventPopulater Unused, no attributes are added to the component events
+     * @param state                 Unused, the token buckets are not persisted
+     */
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           State state) {
+
+        long currentTime = this.timestampGenerator.currentTime();
+        if (this.faultedFlows != null) {
+            recordFaultedFlows(streamEventChunk, currentTime);
+        }
+        synchronized (this.tokenBuckets) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType() != ComplexEvent.Type.CURRENT || !isSampled(streamEvent, currentTime)) {
+                    streamEventChunk.remove();
+                }
+            }
+        }
+        if (streamEventChunk.getFirst() != null) {
+            nextProcessor.process(streamEventChunk);
+        }
+    }
+
+    /**
+     * Remember the message flows which have a faulted component among the incoming component events, so that all
+     * their component events in this and later chunks are kept
+     *
+     * @param streamEventChunk Incoming component events chunk, which is reset after it is read
+     * @param currentTime      Current time
+     */
+    private void recordFaultedFlows(ComplexEventChunk<StreamEvent> streamEventChunk, long currentTime) {
+
+        while (streamEventChunk.hasNext()) {
+            StreamEvent streamEvent = streamEventChunk.next();
+            Integer faultCount = (Integer) this.faultCountExecutor.execute(streamEvent);
+            String messageFlowId = (String) this.messageFlowIdExecutor.execute(streamEvent);
+            if (faultCount != null && faultCount > 0 && messageFlowId != null) {
+                this.faultedFlows.accept((Integer) this.metaTenantIdExecutor.execute(streamEvent), messageFlowId,
+                        currentTime);
+            }
+        }
+        streamEventChunk.reset();
+    }
+
+    /**
+     * Decide whether a component event is kept
+     *
+     * @param streamEvent Component event
+     * @param currentTime Current time
+     * @return Whether the component event is kept
+     */
+    private boolean isSampled(StreamEvent streamEvent, long currentTime) {
+
+        String messageFlowId = (String) this.messageFlowIdExecutor.execute(streamEvent);
+        int metaTenantId = (Integer) this.metaTenantIdExecutor.execute(streamEvent);
+        if (this.faultedFlows != null && messageFlowId != null
+                && this.faultedFlows.contains(metaTenantId, messageFlowId, currentTime)) {
+            return true;
+        }
+        String componentName = (String) this.componentNameExecutor.execute(streamEvent);
+        SamplingPolicies.Policy policy = this.samplingPolicies.lookup(metaTenantId, componentName);
+        if (policy.getRate() < 1 && sample(messageFlowId) >= policy.getRate()) {
+            return false;
+        }
+        if (policy.getMaxRowsPerSecond() > 0) {
+            TokenBucket tokenBucket = this.tokenBuckets.computeIfAbsent(metaTenantId + "/" + componentName,
+                    key -> new TokenBucket(policy.getMaxRowsPerSecond(), currentTime));
+            return tokenBucket.tryAcquire(currentTime);
+        }
+        return true;
+    }
+
+    /**
+     * Map a message flow id to a uniformly distributed value, so that a message flow is either kept or dropped
+     * by all policies of the same rate
+     *
+     * @param messageFlowId Message flow id, may be null
+     * @return Value in [0, 1)
+     */
+    private static double sample(String messageFlowId) {
+
+        if (messageFlowId == null) {
+            return ThreadLocalRandom.current().nextDouble();
+        }
+        // Finalization step of MurmurHash3, to spread the bits of the string hash code
+        int hash = messageFlowId.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return (hash & 0x7fffffff) / (double) (1L << 31);
+    }
+
+    /**
+     * The init method of the StreamProcessor, this method will be called before other methods
+     *
+     * @param metaStreamEvent              the  stream event meta
+     * @param inputDefinition              the incoming stream definition
+     * @param attributeExpressionExecutors the executors of each function parameters
+     * @param configReader                 this hold the {@link StreamProcessor} extensions configuration reader.
+     * @param streamEventClonerHolder      stream event cloner holder
+     * @param outputExpectsExpiredEvents   whether the output expects expired events
+     * @param findToBeExecuted             whether find will be executed on this processor
+     * @param siddhiQueryContext           The context of the Siddhi query
+     * @return null, as the token buckets are not persisted
+     */
+    @Override
+    protected StateFactory<State> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                       ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       StreamEventClonerHolder streamEventClonerHolder,
+                                       boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                       SiddhiQueryContext siddhiQueryContext) {
+
+        this.siddhiAppName = siddhiQueryContext.getSiddhiAppContext().getName();
+        if (attributeExpressionExecutors.length != 4) {
+            throw new SiddhiAppCreationException("esbAnalytics:samplePayloads in " + this.siddhiAppName +
+                    " expects the meta tenant id, component name, message flow id and fault count, but found " +
+                    attributeExpressionExecutors.length + " parameters");
+        }
+        Attribute.Type[] expectedTypes = {Attribute.Type.INT, Attribute.Type.STRING, Attribute.Type.STRING,
+                Attribute.Type.INT};
+        for (int i = 0; i < expectedTypes.length; i++) {
+            if (attributeExpressionExecutors[i].getReturnType() != expectedTypes[i]) {
+                throw new SiddhiAppCreationException("Parameter " + (i + 1) + " of esbAnalytics:samplePayloads " +
+                        "in " + this.siddhiAppName + " should be of type " + expectedTypes[i] + ", but found " +
+                        attributeExpressionExecutors[i].getReturnType());
+            }
+        }
+        this.metaTenantIdExecutor = attributeExpressionExecutors[0];
+        this.componentNameExecutor = attributeExpressionExecutors[1];
+        this.messageFlowIdExecutor = attributeExpressionExecutors[2];
+        this.faultCountExecutor = attributeExpressionExecutors[3];
+        try {
+            this.samplingPolicies = SamplingPolicies.parse(
+                    configReader.readConfig(SAMPLING_POLICIES_CONFIG, "*/*=1.0"));
+        } catch (IllegalArgumentException e) {
+            throw new SiddhiAppCreationException("System parameter '" +
+                    SAMPLING_POLICIES_CONFIG + "' of esbAnalytics:samplePayloads in " +
+                    this.siddhiAppName + " is invalid. " + e.getMessage(), e);
+        }
+        if (Boolean.parseBoolean(configReader.readConfig(KEEP_FAULTED_FLOWS_CONFIG, "true").trim())) {
+            this.faultedFlows = new RecentKeyFilter(
+                    ConfigUtils.readIntConfig(configReader, FAULTED_FLOWS_WINDOW_CONFIG, "60000",
+                            "esbAnalytics:samplePayloads", this.siddhiAppName),
+                    ConfigUtils.readIntConfig(configReader, FAULTED_FLOWS_CAPACITY_CONFIG, "10000",
+                            "esbAnalytics:samplePayloads", this.siddhiAppName));
+        }
+        this.timestampGenerator = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator();
+        return null;
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void stop() {
+
+        synchronized (this.tokenBuckets) {
+            this.tokenBuckets.clear();
+        }
+        if (this.faultedFlows != null) {
+            this.faultedFlows.clear();
+        }
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.sampling;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Payload sampling policies per tenant and component, parsed from entries of the form
+ * &lt;tenant id&gt;/&lt;component name&gt;=&lt;rate&gt;[:&lt;max rows per second&gt;] separated by semicolons.
+ * Either the tenant id or the component name can be *, which matches any. A policy for the tenant and component
+ * takes precedence over one for any tenant and the component, which takes precedence over one for the tenant and
+ * any component. Events matched by no policy are kept.
+ */
+final class SamplingPolicies {
+
+    static final String ANY = "*";
+
+    private static final Policy KEEP_ALL = new Policy(1.0, 0);
+
+    private final Map<String, Policy> policies;
+
+    private SamplingPolicies(Map<String, Policy> policies) {
+        this.policies = policies;
+    }
+
+    /**
+     * Parse the sampling policies
+     *
+     * @param value Policy entries separated by semicolons
+     * @return Parsed sampling policies
+     * @throws IllegalArgumentException If an entry is malformed
+     */
+    static SamplingPolicies parse(String value) {
+
+        Map<String, Policy> policies = new HashMap<>();
+        for (String entry : value.split(";")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int separator = entry.lastIndexOf('=');
+            int keySeparator = entry.indexOf('/');
+            if (separator < 0 || keySeparator < 0 || keySeparator > separator) {
+                throw new IllegalArgumentException("Sampling policy '" + entry + "' should be of the form " +
+                        "<tenant id>/<component name>=<rate>[:<max rows per second>]");
+            }
+            String tenant = entry.substring(0, keySeparator).trim();
+            String component = entry.substring(keySeparator + 1, separator).trim();
+            if (!ANY.equals(tenant)) {
+                try {
+                    tenant = String.valueOf(Integer.parseInt(tenant));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Tenant id of sampling policy '" + entry + "' should be an " +
+                            "integer or *", e);
+                }
+            }
+            policies.put(key(tenant, component), Policy.parse(entry, entry.substring(separator + 1).trim()));
+        }
+        return new SamplingPolicies(policies);
+    }
+
+    /**
+     * Find the policy of a component event
+     *
+     * @param metaTenantId  Tenant id of the component event
+     * @param componentName Component name of the component event
+     * @return Policy which applies to the component event
+     */
+    Policy lookup(int metaTenantId, String componentName) {
+
+        String tenant = String.valueOf(metaTenantId);
+        Policy policy = policies.get(key(tenant, componentName));
+        if (policy == null) {
+            policy = policies.get(key(ANY, componentName));
+        }
+        if (policy == null) {
+            policy = policies.get(key(tenant, ANY));
+        }
+        if (policy == null) {
+            policy = policies.get(key(ANY, ANY));
+        }
+        return policy == null ? KEEP_ALL : policy;
+    }
+
+    private static String key(String tenant, String componentName) {
+        return tenant + '/' + componentName;
+    }
+
+    /**
+     * Sampling rate and rate limit of a policy
+     */
+    static final class Policy {
+
+        private final double rate;
+        private final double maxRowsPerSecond;
+
+        private Policy(double rate, double maxRowsPerSecond) {
+            this.rate = rate;
+            this.maxRowsPerSecond = maxRowsPerSecond;
+        }
+
+        private static Policy parse(String entry, String value) {
+
+            int separator = value.indexOf(':');
+            try {
+                double rate = Double.parseDouble(separator < 0 ? value : value.substring(0, separator).trim());
+                double maxRowsPerSecond = separator < 0 ? 0 : Double.parseDouble(value.substring(separator + 1)
+                        .trim());
+                if (rate >= 0 && rate <= 1 && maxRowsPerSecond >= 0) {
+                    return new Policy(rate, maxRowsPerSecond);
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException("Sampling policy '" + entry + "' should have a rate between 0 and " +
+                    "1, and a non negative max rows per second");
+        }
+
+        /**
+         * @return Fraction of the message flows which are kept
+         */
+        double getRate() {
+            return rate;
+        }
+
+        /**
+         * @return Maximum number of kept component events per second, or 0 if not limited
+         */
+        double getMaxRowsPerSecond() {
+            return maxRowsPerSecond;
+        }
+    }
+}
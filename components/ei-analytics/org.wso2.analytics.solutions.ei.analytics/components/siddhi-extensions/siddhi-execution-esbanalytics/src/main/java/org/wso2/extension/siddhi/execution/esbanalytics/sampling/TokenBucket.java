@@ -0,0 +1,62 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.sampling;
+
+/**
+ * Token bucket which admits up to a given number of events per second, with bursts of up to one second worth of
+ * events. Not thread safe.
+ */
+final class TokenBucket {
+
+    private final double tokensPerMillisecond;
+    private final double capacity;
+    private double tokens;
+    private long lastRefillTime;
+
+    /**
+     * @param eventsPerSecond Number of events admitted per second
+     * @param currentTime     Current time in milliseconds
+     */
+    TokenBucket(double eventsPerSecond, long currentTime) {
+
+        this.tokensPerMillisecond = eventsPerSecond / 1000;
+        this.capacity = Math.max(eventsPerSecond, 1);
+        this.tokens = this.capacity;
+        this.lastRefillTime = currentTime;
+    }
+
+    /**
+     * Take a token if one is available
+     *
+     * @param currentTime Current time in milliseconds
+     * @return Whether the event is admitted
+     */
+    boolean tryAcquire(long currentTime) {
+
+        if (currentTime > lastRefillTime) {
+            tokens = Math.min(capacity, tokens + (currentTime - lastRefillTime) * tokensPerMillisecond);
+            lastRefillTime = currentTime;
+        }
+        if (tokens >= 1) {
+            tokens--;
+            return true;
+        }
+        return false;
+    }
+}
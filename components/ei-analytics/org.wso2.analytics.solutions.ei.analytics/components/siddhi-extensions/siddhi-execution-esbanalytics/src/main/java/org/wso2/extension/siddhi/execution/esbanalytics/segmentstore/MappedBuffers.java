@@ -0,0 +1,96 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.segmentstore;
+
+import org.apache.log4j.Logger;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Releases the mapping of memory mapped buffers explicitly. A mapped file keeps its disk space, even once deleted,
+ * until its mapping is released, which otherwise only happens when the buffer is garbage collected.
+ */
+final class MappedBuffers {
+
+    private static final Logger log = Logger.getLogger(MappedBuffers.class);
+    // Releases the mapping of a buffer, or null if the JVM does not allow it
+    private static final Consumer<ByteBuffer> UNMAPPER = findUnmapper();
+
+    private MappedBuffers() {
+    }
+
+    /**
+     * Release the mapping of a buffer, which must not be accessed afterwards
+     *
+     * @param buffer Buffer returned by the mapping of a file channel
+     * @return false if the mapping is left to be released by the garbage collector
+     */
+    static boolean unmap(MappedByteBuffer buffer) {
+
+        if (UNMAPPER == null) {
+            return false;
+        }
+        UNMAPPER.accept(buffer);
+        return true;
+    }
+
+    private static Consumer<ByteBuffer> findUnmapper() {
+
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invoke(invokeCleaner, unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not available before Java 9
+        }
+        try {
+            // Java 8
+            Method cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> {
+                Object cleaner = invoke(cleanerMethod, buffer);
+                if (cleaner != null) {
+                    invoke(cleanMethod, cleaner);
+                }
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Memory mapped segments cannot be unmapped on this JVM, hence the disk space of dropped " +
+                    "segments is only freed once they are garbage collected: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... arguments) {
+
+        try {
+            return method.invoke(target, arguments);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot unmap a memory mapped segment", e);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.segmentstore;
+
+import io.siddhi.query.api.definition.Attribute;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Binary encoding of the records of a segment store table, along with the positions of the index and timestamp
+ * attributes. Each attribute is written as a presence byte followed by its value, and strings as their UTF-8
+ * byte length followed by the bytes.
+ */
+final class RecordCodec {
+
+    private final Attribute.Type[] types;
+    private final int[] indexPositions;
+    private final int timestampPosition;
+
+    /**
+     * @param attributes        Attributes of the table
+     * @param indexPositions    Positions of the attributes the records are indexed by
+     * @param timestampPosition Position of the attribute the records are partitioned by
+     */
+    RecordCodec(List<Attribute> attributes, int[] indexPositions, int timestampPosition) {
+
+        this.types = new Attribute.Type[attributes.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = attributes.get(i).getType();
+        }
+        this.indexPositions = indexPositions;
+        this.timestampPosition = timestampPosition;
+    }
+
+    Attribute.Type getType(int position) {
+        return types[position];
+    }
+
+    boolean isIndexed() {
+        return indexPositions.length > 0;
+    }
+
+    int[] getIndexPositions() {
+        return indexPositions;
+    }
+
+    int getTimestampPosition() {
+        return timestampPosition;
+    }
+
+    /**
+     * @param record Record of the table
+     * @return Key of the record in the index, or an empty list if the table is not indexed
+     */
+    List<Object> indexKey(Object[] record) {
+
+        if (indexPositions.length == 0) {
+            return Collections.emptyList();
+        }
+        List<Object> key = new ArrayList<>(indexPositions.length);
+        for (int position : indexPositions) {
+            key.add(normalize(record[position], types[position]));
+        }
+        return key;
+    }
+
+    /**
+     * Bring a value compared with an attribute to the representation used in index keys, so that for example an
+     * int constant matches a long attribute
+     *
+     * @param value Value of the attribute, or the value it is compared with
+     * @param type  Type of the attribute
+     * @return Normalized value, or null if the value cannot be a value of the attribute
+     */
+    static Object normalize(Object value, Attribute.Type type) {
+
+        if (value == null) {
+            return null;
+        }
+        switch (type) {
+            case INT:
+            case LONG:
+                if (value instanceof Number) {
+                    return ((Number) value).longValue();
+                }
+                try {
+                    return Long.parseLong(value.toString().trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            case FLOAT:
+            case DOUBLE:
+                if (value instanceof Number) {
+                    return ((Number) value).doubleValue();
+                }
+                try {
+                    return Double.parseDouble(value.toString().trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            default:
+                return value;
+        }
+    }
+
+    byte[] encode(Object[] record) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream output = new DataOutputStream(bytes);
+        for (int i = 0; i < types.length; i++) {
+            Object value = record[i];
+            if (value == null) {
+                output.writeByte(0);
+                continue;
+            }
+            output.writeByte(1);
+            switch (types[i]) {
+                case STRING:
+                    byte[] string = value.toString().getBytes(StandardCharsets.UTF_8);
+                    output.writeInt(string.length);
+                    output.write(string);
+                    break;
+                case INT:
+                    output.writeInt(((Number) value).intValue());
+                    break;
+                case LONG:
+                    output.writeLong(((Number) value).longValue());
+                    break;
+                case FLOAT:
+                    output.writeFloat(((Number) value).floatValue());
+                    break;
+                case DOUBLE:
+                    output.writeDouble(((Number) value).doubleValue());
+                    break;
+                case BOOL:
+                    output.writeBoolean((Boolean) value);
+                    break;
+                default:
+                    throw new IOException("Attributes of type " + types[i] + " cannot be stored in segments");
+            }
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode a record written by {@link #encode(Object[])}
+     *
+     * @param buffer Buffer holding the record
+     * @param offset Position of the record in the buffer
+     * @return Decoded record
+     */
+    Object[] decode(ByteBuffer buffer, int offset) {
+
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        Object[] record = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if (view.get() == 0) {
+                continue;
+            }
+            switch (types[i]) {
+                case STRING:
+                    byte[] string = new byte[view.getInt()];
+                    view.get(string);
+                    record[i] = new String(string, StandardCharsets.UTF_8);
+                    break;
+                case INT:
+                    record[i] = view.getInt();
+                    break;
+                case LONG:
+                    record[i] = view.getLong();
+                    break;
+                case FLOAT:
+                    record[i] = view.getFloat();
+                    break;
+                case DOUBLE:
+                    record[i] = view.getDouble();
+                    break;
+                case BOOL:
+                    record[i] = view.get() != 0;
+                    break;
+                default:
+                    // Rejected when the table is initialized
+                    break;
+            }
+        }
+        return record;
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.segmentstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Append only segment file, memory mapped at a fixed size. A segment holds the records of one time partition,
+ * each written as its length followed by the encoded record. The length is written after the record, so a
+ * zero length marks the end of the records, also for instances reading a segment while it is being written.
+ * Offsets of the records are indexed in memory by the hash of their index key, and rebuilt by scanning the file
+ * when opened. The index keeps no keys, so its size only depends on the number of records, which the size of the
+ * segment bounds. Instances are not thread safe.
+ */
+final class Segment {
+
+    static final String FILE_SUFFIX = ".seg";
+
+    private static final int MAGIC = 0x45534253;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private final File file;
+    private final long partitionStart;
+    private final int sequence;
+    private final RecordCodec codec;
+    private final KeyIndex index = new KeyIndex();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition = HEADER_SIZE;
+    private int recordCount;
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+
+    private Segment(File file, long partitionStart, int sequence, RecordCodec codec) {
+
+        this.file = file;
+        this.partitionStart = partitionStart;
+        this.sequence = sequence;
+        this.codec = codec;
+    }
+
+    /**
+     * Create a new segment file
+     *
+     * @param directory      Directory of the segments of the table
+     * @param partitionStart Start time of the time partition of the segment
+     * @param sequence       Sequence of the segment within its time partition
+     * @param size           Size of the segment file in bytes
+     * @param codec          Codec of the records of the table
+     * @return Created segment
+     * @throws IOException if the file cannot be created or mapped
+     */
+    static Segment create(File directory, long partitionStart, int sequence, int size, RecordCodec codec)
+            throws IOException {
+
+        Segment segment = new Segment(new File(directory, fileName(partitionStart, sequence)), partitionStart,
+                sequence, codec);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(segment.file, "rw")) {
+            randomAccessFile.setLength(size);
+        }
+        segment.map();
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(4, VERSION);
+        return segment;
+    }
+
+    /**
+     * Open an existing segment file and index its records
+     *
+     * @param file           Segment file
+     * @param partitionStart Start time of the time partition of the segment
+     * @param sequence       Sequence of the segment within its time partition
+     * @param codec          Codec of the records of the table
+     * @return Opened segment
+     * @throws IOException if the file cannot be mapped or is not a segment file
+     */
+    static Segment open(File file, long partitionStart, int sequence, RecordCodec codec) throws IOException {
+
+        Segment segment = new Segment(file, partitionStart, sequence, codec);
+        segment.map();
+        if (segment.buffer.capacity() < HEADER_SIZE || segment.buffer.getInt(0) != MAGIC
+                || segment.buffer.getInt(4) != VERSION) {
+            segment.close();
+            throw new IOException("File " + file + " is not a segment file of version " + VERSION);
+        }
+        segment.refresh();
+        return segment;
+    }
+
+    static String fileName(long partitionStart, int sequence) {
+        return partitionStart + "-" + sequence + FILE_SUFFIX;
+    }
+
+    private void map() throws IOException {
+
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+    }
+
+    /**
+     * Append a record to the segment
+     *
+     * @param encoded Encoded record
+     * @param record  The record, used to index it
+     * @return false if the segment does not have enough space left for the record
+     */
+    boolean append(byte[] encoded, Object[] record) {
+
+        if (buffer.capacity() - writePosition < encoded.length + 8) {
+            // Also keep space for the zero length which marks the end of the records
+            return false;
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position(writePosition + 4);
+        view.put(encoded);
+        buffer.putInt(writePosition, encoded.length);
+        index(writePosition + 4, record);
+        writePosition += 4 + encoded.length;
+        return true;
+    }
+
+    /**
+     * Index the records appended to the segment file after the last indexed record, by this or another instance
+     *
+     * @return Number of records indexed
+     */
+    int refresh() {
+
+        int count = 0;
+        while (writePosition + 4 <= buffer.capacity()) {
+            int length = buffer.getInt(writePosition);
+            if (length <= 0 || writePosition + 4 + length > buffer.capacity()) {
+                break;
+            }
+            index(writePosition + 4, codec.decode(buffer, writePosition + 4));
+            writePosition += 4 + length;
+            count++;
+        }
+        return count;
+    }
+
+    private void index(int offset, Object[] record) {
+
+        Object timestamp = record[codec.getTimestampPosition()];
+        if (timestamp != null) {
+            minTimestamp = Math.min(minTimestamp, (Long) timestamp);
+            maxTimestamp = Math.max(maxTimestamp, (Long) timestamp);
+        }
+        if (codec.isIndexed()) {
+            index.add(codec.indexKey(record).hashCode(), offset);
+        }
+        recordCount++;
+    }
+
+    /**
+     * Decode the records matching a filter
+     *
+     * @param key    Index key of the records, or null to check all records of the segment
+     * @param filter Filter the records should match, which also drops the records of other keys of the same hash
+     * @param result List the matching records are added to
+     */
+    void find(List<Object> key, Predicate<Object[]> filter, List<Object[]> result) {
+
+        if (key != null) {
+            for (int offset : index.find(key.hashCode())) {
+                addIfMatching(offset, filter, result);
+            }
+            return;
+        }
+        int position = HEADER_SIZE;
+        while (position < writePosition) {
+            addIfMatching(position + 4, filter, result);
+            position += 4 + buffer.getInt(position);
+        }
+    }
+
+    private void addIfMatching(int offset, Predicate<Object[]> filter, List<Object[]> result) {
+
+        Object[] record = codec.decode(buffer, offset);
+        if (filter.test(record)) {
+            result.add(record);
+        }
+    }
+
+    /**
+     * @param low  Lowest timestamp, inclusive
+     * @param high Highest timestamp, inclusive
+     * @return Whether the segment may hold records with timestamps in the given range
+     */
+    boolean overlaps(long low, long high) {
+        return recordCount == 0 || (minTimestamp <= high && maxTimestamp >= low);
+    }
+
+    long getPartitionStart() {
+        return partitionStart;
+    }
+
+    int getSequence() {
+        return sequence;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Write the appended records to the storage device
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Release the file channel and the mapping of the segment, so that the disk space of the file is freed once it
+     * is deleted. The segment must not be used afterwards.
+     */
+    void close() throws IOException {
+
+        MappedByteBuffer mappedBuffer = buffer;
+        buffer = null;
+        channel.close();
+        if (mappedBuffer != null) {
+            MappedBuffers.unmap(mappedBuffer);
+        }
+    }
+
+    /**
+     * Chained hash table of record offsets by the hash of their index key, taking four ints per record
+     */
+    private static final class KeyIndex {
+
+        private int[] hashes = new int[64];
+        private int[] offsets = new int[64];
+        // Previous record in the same bucket, or -1
+        private int[] chain = new int[64];
+        // Last record of each bucket, or -1
+        private int[] buckets = newBuckets(64);
+        private int size;
+
+        void add(int hash, int offset) {
+
+            if (size == offsets.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+                chain = Arrays.copyOf(chain, size * 2);
+                buckets = newBuckets(size * 2);
+                for (int i = 0; i < size; i++) {
+                    link(i);
+                }
+            }
+            hashes[size] = hash;
+            offsets[size] = offset;
+            link(size++);
+        }
+
+        private void link(int record) {
+
+            int bucket = bucketOf(hashes[record]);
+            chain[record] = buckets[bucket];
+            buckets[bucket] = record;
+        }
+
+        /**
+         * @param hash Hash of the index key
+         * @return Offsets of the records whose index key has the given hash, in the order they were added
+         */
+        int[] find(int hash) {
+
+            int count = 0;
+            for (int record = buckets[bucketOf(hash)]; record >= 0; record = chain[record]) {
+                if (hashes[record] == hash) {
+                    count++;
+                }
+            }
+            // The chain runs from the last record added, so the offsets are filled from the end
+            int[] found = new int[count];
+            for (int record = buckets[bucketOf(hash)]; record >= 0; record = chain[record]) {
+                if (hashes[record] == hash) {
+                    found[--count] = offsets[record];
+                }
+            }
+            return found;
+        }
+
+        private int bucketOf(int hash) {
+            return (hash ^ (hash >>> 16)) & (buckets.length - 1);
+        }
+
+        private static int[] newBuckets(int size) {
+
+            int[] buckets = new int[size];
+            Arrays.fill(buckets, -1);
+            return buckets;
+        }
+    }
+}
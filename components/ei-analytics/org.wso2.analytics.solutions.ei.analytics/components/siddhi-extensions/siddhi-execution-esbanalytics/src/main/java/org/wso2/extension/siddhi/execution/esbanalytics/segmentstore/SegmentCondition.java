@@ -0,0 +1,413 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.segmentstore;
+
+import io.siddhi.core.util.collection.operator.CompiledCondition;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.condition.Compare;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Condition on the records of a segment store table, compiled in to a tree of nodes evaluated against each
+ * record. It also derives the index key and the timestamp range of the matching records, when the condition
+ * constrains them in its top level conjunction, so that only the matching segments and records are decoded.
+ */
+final class SegmentCondition implements CompiledCondition {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Node root;
+    private final RecordCodec codec;
+    private final List<Node> conjuncts = new ArrayList<>();
+
+    SegmentCondition(Node root, RecordCodec codec) {
+
+        this.root = root;
+        this.codec = codec;
+        collectConjuncts(root);
+    }
+
+    private void collectConjuncts(Node node) {
+
+        if (node instanceof And) {
+            collectConjuncts(((And) node).left);
+            collectConjuncts(((And) node).right);
+        } else {
+            conjuncts.add(node);
+        }
+    }
+
+    /**
+     * @param record     Record of the table
+     * @param parameters Values of the stream variables of the condition
+     * @return Whether the record matches the condition
+     */
+    boolean matches(Object[] record, Map<String, Object> parameters) {
+        return Boolean.TRUE.equals(root.evaluate(record, parameters));
+    }
+
+    /**
+     * @param parameters Values of the stream variables of the condition
+     * @return Index key of the matching records, or null if the condition does not constrain all the index
+     * attributes with an equality
+     */
+    List<Object> indexKey(Map<String, Object> parameters) {
+
+        if (!codec.isIndexed()) {
+            return null;
+        }
+        List<Object> key = new ArrayList<>(codec.getIndexPositions().length);
+        for (int position : codec.getIndexPositions()) {
+            Node value = null;
+            for (Node conjunct : conjuncts) {
+                value = comparedValue(conjunct, position, Compare.Operator.EQUAL);
+                if (value != null) {
+                    break;
+                }
+            }
+            if (value == null) {
+                return null;
+            }
+            key.add(RecordCodec.normalize(value.evaluate(null, parameters), codec.getType(position)));
+        }
+        return key;
+    }
+
+    /**
+     * @param parameters Values of the stream variables of the condition
+     * @return Lowest and highest timestamps of the matching records, both inclusive
+     */
+    long[] timestampRange(Map<String, Object> parameters) {
+
+        long[] range = {Long.MIN_VALUE, Long.MAX_VALUE};
+        for (Node conjunct : conjuncts) {
+            if (!(conjunct instanceof CompareNode)) {
+                continue;
+            }
+            CompareNode compare = (CompareNode) conjunct;
+            Compare.Operator operator = compare.operator;
+            Node value = comparedValue(compare, codec.getTimestampPosition(), operator);
+            if (value == null) {
+                continue;
+            }
+            if (!(compare.left instanceof Column)) {
+                operator = mirror(operator);
+            }
+            Object bound = RecordCodec.normalize(value.evaluate(null, parameters), Attribute.Type.LONG);
+            if (bound == null) {
+                continue;
+            }
+            long timestamp = (Long) bound;
+            switch (operator) {
+                case EQUAL:
+                    range[0] = Math.max(range[0], timestamp);
+                    range[1] = Math.min(range[1], timestamp);
+                    break;
+                case GREATER_THAN:
+                    range[0] = Math.max(range[0], timestamp == Long.MAX_VALUE ? timestamp : timestamp + 1);
+                    break;
+                case GREATER_THAN_EQUAL:
+                    range[0] = Math.max(range[0], timestamp);
+                    break;
+                case LESS_THAN:
+                    range[1] = Math.min(range[1], timestamp == Long.MIN_VALUE ? timestamp : timestamp - 1);
+                    break;
+                case LESS_THAN_EQUAL:
+                    range[1] = Math.min(range[1], timestamp);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return range;
+    }
+
+    /**
+     * @param parameters Values of the stream variables of the condition
+     * @return Highest timestamp, inclusive, of the records to be deleted, or null if the condition is not a
+     * bound on the timestamp attribute alone
+     */
+    Long retentionBound(Map<String, Object> parameters) {
+
+        if (!(root instanceof CompareNode)) {
+            return null;
+        }
+        long[] range = timestampRange(parameters);
+        CompareNode compare = (CompareNode) root;
+        boolean upperBound = compare.left instanceof Column
+                ? compare.operator == Compare.Operator.LESS_THAN || compare.operator == Compare.Operator.LESS_THAN_EQUAL
+                : compare.operator == Compare.Operator.GREATER_THAN
+                || compare.operator == Compare.Operator.GREATER_THAN_EQUAL;
+        if (!upperBound || comparedValue(compare, codec.getTimestampPosition(), compare.operator) == null
+                || range[1] == Long.MAX_VALUE) {
+            return null;
+        }
+        return range[1];
+    }
+
+    /**
+     * @return The value compared with the attribute at the given position, if the node is such a comparison
+     * with a constant or stream variable
+     */
+    private static Node comparedValue(Node node, int position, Compare.Operator operator) {
+
+        if (!(node instanceof CompareNode)) {
+            return null;
+        }
+        CompareNode compare = (CompareNode) node;
+        if (compare.operator != operator) {
+            return null;
+        }
+        if (isColumn(compare.left, position) && isValue(compare.right)) {
+            return compare.right;
+        }
+        if (isColumn(compare.right, position) && isValue(compare.left)) {
+            return compare.left;
+        }
+        return null;
+    }
+
+    private static boolean isColumn(Node node, int position) {
+        return node instanceof Column && ((Column) node).position == position;
+    }
+
+    private static boolean isValue(Node node) {
+        return node instanceof Constant || node instanceof Parameter;
+    }
+
+    private static Compare.Operator mirror(Compare.Operator operator) {
+
+        switch (operator) {
+            case GREATER_THAN:
+                return Compare.Operator.LESS_THAN;
+            case GREATER_THAN_EQUAL:
+                return Compare.Operator.LESS_THAN_EQUAL;
+            case LESS_THAN:
+                return Compare.Operator.GREATER_THAN;
+            case LESS_THAN_EQUAL:
+                return Compare.Operator.GREATER_THAN_EQUAL;
+            default:
+                return operator;
+        }
+    }
+
+    /**
+     * Node of a compiled condition
+     */
+    interface Node extends Serializable {
+
+        /**
+         * @param record     Record of the table, or null when evaluating a value which does not depend on it
+         * @param parameters Values of the stream variables of the condition
+         * @return Value of the node
+         */
+        Object evaluate(Object[] record, Map<String, Object> parameters);
+    }
+
+    static final class Constant implements Node {
+
+        private static final long serialVersionUID = 1L;
+        private final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object evaluate(Object[] record, Map<String, Object> parameters) {
+            return value;
+        }
+    }
+
+    static final class Parameter implements Node {
+
+        private static final long serialVersionUID = 1L;
+        private final String id;
+
+        Parameter(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public Object evaluate(Object[] record, Map<String, Object> parameters) {
+            return parameters.get(id);
+        }
+    }
+
+    static final class Column implements Node {
+
+        private static final long serialVersionUID = 1L;
+        private final int position;
+
+        Column(int position) {
+            this.position = position;
+        }
+
+        @Override
+        public Object evaluate(Object[] record, Map<String, Object> parameters) {
+            return record[position];
+        }
+    }
+
+    static final class And implements Node {
+
+        private static final long serialVersionUID = 1L;
+        private final Node left;
+        private final Node right;
+
+        And(Node left, Node right) {
+
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object evaluate(Object[] record, Map<String, Object> parameters) {
+            return Boolean.TRUE.equals(left.evaluate(record, parameters))
+                    && Boolean.TRUE.equals(right.evaluate(record, parameters));
+        }
+    }
+
+    static final class Or implements Node {
+
+        private static final long serialVersionUID = 1L;
+        private final Node left;
+        private final Node right;
+
+        Or(Node left, Node right) {
+
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object evaluate(Object[] record, Map<String, Object> parameters) {
+            return Boolean.TRUE.equals(left.evaluate(record, parameters))
+                    || Boolean.TRUE.equals(right.evaluate(record, parameters));
+        }
+    }
+
+    static final class Not implements Node {
+
+        private static final long serialVersionUID = 1L;
+        private final Node operand;
+
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public Object evaluate(Object[] record, Map<String, Object> parameters) {
+            return !Boolean.TRUE.equals(operand.evaluate(record, parameters));
+        }
+    }
+
+    static final class IsNull implements Node {
+
+        private static final long serialVersionUID = 1L;
+        private final Node operand;
+
+        IsNull(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public Object evaluate(Object[] record, Map<String, Object> parameters) {
+            return operand.evaluate(record, parameters) == null;
+        }
+    }
+
+    static final class CompareNode implements Node {
+
+        private static final long serialVersionUID = 1L;
+        private final Compare.Operator operator;
+        private final Node left;
+        private final Node right;
+
+        CompareNode(Compare.Operator operator, Node left, Node right) {
+
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object evaluate(Object[] record, Map<String, Object> parameters) {
+
+            Integer comparison = compare(left.evaluate(record, parameters), right.evaluate(record, parameters));
+            if (comparison == null) {
+                // Null and incomparable values do not match any comparison, as in an RDBMS store
+                return false;
+            }
+            switch (operator) {
+                case EQUAL:
+                    return comparison == 0;
+                case NOT_EQUAL:
+                    return comparison != 0;
+                case LESS_THAN:
+                    return comparison < 0;
+                case LESS_THAN_EQUAL:
+                    return comparison <= 0;
+                case GREATER_THAN:
+                    return comparison > 0;
+                case GREATER_THAN_EQUAL:
+                    return comparison >= 0;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Compare two values the way an RDBMS store compares them, so that a number can be compared with its
+         * string representation
+         *
+         * @return Result of the comparison, or null if the values are not comparable
+         */
+        private static Integer compare(Object left, Object right) {
+
+            if (left == null || right == null) {
+                return null;
+            }
+            if (left instanceof Number || right instanceof Number) {
+                Object leftNumber = RecordCodec.normalize(left, isIntegral(left) && isIntegral(right)
+                        ? Attribute.Type.LONG : Attribute.Type.DOUBLE);
+                Object rightNumber = RecordCodec.normalize(right, isIntegral(left) && isIntegral(right)
+                        ? Attribute.Type.LONG : Attribute.Type.DOUBLE);
+                if (leftNumber == null || rightNumber == null) {
+                    return null;
+                }
+                return leftNumber instanceof Long ? Long.compare((Long) leftNumber, (Long) rightNumber)
+                        : Double.compare((Double) leftNumber, (Double) rightNumber);
+            }
+            if (left instanceof String && right instanceof String) {
+                return ((String) left).compareTo((String) right);
+            }
+            return left.equals(right) ? Integer.valueOf(0) : null;
+        }
+
+        private static boolean isIntegral(Object value) {
+            return value instanceof Integer || value instanceof Long
+                    || (value instanceof String && ((String) value).trim().matches("-?\\d+"));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.segmentstore;
+
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.table.record.BaseExpressionVisitor;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.definition.TableDefinition;
+import io.siddhi.query.api.expression.condition.Compare;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Build the node tree of a {@link SegmentCondition} while visiting the condition of a query. Operands are pushed
+ * on a stack, and replaced by their parent node when it is visited in full.
+ */
+class SegmentConditionVisitor extends BaseExpressionVisitor {
+
+    private final TableDefinition tableDefinition;
+    private final Deque<SegmentCondition.Node> operands = new ArrayDeque<>();
+
+    SegmentConditionVisitor(TableDefinition tableDefinition) {
+        this.tableDefinition = tableDefinition;
+    }
+
+    /**
+     * @return Root node of the visited condition
+     */
+    SegmentCondition.Node getRoot() {
+
+        if (operands.size() != 1) {
+            throw new SiddhiAppCreationException("Cannot compile the condition on segment store table '" +
+                    tableDefinition.getId() + "'");
+        }
+        return operands.peek();
+    }
+
+    @Override
+    public void endVisitAnd() {
+
+        SegmentCondition.Node right = operands.pop();
+        operands.push(new SegmentCondition.And(operands.pop(), right));
+    }
+
+    @Override
+    public void endVisitOr() {
+
+        SegmentCondition.Node right = operands.pop();
+        operands.push(new SegmentCondition.Or(operands.pop(), right));
+    }
+
+    @Override
+    public void endVisitNot() {
+        operands.push(new SegmentCondition.Not(operands.pop()));
+    }
+
+    @Override
+    public void endVisitCompare(Compare.Operator operator) {
+
+        SegmentCondition.Node right = operands.pop();
+        operands.push(new SegmentCondition.CompareNode(operator, operands.pop(), right));
+    }
+
+    @Override
+    public void beginVisitIsNull(String streamId) {
+
+        if (streamId != null) {
+            throw unsupported("checking whether a stream is null");
+        }
+    }
+
+    @Override
+    public void endVisitIsNull(String streamId) {
+        operands.push(new SegmentCondition.IsNull(operands.pop()));
+    }
+
+    @Override
+    public void beginVisitIn(String storeId) {
+        throw unsupported("'in' conditions");
+    }
+
+    @Override
+    public void beginVisitConstant(Object value, Attribute.Type type) {
+        operands.push(new SegmentCondition.Constant(value));
+    }
+
+    @Override
+    public void beginVisitMath(MathOperator mathOperator) {
+        throw unsupported("math operations");
+    }
+
+    @Override
+    public void beginVisitAttributeFunction(String namespace, String functionName) {
+        throw unsupported("functions");
+    }
+
+    @Override
+    public void beginVisitStreamVariable(String id, String streamId, String attributeName, Attribute.Type type) {
+        operands.push(new SegmentCondition.Parameter(id));
+    }
+
+    @Override
+    public void beginVisitStoreVariable(String storeId, String attributeName, Attribute.Type type) {
+        operands.push(new SegmentCondition.Column(tableDefinition.getAttributePosition(attributeName)));
+    }
+
+    private SiddhiAppCreationException unsupported(String feature) {
+        return new SiddhiAppCreationException("Conditions on segment store table '" + tableDefinition.getId() +
+                "' do not support " + feature);
+    }
+}
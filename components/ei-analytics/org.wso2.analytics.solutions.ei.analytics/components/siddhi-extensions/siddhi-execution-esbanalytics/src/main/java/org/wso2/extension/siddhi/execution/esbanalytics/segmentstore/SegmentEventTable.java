@@ -0,0 +1,523 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.segmentstore;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.table.record.AbstractRecordTable;
+import io.siddhi.core.table.record.ExpressionBuilder;
+import io.siddhi.core.table.record.RecordIterator;
+import io.siddhi.core.util.SiddhiConstants;
+import io.siddhi.core.util.collection.operator.CompiledCondition;
+import io.siddhi.core.util.collection.operator.CompiledExpression;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.query.api.annotation.Annotation;
+import io.siddhi.query.api.annotation.Element;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.definition.TableDefinition;
+import io.siddhi.query.api.util.AnnotationHelper;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Siddhi store which appends the records of a table to time partitioned, memory mapped segment files
+ */
+@Extension(
+        name = "esbSegment",
+        namespace = "store",
+        description = "This extension stores the records of a table in append only segment files, memory mapped " +
+                "at a fixed size. Records are partitioned by the time in their timestamp attribute, and each time " +
+                "partition is written to its own segments, so that retention drops whole segment files instead " +
+                "of deleting rows. Records are indexed in memory by the attributes of the @Index annotation of " +
+                "the table, such as metaTenantId and messageFlowId, and the index is rebuilt from the segment " +
+                "files when the table is connected. Conditions which give all the index attributes with an " +
+                "equality only decode the records of that key, and conditions on the timestamp attribute skip " +
+                "the segments out of range. Other conditions scan the segments.\n" +
+                "The table is append only. Updates are not supported, and deletes are only supported with a " +
+                "condition of the form 'timestamp attribute < value', which drops the segments of the time " +
+                "partitions ending before the value. Records of a partition which is partially expired are kept " +
+                "until the whole partition expires.\n" +
+                "A segment directory should be written by a single Siddhi app. Other apps, such as the data " +
+                "providers of dashboard widgets, may define the same table on the same directory to read it, and " +
+                "pick up the records and segments written after they connected every refresh interval.",
+        parameters = {
+                @Parameter(name = "directory",
+                        description = "Directory the segment files are written to. The segments of each table " +
+                                "are written to a sub directory named after the table",
+                        type = {DataType.STRING}),
+                @Parameter(name = "timestamp.attribute",
+                        description = "LONG attribute holding the time of the record in milliseconds, used to " +
+                                "partition the records. Records without a value are stored with the time they " +
+                                "are added at",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "eventTimestamp"),
+                @Parameter(name = "segment.interval.millis",
+                        description = "Length of the time partitions in milliseconds. Retention drops segments " +
+                                "at this granularity",
+                        type = {DataType.LONG},
+                        optional = true,
+                        defaultValue = "3600000"),
+                @Parameter(name = "segment.size.bytes",
+                        description = "Size of each segment file. A new segment is started in the same time " +
+                                "partition when a segment is full. A record must fit in a single segment",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "67108864"),
+                @Parameter(name = "refresh.interval.millis",
+                        description = "Minimum time in milliseconds between two checks for records and " +
+                                "segments written by another Siddhi app. When set to 0, they are not checked",
+                        type = {DataType.LONG},
+                        optional = true,
+                        defaultValue = "1000")
+        },
+        examples = {
+                @Example(
+                        syntax = "@store(type = 'esbSegment', directory = '/var/lib/ei-analytics/segments')\n" +
+                                "@Index('metaTenantId', 'messageFlowId')\n" +
+                                "define table ESBEventTable (metaTenantId int, messageFlowId string, " +
+                                "componentIndex int, beforePayload string, eventTimestamp long);",
+                        description = "This defines a table whose records are appended to hourly segments in " +
+                                "/var/lib/ei-analytics/segments/ESBEventTable, and looked up by tenant and message " +
+                                "flow id through the in memory index."
+                )
+        }
+)
+public class SegmentEventTable extends AbstractRecordTable {
+
+    private static final Logger log = Logger.getLogger(SegmentEventTable.class);
+    private static final Pattern SEGMENT_FILE_NAME = Pattern.compile("(-?\\d+)-(\\d+)\\" + Segment.FILE_SUFFIX);
+
+    private static final String DIRECTORY = "directory";
+    private static final String TIMESTAMP_ATTRIBUTE = "timestamp.attribute";
+    private static final String SEGMENT_INTERVAL = "segment.interval.millis";
+    private static final String SEGMENT_SIZE = "segment.size.bytes";
+    private static final String REFRESH_INTERVAL = "refresh.interval.millis";
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Segments of each time partition, in the order of their sequence
+    private final TreeMap<Long, List<Segment>> partitions = new TreeMap<>();
+    private File directory;
+    private RecordCodec codec;
+    private long segmentInterval;
+    private int segmentSize;
+    private long refreshInterval;
+    private volatile long lastRefreshTime;
+
+    @Override
+    protected void init(TableDefinition tableDefinition, ConfigReader configReader) {
+
+        Annotation storeAnnotation = AnnotationHelper.getAnnotation(SiddhiConstants.ANNOTATION_STORE,
+                tableDefinition.getAnnotations());
+        String directoryName = storeAnnotation.getElement(DIRECTORY);
+        if (directoryName == null || directoryName.trim().isEmpty()) {
+            throw new SiddhiAppCreationException("The '" + DIRECTORY + "' of segment store table '" +
+                    tableDefinition.getId() + "' is not given");
+        }
+        this.directory = new File(directoryName.trim(), tableDefinition.getId());
+        if (AnnotationHelper.getAnnotation(SiddhiConstants.ANNOTATION_PRIMARY_KEY,
+                tableDefinition.getAnnotations()) != null) {
+            throw new SiddhiAppCreationException("Segment store table '" + tableDefinition.getId() + "' is append " +
+                    "only and cannot have a primary key. Use @Index to look records up instead");
+        }
+        for (Attribute attribute : tableDefinition.getAttributeList()) {
+            if (attribute.getType() == Attribute.Type.OBJECT) {
+                throw new SiddhiAppCreationException("Attribute '" + attribute.getName() + "' of segment store " +
+                        "table '" + tableDefinition.getId() + "' is of type OBJECT, which cannot be stored");
+            }
+        }
+
+        String timestampAttribute = readElement(storeAnnotation, TIMESTAMP_ATTRIBUTE, "eventTimestamp");
+        int timestampPosition = positionOf(tableDefinition, timestampAttribute);
+        if (tableDefinition.getAttributeList().get(timestampPosition).getType() != Attribute.Type.LONG) {
+            throw new SiddhiAppCreationException("The timestamp attribute '" + timestampAttribute + "' of segment " +
+                    "store table '" + tableDefinition.getId() + "' should be of type LONG");
+        }
+        Annotation indexAnnotation = AnnotationHelper.getAnnotation(SiddhiConstants.ANNOTATION_INDEX,
+                tableDefinition.getAnnotations());
+        List<Element> indexElements = indexAnnotation == null ? Collections.emptyList()
+                : indexAnnotation.getElements();
+        int[] indexPositions = new int[indexElements.size()];
+        for (int i = 0; i < indexPositions.length; i++) {
+            indexPositions[i] = positionOf(tableDefinition, indexElements.get(i).getValue().trim());
+        }
+        this.codec = new RecordCodec(tableDefinition.getAttributeList(), indexPositions, timestampPosition);
+
+        this.segmentInterval = readPositiveLong(tableDefinition, storeAnnotation, SEGMENT_INTERVAL, "3600000");
+        long size = readPositiveLong(tableDefinition, storeAnnotation, SEGMENT_SIZE, "67108864");
+        if (size > Integer.MAX_VALUE) {
+            throw new SiddhiAppCreationException("The '" + SEGMENT_SIZE + "' of segment store table '" +
+                    tableDefinition.getId() + "' should not exceed " + Integer.MAX_VALUE);
+        }
+        this.segmentSize = (int) size;
+        String refresh = readElement(storeAnnotation, REFRESH_INTERVAL, "1000");
+        this.refreshInterval = "0".equals(refresh) ? 0
+                : readPositiveLong(tableDefinition, storeAnnotation, REFRESH_INTERVAL, "1000");
+    }
+
+    private static String readElement(Annotation storeAnnotation, String name, String defaultValue) {
+
+        String value = storeAnnotation.getElement(name);
+        return value == null ? defaultValue : value.trim();
+    }
+
+    private static long readPositiveLong(TableDefinition tableDefinition, Annotation storeAnnotation, String name,
+                                         String defaultValue) {
+
+        String value = readElement(storeAnnotation, name, defaultValue);
+        try {
+            long longValue = Long.parseLong(value);
+            if (longValue > 0) {
+                return longValue;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new SiddhiAppCreationException("The '" + name + "' of segment store table '" +
+                tableDefinition.getId() + "' should be a positive integer, but found '" + value + "'");
+    }
+
+    private static int positionOf(TableDefinition tableDefinition, String attributeName) {
+
+        for (int i = 0; i < tableDefinition.getAttributeList().size(); i++) {
+            if (tableDefinition.getAttributeList().get(i).getName().equals(attributeName)) {
+                return i;
+            }
+        }
+        throw new SiddhiAppCreationException("Attribute '" + attributeName + "' is not defined in segment store " +
+                "table '" + tableDefinition.getId() + "'");
+    }
+
+    @Override
+    protected void connect() throws ConnectionUnavailableException {
+
+        lock.writeLock().lock();
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new ConnectionUnavailableException("Cannot create the segment directory " + directory);
+            }
+            closeSegments();
+            openNewSegments();
+            lastRefreshTime = System.currentTimeMillis();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Open the segment files which are not opened yet, and close the segments whose files were dropped by the
+     * Siddhi app writing the directory
+     */
+    private void openNewSegments() throws ConnectionUnavailableException {
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new ConnectionUnavailableException("Cannot list the segment directory " + directory);
+        }
+        Set<String> fileNames = new HashSet<>();
+        for (File file : files) {
+            Matcher matcher = SEGMENT_FILE_NAME.matcher(file.getName());
+            if (!matcher.matches()) {
+                continue;
+            }
+            fileNames.add(file.getName());
+            long partitionStart = Long.parseLong(matcher.group(1));
+            int sequence = Integer.parseInt(matcher.group(2));
+            List<Segment> segments = partitions.computeIfAbsent(partitionStart, key -> new ArrayList<>());
+            if (findSegment(segments, sequence) != null) {
+                continue;
+            }
+            try {
+                segments.add(Segment.open(file, partitionStart, sequence, codec));
+                segments.sort((first, second) -> Integer.compare(first.getSequence(), second.getSequence()));
+            } catch (IOException e) {
+                throw new ConnectionUnavailableException("Cannot open segment " + file, e);
+            }
+        }
+        Iterator<List<Segment>> partitionIterator = partitions.values().iterator();
+        while (partitionIterator.hasNext()) {
+            List<Segment> segments = partitionIterator.next();
+            Iterator<Segment> segmentIterator = segments.iterator();
+            while (segmentIterator.hasNext()) {
+                Segment segment = segmentIterator.next();
+                if (!fileNames.contains(segment.getFile().getName())) {
+                    close(segment);
+                    segmentIterator.remove();
+                }
+            }
+            if (segments.isEmpty()) {
+                partitionIterator.remove();
+            }
+        }
+    }
+
+    private static Segment findSegment(List<Segment> segments, int sequence) {
+
+        for (Segment segment : segments) {
+            if (segment.getSequence() == sequence) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Pick up the records and segments written by another Siddhi app, once per refresh interval
+     */
+    private void refreshIfDue() throws ConnectionUnavailableException {
+
+        long currentTime = System.currentTimeMillis();
+        if (refreshInterval == 0 || currentTime - lastRefreshTime < refreshInterval) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (currentTime - lastRefreshTime < refreshInterval) {
+                return;
+            }
+            lastRefreshTime = currentTime;
+            openNewSegments();
+            for (List<Segment> segments : partitions.values()) {
+                for (Segment segment : segments) {
+                    segment.refresh();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void add(List<Object[]> records) throws ConnectionUnavailableException {
+
+        lock.writeLock().lock();
+        try {
+            for (Object[] record : records) {
+                int timestampPosition = codec.getTimestampPosition();
+                if (record[timestampPosition] == null) {
+                    record[timestampPosition] = System.currentTimeMillis();
+                }
+                long timestamp = (Long) record[timestampPosition];
+                long partitionStart = Math.floorDiv(timestamp, segmentInterval) * segmentInterval;
+                byte[] encoded = codec.encode(record);
+                List<Segment> segments = partitions.computeIfAbsent(partitionStart, key -> new ArrayList<>());
+                if (segments.isEmpty() || !segments.get(segments.size() - 1).append(encoded, record)) {
+                    int sequence = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).getSequence() + 1;
+                    Segment segment = Segment.create(directory, partitionStart, sequence, segmentSize, codec);
+                    segments.add(segment);
+                    if (!segment.append(encoded, record)) {
+                        throw new SiddhiAppRuntimeException("Record of " + encoded.length + " bytes does not fit " +
+                                "in a segment of table '" + tableDefinition.getId() + "', whose size is " +
+                                segmentSize + " bytes");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new ConnectionUnavailableException("Cannot write to the segments of table '" +
+                    tableDefinition.getId() + "' in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected RecordIterator<Object[]> find(Map<String, Object> findConditionParameterMap,
+                                            CompiledCondition compiledCondition)
+            throws ConnectionUnavailableException {
+
+        List<Object[]> records = findRecords(findConditionParameterMap, (SegmentCondition) compiledCondition);
+        Iterator<Object[]> iterator = records.iterator();
+        return new RecordIterator<Object[]>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Object[] next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+                // Records are decoded up front, so nothing is held open
+            }
+        };
+    }
+
+    @Override
+    protected boolean contains(Map<String, Object> containsConditionParameterMap,
+                               CompiledCondition compiledCondition) throws ConnectionUnavailableException {
+        return !findRecords(containsConditionParameterMap, (SegmentCondition) compiledCondition).isEmpty();
+    }
+
+    private List<Object[]> findRecords(Map<String, Object> parameters, SegmentCondition condition)
+            throws ConnectionUnavailableException {
+
+        refreshIfDue();
+        List<Object> key = condition.indexKey(parameters);
+        long[] range = condition.timestampRange(parameters);
+        List<Object[]> records = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            // Partitions starting after the highest timestamp cannot hold matching records
+            for (List<Segment> segments : partitions.headMap(range[1], true).values()) {
+                for (Segment segment : segments) {
+                    if (segment.overlaps(range[0], range[1])) {
+                        segment.find(key, record -> condition.matches(record, parameters), records);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return records;
+    }
+
+    @Override
+    protected void delete(List<Map<String, Object>> deleteConditionParameterMaps,
+                          CompiledCondition compiledCondition) throws ConnectionUnavailableException {
+
+        SegmentCondition condition = (SegmentCondition) compiledCondition;
+        for (Map<String, Object> parameters : deleteConditionParameterMaps) {
+            Long bound = condition.retentionBound(parameters);
+            if (bound == null) {
+                throw new SiddhiAppRuntimeException("Segment store table '" + tableDefinition.getId() + "' only " +
+                        "supports deleting records older than a time, with a condition on its timestamp attribute");
+            }
+            dropSegments(bound);
+        }
+    }
+
+    /**
+     * Drop the segments of the time partitions which end at or before the given time. A partition holding records
+     * on both sides of the time is kept, as it may still receive records after the time.
+     *
+     * @param bound Highest timestamp of the records to be dropped, inclusive
+     */
+    private void dropSegments(long bound) {
+
+        lock.writeLock().lock();
+        try {
+            Iterator<Map.Entry<Long, List<Segment>>> partitionIterator = partitions.entrySet().iterator();
+            while (partitionIterator.hasNext()) {
+                Map.Entry<Long, List<Segment>> partition = partitionIterator.next();
+                if (partition.getKey() + segmentInterval - 1 > bound) {
+                    break;
+                }
+                for (Segment segment : partition.getValue()) {
+                    close(segment);
+                    if (!segment.getFile().delete()) {
+                        log.warn("Cannot delete segment " + segment.getFile() + " of table '" +
+                                tableDefinition.getId() + "'");
+                    }
+                }
+                partitionIterator.remove();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void update(CompiledCondition updateCondition, List<Map<String, Object>> updateConditionParameterMaps,
+                          Map<String, CompiledExpression> updateSetExpressions,
+                          List<Map<String, Object>> updateSetParameterMaps) {
+        throw new SiddhiAppRuntimeException("Segment store table '" + tableDefinition.getId() + "' is append " +
+                "only and does not support updates");
+    }
+
+    @Override
+    protected void updateOrAdd(CompiledCondition updateCondition,
+                               List<Map<String, Object>> updateConditionParameterMaps,
+                               Map<String, CompiledExpression> updateSetExpressions,
+                               List<Map<String, Object>> updateSetParameterMaps, List<Object[]> addingRecords) {
+        throw new SiddhiAppRuntimeException("Segment store table '" + tableDefinition.getId() + "' is append " +
+                "only and does not support updates");
+    }
+
+    @Override
+    protected CompiledCondition compileCondition(ExpressionBuilder expressionBuilder) {
+
+        SegmentConditionVisitor visitor = new SegmentConditionVisitor(tableDefinition);
+        expressionBuilder.build(visitor);
+        return new SegmentCondition(visitor.getRoot(), codec);
+    }
+
+    @Override
+    protected CompiledExpression compileSetAttribute(ExpressionBuilder expressionBuilder) {
+        throw new SiddhiAppCreationException("Segment store table '" + tableDefinition.getId() + "' is append " +
+                "only and does not support updates");
+    }
+
+    @Override
+    protected void disconnect() {
+
+        lock.writeLock().lock();
+        try {
+            closeSegments();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void destroy() {
+        // Segments are closed on disconnect
+    }
+
+    private void closeSegments() {
+
+        for (List<Segment> segments : partitions.values()) {
+            for (Segment segment : segments) {
+                segment.force();
+                close(segment);
+            }
+        }
+        partitions.clear();
+    }
+
+    private void close(Segment segment) {
+
+        try {
+            segment.close();
+        } catch (IOException e) {
+            log.warn("Cannot close segment " + segment.getFile() + " of table '" + tableDefinition.getId() + "'", e);
+        }
+    }
+}
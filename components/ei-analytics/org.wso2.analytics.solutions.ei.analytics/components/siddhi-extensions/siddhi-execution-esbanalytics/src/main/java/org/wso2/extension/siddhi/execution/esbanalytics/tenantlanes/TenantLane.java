@@ -0,0 +1,294 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.tenantlanes;
+
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.util.ThreadBarrier;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Worker lane which hands over the queued events of its tenants to the next processor on its own thread.
+ * Each tenant has a bounded FIFO queue, and the tenants are served by deficit round robin, so that a tenant
+ * takes a share of the lane in proportion to its weight, whatever the size of its events. Each hand over enters
+ * the thread barrier of the Siddhi app, so that snapshots are not taken while the lane is processing events.
+ */
+class TenantLane implements Runnable {
+
+    private static final Logger log = Logger.getLogger(TenantLane.class);
+    // Interval at which a thread waiting for a full queue checks whether the lane is held by the thread barrier
+    private static final long BARRIER_CHECK_MILLIS = 100;
+
+    private final String name;
+    private final Processor nextProcessor;
+    private final ThreadBarrier threadBarrier;
+    private final ErrorHandler errorHandler;
+    private final int queueSize;
+    private final long quantum;
+    private final int maxBatchSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Map<Integer, TenantQueue> tenantQueues = new HashMap<>();
+    // Tenants with queued events, in the order they are served
+    private final ArrayDeque<TenantQueue> activeQueues = new ArrayDeque<>();
+    // Events being handed over, kept by the lane thread to report them if the next processor fails
+    private final List<StreamEvent> batch = new ArrayList<>();
+    private boolean accepting = true;
+    // Read without the lock by the lane thread, once it passes the thread barrier
+    private volatile boolean running = true;
+    private volatile boolean waitingAtBarrier;
+
+    TenantLane(String name, Processor nextProcessor, ThreadBarrier threadBarrier, ErrorHandler errorHandler,
+               int queueSize, long quantum, int maxBatchSize) {
+        this.name = name;
+        this.nextProcessor = nextProcessor;
+        this.threadBarrier = threadBarrier;
+        this.errorHandler = errorHandler;
+        this.queueSize = queueSize;
+        this.quantum = quantum;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Queue an event of a tenant, waiting while the queue of the tenant is full. While the lane waits at the thread
+     * barrier for a snapshot, the queue may grow beyond its size, as the waiting thread holds the barrier itself
+     * and would otherwise keep the snapshot from being taken.
+     *
+     * @param metaTenantId Tenant id of the event
+     * @param weight       Weight of the tenant
+     * @param cost         Cost of the event, charged against the share of the tenant
+     * @param streamEvent  Event to hand over
+     * @return false if the lane is shut down, and the event is not queued
+     * @throws InterruptedException if interrupted while waiting for the queue of the tenant
+     */
+    boolean offer(int metaTenantId, int weight, long cost, StreamEvent streamEvent) throws InterruptedException {
+
+        lock.lockInterruptibly();
+        try {
+            TenantQueue tenantQueue = tenantQueues.get(metaTenantId);
+            if (tenantQueue == null) {
+                tenantQueue = new TenantQueue(weight);
+                tenantQueues.put(metaTenantId, tenantQueue);
+            }
+            while (accepting && tenantQueue.events.size() >= queueSize && !waitingAtBarrier) {
+                // The lane does not signal when it is held at the thread barrier, so check again periodically
+                notFull.await(BARRIER_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            if (!accepting) {
+                return false;
+            }
+            tenantQueue.events.addLast(streamEvent);
+            tenantQueue.costs.addLast(cost);
+            if (!tenantQueue.active) {
+                tenantQueue.active = true;
+                activeQueues.addLast(tenantQueue);
+                notEmpty.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop accepting events, releasing the threads waiting to queue events. The lane thread ends once it has
+     * handed over the events already queued.
+     */
+    void shutdown() {
+
+        lock.lock();
+        try {
+            accepting = false;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop the lane, discarding the events it has not handed over yet
+     *
+     * @return Number of discarded events
+     */
+    int discard() {
+
+        lock.lock();
+        try {
+            accepting = false;
+            running = false;
+            int discarded = 0;
+            for (TenantQueue tenantQueue : tenantQueues.values()) {
+                discarded += tenantQueue.events.size();
+            }
+            tenantQueues.clear();
+            activeQueues.clear();
+            notEmpty.signalAll();
+            notFull.signalAll();
+            return discarded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+
+        while (true) {
+            try {
+                if (!take()) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (batch.isEmpty()) {
+                // The tenant in turn is saving up its share for a large event
+                continue;
+            }
+            ComplexEventChunk<StreamEvent> streamEventChunk = new ComplexEventChunk<>(false);
+            for (StreamEvent streamEvent : batch) {
+                streamEventChunk.add(streamEvent);
+            }
+            waitingAtBarrier = true;
+            threadBarrier.enter();
+            waitingAtBarrier = false;
+            if (!running) {
+                // Discarded while held at the thread barrier past the drain timeout
+                threadBarrier.exit();
+                log.warn("Discarded " + batch.size() + " events of " + name + ", which were held at the thread " +
+                        "barrier on shutdown");
+                batch.clear();
+                return;
+            }
+            try {
+                nextProcessor.process(streamEventChunk);
+            } catch (Throwable t) {
+                handleError(t);
+            } finally {
+                threadBarrier.exit();
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Hand over the events of a failed chunk to the error handler, keeping the lane alive whatever happens
+     *
+     * @param t Failure of the next processor
+     */
+    private void handleError(Throwable t) {
+
+        try {
+            errorHandler.handle(batch, t instanceof Exception ? (Exception) t :
+                    new SiddhiAppRuntimeException("Error while processing the events of " + name + ": " +
+                            t.getMessage(), t));
+        } catch (Throwable handlerError) {
+            log.error("Error while handling the failed events of " + name + ": " + handlerError.getMessage(),
+                    handlerError);
+        }
+    }
+
+    /**
+     * Take the next events of the tenant in turn, within the deficit of the tenant, in to the batch
+     *
+     * @return false if the lane is stopped, or shut down with no events left to hand over
+     * @throws InterruptedException if interrupted while waiting for events
+     */
+    private boolean take() throws InterruptedException {
+
+        lock.lockInterruptibly();
+        try {
+            while (running && activeQueues.isEmpty()) {
+                if (!accepting) {
+                    return false;
+                }
+                notEmpty.await();
+            }
+            if (!running) {
+                return false;
+            }
+            TenantQueue tenantQueue = activeQueues.pollFirst();
+            tenantQueue.deficit += quantum * tenantQueue.weight;
+            int batchSize = 0;
+            while (!tenantQueue.events.isEmpty() && batchSize < maxBatchSize &&
+                    tenantQueue.costs.peekFirst() <= tenantQueue.deficit) {
+                tenantQueue.deficit -= tenantQueue.costs.pollFirst();
+                batch.add(tenantQueue.events.pollFirst());
+                batchSize++;
+            }
+            if (tenantQueue.events.isEmpty()) {
+                // An idle tenant does not save up its share
+                tenantQueue.deficit = 0;
+                tenantQueue.active = false;
+            } else {
+                activeQueues.addLast(tenantQueue);
+            }
+            if (batchSize > 0) {
+                notFull.signalAll();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Handles the events of a chunk which the next processor failed to process
+     */
+    interface ErrorHandler {
+
+        /**
+         * Handle the failed events
+         *
+         * @param streamEvents Events of the failed chunk
+         * @param e            Failure of the next processor
+         */
+        void handle(List<StreamEvent> streamEvents, Exception e);
+    }
+
+    /**
+     * Queued events of a tenant, with the cost of each event and the unused share of the tenant
+     */
+    private static class TenantQueue {
+
+        private final int weight;
+        private final ArrayDeque<StreamEvent> events = new ArrayDeque<>();
+        private final ArrayDeque<Long> costs = new ArrayDeque<>();
+        private long deficit;
+        private boolean active;
+
+        private TenantQueue(int weight) {
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,456 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.tenantlanes;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.SystemParameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEvent;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.stream.StreamJunction;
+import io.siddhi.core.util.SiddhiConstants;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.error.handler.model.ErroneousEvent;
+import io.siddhi.core.util.error.handler.store.ErrorStore;
+import io.siddhi.core.util.error.handler.util.ErrorOccurrence;
+import io.siddhi.core.util.error.handler.util.ErrorStoreHelper;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.annotation.Element;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.util.AnnotationHelper;
+import org.apache.log4j.Logger;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.ConfigUtils;
+
+import java.beans.ExceptionListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Hand over the incoming events to worker lanes by tenant, so that the events of a tenant are processed in order
+ * on a single lane, and the tenants of a lane share it fairly
+ */
+@Extension(
+        name = "tenantLanes",
+        namespace = "esbAnalytics",
+        description = "This extension hands over each incoming event to one of a fixed number of worker lanes, " +
+                "chosen by hashing its meta tenant id, and the rest of the query is processed on the thread of " +
+                "that lane. The events of a tenant are queued in a bounded queue of their own, and are processed " +
+                "in arrival order. The tenants of a lane are served by weighted deficit round robin, where each " +
+                "event costs the length of its flow data, so that a tenant publishing large flows does not delay " +
+                "the events of the other tenants by more than its share. A thread delivering events waits while " +
+                "the queue of their tenant is full. Each lane enters the thread barrier of the Siddhi app while " +
+                "handing over events, so that snapshots see a consistent state. When the rest of the query fails " +
+                "on a chunk of events, the failure is reported to the runtime exception listener of the Siddhi " +
+                "app, and the events are handled by the @OnError action of the input stream: STORE saves them in " +
+                "the error store, and LOG, as well as STREAM, which a lane cannot send to the fault stream, logs " +
+                "and drops them. When the Siddhi app is shut down, the lanes hand over the events still queued " +
+                "within the drain timeout, and discard the rest.",
+        parameters = {
+                @Parameter(name = "meta.tenant.id",
+                        description = "Tenant id of the event",
+                        type = {DataType.INT},
+                        dynamic = true),
+                @Parameter(name = "flow.data",
+                        description = "Flow data of the event, whose length is the cost of the event. When not " +
+                                "given, every event costs one",
+                        type = {DataType.STRING},
+                        dynamic = true,
+                        optional = true,
+                        defaultValue = "none")
+        },
+        systemParameter = {
+                @SystemParameter(name = "lanes",
+                        description = "Number of worker lanes, each processing the events of its tenants on a " +
+                                "thread of its own",
+                        defaultValue = "4",
+                        possibleParameters = "Any positive integer"),
+                @SystemParameter(name = "queue.size",
+                        description = "Maximum number of queued events of a tenant",
+                        defaultValue = "256",
+                        possibleParameters = "Any positive integer"),
+                @SystemParameter(name = "quantum",
+                        description = "Cost a tenant of weight one may take each time its turn comes. With the " +
+                                "flow data given, this is a number of Base64 characters",
+                        defaultValue = "65536",
+                        possibleParameters = "Any positive integer"),
+                @SystemParameter(name = "batch.size.max",
+                        description = "Maximum number of events of a tenant handed over to the next processor " +
+                                "in a single chunk",
+                        defaultValue = "256",
+                        possibleParameters = "Any positive integer"),
+                @SystemParameter(name = "tenant.weights",
+                        description = "Comma separated list of tenantId=weight pairs, giving a tenant a share of " +
+                                "its lane in proportion to its weight. Tenants which are not listed have a " +
+                                "weight of one",
+                        defaultValue = "none",
+                        possibleParameters = "-1234=4,1=2"),
+                @SystemParameter(name = "drain.timeout.millis",
+                        description = "Time the lanes are given at shutdown to hand over the events still queued, " +
+                                "after which the remaining events are discarded",
+                        defaultValue = "10000",
+                        possibleParameters = "Any positive integer")
+        },
+        examples = {
+                @Example(
+                        syntax = "from FlowEntryEventStream#esbAnalytics:tenantLanes(meta_tenantId, flowData)" +
+                                "#esbAnalytics:decompress(meta_compressed, meta_tenantId, messageId, flowData) " +
+                                "select * insert into DecompressedEventStream;",
+                        description = "This query decompresses the flow entries of each tenant on the lane of " +
+                                "the tenant, in arrival order, sharing each lane fairly among its tenants by the " +
+                                "size of their flow data."
+                )
+        }
+)
+public class TenantLanesStreamProcessorExtension extends StreamProcessor<State> {
+
+    private static final Logger log = Logger.getLogger(TenantLanesStreamProcessorExtension.class);
+    // System parameters of the extension
+    private static final String LANES_CONFIG = "lanes";
+    private static final String QUEUE_SIZE_CONFIG = "queue.size";
+    private static final String QUANTUM_CONFIG = "quantum";
+    private static final String MAX_BATCH_SIZE_CONFIG = "batch.size.max";
+    private static final String TENANT_WEIGHTS_CONFIG = "tenant.weights";
+    private static final String DRAIN_TIMEOUT_CONFIG = "drain.timeout.millis";
+
+    private String siddhiAppName;
+    private SiddhiAppContext siddhiAppContext;
+    private String streamId;
+    private StreamJunction.OnErrorAction onErrorAction;
+    private ExpressionExecutor tenantIdExecutor;
+    private ExpressionExecutor flowDataExecutor;
+    private int laneCount;
+    private int queueSize;
+    private int quantum;
+    private int maxBatchSize;
+    private Map<Integer, Integer> tenantWeights;
+    private int drainTimeout;
+    private volatile TenantLane[] lanes;
+    private Thread[] laneThreads;
+
+    /**
+     * Queue the incoming events on the lanes of their tenants
+     *
+     * @param streamEventChunk      Incoming events chunk
+     * @param nextProcessor         Next event processor, which the lanes hand over the events to
+     * @param streamEventCloner     Event cloner to detach the queued events from the incoming chunk
+     * @param complexEventPopulater Unused, no attributes are added to the events
+     * @param state                 Unused, the queued events are not persisted
+     */
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           State state) {
+
+        TenantLane[] currentLanes = this.lanes;
+        if (currentLanes == null) {
+            logDroppedEvents(streamEventChunk, 0);
+            return;
+        }
+        while (streamEventChunk.hasNext()) {
+            StreamEvent streamEvent = streamEventChunk.next();
+            if (streamEvent.getType() != ComplexEvent.Type.CURRENT) {
+                continue;
+            }
+            int metaTenantId = (int) this.tenantIdExecutor.execute(streamEvent);
+            long cost = 1;
+            if (this.flowDataExecutor != null) {
+                String flowData = (String) this.flowDataExecutor.execute(streamEvent);
+                cost = flowData == null ? 1 : Math.max(1, flowData.length());
+            }
+            TenantLane lane = currentLanes[laneOf(metaTenantId, currentLanes.length)];
+            try {
+                if (!lane.offer(metaTenantId, this.tenantWeights.getOrDefault(metaTenantId, 1), cost,
+                        streamEventCloner.copyStreamEvent(streamEvent))) {
+                    // The lanes are shut down, hence neither this event nor the rest of the chunk can be queued
+                    logDroppedEvents(streamEventChunk, 1);
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SiddhiAppRuntimeException("Interrupted while queuing the events of tenant " +
+                        metaTenantId + " in " + this.siddhiAppName, e);
+            }
+        }
+    }
+
+    /**
+     * Log the events dropped as they arrive after the lanes are shut down
+     *
+     * @param streamEventChunk Incoming events chunk, positioned after the events already handled
+     * @param dropped          Number of events of the chunk already dropped
+     */
+    private void logDroppedEvents(ComplexEventChunk<StreamEvent> streamEventChunk, int dropped) {
+
+        while (streamEventChunk.hasNext()) {
+            if (streamEventChunk.next().getType() == ComplexEvent.Type.CURRENT) {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            log.warn("Dropped " + dropped + " events of esbAnalytics:tenantLanes in " + this.siddhiAppName +
+                    ", which arrived after the lanes were shut down");
+        }
+    }
+
+    /**
+     * Pick the lane of a tenant. Tenant ids are mixed first, as they are often small and sequential.
+     *
+     * @param metaTenantId Tenant id
+     * @param laneCount    Number of lanes
+     * @return Index of the lane of the tenant
+     */
+    static int laneOf(int metaTenantId, int laneCount) {
+
+        int hash = metaTenantId;
+        hash = (hash ^ (hash >>> 16)) * 0x45d9f3b;
+        hash = (hash ^ (hash >>> 16)) * 0x45d9f3b;
+        hash = hash ^ (hash >>> 16);
+        return Math.floorMod(hash, laneCount);
+    }
+
+    /**
+     * The init method of the StreamProcessor, this method will be called before other methods
+     *
+     * @param metaStreamEvent              the  stream event meta
+     * @param inputDefinition              the incoming stream definition
+     * @param attributeExpressionExecutors the executors of each function parameters
+     * @param configReader                 this hold the {@link StreamProcessor} extensions configuration reader.
+     * @param streamEventClonerHolder      stream event cloner holder
+     * @param outputExpectsExpiredEvents   whether the output expects expired events
+     * @param findToBeExecuted             whether find will be executed on this processor
+     * @param siddhiQueryContext           The context of the Siddhi query
+     * @return null, as the queued events are not persisted
+     */
+    @Override
+    protected StateFactory<State> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                       ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       StreamEventClonerHolder streamEventClonerHolder,
+                                       boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                       SiddhiQueryContext siddhiQueryContext) {
+
+        this.siddhiAppContext = siddhiQueryContext.getSiddhiAppContext();
+        this.siddhiAppName = this.siddhiAppContext.getName();
+        this.streamId = inputDefinition.getId();
+        if (attributeExpressionExecutors.length < 1 || attributeExpressionExecutors.length > 2) {
+            throw new SiddhiAppCreationException("esbAnalytics:tenantLanes in " + this.siddhiAppName +
+                    " expects the meta tenant id and optionally the flow data, but found " +
+                    attributeExpressionExecutors.length + " parameters");
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.INT) {
+            throw new SiddhiAppCreationException("Meta tenant id of esbAnalytics:tenantLanes in " +
+                    this.siddhiAppName + " should be of type INT, but found " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        this.tenantIdExecutor = attributeExpressionExecutors[0];
+        if (attributeExpressionExecutors.length == 2) {
+            if (attributeExpressionExecutors[1].getReturnType() != Attribute.Type.STRING) {
+                throw new SiddhiAppCreationException("Flow data of esbAnalytics:tenantLanes in " +
+                        this.siddhiAppName + " should be of type STRING, but found " +
+                        attributeExpressionExecutors[1].getReturnType());
+            }
+            this.flowDataExecutor = attributeExpressionExecutors[1];
+        }
+        this.laneCount = ConfigUtils.readIntConfig(configReader, LANES_CONFIG, "4", "esbAnalytics:tenantLanes",
+                this.siddhiAppName);
+        this.queueSize = ConfigUtils.readIntConfig(configReader, QUEUE_SIZE_CONFIG, "256", "esbAnalytics:tenantLanes",
+                this.siddhiAppName);
+        this.quantum = ConfigUtils.readIntConfig(configReader, QUANTUM_CONFIG, "65536", "esbAnalytics:tenantLanes",
+                this.siddhiAppName);
+        this.maxBatchSize = ConfigUtils.readIntConfig(configReader, MAX_BATCH_SIZE_CONFIG, "256",
+                "esbAnalytics:tenantLanes", this.siddhiAppName);
+        this.tenantWeights = getTenantWeights(configReader.readConfig(TENANT_WEIGHTS_CONFIG,
+                "none"));
+        this.drainTimeout = ConfigUtils.readIntConfig(configReader, DRAIN_TIMEOUT_CONFIG, "10000",
+                "esbAnalytics:tenantLanes", this.siddhiAppName);
+        this.onErrorAction = getOnErrorAction(inputDefinition);
+        return null;
+    }
+
+    /**
+     * Read the @OnError action of the input stream, as the lanes handle the failures of the rest of the query
+     * instead of the stream junction. The fault stream is not reachable from the lanes, so that STREAM is handled
+     * as LOG.
+     *
+     * @param inputDefinition Definition of the input stream
+     * @return Action taken on the events of a failed chunk
+     */
+    private StreamJunction.OnErrorAction getOnErrorAction(AbstractDefinition inputDefinition) {
+
+        Element action = AnnotationHelper.getAnnotationElement(SiddhiConstants.ANNOTATION_ON_ERROR,
+                SiddhiConstants.ANNOTATION_ELEMENT_ACTION, inputDefinition.getAnnotations());
+        if (action == null) {
+            return StreamJunction.OnErrorAction.LOG;
+        }
+        StreamJunction.OnErrorAction onErrorAction =
+                StreamJunction.OnErrorAction.valueOf(action.getValue().toUpperCase(Locale.ENGLISH));
+        if (onErrorAction == StreamJunction.OnErrorAction.STREAM) {
+            log.warn("The fault stream of '" + this.streamId + "' in " + this.siddhiAppName + " is not reachable " +
+                    "from esbAnalytics:tenantLanes, hence the events failing on the lanes are logged and dropped");
+            return StreamJunction.OnErrorAction.LOG;
+        }
+        return onErrorAction;
+    }
+
+    /**
+     * Handle the events of a chunk which the rest of the query failed to process on a lane, as the stream junction
+     * of the input stream would have
+     *
+     * @param streamEvents Events of the failed chunk
+     * @param e            Failure of the rest of the query
+     */
+    private void handleError(List<StreamEvent> streamEvents, Exception e) {
+
+        ExceptionListener exceptionListener = this.siddhiAppContext.getRuntimeExceptionListener();
+        if (exceptionListener != null) {
+            exceptionListener.exceptionThrown(e);
+        }
+        String message = "Error in SiddhiApp '" + this.siddhiAppName + "' after consuming events from Stream '" +
+                this.streamId + "' on esbAnalytics:tenantLanes, " + e.getMessage();
+        ErrorStore errorStore = this.siddhiAppContext.getSiddhiContext().getErrorStore();
+        if (this.onErrorAction == StreamJunction.OnErrorAction.STORE && errorStore != null) {
+            for (StreamEvent streamEvent : streamEvents) {
+                ErrorStoreHelper.storeErroneousEvent(errorStore, ErrorOccurrence.STORE_ON_STREAM_ERROR,
+                        this.siddhiAppName, new ErroneousEvent(streamEvent, e, message), this.streamId);
+            }
+            return;
+        }
+        log.error(message + ". Hence, dropping events " + streamEvents, e);
+    }
+
+    /**
+     * Parse the weights of the tenants
+     *
+     * @param value Comma separated list of tenantId=weight pairs, or none
+     * @return Weight of each listed tenant
+     */
+    private Map<Integer, Integer> getTenantWeights(String value) {
+
+        Map<Integer, Integer> weights = new HashMap<>();
+        if ("none".equalsIgnoreCase(value.trim())) {
+            return weights;
+        }
+        for (String pair : value.split(",")) {
+            if (pair.trim().isEmpty()) {
+                continue;
+            }
+            String[] tenantWeight = pair.split("=");
+            try {
+                if (tenantWeight.length == 2) {
+                    int weight = Integer.parseInt(tenantWeight[1].trim());
+                    if (weight > 0) {
+                        weights.put(Integer.parseInt(tenantWeight[0].trim()), weight);
+                        continue;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new SiddhiAppCreationException("System parameter '" +
+                    TENANT_WEIGHTS_CONFIG + "' of esbAnalytics:tenantLanes in " +
+                    this.siddhiAppName + " should be a list of tenantId=weight pairs with positive weights, " +
+                    "but found '" + pair.trim() + "'");
+        }
+        return weights;
+    }
+
+    @Override
+    public synchronized void start() {
+
+        if (this.lanes != null) {
+            return;
+        }
+        TenantLane[] newLanes = new TenantLane[this.laneCount];
+        Thread[] newThreads = new Thread[this.laneCount];
+        for (int i = 0; i < newLanes.length; i++) {
+            String name = "esbAnalytics-tenantLanes-" + this.siddhiAppName + "-" + (i + 1);
+            newLanes[i] = new TenantLane(name, this.nextProcessor, this.siddhiAppContext.getThreadBarrier(),
+                    this::handleError, this.queueSize, this.quantum, this.maxBatchSize);
+            newThreads[i] = new Thread(newLanes[i], name);
+            newThreads[i].setDaemon(true);
+            newThreads[i].start();
+        }
+        this.laneThreads = newThreads;
+        this.lanes = newLanes;
+    }
+
+    @Override
+    public synchronized void stop() {
+
+        TenantLane[] currentLanes = this.lanes;
+        this.lanes = null;
+        if (currentLanes == null) {
+            return;
+        }
+        for (TenantLane lane : currentLanes) {
+            lane.shutdown();
+        }
+        // Give the lanes the drain timeout in total to hand over the events still queued
+        long deadline = System.currentTimeMillis() + this.drainTimeout;
+        try {
+            for (Thread thread : this.laneThreads) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining > 0) {
+                    thread.join(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.laneThreads = null;
+        int discarded = 0;
+        for (TenantLane lane : currentLanes) {
+            discarded += lane.discard();
+        }
+        if (discarded > 0) {
+            log.warn("Discarded " + discarded + " queued events of esbAnalytics:tenantLanes in " +
+                    this.siddhiAppName + ", which were not handed over within the drain timeout of " +
+                    this.drainTimeout + " ms on shutdown");
+        }
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.util;
+
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.transport.OptionHolder;
+
+/**
+ * Utility methods to read the integer system parameters and options of the extensions
+ */
+public class ConfigUtils {
+
+    private ConfigUtils() {
+    }
+
+    /**
+     * Read a positive integer system parameter of an extension
+     *
+     * @param configReader  Config reader of the extension
+     * @param name          Name of the system parameter
+     * @param defaultValue  Value used when the parameter is not configured
+     * @param extension     Name of the extension, such as esbAnalytics:decompress
+     * @param siddhiAppName Name of the Siddhi app using the extension
+     * @return Value of the system parameter
+     */
+    public static int readIntConfig(ConfigReader configReader, String name, String defaultValue, String extension,
+                                    String siddhiAppName) {
+
+        return readIntConfig(configReader, name, defaultValue, 1, extension, siddhiAppName);
+    }
+
+    /**
+     * Read an integer system parameter of an extension
+     *
+     * @param configReader  Config reader of the extension
+     * @param name          Name of the system parameter
+     * @param defaultValue  Value used when the parameter is not configured
+     * @param minimum       Smallest accepted value
+     * @param extension     Name of the extension, such as esbAnalytics:decompress
+     * @param siddhiAppName Name of the Siddhi app using the extension
+     * @return Value of the system parameter
+     */
+    public static int readIntConfig(ConfigReader configReader, String name, String defaultValue, int minimum,
+                                    String extension, String siddhiAppName) {
+
+        return parseInt(configReader.readConfig(name, defaultValue), minimum,
+                "System parameter '" + name + "' of " + extension + " in " + siddhiAppName);
+    }
+
+    /**
+     * Read a positive integer option of a sink
+     *
+     * @param optionHolder  Options of the sink
+     * @param name          Name of the option
+     * @param defaultValue  Value used when the option is not given
+     * @param extension     Name of the sink, such as esbBulkInsert
+     * @param siddhiAppName Name of the Siddhi app using the sink
+     * @return Value of the option
+     */
+    public static int readIntOption(OptionHolder optionHolder, String name, String defaultValue, String extension,
+                                    String siddhiAppName) {
+
+        return parseInt(optionHolder.validateAndGetStaticValue(name, defaultValue), 1,
+                "Option '" + name + "' of the " + extension + " sink in " + siddhiAppName);
+    }
+
+    /**
+     * Parse an integer setting, reporting a value which is not an integer or is less than the minimum
+     *
+     * @param value   Configured value
+     * @param minimum Smallest accepted value
+     * @param setting Description of the setting, used in the error message
+     * @return Value of the setting
+     */
+    private static int parseInt(String value, int minimum, String setting) {
+
+        String trimmedValue = value.trim();
+        try {
+            int intValue = Integer.parseInt(trimmedValue);
+            if (intValue >= minimum) {
+                return intValue;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new SiddhiAppCreationException(setting + " should be " + (minimum == 1 ? "a positive integer" :
+                "an integer not less than " + minimum) + ", but found '" + trimmedValue + "'");
+    }
+}
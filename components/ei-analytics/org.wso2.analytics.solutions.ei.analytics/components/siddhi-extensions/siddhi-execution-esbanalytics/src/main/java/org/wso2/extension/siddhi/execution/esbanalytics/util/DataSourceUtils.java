@@ -0,0 +1,113 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.util;
+
+import io.siddhi.core.config.SiddhiContext;
+import org.apache.log4j.Logger;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+import org.wso2.carbon.datasource.core.api.DataSourceService;
+import org.wso2.carbon.datasource.core.exception.DataSourceException;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+/**
+ * Utility methods to look up the datasources of the extensions, as the rdbms store does
+ */
+public class DataSourceUtils {
+
+    private static final Logger log = Logger.getLogger(DataSourceUtils.class);
+
+    private DataSourceUtils() {
+    }
+
+    /**
+     * Look up a datasource in the Siddhi context, then among the Carbon datasources, such as the ones defined in
+     * the deployment.yaml of the server, and then through JNDI
+     *
+     * @param siddhiContext  Siddhi context of the Siddhi app
+     * @param dataSourceName Name of the datasource
+     * @return The datasource, or null if it is not found
+     */
+    public static DataSource lookupDataSource(SiddhiContext siddhiContext, String dataSourceName) {
+
+        DataSource dataSource = siddhiContext.getSiddhiDataSource(dataSourceName);
+        if (dataSource == null) {
+            try {
+                dataSource = CarbonDataSources.lookup(dataSourceName);
+            } catch (NoClassDefFoundError e) {
+                // The Carbon datasources are not deployed, as when the extension runs outside the server
+                if (log.isDebugEnabled()) {
+                    log.debug("Carbon datasources are not available to look up " + dataSourceName);
+                }
+            }
+        }
+        if (dataSource == null) {
+            try {
+                dataSource = (DataSource) new InitialContext().lookup(dataSourceName);
+            } catch (NamingException | ClassCastException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Datasource " + dataSourceName + " is not found through JNDI: " + e.getMessage());
+                }
+            }
+        }
+        return dataSource;
+    }
+
+    /**
+     * Lookup of the Carbon datasources, kept apart so that the Carbon classes are only loaded when they are
+     * deployed
+     */
+    private static class CarbonDataSources {
+
+        private static DataSource lookup(String dataSourceName) {
+
+            Bundle bundle = FrameworkUtil.getBundle(DataSourceService.class);
+            BundleContext bundleContext = bundle == null ? null : bundle.getBundleContext();
+            if (bundleContext == null) {
+                return null;
+            }
+            ServiceReference<DataSourceService> serviceReference =
+                    bundleContext.getServiceReference(DataSourceService.class);
+            if (serviceReference == null) {
+                return null;
+            }
+            try {
+                DataSourceService dataSourceService = bundleContext.getService(serviceReference);
+                if (dataSourceService == null) {
+                    return null;
+                }
+                Object dataSource = dataSourceService.getDataSource(dataSourceName);
+                return dataSource instanceof DataSource ? (DataSource) dataSource : null;
+            } catch (DataSourceException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Datasource " + dataSourceName + " is not found among the Carbon datasources: " +
+                            e.getMessage());
+                }
+                return null;
+            } finally {
+                bundleContext.ungetService(serviceReference);
+            }
+        }
+    }
+}
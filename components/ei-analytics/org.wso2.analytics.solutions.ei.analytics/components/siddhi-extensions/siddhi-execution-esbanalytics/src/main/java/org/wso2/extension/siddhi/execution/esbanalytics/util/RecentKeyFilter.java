@@ -0,0 +1,131 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.util;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Time bounded filter of already seen (tenant, key) pairs, used to drop events re-published by the EI publisher
+ * by their message id and payloads already written by their reference, and to remember faulted message flows.
+ * Keys are held in two generations, which are rotated once the window elapses or the current generation reaches its
+ * capacity. A key is hence remembered for at least one window, unless more than capacity distinct keys arrive within
+ * it, and memory is bounded by twice the capacity.
+ */
+public class RecentKeyFilter {
+
+    private final long windowMillis;
+    private final int capacity;
+    private Set<String> currentGeneration;
+    private Set<String> previousGeneration;
+    private long generationStartTime;
+
+    /**
+     * @param windowMillis Minimum time a key is remembered for, in milliseconds
+     * @param capacity     Maximum number of keys held in a generation
+     */
+    public RecentKeyFilter(long windowMillis, int capacity) {
+
+        this.windowMillis = windowMillis;
+        this.capacity = capacity;
+        this.currentGeneration = new HashSet<>();
+        this.previousGeneration = new HashSet<>();
+        this.generationStartTime = -1;
+    }
+
+    /**
+     * Record a key, and check whether it was already seen within the window
+     *
+     * @param metaTenantId Tenant id of the event
+     * @param key          Key of the event, such as its message id
+     * @param currentTime  Current time in milliseconds
+     * @return true if the key is seen for the first time and the event should be processed
+     */
+    public synchronized boolean accept(int metaTenantId, String key, long currentTime) {
+
+        advance(currentTime);
+        String tenantKey = metaTenantId + ":" + key;
+        if (previousGeneration.contains(tenantKey)) {
+            return false;
+        }
+        return currentGeneration.add(tenantKey);
+    }
+
+    /**
+     * Check whether a key was seen within the window, without recording it
+     *
+     * @param metaTenantId Tenant id of the event
+     * @param key          Key of the event
+     * @param currentTime  Current time in milliseconds
+     * @return true if the key was recorded by {@link #accept} within the window
+     */
+    public synchronized boolean contains(int metaTenantId, String key, long currentTime) {
+
+        advance(currentTime);
+        String tenantKey = metaTenantId + ":" + key;
+        return currentGeneration.contains(tenantKey) || previousGeneration.contains(tenantKey);
+    }
+
+    /**
+     * Forget a key recorded by {@link #accept}, so that the event is processed again when it is re-published
+     *
+     * @param metaTenantId Tenant id of the event
+     * @param key          Key of the event
+     */
+    public synchronized void forget(int metaTenantId, String key) {
+
+        String tenantKey = metaTenantId + ":" + key;
+        currentGeneration.remove(tenantKey);
+        previousGeneration.remove(tenantKey);
+    }
+
+    /**
+     * Forget all the keys seen so far
+     */
+    public synchronized void clear() {
+
+        currentGeneration.clear();
+        previousGeneration.clear();
+        generationStartTime = -1;
+    }
+
+    private void advance(long currentTime) {
+
+        if (generationStartTime < 0) {
+            generationStartTime = currentTime;
+        }
+        long elapsed = currentTime - generationStartTime;
+        if (elapsed >= 2 * windowMillis) {
+            // Both generations are older than the window
+            currentGeneration.clear();
+            rotate(currentTime);
+        } else if (elapsed >= windowMillis || currentGeneration.size() >= capacity) {
+            rotate(currentTime);
+        }
+    }
+
+    private void rotate(long currentTime) {
+
+        Set<String> expired = previousGeneration;
+        previousGeneration = currentGeneration;
+        expired.clear();
+        currentGeneration = expired;
+        generationStartTime = currentTime;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import org.apache.log4j.Logger;
+import org.h2.jdbcx.JdbcDataSource;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.sql.DataSource;
+
+public class BulkInsertSinkTestCase {
+
+    private static Logger log = Logger.getLogger(BulkInsertSinkTestCase.class);
+    private static final String SIDDHI_APP = "@sink(type = 'esbBulkInsert', datasource = 'EI_ANALYTICS', " +
+            "table.name = 'ESBEventTable', batch.size = '3', flush.interval = '%d', @map(type = 'passThrough')) " +
+            "define stream insertStream(metaTenantId int, messageFlowId string, beforePayload string, " +
+            "duration long, faulted bool);";
+
+    @Test
+    public void testRowsWrittenByBatchAndInterval() throws InterruptedException, SQLException {
+
+        log.info("RowsWrittenByBatchAndInterval TestCase");
+        JdbcDataSource dataSource = createDataSource("bulkInsertByBatch");
+        SiddhiAppRuntime siddhiAppRuntime = createSiddhiAppRuntime(dataSource, 500);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("insertStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(new Event[]{
+                new Event(1000, new Object[]{-1234, "flow-1", "<a/>", 10L, false}),
+                new Event(1000, new Object[]{-1234, "flow-2", null, 20L, true})
+        });
+        AssertJUnit.assertEquals(new ArrayList<>(), readFlowIds(dataSource));
+        // The third row fills the batch, which is written on the publishing thread
+        inputHandler.send(new Object[]{1, "flow-3", "<c/>", 30L, false});
+        inputHandler.send(new Object[]{1, "flow-4", null, null, null});
+        AssertJUnit.assertEquals(Arrays.asList("flow-1", "flow-2", "flow-3"), readFlowIds(dataSource));
+        // The fourth row is written once the flush interval passes
+        Thread.sleep(1500);
+        AssertJUnit.assertEquals(Arrays.asList("flow-1", "flow-2", "flow-3", "flow-4"), readFlowIds(dataSource));
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT metaTenantId, beforePayload, duration, faulted " +
+                     "FROM ESBEventTable WHERE messageFlowId = 'flow-4'")) {
+            AssertJUnit.assertTrue(resultSet.next());
+            AssertJUnit.assertEquals(1, resultSet.getInt(1));
+            AssertJUnit.assertNull(resultSet.getString(2));
+            AssertJUnit.assertNull(resultSet.getObject(3));
+            AssertJUnit.assertNull(resultSet.getObject(4));
+        }
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testBufferedRowsWrittenOnShutdown() throws InterruptedException, SQLException {
+
+        log.info("BufferedRowsWrittenOnShutdown TestCase");
+        JdbcDataSource dataSource = createDataSource("bulkInsertOnShutdown");
+        SiddhiAppRuntime siddhiAppRuntime = createSiddhiAppRuntime(dataSource, 60000);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("insertStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(new Object[]{-1234, "flow-1", "<a/>", 10L, false});
+        inputHandler.send(new Object[]{-1234, "flow-2", "<b/>", 20L, false});
+        AssertJUnit.assertEquals(new ArrayList<>(), readFlowIds(dataSource));
+        siddhiAppRuntime.shutdown();
+        AssertJUnit.assertEquals(Arrays.asList("flow-1", "flow-2"), readFlowIds(dataSource));
+    }
+
+    @Test
+    public void testRowsKeptWhileDatabaseUnavailable() throws InterruptedException, SQLException {
+
+        log.info("RowsKeptWhileDatabaseUnavailable TestCase");
+        JdbcDataSource dataSource = createDataSource("bulkInsertUnavailable");
+        AtomicBoolean unavailable = new AtomicBoolean(false);
+        SiddhiAppRuntime siddhiAppRuntime = createSiddhiAppRuntime(wrapDataSource(dataSource, unavailable, null),
+                60000);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("insertStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(new Object[]{-1234, "flow-1", "<a/>", 10L, false});
+        inputHandler.send(new Object[]{-1234, "flow-2", "<b/>", 20L, false});
+        unavailable.set(true);
+        // The third row fills the batch, and is logged and dropped by Siddhi, while the rows before it are kept
+        inputHandler.send(new Object[]{-1234, "flow-3", "<c/>", 30L, false});
+        AssertJUnit.assertEquals(new ArrayList<>(), readFlowIds(dataSource));
+        unavailable.set(false);
+        siddhiAppRuntime.shutdown();
+        AssertJUnit.assertEquals(Arrays.asList("flow-1", "flow-2"), readFlowIds(dataSource));
+    }
+
+    @Test
+    public void testRejectedRowDroppedFromMultiRowInsert() throws InterruptedException, SQLException {
+
+        log.info("RejectedRowDroppedFromMultiRowInsert TestCase");
+        JdbcDataSource dataSource = createDataSource("bulkInsertRejectedRow");
+        requireDuration(dataSource);
+        SiddhiAppRuntime siddhiAppRuntime = createSiddhiAppRuntime(dataSource, 60000);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("insertStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(new Object[]{-1234, "flow-1", "<a/>", 10L, false});
+        inputHandler.send(new Object[]{-1234, "flow-2", "<b/>", null, false});
+        inputHandler.send(new Object[]{-1234, "flow-3", "<c/>", 30L, false});
+        AssertJUnit.assertEquals(Arrays.asList("flow-1", "flow-3"), readFlowIds(dataSource));
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testRowsWrittenByJdbcBatch() throws InterruptedException, SQLException {
+
+        log.info("RowsWrittenByJdbcBatch TestCase");
+        JdbcDataSource dataSource = createDataSource("bulkInsertJdbcBatch");
+        requireDuration(dataSource);
+        // A database without multi-row inserts gets a JDBC batch of single row inserts
+        SiddhiAppRuntime siddhiAppRuntime = createSiddhiAppRuntime(
+                wrapDataSource(dataSource, new AtomicBoolean(false), "Oracle"), 60000);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("insertStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(new Object[]{-1234, "flow-1", "<a/>", 10L, false});
+        inputHandler.send(new Object[]{-1234, "flow-2", "<b/>", 20L, false});
+        inputHandler.send(new Object[]{-1234, "flow-3", "<c/>", 30L, true});
+        AssertJUnit.assertEquals(Arrays.asList("flow-1", "flow-2", "flow-3"), readFlowIds(dataSource));
+        inputHandler.send(new Object[]{-1234, "flow-4", "<d/>", null, false});
+        inputHandler.send(new Object[]{-1234, "flow-5", "<e/>", 50L, false});
+        siddhiAppRuntime.shutdown();
+        AssertJUnit.assertEquals(Arrays.asList("flow-1", "flow-2", "flow-3", "flow-5"), readFlowIds(dataSource));
+    }
+
+    private JdbcDataSource createDataSource(String databaseName) throws SQLException {
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE ESBEventTable (metaTenantId INTEGER, messageFlowId VARCHAR(254), " +
+                    "beforePayload VARCHAR(5000), duration BIGINT, faulted BOOLEAN)");
+        }
+        return dataSource;
+    }
+
+    private void requireDuration(JdbcDataSource dataSource) throws SQLException {
+
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE ESBEventTable ALTER COLUMN duration SET NOT NULL");
+        }
+    }
+
+    /**
+     * Wrap a datasource, so that it fails to connect while unavailable is set, and reports the given database
+     * product if any
+     */
+    private DataSource wrapDataSource(JdbcDataSource dataSource, AtomicBoolean unavailable, String productName) {
+
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{DataSource.class},
+                (proxy, method, args) -> {
+                    if (!"getConnection".equals(method.getName())) {
+                        return invoke(method, dataSource, args);
+                    }
+                    if (unavailable.get()) {
+                        throw new SQLException("Connection refused", "08001");
+                    }
+                    Connection connection = dataSource.getConnection();
+                    return productName == null ? connection : reportProduct(connection, productName);
+                });
+    }
+
+    private Connection reportProduct(Connection connection, String productName) {
+
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (!"getMetaData".equals(method.getName())) {
+                        return invoke(method, connection, args);
+                    }
+                    DatabaseMetaData metaData = connection.getMetaData();
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{DatabaseMetaData.class},
+                            (metaDataProxy, metaDataMethod, metaDataArgs) ->
+                                    "getDatabaseProductName".equals(metaDataMethod.getName()) ? productName :
+                                            invoke(metaDataMethod, metaData, metaDataArgs));
+                });
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private SiddhiAppRuntime createSiddhiAppRuntime(DataSource dataSource, long flushInterval) {
+
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setDataSource("EI_ANALYTICS", dataSource);
+        return siddhiManager.createSiddhiAppRuntime(String.format(SIDDHI_APP, flushInterval));
+    }
+
+    private List<String> readFlowIds(JdbcDataSource dataSource) throws SQLException {
+
+        List<String> flowIds = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT messageFlowId FROM ESBEventTable " +
+                     "ORDER BY messageFlowId")) {
+            while (resultSet.next()) {
+                flowIds.add(resultSet.getString(1));
+            }
+        }
+        return flowIds;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+/**
+ * Checks the manifest written by the bundle plugin before the tests, so that the codec libraries, which are not
+ * installed as bundles, are embedded instead of imported.
+ */
+public class BundleManifestTestCase {
+
+    private Attributes attributes;
+
+    @BeforeClass
+    public void loadManifest() throws IOException {
+        File manifest = new File(System.getProperty("basedir", "."), "target/osgi/MANIFEST.MF");
+        try (InputStream inputStream = new FileInputStream(manifest)) {
+            attributes = new Manifest(inputStream).getMainAttributes();
+        }
+    }
+
+    @Test
+    public void testCodecsAreEmbedded() {
+        List<String> privatePackages = packages(attributes.getValue("Private-Package"));
+        AssertJUnit.assertTrue(privatePackages.contains("net.jpountz.lz4"));
+        AssertJUnit.assertTrue(privatePackages.contains("net.jpountz.xxhash"));
+        AssertJUnit.assertTrue(privatePackages.contains("net.jpountz.util"));
+        AssertJUnit.assertTrue(privatePackages.contains("com.github.luben.zstd"));
+        AssertJUnit.assertTrue(privatePackages.contains("linux.amd64"));
+        for (String importedPackage : packages(attributes.getValue("Import-Package"))) {
+            AssertJUnit.assertFalse(importedPackage, importedPackage.startsWith("net.jpountz."));
+            AssertJUnit.assertFalse(importedPackage, importedPackage.startsWith("com.github.luben."));
+        }
+    }
+
+    @Test
+    public void testSharedUtilitiesAreNotExported() {
+        String utilPackage = "org.wso2.extension.siddhi.execution.esbanalytics.util";
+        AssertJUnit.assertTrue(packages(attributes.getValue("Private-Package")).contains(utilPackage));
+        AssertJUnit.assertFalse(packages(attributes.getValue("Export-Package")).contains(utilPackage));
+    }
+
+    @Test
+    public void testZstdNativeCode() {
+        List<String> clauses = split(attributes.getValue("Bundle-NativeCode"));
+        AssertJUnit.assertEquals("*", clauses.get(clauses.size() - 1));
+        for (String clause : clauses.subList(0, clauses.size() - 1)) {
+            String path = clause.substring(0, clause.indexOf(';'));
+            // The library names carry the zstd-jni version, which has to match the embedded dependency
+            AssertJUnit.assertNotNull("Missing native library " + path,
+                    BundleManifestTestCase.class.getClassLoader().getResource(path));
+        }
+    }
+
+    private static List<String> packages(String header) {
+        List<String> packages = new ArrayList<>();
+        for (String clause : split(header)) {
+            int end = clause.indexOf(';');
+            packages.add(end < 0 ? clause : clause.substring(0, end));
+        }
+        return packages;
+    }
+
+    /**
+     * Split a manifest header in to its clauses, leaving the commas of quoted version ranges
+     */
+    private static List<String> split(String header) {
+        AssertJUnit.assertNotNull(header);
+        List<String> clauses = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < header.length(); i++) {
+            char c = header.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                clauses.add(header.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        clauses.add(header.substring(start).trim());
+        return clauses;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import io.siddhi.core.util.config.InMemoryConfigManager;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConfigChangedStreamProcessorExtensionTestCase {
+
+    private static Logger log = Logger.getLogger(ConfigChangedStreamProcessorExtensionTestCase.class);
+    private static final String SIDDHI_APP = "@app:playback " +
+            "define stream inputStream(hashcode string, entryName string, configData string);" +
+            "@info( name = 'query') from inputStream#esbAnalytics:configChanged(hashcode, configData) " +
+            "select hashcode, entryName insert into outputStream;";
+    private AtomicInteger count = new AtomicInteger(0);
+
+    @BeforeMethod
+    public void init() {
+        count.set(0);
+    }
+
+    @Test
+    public void testUnchangedConfigsDropped() throws InterruptedException {
+
+        log.info("UnchangedConfigsDropped TestCase");
+        List<String> forwarded = Collections.synchronizedList(new ArrayList<>());
+        SiddhiAppRuntime siddhiAppRuntime = createSiddhiAppRuntime(new HashMap<>(), forwarded);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(new Event[]{
+                new Event(1000, new Object[]{"h1", "OrderProxy", "<proxy name=\"OrderProxy\"/>"}),
+                new Event(1000, new Object[]{"h1", "OrderProxy", "<proxy name=\"OrderProxy\"/>"}),
+                new Event(1000, new Object[]{"h2", "LogMediator", "<log/>"})
+        });
+        inputHandler.send(new Event(2000, new Object[]{"h1", "OrderProxy", "<proxy name=\"OrderProxy\"/>"}));
+        inputHandler.send(new Event(3000, new Object[]{"h1", "OrderProxy v2", "<proxy name=\"OrderProxy\" v=\"2\"/>"}));
+        inputHandler.send(new Event(4000, new Object[]{"h2", "LogMediator", "<log/>"}));
+        SiddhiTestHelper.waitForEvents(100, 3, count, 10000);
+        Thread.sleep(200);
+        AssertJUnit.assertEquals(Arrays.asList("OrderProxy", "LogMediator", "OrderProxy v2"), forwarded);
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testConfigsRefreshedAndEvicted() throws InterruptedException {
+
+        log.info("ConfigsRefreshedAndEvicted TestCase");
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.configChanged.max.entries", "2");
+        systemConfigs.put("esbAnalytics.configChanged.refresh.interval.millis", "10000");
+        List<String> forwarded = Collections.synchronizedList(new ArrayList<>());
+        SiddhiAppRuntime siddhiAppRuntime = createSiddhiAppRuntime(systemConfigs, forwarded);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(new Event(1000, new Object[]{"h1", "a", "<a/>"}));
+        inputHandler.send(new Event(2000, new Object[]{"h2", "b", "<b/>"}));
+        // Seeing h1 again keeps it cached, so that h2 is the one evicted by h3
+        inputHandler.send(new Event(3000, new Object[]{"h1", "a", "<a/>"}));
+        inputHandler.send(new Event(4000, new Object[]{"h3", "c", "<c/>"}));
+        inputHandler.send(new Event(5000, new Object[]{"h1", "a", "<a/>"}));
+        inputHandler.send(new Event(6000, new Object[]{"h2", "b", "<b/>"}));
+        // The refresh interval of h1 has passed since it was last passed on
+        inputHandler.send(new Event(11000, new Object[]{"h1", "a", "<a/>"}));
+        SiddhiTestHelper.waitForEvents(100, 5, count, 10000);
+        Thread.sleep(200);
+        AssertJUnit.assertEquals(Arrays.asList("a", "b", "c", "b", "a"), forwarded);
+        siddhiAppRuntime.shutdown();
+    }
+
+    private SiddhiAppRuntime createSiddhiAppRuntime(Map<String, String> systemConfigs, List<String> forwarded) {
+
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(SIDDHI_APP);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    forwarded.add((String) event.getData(1));
+                    count.incrementAndGet();
+                }
+            }
+        });
+        return siddhiAppRuntime;
+    }
+}
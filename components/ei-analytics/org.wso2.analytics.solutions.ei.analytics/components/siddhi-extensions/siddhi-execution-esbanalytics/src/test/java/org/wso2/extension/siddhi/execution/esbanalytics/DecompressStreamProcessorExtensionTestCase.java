@@ -18,19 +18,38 @@
 
 package org.wso2.extension.siddhi.execution.esbanalytics;
 
+import com.github.luben.zstd.ZstdOutputStream;
 import io.siddhi.core.SiddhiAppRuntime;
 import io.siddhi.core.SiddhiManager;
 import io.siddhi.core.event.Event;
 import io.siddhi.core.stream.input.InputHandler;
 import io.siddhi.core.stream.output.StreamCallback;
 import io.siddhi.core.util.SiddhiTestHelper;
+import io.siddhi.core.util.config.InMemoryConfigManager;
+import net.jpountz.lz4.LZ4FrameOutputStream;
 import org.apache.log4j.Logger;
 import org.testng.AssertJUnit;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 import org.wso2.extension.siddhi.execution.esbanalytics.util.ESBAnalyticsDecompressConstants;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.xml.bind.DatatypeConverter;
 
 public class DecompressStreamProcessorExtensionTestCase {
 
@@ -90,4 +109,418 @@ public class DecompressStreamProcessorExtensionTestCase {
         AssertJUnit.assertTrue(decompressedAttributesRetrieved);
         siddhiAppRuntime.shutdown();
     }
+
+    @Test
+    public void testDecompressUncompressedMessage() throws InterruptedException, IOException {
+
+        log.info("DecompressUncompressedMessage TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "\ndefine stream inputStream(meta_compressed bool, meta_tenantId int," +
+                " messageId string, flowData string);";
+        String query = ("@info( name = 'query') from inputStream#esbAnalytics:decompress(meta_compressed, " +
+                "meta_tenantId, messageId, flowData) insert all events into outputStream;");
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(
+                inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    count.incrementAndGet();
+                    if (count.get() == 1) {
+                        String componentName = (String) event.getData(5);
+                        AssertJUnit.assertEquals("Proxy Service", componentName);
+                        AssertJUnit.assertEquals(ESBAnalyticsDecompressConstants.TestData.META_TENANT_ID,
+                                event.getData(22));
+                        decompressedAttributesRetrieved = true;
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        Object[] esbAnalyticsEvent = new Object[]{
+                false,
+                ESBAnalyticsDecompressConstants.TestData.META_TENANT_ID,
+                ESBAnalyticsDecompressConstants.TestData.MESSAGE_ID,
+                gunzipFlowData(ESBAnalyticsDecompressConstants.TestData.FLOW_DATA)
+        };
+        inputHandler.send(esbAnalyticsEvent);
+        SiddhiTestHelper.waitForEvents(200, 8, count, 60000);
+        AssertJUnit.assertEquals(8, count.get());
+        AssertJUnit.assertTrue(decompressedAttributesRetrieved);
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testDecompressWithExcludedColumns() throws InterruptedException {
+
+        log.info("DecompressWithExcludedColumns TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "\ndefine stream inputStream(meta_compressed bool, meta_tenantId int," +
+                " messageId string, flowData string);";
+        String query = ("@info( name = 'query') from inputStream#esbAnalytics:decompress(meta_compressed, " +
+                "meta_tenantId, messageId, flowData, 'beforePayload, afterPayload') " +
+                "select componentType, beforePayload, afterPayload, contextPropertyMap " +
+                "insert all events into outputStream;");
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(
+                inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    count.incrementAndGet();
+                    if (count.get() == 1) {
+                        AssertJUnit.assertEquals("Proxy Service", event.getData(0));
+                        AssertJUnit.assertNull(event.getData(1));
+                        AssertJUnit.assertNull(event.getData(2));
+                        AssertJUnit.assertNotNull(event.getData(3));
+                        decompressedAttributesRetrieved = true;
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        Object[] esbAnalyticsEvent = new Object[]{
+                ESBAnalyticsDecompressConstants.TestData.META_COMPRESSED,
+                ESBAnalyticsDecompressConstants.TestData.META_TENANT_ID,
+                ESBAnalyticsDecompressConstants.TestData.MESSAGE_ID,
+                ESBAnalyticsDecompressConstants.TestData.FLOW_DATA
+        };
+        inputHandler.send(esbAnalyticsEvent);
+        SiddhiTestHelper.waitForEvents(200, 8, count, 60000);
+        AssertJUnit.assertTrue(decompressedAttributesRetrieved);
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testParallelDecompressPreservesOrder() throws InterruptedException {
+
+        log.info("ParallelDecompressPreservesOrder TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.decompress.parallelism", "4");
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+
+        String inStreamDefinition = "\ndefine stream inputStream(meta_compressed bool, meta_tenantId int," +
+                " messageId string, flowData string);";
+        String query = ("@info( name = 'query') from inputStream#esbAnalytics:decompress(meta_compressed, " +
+                "meta_tenantId, messageId, flowData) select metaTenantId, componentIndex " +
+                "insert all events into outputStream;");
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(
+                inStreamDefinition + query);
+
+        List<Object[]> received = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    received.add(event.getData());
+                    count.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        int flowCount = 16;
+        Event[] esbAnalyticsEvents = new Event[flowCount];
+        for (int i = 0; i < flowCount; i++) {
+            esbAnalyticsEvents[i] = new Event(System.currentTimeMillis(), new Object[]{
+                    ESBAnalyticsDecompressConstants.TestData.META_COMPRESSED,
+                    i,
+                    ESBAnalyticsDecompressConstants.TestData.MESSAGE_ID,
+                    ESBAnalyticsDecompressConstants.TestData.FLOW_DATA
+            });
+        }
+        inputHandler.send(esbAnalyticsEvents);
+        SiddhiTestHelper.waitForEvents(200, flowCount * 8, count, 60000);
+        AssertJUnit.assertEquals(flowCount * 8, received.size());
+        for (int i = 0; i < received.size(); i++) {
+            AssertJUnit.assertEquals(i / 8, received.get(i)[0]);
+            AssertJUnit.assertEquals(received.get(i % 8)[1], received.get(i)[1]);
+        }
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testDecompressWithBoundedOutputChunks() throws InterruptedException {
+
+        log.info("DecompressWithBoundedOutputChunks TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.decompress.max.output.chunk.size", "3");
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+
+        String inStreamDefinition = "\ndefine stream inputStream(meta_compressed bool, meta_tenantId int," +
+                " messageId string, flowData string);";
+        String query = ("@info( name = 'query') from inputStream#esbAnalytics:decompress(meta_compressed, " +
+                "meta_tenantId, messageId, flowData) select componentIndex " +
+                "insert all events into outputStream;");
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(
+                inStreamDefinition + query);
+
+        List<Integer> chunkSizes = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                chunkSizes.add(inEvents.length);
+                count.addAndGet(inEvents.length);
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{
+                ESBAnalyticsDecompressConstants.TestData.META_COMPRESSED,
+                ESBAnalyticsDecompressConstants.TestData.META_TENANT_ID,
+                ESBAnalyticsDecompressConstants.TestData.MESSAGE_ID,
+                ESBAnalyticsDecompressConstants.TestData.FLOW_DATA
+        });
+        SiddhiTestHelper.waitForEvents(200, 8, count, 60000);
+        AssertJUnit.assertEquals(8, count.get());
+        AssertJUnit.assertEquals(Arrays.asList(3, 3, 2), chunkSizes);
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testDecompressDropsDuplicateMessages() throws InterruptedException {
+
+        log.info("DecompressDropsDuplicateMessages TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.decompress.dedup.window.millis", "60000");
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+
+        String inStreamDefinition = "\ndefine stream inputStream(meta_compressed bool, meta_tenantId int," +
+                " messageId string, flowData string);";
+        String query = ("@info( name = 'query') from inputStream#esbAnalytics:decompress(meta_compressed, " +
+                "meta_tenantId, messageId, flowData) select messageId, componentIndex " +
+                "insert all events into outputStream;");
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(
+                inStreamDefinition + query);
+
+        List<Object> messageIds = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    messageIds.add(event.getData(0));
+                    count.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        String[] publishedMessageIds = {"message-1", "message-1", "message-2", "message-1"};
+        for (String messageId : publishedMessageIds) {
+            inputHandler.send(new Object[]{
+                    ESBAnalyticsDecompressConstants.TestData.META_COMPRESSED,
+                    ESBAnalyticsDecompressConstants.TestData.META_TENANT_ID,
+                    messageId,
+                    ESBAnalyticsDecompressConstants.TestData.FLOW_DATA
+            });
+        }
+        SiddhiTestHelper.waitForEvents(200, 16, count, 60000);
+        Thread.sleep(500);
+        AssertJUnit.assertEquals(16, count.get());
+        AssertJUnit.assertEquals(8, Collections.frequency(messageIds, "message-1"));
+        AssertJUnit.assertEquals(8, Collections.frequency(messageIds, "message-2"));
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testDecompressProcessesRepublishedMessageAfterFailure() throws InterruptedException {
+
+        log.info("DecompressProcessesRepublishedMessageAfterFailure TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.decompress.dedup.window.millis", "60000");
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+
+        String inStreamDefinition = "\ndefine stream inputStream(meta_compressed bool, meta_tenantId int," +
+                " messageId string, flowData string);";
+        String query = ("@info( name = 'query') from inputStream#esbAnalytics:decompress(meta_compressed, " +
+                "meta_tenantId, messageId, flowData) select messageId, componentIndex " +
+                "insert all events into outputStream;");
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(
+                inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                count.addAndGet(inEvents.length);
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        // A corrupted copy fails to decode, and must not suppress the copy re-published afterwards
+        inputHandler.send(new Object[]{
+                ESBAnalyticsDecompressConstants.TestData.META_COMPRESSED,
+                ESBAnalyticsDecompressConstants.TestData.META_TENANT_ID,
+                "message-1",
+                "AAAAAAAAAAAAAAAA"
+        });
+        inputHandler.send(new Object[]{
+                ESBAnalyticsDecompressConstants.TestData.META_COMPRESSED,
+                ESBAnalyticsDecompressConstants.TestData.META_TENANT_ID,
+                "message-1",
+                ESBAnalyticsDecompressConstants.TestData.FLOW_DATA
+        });
+        SiddhiTestHelper.waitForEvents(200, 8, count, 60000);
+        AssertJUnit.assertEquals(8, count.get());
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testDecompressMetrics() throws Exception {
+
+        log.info("DecompressMetrics TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "@app:name('DecompressMetricsTest')\n" +
+                "define stream inputStream(meta_compressed bool, meta_tenantId int," +
+                " messageId string, flowData string);";
+        String query = ("@info( name = 'query') from inputStream#esbAnalytics:decompress(meta_compressed, " +
+                "meta_tenantId, messageId, flowData) insert all events into outputStream;");
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(
+                inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+                count.addAndGet(inEvents.length);
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (int i = 0; i < 2; i++) {
+            inputHandler.send(new Object[]{
+                    ESBAnalyticsDecompressConstants.TestData.META_COMPRESSED,
+                    ESBAnalyticsDecompressConstants.TestData.META_TENANT_ID,
+                    ESBAnalyticsDecompressConstants.TestData.MESSAGE_ID,
+                    ESBAnalyticsDecompressConstants.TestData.FLOW_DATA
+            });
+        }
+        SiddhiTestHelper.waitForEvents(200, 16, count, 60000);
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.wso2.extension.siddhi.execution.esbanalytics:" +
+                "type=DecompressMetrics,siddhiApp=\"DecompressMetricsTest\",query=\"query\"");
+        AssertJUnit.assertEquals(2L, mBeanServer.getAttribute(name, "CompressedEvents"));
+        AssertJUnit.assertEquals(16L, mBeanServer.getAttribute(name, "DecompressedEvents"));
+        AssertJUnit.assertEquals(0L, mBeanServer.getAttribute(name, "FailedEvents"));
+        long compressedBytes = (Long) mBeanServer.getAttribute(name, "CompressedBytes");
+        long decompressedBytes = (Long) mBeanServer.getAttribute(name, "DecompressedBytes");
+        AssertJUnit.assertTrue(compressedBytes > 0);
+        AssertJUnit.assertTrue(decompressedBytes > compressedBytes);
+        CompositeData eventsPerFlow = (CompositeData) mBeanServer.getAttribute(name, "EventsPerFlow");
+        AssertJUnit.assertEquals(2L, eventsPerFlow.get("count"));
+        AssertJUnit.assertEquals(8L, eventsPerFlow.get("max"));
+        for (String stage : new String[]{"Base64DecodeTimeMicros", "InflateTimeMicros", "DeserializeTimeMicros"}) {
+            CompositeData stageTime = (CompositeData) mBeanServer.getAttribute(name, stage);
+            AssertJUnit.assertEquals(2L, stageTime.get("count"));
+        }
+        siddhiAppRuntime.shutdown();
+        AssertJUnit.assertFalse(mBeanServer.isRegistered(name));
+    }
+
+    @Test
+    public void testDecompressLz4AndZstdMessages() throws InterruptedException, IOException {
+
+        log.info("DecompressLz4AndZstdMessages TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "\ndefine stream inputStream(meta_compressed bool, meta_tenantId int," +
+                " messageId string, flowData string);";
+        String query = ("@info( name = 'query') from inputStream#esbAnalytics:decompress(meta_compressed, " +
+                "meta_tenantId, messageId, flowData) insert all events into outputStream;");
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(
+                inStreamDefinition + query);
+
+        List<Object[]> decompressedEvents = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    // Leave out the input attributes, which carry the flow data of each codec
+                    decompressedEvents.add(Arrays.copyOfRange(event.getData(), 4, event.getData().length));
+                    count.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        String uncompressedFlowData = gunzipFlowData(ESBAnalyticsDecompressConstants.TestData.FLOW_DATA);
+        String[] flowData = new String[]{
+                ESBAnalyticsDecompressConstants.TestData.FLOW_DATA,
+                compressFlowData(uncompressedFlowData, outputStream -> new LZ4FrameOutputStream(outputStream,
+                        LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB, LZ4FrameOutputStream.FLG.Bits.BLOCK_INDEPENDENCE,
+                        LZ4FrameOutputStream.FLG.Bits.BLOCK_CHECKSUM)),
+                compressFlowData(uncompressedFlowData, ZstdOutputStream::new)
+        };
+        long timestamp = System.currentTimeMillis();
+        for (String compressedFlowData : flowData) {
+            inputHandler.send(timestamp, new Object[]{
+                    ESBAnalyticsDecompressConstants.TestData.META_COMPRESSED,
+                    ESBAnalyticsDecompressConstants.TestData.META_TENANT_ID,
+                    ESBAnalyticsDecompressConstants.TestData.MESSAGE_ID,
+                    compressedFlowData
+            });
+        }
+        SiddhiTestHelper.waitForEvents(200, 24, count, 60000);
+        AssertJUnit.assertEquals(24, count.get());
+        // Events decoded from the LZ4 and Zstandard flow data must match the ones decoded from the GZIP flow data
+        for (int i = 0; i < 8; i++) {
+            AssertJUnit.assertTrue(Arrays.equals(decompressedEvents.get(i), decompressedEvents.get(i + 8)));
+            AssertJUnit.assertTrue(Arrays.equals(decompressedEvents.get(i), decompressedEvents.get(i + 16)));
+        }
+        siddhiAppRuntime.shutdown();
+    }
+
+    private static String compressFlowData(String flowData, CompressingStreamFactory streamFactory)
+            throws IOException {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (OutputStream compressingStream = streamFactory.create(outputStream)) {
+            compressingStream.write(DatatypeConverter.parseBase64Binary(flowData));
+        }
+        return DatatypeConverter.printBase64Binary(outputStream.toByteArray());
+    }
+
+    private static String gunzipFlowData(String flowData) throws IOException {
+
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(
+                new ByteArrayInputStream(DatatypeConverter.parseBase64Binary(flowData)))) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = gzipInputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return DatatypeConverter.printBase64Binary(outputStream.toByteArray());
+        }
+    }
+
+    private interface CompressingStreamFactory {
+
+        OutputStream create(OutputStream outputStream) throws IOException;
+    }
 }
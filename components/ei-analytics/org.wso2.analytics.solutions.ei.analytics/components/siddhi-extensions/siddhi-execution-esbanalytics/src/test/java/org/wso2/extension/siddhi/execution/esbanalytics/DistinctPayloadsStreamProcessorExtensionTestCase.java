@@ -0,0 +1,137 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import io.siddhi.core.util.config.InMemoryConfigManager;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DistinctPayloadsStreamProcessorExtensionTestCase {
+
+    private static Logger log = Logger.getLogger(DistinctPayloadsStreamProcessorExtensionTestCase.class);
+    private static final String IN_STREAM_DEFINITION = "\ndefine stream inputStream(metaTenantId int, " +
+            "componentIndex int, beforePayload string, afterPayload string, transportPropertyMap string);";
+    private static final String ABC_REFERENCE =
+            "sha256:ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+    private AtomicInteger count = new AtomicInteger(0);
+
+    @BeforeMethod
+    public void init() {
+        count.set(0);
+    }
+
+    @Test
+    public void testPayloadRef() throws InterruptedException {
+
+        log.info("PayloadRef TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        String query = "@info( name = 'query') from inputStream select componentIndex, " +
+                "esbAnalytics:payloadRef(beforePayload) as beforePayload, " +
+                "esbAnalytics:payloadRef(afterPayload) as afterPayload insert into outputStream;";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(IN_STREAM_DEFINITION + query);
+
+        List<Object[]> rows = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    rows.add(event.getData());
+                    count.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{-1234, 0, "abc", null, null});
+        SiddhiTestHelper.waitForEvents(100, 1, count, 10000);
+        AssertJUnit.assertEquals(Arrays.asList(0, ABC_REFERENCE, null), Arrays.asList(rows.get(0)));
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testDistinctPayloads() throws InterruptedException {
+
+        log.info("DistinctPayloads TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        String query = "@info( name = 'query') from inputStream#esbAnalytics:distinctPayloads(metaTenantId, " +
+                "beforePayload, afterPayload, transportPropertyMap) select metaTenantId, componentIndex, " +
+                "payloadRef, payload insert into outputStream;";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(IN_STREAM_DEFINITION + query);
+
+        List<Object[]> payloads = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    payloads.add(event.getData());
+                    count.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{-1234, 0, "abc", "abc", "{To=/proxy}"});
+        inputHandler.send(new Object[]{-1234, 1, "abc", "<a/>", null});
+        inputHandler.send(new Object[]{1, 0, "abc", null, null});
+        SiddhiTestHelper.waitForEvents(100, 4, count, 10000);
+        Thread.sleep(200);
+        AssertJUnit.assertEquals(4, count.get());
+        AssertJUnit.assertEquals(Arrays.asList(-1234, 0, ABC_REFERENCE, "abc"), Arrays.asList(payloads.get(0)));
+        AssertJUnit.assertEquals("{To=/proxy}", payloads.get(1)[3]);
+        AssertJUnit.assertEquals(Arrays.asList(-1234, 1, "<a/>"),
+                Arrays.asList(payloads.get(2)[0], payloads.get(2)[1], payloads.get(2)[3]));
+        AssertJUnit.assertEquals(Arrays.asList(1, 0, ABC_REFERENCE, "abc"), Arrays.asList(payloads.get(3)));
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void testDedupWindowLongerThanRetentionMarginRejected() {
+
+        log.info("DedupWindowLongerThanRetentionMarginRejected TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        Map<String, String> systemConfigs = new HashMap<>();
+        // Payloads referenced two windows later would be purged before the component events referencing them
+        systemConfigs.put("esbAnalytics.distinctPayloads.dedup.window.millis", "46800000");
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+        String query = "@info( name = 'query') from inputStream#esbAnalytics:distinctPayloads(metaTenantId, " +
+                "beforePayload) select metaTenantId, payloadRef, payload insert into outputStream;";
+        siddhiManager.createSiddhiAppRuntime(IN_STREAM_DEFINITION + query);
+    }
+}
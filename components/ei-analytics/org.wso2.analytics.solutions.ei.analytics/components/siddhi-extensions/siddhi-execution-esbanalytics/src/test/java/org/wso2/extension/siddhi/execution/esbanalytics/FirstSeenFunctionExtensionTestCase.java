@@ -0,0 +1,118 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FirstSeenFunctionExtensionTestCase {
+
+    private static Logger log = Logger.getLogger(FirstSeenFunctionExtensionTestCase.class);
+    private static final String SIDDHI_APP = "define stream inputStream(componentId string, componentName string);" +
+            "define stream knownComponentStream(componentId string);" +
+            "define table ComponentNameTable(componentId string);" +
+            "define trigger WarmUpTriggerStream at every 50 millisec;" +
+            "from knownComponentStream insert into ComponentNameTable;" +
+            "from WarmUpTriggerStream join ComponentNameTable " +
+            "select esbAnalytics:firstSeen('componentIds', componentId) as firstSeen insert into WarmUpStream;" +
+            "@info( name = 'query') from inputStream[esbAnalytics:firstSeen('componentIds', componentId)] " +
+            "select componentId, componentName insert into outputStream;";
+    private AtomicInteger count = new AtomicInteger(0);
+
+    @BeforeMethod
+    public void init() {
+        count.set(0);
+    }
+
+    @Test
+    public void testFirstSeenWarmedFromTable() throws InterruptedException {
+
+        log.info("FirstSeenWarmedFromTable TestCase");
+        List<String> firstSeen = Collections.synchronizedList(new ArrayList<>());
+        SiddhiAppRuntime siddhiAppRuntime = createSiddhiAppRuntime(firstSeen);
+        siddhiAppRuntime.start();
+        siddhiAppRuntime.getInputHandler("knownComponentStream").send(new Object[]{"OrderProxy@0:OrderProxy"});
+        // Wait for the trigger to mark the stored component as seen
+        Thread.sleep(200);
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        inputHandler.send(new Object[]{"OrderProxy@0:OrderProxy", "OrderProxy"});
+        inputHandler.send(new Object[]{"LogMediator@1:LogMediator", "LogMediator"});
+        inputHandler.send(new Object[]{"LogMediator@1:LogMediator", "LogMediator"});
+        inputHandler.send(new Object[]{null, "Unknown"});
+        inputHandler.send(new Object[]{"CallMediator@2:CallMediator", "CallMediator"});
+        SiddhiTestHelper.waitForEvents(100, 2, count, 10000);
+        Thread.sleep(200);
+        AssertJUnit.assertEquals(Arrays.asList("LogMediator@1:LogMediator", "CallMediator@2:CallMediator"),
+                firstSeen);
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testFirstSeenPerSiddhiApp() throws InterruptedException {
+
+        log.info("FirstSeenPerSiddhiApp TestCase");
+        List<String> firstSeen = Collections.synchronizedList(new ArrayList<>());
+        SiddhiAppRuntime siddhiAppRuntime = createSiddhiAppRuntime(firstSeen);
+        SiddhiAppRuntime otherSiddhiAppRuntime = createSiddhiAppRuntime(firstSeen);
+        siddhiAppRuntime.start();
+        otherSiddhiAppRuntime.start();
+
+        // Each Siddhi app keeps its own set of seen component ids
+        siddhiAppRuntime.getInputHandler("inputStream").send(new Object[]{"OrderProxy@0:OrderProxy", "OrderProxy"});
+        otherSiddhiAppRuntime.getInputHandler("inputStream").send(
+                new Object[]{"OrderProxy@0:OrderProxy", "OrderProxy"});
+        SiddhiTestHelper.waitForEvents(100, 2, count, 10000);
+        Thread.sleep(200);
+        AssertJUnit.assertEquals(2, count.get());
+        siddhiAppRuntime.shutdown();
+        otherSiddhiAppRuntime.shutdown();
+    }
+
+    private SiddhiAppRuntime createSiddhiAppRuntime(List<String> firstSeen) {
+
+        SiddhiManager siddhiManager = new SiddhiManager();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(SIDDHI_APP);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    firstSeen.add((String) event.getData(0));
+                    count.incrementAndGet();
+                }
+            }
+        });
+        return siddhiAppRuntime;
+    }
+}
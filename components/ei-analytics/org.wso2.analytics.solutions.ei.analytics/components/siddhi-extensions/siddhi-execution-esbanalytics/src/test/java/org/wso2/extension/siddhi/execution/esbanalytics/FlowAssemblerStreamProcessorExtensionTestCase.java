@@ -0,0 +1,218 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import io.siddhi.core.util.config.InMemoryConfigManager;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FlowAssemblerStreamProcessorExtensionTestCase {
+
+    private static Logger log = Logger.getLogger(FlowAssemblerStreamProcessorExtensionTestCase.class);
+    private static final String IN_STREAM_DEFINITION = "\ndefine stream inputStream(metaTenantId int, " +
+            "messageFlowId string, componentIndex int, componentId string, componentName string, " +
+            "componentType string, hashCode string, startTime long, endTime long, duration long, faultCount int, " +
+            "children string, entryPoint string, entryPointHashcode string);";
+    private static final String QUERY = "@info( name = 'query') from inputStream#esbAnalytics:assembleFlow(" +
+            "metaTenantId, messageFlowId, componentIndex, componentId, componentName, componentType, hashCode, " +
+            "startTime, endTime, duration, faultCount, children, entryPoint, entryPointHashcode) select " +
+            "metaTenantId, messageFlowId, componentCount, flowStartTime, flowEndTime, flowFaultCount, complete, flow " +
+            "insert into outputStream;";
+    private AtomicInteger count = new AtomicInteger(0);
+
+    @BeforeMethod
+    public void init() {
+        count.set(0);
+    }
+
+    @Test
+    public void testAssembleCompleteFlow() throws InterruptedException {
+
+        log.info("AssembleCompleteFlow TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(IN_STREAM_DEFINITION + QUERY);
+
+        List<Object[]> flows = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    flows.add(event.getData());
+                    count.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{-1234, "urn:1", 2, "log@2", "log", "mediator", "h3", 1010L, 1020L, 10L, 1,
+                null, "proxy", "h1"});
+        inputHandler.send(new Object[]{-1234, "urn:1", 0, "proxy@0", "proxy", "proxy service", "h1", 1000L,
+                1050L, 50L, 0, "[1, 2]", "proxy", "h1"});
+        inputHandler.send(new Object[]{-1234, "urn:2", 0, "proxy@0", "proxy", "proxy service", "h1", 2000L,
+                2050L, 50L, 0, "[1]", "proxy", "h1"});
+        AssertJUnit.assertEquals(0, count.get());
+        inputHandler.send(new Object[]{-1234, "urn:1", 1, "seq@1", "seq", "sequence", "h2", 1001L, 1040L, 39L, 0,
+                "[]", "proxy", "h1"});
+        SiddhiTestHelper.waitForEvents(100, 1, count, 10000);
+        AssertJUnit.assertEquals(1, count.get());
+        AssertJUnit.assertEquals(Arrays.asList(-1234, "urn:1", 3, 1000L, 1050L, 1, true),
+                Arrays.asList(flows.get(0)).subList(0, 7));
+        AssertJUnit.assertEquals("{\"messageFlowId\":\"urn:1\",\"entryPoint\":\"proxy\"," +
+                "\"entryPointHashcode\":\"h1\",\"startTime\":1000,\"endTime\":1050,\"complete\":true," +
+                "\"components\":[{\"componentIndex\":0,\"componentId\":\"proxy@0\",\"componentName\":\"proxy\"," +
+                "\"componentType\":\"proxy service\",\"hashCode\":\"h1\",\"startTime\":1000,\"endTime\":1050," +
+                "\"duration\":50,\"faultCount\":0,\"children\":[1,2]},{\"componentIndex\":1," +
+                "\"componentId\":\"seq@1\",\"componentName\":\"seq\",\"componentType\":\"sequence\"," +
+                "\"hashCode\":\"h2\",\"startTime\":1001,\"endTime\":1040,\"duration\":39,\"faultCount\":0," +
+                "\"children\":[]},{\"componentIndex\":2,\"componentId\":\"log@2\",\"componentName\":\"log\"," +
+                "\"componentType\":\"mediator\",\"hashCode\":\"h3\",\"startTime\":1010,\"endTime\":1020," +
+                "\"duration\":10,\"faultCount\":1,\"children\":[]}]}", flows.get(0)[7]);
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testEmitIncompleteFlowOnTimeout() throws InterruptedException {
+
+        log.info("EmitIncompleteFlowOnTimeout TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.assembleFlow.completion.timeout.millis", "100");
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(IN_STREAM_DEFINITION + QUERY);
+
+        List<Object[]> flows = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    flows.add(event.getData());
+                    count.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{-1234, "urn:1", 0, "proxy@0", "proxy", "proxy service", "h1", 1000L,
+                1050L, 50L, 1, "[1]", "proxy", "h1"});
+        // Late fragment of a flow which is not held anymore
+        inputHandler.send(new Object[]{-1234, "urn:0", 3, "log@3", "log", "mediator", "h3", 900L, 910L, 10L, 0,
+                null, "proxy", "h1"});
+        SiddhiTestHelper.waitForEvents(100, 1, count, 10000);
+        Thread.sleep(300);
+        AssertJUnit.assertEquals(1, count.get());
+        AssertJUnit.assertEquals(Arrays.asList(-1234, "urn:1", 1, 1000L, 1050L, 1, false),
+                Arrays.asList(flows.get(0)).subList(0, 7));
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testOmitFlowDocumentAboveMaxFlowLength() throws InterruptedException {
+
+        log.info("OmitFlowDocumentAboveMaxFlowLength TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.assembleFlow.max.flow.length", "400");
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(IN_STREAM_DEFINITION + QUERY);
+
+        List<Object[]> flows = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    flows.add(event.getData());
+                    count.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{-1234, "urn:1", 0, "proxy@0", "proxy", "proxy service", "h1", 1000L,
+                1050L, 50L, 0, "[]", "proxy", "h1"});
+        inputHandler.send(new Object[]{-1234, "urn:2", 0, "proxy@0", "proxy", "proxy service", "h1", 2000L,
+                2050L, 50L, 0, "[1]", "proxy", "h1"});
+        inputHandler.send(new Object[]{-1234, "urn:2", 1, "seq@1", "seq", "sequence", "h2", 2001L, 2040L, 39L, 0,
+                "[]", "proxy", "h1"});
+        SiddhiTestHelper.waitForEvents(100, 2, count, 10000);
+        AssertJUnit.assertEquals(2, count.get());
+        AssertJUnit.assertEquals(true, flows.get(0)[6]);
+        AssertJUnit.assertNotNull(flows.get(0)[7]);
+        // The document of the second flow exceeds the maximum flow length
+        AssertJUnit.assertEquals(Arrays.asList(-1234, "urn:2", 2, 2000L, 2050L, 0, false, null),
+                Arrays.asList(flows.get(1)));
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testEmitOldestFlowWhenMaxFlowsReached() throws InterruptedException {
+
+        log.info("EmitOldestFlowWhenMaxFlowsReached TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.assembleFlow.max.flows", "1");
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(IN_STREAM_DEFINITION + QUERY);
+
+        List<Object[]> flows = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    flows.add(event.getData());
+                    count.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{-1234, "urn:1", 0, "proxy@0", "proxy", "proxy service", "h1", 1000L,
+                1050L, 50L, 0, "[1]", "proxy", "h1"});
+        inputHandler.send(new Object[]{-1234, "urn:2", 0, "proxy@0", "proxy", "proxy service", "h1", 2000L,
+                2050L, 50L, 0, "[1]", "proxy", "h1"});
+        SiddhiTestHelper.waitForEvents(100, 1, count, 10000);
+        AssertJUnit.assertEquals(1, count.get());
+        AssertJUnit.assertEquals("urn:1", flows.get(0)[1]);
+        AssertJUnit.assertEquals(false, flows.get(0)[6]);
+        siddhiAppRuntime.shutdown();
+    }
+}
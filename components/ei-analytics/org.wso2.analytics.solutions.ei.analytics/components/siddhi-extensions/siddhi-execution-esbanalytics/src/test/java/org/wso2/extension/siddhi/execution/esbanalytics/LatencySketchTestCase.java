@@ -0,0 +1,101 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+import org.wso2.extension.siddhi.execution.esbanalytics.latencysketch.LatencySketch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+public class LatencySketchTestCase {
+
+    private static Logger log = Logger.getLogger(LatencySketchTestCase.class);
+
+    @Test
+    public void testLatencySketchAggregation() throws InterruptedException {
+
+        log.info("LatencySketchAggregation TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        String siddhiApp = "define stream statStream(componentId string, duration long, startTime long);" +
+                "define aggregation statAgg from statStream select componentId, count() as noOfInvocation, " +
+                "latencySketch(duration) as durationSketch group by componentId " +
+                "aggregate by startTime every sec...min;";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("statStream");
+        siddhiAppRuntime.start();
+        // The durations are spread over two seconds, whose sketches are merged in to the minute
+        for (int duration = 1; duration <= 1000; duration++) {
+            inputHandler.send(new Object[]{"OrderProxy", (long) duration, 1500000000000L + (duration % 2) * 1000});
+        }
+        Thread.sleep(100);
+
+        Event[] events = siddhiAppRuntime.query("from statAgg within 0L, 9999999999999L per 'minutes' " +
+                "select componentId, noOfInvocation, esbAnalytics:latencyPercentile(durationSketch, 50.0) as p50, " +
+                "esbAnalytics:latencyPercentile(durationSketch, 99.0) as p99;");
+        AssertJUnit.assertEquals(1, events.length);
+        AssertJUnit.assertEquals(1000L, events[0].getData(1));
+        AssertJUnit.assertEquals(500.5, (Double) events[0].getData(2), 500.5 * LatencySketch.RELATIVE_ACCURACY);
+        AssertJUnit.assertEquals(990.0, (Double) events[0].getData(3), 990.0 * LatencySketch.RELATIVE_ACCURACY);
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testLatencySketchMergeAndSerialization() throws IOException, ClassNotFoundException {
+
+        log.info("LatencySketchMergeAndSerialization TestCase");
+        LatencySketch all = new LatencySketch();
+        LatencySketch even = new LatencySketch();
+        LatencySketch odd = new LatencySketch();
+        for (long duration = 0; duration < 10000; duration++) {
+            all.add(duration);
+            (duration % 2 == 0 ? even : odd).add(duration);
+        }
+        LatencySketch merged = new LatencySketch();
+        merged.merge(even);
+        merged.merge(odd);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(merged);
+        }
+        LatencySketch restored;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            restored = (LatencySketch) in.readObject();
+        }
+        AssertJUnit.assertTrue("Serialized in to " + bytes.size() + " bytes", bytes.size() < 2048);
+        AssertJUnit.assertEquals(10000, restored.getCount());
+        AssertJUnit.assertEquals(0, restored.getMin());
+        AssertJUnit.assertEquals(9999, restored.getMax());
+        for (double quantile : new double[]{0, 0.5, 0.95, 0.99, 1}) {
+            AssertJUnit.assertEquals(all.quantile(quantile), restored.quantile(quantile));
+        }
+        AssertJUnit.assertEquals(9899.0, restored.quantile(0.99), 9899.0 * LatencySketch.RELATIVE_ACCURACY);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import io.siddhi.core.util.config.InMemoryConfigManager;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PreAggregateStreamProcessorExtensionTestCase {
+
+    private static Logger log = Logger.getLogger(PreAggregateStreamProcessorExtensionTestCase.class);
+    private static final String IN_STREAM_DEFINITION = "\ndefine stream inputStream(metaTenantId int, " +
+            "componentId string, entryPoint string, hashCode string, duration long, faultCount int, startTime long);";
+    private static final String QUERY = "@info( name = 'query') from inputStream#esbAnalytics:preAggregate(" +
+            "startTime, duration, faultCount, metaTenantId, componentId, entryPoint, hashCode) select metaTenantId, " +
+            "componentId, totalDuration, minDuration, maxDuration, noOfInvocation, noOfFaults, startTime " +
+            "insert into outputStream;";
+    private AtomicInteger count = new AtomicInteger(0);
+
+    @BeforeMethod
+    public void init() {
+        count.set(0);
+    }
+
+    @Test
+    public void testPreAggregatePerGroupAndSecond() throws InterruptedException {
+
+        log.info("PreAggregatePerGroupAndSecond TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.preAggregate.flush.interval.millis", "100");
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(IN_STREAM_DEFINITION + QUERY);
+
+        List<Object[]> partialRows = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    partialRows.add(event.getData());
+                    count.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{-1234, "proxy@0", "proxy", "h1", 10L, 0, 1000L});
+        inputHandler.send(new Object[]{-1234, "proxy@0", "proxy", "h1", 30L, 1, 1400L});
+        inputHandler.send(new Object[]{-1234, "proxy@1", "proxy", "h1", 5L, 0, 1500L});
+        inputHandler.send(new Object[]{-1234, "proxy@0", "proxy", "h1", 20L, 0, 1999L});
+        inputHandler.send(new Object[]{-1234, "proxy@0", "proxy", "h1", 7L, 2, 2000L});
+        inputHandler.send(new Object[]{1, "proxy@0", "proxy", "h1", 8L, 0, 1200L});
+        SiddhiTestHelper.waitForEvents(100, 4, count, 10000);
+        Thread.sleep(200);
+        AssertJUnit.assertEquals(4, count.get());
+        AssertJUnit.assertEquals(Arrays.asList(-1234, "proxy@0", 60L, 10L, 30L, 3L, 1L, 1000L),
+                Arrays.asList(partialRows.get(0)));
+        AssertJUnit.assertEquals(Arrays.asList(-1234, "proxy@1", 5L, 5L, 5L, 1L, 0L, 1500L),
+                Arrays.asList(partialRows.get(1)));
+        AssertJUnit.assertEquals(Arrays.asList(-1234, "proxy@0", 7L, 7L, 7L, 1L, 1L, 2000L),
+                Arrays.asList(partialRows.get(2)));
+        AssertJUnit.assertEquals(Arrays.asList(1, "proxy@0", 8L, 8L, 8L, 1L, 0L, 1200L),
+                Arrays.asList(partialRows.get(3)));
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testPreAggregateFlushesWhenMaxGroupsReached() throws InterruptedException {
+
+        log.info("PreAggregateFlushesWhenMaxGroupsReached TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.preAggregate.flush.interval.millis", "60000");
+        systemConfigs.put("esbAnalytics.preAggregate.max.groups", "2");
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(IN_STREAM_DEFINITION + QUERY);
+
+        List<Integer> chunkSizes = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                chunkSizes.add(inEvents.length);
+                count.addAndGet(inEvents.length);
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{-1234, "proxy@0", "proxy", "h1", 10L, 0, 1000L});
+        inputHandler.send(new Object[]{-1234, "proxy@0", "proxy", "h1", 10L, 0, 1000L});
+        inputHandler.send(new Object[]{-1234, "proxy@1", "proxy", "h1", 10L, 0, 1000L});
+        inputHandler.send(new Object[]{-1234, "proxy@2", "proxy", "h1", 10L, 0, 1000L});
+        SiddhiTestHelper.waitForEvents(100, 2, count, 10000);
+        AssertJUnit.assertEquals(2, count.get());
+        AssertJUnit.assertEquals(Collections.singletonList(2), chunkSizes);
+        siddhiAppRuntime.shutdown();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.h2.jdbcx.JdbcDataSource;
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PurgePartitionsStreamProcessorExtensionTestCase {
+
+    private static Logger log = Logger.getLogger(PurgePartitionsStreamProcessorExtensionTestCase.class);
+    private static final String IN_STREAM_DEFINITION = "\ndefine stream purgeStream(purgingTime long);" +
+            "\ndefine table ESBEventTable(messageFlowId string, eventTimestamp long);";
+    private AtomicInteger count = new AtomicInteger(0);
+
+    @BeforeMethod
+    public void init() {
+        count.set(0);
+    }
+
+    @Test
+    public void testPurgeNotPartitionedTable() throws InterruptedException {
+
+        log.info("PurgePartitions TestCase with a table which is not partitioned");
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:purgePartitions;DB_CLOSE_DELAY=-1");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setDataSource("EI_ANALYTICS", dataSource);
+        String query = "@info( name = 'query') from purgeStream#esbAnalytics:purgePartitions('EI_ANALYTICS', " +
+                "'ESBEventTable', purgingTime) select purgingTime, partitioned, droppedPartitions " +
+                "insert into outputStream;" +
+                "from outputStream[not partitioned] delete ESBEventTable " +
+                "on ESBEventTable.eventTimestamp < purgingTime;";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(IN_STREAM_DEFINITION + query);
+
+        List<Object[]> results = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    results.add(event.getData());
+                    count.incrementAndGet();
+                }
+            }
+        });
+
+        siddhiAppRuntime.start();
+        siddhiAppRuntime.query("select 'flow-1' as messageFlowId, 1000L as eventTimestamp " +
+                "insert into ESBEventTable;");
+        siddhiAppRuntime.query("select 'flow-2' as messageFlowId, 3000L as eventTimestamp " +
+                "insert into ESBEventTable;");
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("purgeStream");
+        inputHandler.send(new Object[]{2000L});
+        SiddhiTestHelper.waitForEvents(100, 1, count, 10000);
+        // Rows of a table which is not partitioned are deleted by the following query instead
+        AssertJUnit.assertEquals(Arrays.asList(2000L, false, 0), Arrays.asList(results.get(0)));
+        Event[] remaining = siddhiAppRuntime.query("from ESBEventTable select messageFlowId;");
+        AssertJUnit.assertEquals(1, remaining.length);
+        AssertJUnit.assertEquals("flow-2", remaining[0].getData(0));
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void testPurgePartitionsInvalidTableName() {
+
+        log.info("PurgePartitions TestCase with an invalid table name");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        String query = "@info( name = 'query') from purgeStream#esbAnalytics:purgePartitions('EI_ANALYTICS', " +
+                "'ESBEventTable; DROP TABLE ESBEventTable', purgingTime) select partitioned insert into outputStream;";
+        siddhiManager.createSiddhiAppRuntime(IN_STREAM_DEFINITION + query);
+    }
+}
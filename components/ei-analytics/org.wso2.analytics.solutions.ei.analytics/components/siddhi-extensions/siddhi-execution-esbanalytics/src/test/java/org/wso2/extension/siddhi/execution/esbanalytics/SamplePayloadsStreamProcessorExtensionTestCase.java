@@ -0,0 +1,189 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import io.siddhi.core.util.config.InMemoryConfigManager;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SamplePayloadsStreamProcessorExtensionTestCase {
+
+    private static Logger log = Logger.getLogger(SamplePayloadsStreamProcessorExtensionTestCase.class);
+    private static final String IN_STREAM_DEFINITION = "@app:playback" +
+            "\ndefine stream inputStream(metaTenantId int, messageFlowId string, componentName string, " +
+            "faultCount int);";
+    private static final String QUERY = "@info( name = 'query') from inputStream#esbAnalytics:samplePayloads(" +
+            "metaTenantId, componentName, messageFlowId, faultCount) select * insert into outputStream;";
+    private AtomicInteger count = new AtomicInteger(0);
+
+    @BeforeMethod
+    public void init() {
+        count.set(0);
+    }
+
+    @Test
+    public void testSamplePayloadsWithPolicies() throws InterruptedException {
+
+        log.info("SamplePayloadsWithPolicies TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.samplePayloads.sampling.policies", "-1234/OrderProxy=0.0;*/*=1.0:2");
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(IN_STREAM_DEFINITION + QUERY);
+
+        List<Object[]> kept = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    kept.add(event.getData());
+                    count.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Event[]{
+                new Event(1000, new Object[]{-1234, "flow-1", "OrderProxy", 0}),
+                new Event(1000, new Object[]{-1234, "flow-2", "OrderProxy", 0}),
+                new Event(1000, new Object[]{-1234, "flow-2", "LogMediator", 1}),
+                new Event(1000, new Object[]{1, "flow-3", "OrderProxy", 0}),
+                new Event(1000, new Object[]{1, "flow-4", "OrderProxy", 0}),
+                new Event(1000, new Object[]{1, "flow-5", "OrderProxy", 0})
+        });
+        SiddhiTestHelper.waitForEvents(100, 4, count, 10000);
+        Thread.sleep(200);
+        // flow-1 is not sampled, flow-2 is faulted, and flow-5 exceeds the limit of tenant 1
+        AssertJUnit.assertEquals(4, count.get());
+        AssertJUnit.assertEquals(Arrays.asList("flow-2", "flow-2", "flow-3", "flow-4"),
+                Arrays.asList(kept.get(0)[1], kept.get(1)[1], kept.get(2)[1], kept.get(3)[1]));
+
+        // A second later, the limit of tenant 1 admits two more component events
+        inputHandler.send(new Event[]{
+                new Event(2000, new Object[]{1, "flow-6", "OrderProxy", 0}),
+                new Event(2000, new Object[]{1, "flow-7", "OrderProxy", 0}),
+                new Event(2000, new Object[]{1, "flow-8", "OrderProxy", 0})
+        });
+        SiddhiTestHelper.waitForEvents(100, 6, count, 10000);
+        Thread.sleep(200);
+        AssertJUnit.assertEquals(6, count.get());
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testSamplePayloadsKeepsWholeFlows() throws InterruptedException {
+
+        log.info("SamplePayloadsKeepsWholeFlows TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.samplePayloads.sampling.policies", "*/*=0.5");
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(IN_STREAM_DEFINITION + QUERY);
+
+        Map<String, Integer> keptComponents = new HashMap<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    synchronized (keptComponents) {
+                        keptComponents.merge((String) event.getData(1), 1, Integer::sum);
+                    }
+                    count.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (int i = 0; i < 1000; i++) {
+            inputHandler.send(1000 + i, new Object[]{-1234, "flow-" + i, "OrderProxy", 0});
+            inputHandler.send(1000 + i, new Object[]{-1234, "flow-" + i, "LogMediator", 0});
+        }
+        Thread.sleep(500);
+        // Either both components of a message flow are kept, or neither
+        synchronized (keptComponents) {
+            AssertJUnit.assertTrue("Kept " + keptComponents.size() + " of 1000 message flows",
+                    keptComponents.size() > 400 && keptComponents.size() < 600);
+            for (int components : keptComponents.values()) {
+                AssertJUnit.assertEquals(2, components);
+            }
+        }
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testSamplePayloadsRemembersFaultedFlows() throws InterruptedException {
+
+        log.info("SamplePayloadsRemembersFaultedFlows TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.samplePayloads.sampling.policies", "*/*=0.0");
+        systemConfigs.put("esbAnalytics.samplePayloads.faulted.flows.window.millis", "1000");
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(IN_STREAM_DEFINITION + QUERY);
+
+        List<Object[]> kept = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    kept.add(event.getData());
+                    count.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(1000, new Object[]{-1234, "flow-1", "LogMediator", 1});
+        // Later component events of the faulted flow are kept, but not those of the same flow id of another tenant
+        inputHandler.send(1500, new Object[]{-1234, "flow-1", "OrderProxy", 0});
+        inputHandler.send(1500, new Object[]{1, "flow-1", "OrderProxy", 0});
+        inputHandler.send(1500, new Object[]{-1234, "flow-2", "OrderProxy", 0});
+        // The faulted flow is forgotten once two windows have elapsed
+        inputHandler.send(3500, new Object[]{-1234, "flow-1", "OrderProxy", 0});
+        SiddhiTestHelper.waitForEvents(100, 2, count, 10000);
+        Thread.sleep(200);
+        AssertJUnit.assertEquals(2, count.get());
+        AssertJUnit.assertEquals(Arrays.asList("LogMediator", "OrderProxy"),
+                Arrays.asList(kept.get(0)[2], kept.get(1)[2]));
+        AssertJUnit.assertEquals(Arrays.asList(-1234, -1234), Arrays.asList(kept.get(0)[0], kept.get(1)[0]));
+        siddhiAppRuntime.shutdown();
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SegmentEventTableTestCase {
+
+    private static Logger log = Logger.getLogger(SegmentEventTableTestCase.class);
+    private static final String STREAM_DEFINITIONS = "define stream InputStream (metaTenantId int, " +
+            "messageFlowId string, componentIndex int, beforePayload string, eventTimestamp long); " +
+            "define stream PurgeStream (purgingTime long); ";
+    private static final String QUERIES = "from InputStream insert into ESBEventTable; " +
+            "from PurgeStream delete ESBEventTable on ESBEventTable.eventTimestamp < purgingTime; ";
+    private File directory;
+
+    @BeforeMethod
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("segment-store").toFile();
+    }
+
+    @AfterMethod
+    public void cleanUp() {
+
+        File[] tables = directory.listFiles();
+        if (tables != null) {
+            for (File table : tables) {
+                File[] segments = table.listFiles();
+                if (segments != null) {
+                    for (File segment : segments) {
+                        segment.delete();
+                    }
+                }
+                table.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private String tableDefinition(String options) {
+        return "@store(type = 'esbSegment', directory = '" + directory.getAbsolutePath().replace("\\", "/") +
+                "', segment.interval.millis = '1000', segment.size.bytes = '4096'" + options + ") " +
+                "@Index('metaTenantId', 'messageFlowId') " +
+                "define table ESBEventTable (metaTenantId int, messageFlowId string, componentIndex int, " +
+                "beforePayload string, eventTimestamp long); ";
+    }
+
+    private static char[] payload(int length) {
+
+        char[] payload = new char[length];
+        Arrays.fill(payload, 'x');
+        return payload;
+    }
+
+    private static List<List<Object>> rows(Event[] events) {
+
+        List<List<Object>> rows = new ArrayList<>();
+        if (events != null) {
+            for (Event event : events) {
+                rows.add(Arrays.asList(event.getData()));
+            }
+        }
+        rows.sort((first, second) -> first.toString().compareTo(second.toString()));
+        return rows;
+    }
+
+    @Test
+    public void testFindByIndexAndScan() throws InterruptedException {
+
+        log.info("FindByIndexAndScan TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(STREAM_DEFINITIONS +
+                tableDefinition("") + QUERIES);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("InputStream");
+        siddhiAppRuntime.start();
+        String largePayload = new String(payload(1000));
+        for (int i = 0; i < 10; i++) {
+            inputHandler.send(new Object[]{-1234, "urn:" + (i % 3), i, largePayload, 1500L});
+        }
+        inputHandler.send(new Object[]{1, "urn:1", 0, null, 1600L});
+
+        List<List<Object>> flowRows = rows(siddhiAppRuntime.query("from ESBEventTable on messageFlowId == 'urn:1' " +
+                "AND metaTenantId == -1234 select componentIndex, eventTimestamp"));
+        AssertJUnit.assertEquals(Arrays.asList(Arrays.asList(1, 1500L), Arrays.asList(4, 1500L),
+                Arrays.asList(7, 1500L)), flowRows);
+        List<List<Object>> scannedRows = rows(siddhiAppRuntime.query("from ESBEventTable on componentIndex == 0 " +
+                "select metaTenantId, messageFlowId, beforePayload is null as noPayload"));
+        AssertJUnit.assertEquals(Arrays.asList(Arrays.asList(-1234, "urn:0", false), Arrays.asList(1, "urn:1", true)),
+                scannedRows);
+        // Records of about 1 KB roll over to new segments of 4 KB
+        File[] segments = new File(directory, "ESBEventTable").listFiles();
+        AssertJUnit.assertNotNull(segments);
+        AssertJUnit.assertTrue(segments.length >= 3);
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testDropExpiredSegments() throws InterruptedException {
+
+        log.info("DropExpiredSegments TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(STREAM_DEFINITIONS +
+                tableDefinition("") + QUERIES);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("InputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{-1234, "urn:0", 0, "a", 1100L});
+        inputHandler.send(new Object[]{-1234, "urn:1", 0, "b", 2900L});
+        inputHandler.send(new Object[]{-1234, "urn:2", 0, "c", 3100L});
+        siddhiAppRuntime.getInputHandler("PurgeStream").send(new Object[]{3000L});
+
+        List<List<Object>> rows = rows(siddhiAppRuntime.query("from ESBEventTable select messageFlowId"));
+        AssertJUnit.assertEquals(Collections.singletonList(Collections.singletonList("urn:2")), rows);
+        File[] segments = new File(directory, "ESBEventTable").listFiles();
+        AssertJUnit.assertNotNull(segments);
+        AssertJUnit.assertEquals(1, segments.length);
+        AssertJUnit.assertEquals("3000-0.seg", segments[0].getName());
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testDroppedSegmentsFreeDiskSpace() throws InterruptedException, IOException {
+
+        log.info("DroppedSegmentsFreeDiskSpace TestCase");
+        File maps = new File("/proc/self/maps");
+        if (!maps.canRead()) {
+            throw new SkipException("The memory mappings of the process cannot be listed");
+        }
+        SiddhiManager siddhiManager = new SiddhiManager();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(STREAM_DEFINITIONS +
+                tableDefinition("") + QUERIES);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("InputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{-1234, "urn:0", 0, "a", 1100L});
+        inputHandler.send(new Object[]{-1234, "urn:1", 0, "b", 2900L});
+        inputHandler.send(new Object[]{-1234, "urn:2", 0, "c", 3100L});
+        File tableDirectory = new File(directory, "ESBEventTable");
+        AssertJUnit.assertEquals(3, mappedSegments(maps, tableDirectory).size());
+        siddhiAppRuntime.getInputHandler("PurgeStream").send(new Object[]{3000L});
+
+        // A deleted file keeps its disk space while it is mapped, so the dropped segments should be unmapped
+        AssertJUnit.assertEquals(Collections.singletonList(new File(tableDirectory, "3000-0.seg").getPath()),
+                mappedSegments(maps, tableDirectory));
+        siddhiAppRuntime.shutdown();
+        AssertJUnit.assertEquals(new ArrayList<>(), mappedSegments(maps, tableDirectory));
+    }
+
+    private static List<String> mappedSegments(File maps, File tableDirectory) throws IOException {
+
+        List<String> segments = new ArrayList<>();
+        for (String mapping : Files.readAllLines(maps.toPath(), StandardCharsets.UTF_8)) {
+            int start = mapping.indexOf(tableDirectory.getPath() + File.separator);
+            if (start >= 0) {
+                segments.add(mapping.substring(start).replace(" (deleted)", "").trim());
+            }
+        }
+        return segments;
+    }
+
+    @Test
+    public void testFindByIndexOfManyRecords() throws InterruptedException {
+
+        log.info("FindByIndexOfManyRecords TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(STREAM_DEFINITIONS +
+                tableDefinition("") + QUERIES);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("InputStream");
+        siddhiAppRuntime.start();
+        // The small records fill each segment beyond the initial size of its index, which is 64 records
+        for (int i = 0; i < 500; i++) {
+            inputHandler.send(new Object[]{-1234, "urn:" + (i % 10), i, null, 1500L});
+        }
+
+        List<List<Object>> expected = new ArrayList<>();
+        for (int i = 7; i < 500; i += 10) {
+            expected.add(Arrays.asList(i, "urn:7"));
+        }
+        expected.sort((first, second) -> first.toString().compareTo(second.toString()));
+        AssertJUnit.assertEquals(expected, rows(siddhiAppRuntime.query("from ESBEventTable on messageFlowId == " +
+                "'urn:7' AND metaTenantId == -1234 select componentIndex, messageFlowId")));
+        AssertJUnit.assertTrue(new File(directory, "ESBEventTable").listFiles().length < 500 / 64);
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testReopenAndReadFromAnotherApp() throws InterruptedException {
+
+        log.info("ReopenAndReadFromAnotherApp TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        SiddhiAppRuntime writerRuntime = siddhiManager.createSiddhiAppRuntime("@app:name('Writer') " +
+                STREAM_DEFINITIONS + tableDefinition("") + QUERIES);
+        InputHandler inputHandler = writerRuntime.getInputHandler("InputStream");
+        writerRuntime.start();
+        inputHandler.send(new Object[]{-1234, "urn:0", 0, "a", 1100L});
+        writerRuntime.shutdown();
+
+        writerRuntime = siddhiManager.createSiddhiAppRuntime("@app:name('Writer') " + STREAM_DEFINITIONS +
+                tableDefinition("") + QUERIES);
+        inputHandler = writerRuntime.getInputHandler("InputStream");
+        writerRuntime.start();
+        SiddhiAppRuntime readerRuntime = siddhiManager.createSiddhiAppRuntime("@app:name('Reader') " +
+                tableDefinition(", refresh.interval.millis = '1'"));
+        readerRuntime.start();
+        inputHandler.send(new Object[]{-1234, "urn:0", 1, "b", 1200L});
+        inputHandler.send(new Object[]{-1234, "urn:0", 2, "c", 5200L});
+        Thread.sleep(10);
+
+        String query = "from ESBEventTable on messageFlowId == 'urn:0' AND metaTenantId == -1234 " +
+                "select componentIndex, beforePayload";
+        List<List<Object>> expected = Arrays.asList(Arrays.asList(0, "a"), Arrays.asList(1, "b"),
+                Arrays.asList(2, "c"));
+        AssertJUnit.assertEquals(expected, rows(writerRuntime.query(query)));
+        AssertJUnit.assertEquals(expected, rows(readerRuntime.query(query)));
+        readerRuntime.shutdown();
+        writerRuntime.shutdown();
+    }
+}
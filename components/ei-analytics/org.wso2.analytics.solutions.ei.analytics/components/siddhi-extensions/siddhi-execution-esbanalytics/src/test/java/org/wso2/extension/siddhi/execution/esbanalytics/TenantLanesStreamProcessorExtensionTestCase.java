@@ -0,0 +1,220 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import io.siddhi.core.util.config.InMemoryConfigManager;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.extension.siddhi.execution.esbanalytics.util.ESBAnalyticsDecompressConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TenantLanesStreamProcessorExtensionTestCase {
+
+    private static Logger log = Logger.getLogger(TenantLanesStreamProcessorExtensionTestCase.class);
+    private static final String SIDDHI_APP = "define stream inputStream(tenantId int, seq int, flowData string);" +
+            "@info( name = 'query') from inputStream#esbAnalytics:tenantLanes(tenantId, flowData) " +
+            "select tenantId, seq insert into outputStream;";
+    private AtomicInteger count = new AtomicInteger(0);
+
+    @BeforeMethod
+    public void init() {
+        count.set(0);
+    }
+
+    @Test
+    public void testTenantsShareLaneByFlowDataSize() throws InterruptedException {
+
+        log.info("TenantsShareLaneByFlowDataSize TestCase");
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.tenantLanes.lanes", "1");
+        systemConfigs.put("esbAnalytics.tenantLanes.quantum", "100");
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch gate = new CountDownLatch(1);
+        SiddhiAppRuntime siddhiAppRuntime = createSiddhiAppRuntime(systemConfigs, received, gate);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        // The lane is held on the first event, until the events of both tenants are queued
+        inputHandler.send(new Object[]{1, 0, "x"});
+        SiddhiTestHelper.waitForEvents(10, 1, count, 10000);
+        String largeFlow = StringUtils.repeat('x', 100);
+        for (int i = 1; i <= 4; i++) {
+            inputHandler.send(new Object[]{1, i, largeFlow});
+        }
+        for (int i = 1; i <= 3; i++) {
+            inputHandler.send(new Object[]{2, i, "x"});
+        }
+        gate.countDown();
+        SiddhiTestHelper.waitForEvents(100, 8, count, 10000);
+        AssertJUnit.assertEquals(Arrays.asList("1:0", "1:1", "2:1", "2:2", "2:3", "1:2", "1:3", "1:4"), received);
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testTenantOrderKeptAcrossLanes() throws InterruptedException {
+
+        log.info("TenantOrderKeptAcrossLanes TestCase");
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.tenantLanes.lanes", "4");
+        systemConfigs.put("esbAnalytics.tenantLanes.queue.size", "8");
+        systemConfigs.put("esbAnalytics.tenantLanes.tenant.weights", "-1234=4, 3=2");
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        SiddhiAppRuntime siddhiAppRuntime = createSiddhiAppRuntime(systemConfigs, received, new CountDownLatch(0));
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        int[] tenantIds = {-1234, 1, 2, 3, 4, 5, 6, 7};
+        for (int seq = 0; seq < 100; seq++) {
+            for (int tenantId : tenantIds) {
+                inputHandler.send(new Event[]{new Event(seq, new Object[]{tenantId, seq, "flow"})});
+            }
+        }
+        SiddhiTestHelper.waitForEvents(100, 800, count, 10000);
+        AssertJUnit.assertEquals(800, received.size());
+        Map<Integer, Integer> lastSeq = new HashMap<>();
+        for (String event : received) {
+            int separator = event.lastIndexOf(':');
+            int tenantId = Integer.parseInt(event.substring(0, separator));
+            int seq = Integer.parseInt(event.substring(separator + 1));
+            AssertJUnit.assertEquals("Events of tenant " + tenantId + " out of order",
+                    (int) lastSeq.getOrDefault(tenantId, -1) + 1, seq);
+            lastSeq.put(tenantId, seq);
+        }
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testQueuedEventsHandedOverOnShutdown() throws InterruptedException {
+
+        log.info("QueuedEventsHandedOverOnShutdown TestCase");
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.tenantLanes.lanes", "1");
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch gate = new CountDownLatch(1);
+        SiddhiAppRuntime siddhiAppRuntime = createSiddhiAppRuntime(systemConfigs, received, gate);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        // The lane is held on the first event, so that the rest are still queued when the app is shut down
+        inputHandler.send(new Object[]{1, 0, "x"});
+        SiddhiTestHelper.waitForEvents(10, 1, count, 10000);
+        for (int seq = 1; seq <= 5; seq++) {
+            inputHandler.send(new Object[]{1, seq, "x"});
+        }
+        Thread opener = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            gate.countDown();
+        });
+        opener.start();
+        siddhiAppRuntime.shutdown();
+        AssertJUnit.assertEquals(Arrays.asList("1:0", "1:1", "1:2", "1:3", "1:4", "1:5"), received);
+    }
+
+    @Test
+    public void testLaneFailureReportedToExceptionListener() throws InterruptedException {
+
+        log.info("LaneFailureReportedToExceptionListener TestCase");
+        Map<String, String> systemConfigs = new HashMap<>();
+        systemConfigs.put("esbAnalytics.tenantLanes.lanes", "1");
+        systemConfigs.put("esbAnalytics.tenantLanes.batch.size.max", "1");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(
+                "define stream inputStream(meta_compressed bool, meta_tenantId int, messageId string, " +
+                "flowData string);" +
+                "@info( name = 'query') from inputStream#esbAnalytics:tenantLanes(meta_tenantId, flowData)" +
+                "#esbAnalytics:decompress(meta_compressed, meta_tenantId, messageId, flowData) " +
+                "select messageId insert into outputStream;");
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                count.addAndGet(inEvents.length);
+            }
+        });
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        siddhiAppRuntime.handleRuntimeExceptionWith(failure::set);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        // The empty flow data fails the decompression of its chunk on the lane, which then goes on with the next flow
+        inputHandler.send(new Object[]{
+                ESBAnalyticsDecompressConstants.TestData.META_COMPRESSED,
+                ESBAnalyticsDecompressConstants.TestData.META_TENANT_ID, "empty", ""
+        });
+        inputHandler.send(new Object[]{
+                ESBAnalyticsDecompressConstants.TestData.META_COMPRESSED,
+                ESBAnalyticsDecompressConstants.TestData.META_TENANT_ID,
+                ESBAnalyticsDecompressConstants.TestData.MESSAGE_ID,
+                ESBAnalyticsDecompressConstants.TestData.FLOW_DATA
+        });
+        SiddhiTestHelper.waitForEvents(100, 8, count, 60000);
+        AssertJUnit.assertEquals(8, count.get());
+        AssertJUnit.assertNotNull(failure.get());
+        AssertJUnit.assertTrue(failure.get().getMessage().contains("Empty message flow data event"));
+        siddhiAppRuntime.shutdown();
+    }
+
+    private SiddhiAppRuntime createSiddhiAppRuntime(Map<String, String> systemConfigs, List<String> received,
+                                                    CountDownLatch gate) {
+
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(systemConfigs, null));
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(SIDDHI_APP);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] inEvents) {
+
+                for (Event event : inEvents) {
+                    received.add(event.getData(0) + ":" + event.getData(1));
+                    count.incrementAndGet();
+                }
+                try {
+                    gate.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        return siddhiAppRuntime;
+    }
+}
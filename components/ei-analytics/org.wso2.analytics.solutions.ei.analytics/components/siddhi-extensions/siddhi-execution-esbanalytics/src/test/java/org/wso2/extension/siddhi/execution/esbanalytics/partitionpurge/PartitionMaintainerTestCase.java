@@ -0,0 +1,215 @@
+/*
+ *  Copyright (c)  2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.esbanalytics.partitionpurge;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PartitionMaintainerTestCase {
+
+    private static final long DAY_MILLIS = PartitionDialect.DAY_MILLIS;
+
+    @Test
+    public void testPartitionsEndingAtPurgingTimeDropped() {
+
+        FakeDialect dialect = new FakeDialect("p20261001", "p20261002", "p20261003", "p20261004", "p20261005",
+                "pmax");
+        PartitionMaintainer maintainer = new PartitionMaintainer("ESBEventTable", 2, "TestApp");
+        // p20261003 ends exactly at the purging time, hence it only holds rows older than it
+        Object[] result = maintainer.maintain(null, dialect, dayStart(2026, 10, 4),
+                dayStart(2026, 10, 5) + 3600000);
+        AssertJUnit.assertEquals(Arrays.asList(true, 3), Arrays.asList(result));
+        AssertJUnit.assertEquals(Arrays.asList("p20261001", "p20261002", "p20261003"), dialect.droppedPartitions);
+        AssertJUnit.assertEquals(dayStart(2026, 10, 6), dialect.lowerBound);
+        AssertJUnit.assertEquals(Arrays.asList(dayStart(2026, 10, 6), dayStart(2026, 10, 7)),
+                dialect.addedDayStarts);
+
+        dialect = new FakeDialect("p20261001", "p20261002", "p20261003", "pmax");
+        result = maintainer.maintain(null, dialect, dayStart(2026, 10, 4) - 1, dayStart(2026, 10, 3));
+        AssertJUnit.assertEquals(Arrays.asList(true, 2), Arrays.asList(result));
+        AssertJUnit.assertEquals(Arrays.asList("p20261001", "p20261002"), dialect.droppedPartitions);
+    }
+
+    @Test
+    public void testPartitionsAddedFromCurrentDayAfterDowntime() {
+
+        FakeDialect dialect = new FakeDialect("p20261001", "pmax");
+        PartitionMaintainer maintainer = new PartitionMaintainer("ESBEventTable", 2, "TestApp");
+        Object[] result = maintainer.maintain(null, dialect, dayStart(2026, 9, 20), dayStart(2026, 10, 10) + 1);
+        AssertJUnit.assertEquals(Arrays.asList(true, 0), Arrays.asList(result));
+        AssertJUnit.assertNull(dialect.droppedPartitions);
+        // The days missed while the app was down are left to the first new partition, which starts at the end of
+        // the last day partition
+        AssertJUnit.assertEquals(dayStart(2026, 10, 2), dialect.lowerBound);
+        AssertJUnit.assertEquals(Arrays.asList(dayStart(2026, 10, 10), dayStart(2026, 10, 11),
+                dayStart(2026, 10, 12)), dialect.addedDayStarts);
+    }
+
+    @Test
+    public void testPartitionsAddedToTableWithOnlyOverflowPartition() {
+
+        FakeDialect dialect = new FakeDialect("pmax");
+        PartitionMaintainer maintainer = new PartitionMaintainer("ESBEventTable", 1, "TestApp");
+        Object[] result = maintainer.maintain(null, dialect, dayStart(2026, 9, 20), dayStart(2026, 10, 10));
+        AssertJUnit.assertEquals(Arrays.asList(true, 0), Arrays.asList(result));
+        AssertJUnit.assertEquals(Long.MIN_VALUE, dialect.lowerBound);
+        AssertJUnit.assertEquals(Arrays.asList(dayStart(2026, 10, 10), dayStart(2026, 10, 11)),
+                dialect.addedDayStarts);
+    }
+
+    @Test
+    public void testNothingAddedWhenPartitionsAreAhead() {
+
+        FakeDialect dialect = new FakeDialect("p20261010", "p20261011", "pmax");
+        PartitionMaintainer maintainer = new PartitionMaintainer("ESBEventTable", 1, "TestApp");
+        Object[] result = maintainer.maintain(null, dialect, dayStart(2026, 9, 20), dayStart(2026, 10, 10));
+        AssertJUnit.assertEquals(Arrays.asList(true, 0), Arrays.asList(result));
+        AssertJUnit.assertNull(dialect.addedDayStarts);
+    }
+
+    @Test
+    public void testNotPartitionedTableLeftAlone() {
+
+        FakeDialect dialect = new FakeDialect();
+        PartitionMaintainer maintainer = new PartitionMaintainer("ESBEventTable", 1, "TestApp");
+        Object[] result = maintainer.maintain(null, dialect, dayStart(2026, 9, 20), dayStart(2026, 10, 10));
+        AssertJUnit.assertEquals(Arrays.asList(false, 0), Arrays.asList(result));
+        AssertJUnit.assertNull(dialect.droppedPartitions);
+        AssertJUnit.assertNull(dialect.addedDayStarts);
+    }
+
+    @Test
+    public void testDroppedPartitionsReportedWhenAddingFails() {
+
+        FakeDialect dialect = new FakeDialect("p20261001", "p20261009", "pmax");
+        dialect.failAdding = true;
+        PartitionMaintainer maintainer = new PartitionMaintainer("ESBEventTable", 1, "TestApp");
+        Object[] result = maintainer.maintain(null, dialect, dayStart(2026, 10, 5), dayStart(2026, 10, 10));
+        // The table is still reported as partitioned, so that its rows are not deleted one by one instead
+        AssertJUnit.assertEquals(Arrays.asList(true, 1), Arrays.asList(result));
+    }
+
+    @Test
+    public void testMySQLStatements() throws SQLException {
+
+        List<String> statements = new ArrayList<>();
+        MySQLPartitionDialect dialect = new MySQLPartitionDialect();
+        dialect.dropPartitions(recordingConnection(statements), "ESBEventTable",
+                Arrays.asList("p20261001", "p20261002"));
+        dialect.addPartitions(recordingConnection(statements), "ESBEventTable", dayStart(2026, 10, 10),
+                Arrays.asList(dayStart(2026, 10, 10), dayStart(2026, 10, 11)));
+        AssertJUnit.assertEquals(Arrays.asList(
+                "ALTER TABLE ESBEventTable DROP PARTITION p20261001, p20261002",
+                "ALTER TABLE ESBEventTable REORGANIZE PARTITION pmax INTO (" +
+                        "PARTITION p20261010 VALUES LESS THAN (" + dayStart(2026, 10, 11) + "), " +
+                        "PARTITION p20261011 VALUES LESS THAN (" + dayStart(2026, 10, 12) + "), " +
+                        "PARTITION pmax VALUES LESS THAN MAXVALUE)"), statements);
+    }
+
+    @Test
+    public void testPostgreSQLStatements() throws SQLException {
+
+        List<String> statements = new ArrayList<>();
+        PostgreSQLPartitionDialect dialect = new PostgreSQLPartitionDialect();
+        dialect.dropPartitions(recordingConnection(statements), "ESBEventTable", Collections.singletonList(
+                "p20261001"));
+        dialect.addPartitions(recordingConnection(statements), "ESBEventTable", Long.MIN_VALUE,
+                Arrays.asList(dayStart(2026, 10, 10), dayStart(2026, 10, 11)));
+        dialect.addPartitions(recordingConnection(statements), "ESBEventTable", dayStart(2026, 10, 2),
+                Collections.singletonList(dayStart(2026, 10, 12)));
+        AssertJUnit.assertEquals(Arrays.asList(
+                "DROP TABLE ESBEventTable_p20261001",
+                "CREATE TABLE IF NOT EXISTS ESBEventTable_p20261010 PARTITION OF ESBEventTable FOR VALUES " +
+                        "FROM (MINVALUE) TO (" + dayStart(2026, 10, 11) + ")",
+                "CREATE TABLE IF NOT EXISTS ESBEventTable_p20261011 PARTITION OF ESBEventTable FOR VALUES " +
+                        "FROM (" + dayStart(2026, 10, 11) + ") TO (" + dayStart(2026, 10, 12) + ")",
+                "CREATE TABLE IF NOT EXISTS ESBEventTable_p20261012 PARTITION OF ESBEventTable FOR VALUES " +
+                        "FROM (" + dayStart(2026, 10, 2) + ") TO (" + dayStart(2026, 10, 13) + ")"), statements);
+    }
+
+    private static long dayStart(int year, int month, int day) {
+        return LocalDate.of(year, month, day).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Connection of which statements only record the SQL they execute
+     */
+    private static Connection recordingConnection(List<String> statements) {
+
+        Statement statement = (Statement) Proxy.newProxyInstance(PartitionMaintainerTestCase.class.getClassLoader(),
+                new Class[]{Statement.class}, (proxy, method, args) -> {
+                    if ("executeUpdate".equals(method.getName())) {
+                        statements.add((String) args[0]);
+                        return 0;
+                    }
+                    return null;
+                });
+        return (Connection) Proxy.newProxyInstance(PartitionMaintainerTestCase.class.getClassLoader(),
+                new Class[]{Connection.class}, (proxy, method, args) ->
+                        "createStatement".equals(method.getName()) ? statement : null);
+    }
+
+    /**
+     * Dialect which lists fixed partitions, and records the partitions dropped and added
+     */
+    private static class FakeDialect extends PartitionDialect {
+
+        private final List<String> partitions;
+        private List<String> droppedPartitions;
+        private List<Long> addedDayStarts;
+        private long lowerBound;
+        private boolean failAdding;
+
+        FakeDialect(String... partitions) {
+            this.partitions = Arrays.asList(partitions);
+        }
+
+        @Override
+        List<String> listPartitions(Connection connection, String tableName) {
+            return partitions;
+        }
+
+        @Override
+        void dropPartitions(Connection connection, String tableName, List<String> partitions) {
+            droppedPartitions = new ArrayList<>(partitions);
+        }
+
+        @Override
+        void addPartitions(Connection connection, String tableName, long lowerBound, List<Long> dayStarts)
+                throws SQLException {
+
+            if (failAdding) {
+                throw new SQLException("Partitions cannot be added");
+            }
+            this.lowerBound = lowerBound;
+            addedDayStarts = new ArrayList<>(dayStarts);
+        }
+    }
+}
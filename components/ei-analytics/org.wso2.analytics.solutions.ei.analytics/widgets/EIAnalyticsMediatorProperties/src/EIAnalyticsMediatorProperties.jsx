@@ -51,6 +51,10 @@ const table = {
     overflowX: 'auto',
 };
 
+// Columns of the message flow data which may hold references to the payload table
+const PAYLOAD_COLUMNS = ['beforePayload', 'afterPayload', 'transportPropertyMap', 'contextPropertyMap'];
+const PAYLOAD_REFERENCE = /^sha256:[0-9a-f]{64}$/;
+
 class EIAnalyticsMediatorProperties extends Widget {
     constructor(props) {
         super(props);
@@ -111,156 +115,221 @@ class EIAnalyticsMediatorProperties extends Widget {
 
     handleComponentMessageFlowData(messageFlowId) {
         return (messageFlowData) => {
-            const messageInfoBefore = parseDatastoreMessage(messageFlowData)[0];
-            if (messageInfoBefore.children != null && messageInfoBefore.children !== 'null') {
-                const childIndex = JSON.parse(messageInfoBefore.children)[0];
-                // Get message flow details of the child component
-                super.getWidgetConfiguration(this.props.widgetID)
-                    .then((message) => {
-                        // Get data provider sub json string from the widget configuration
-                        const dataProviderConf = message.data.configs.providerConfig;
-                        let query = dataProviderConf.configs.config.queryData
-                            .GET_CHILD_MESSAGE_FLOW_DATA_QUERY;
-                        // Insert required parameters to the query string
-                        const formattedQuery = query
-                            .replace('{{messageFlowId}}', messageFlowId)
-                            .replace('{{componentIndex}}', childIndex)
-                            .replace('{{meta_tenantId}}', this.props.dashboard.properties.tenantId);
-                        dataProviderConf.configs.config.queryData = {query: formattedQuery};
-                        // Request data store with the modified query
-                        super.getWidgetChannelManager()
-                            .subscribeWidget(
-                                this.props.id,
-                                "EIAnalyticsMediatorProperties",
-                                this.handleChildMessageFlowData(messageInfoBefore).bind(this),
-                                dataProviderConf,
-                            );
-                    })
-                    .catch((error) => {
-                        console.error("Unable to load configurations of " + this.props.widgetID + " widget.");
-                    });
-                /*
-                If DB returned nothing, still continue the process
-                 */
-                this.handleChildMessageFlowData(messageInfoBefore)('');
-            } else {
-                /* If child details are not available, continue  with the normal flow */
-                this.handleChildMessageFlowData(messageInfoBefore)('');
-            }
+            this.resolvePayloadReferences(parseDatastoreMessage(messageFlowData)[0], (messageInfoBefore) => {
+                if (messageInfoBefore.children != null && messageInfoBefore.children !== 'null') {
+                    const childIndex = JSON.parse(messageInfoBefore.children)[0];
+                    // Get message flow details of the child component
+                    super.getWidgetConfiguration(this.props.widgetID)
+                        .then((message) => {
+                            // Get data provider sub json string from the widget configuration
+                            const dataProviderConf = message.data.configs.providerConfig;
+                            let query = dataProviderConf.configs.config.queryData
+                                .GET_CHILD_MESSAGE_FLOW_DATA_QUERY;
+                            // Insert required parameters to the query string
+                            const formattedQuery = query
+                                .replace('{{messageFlowId}}', messageFlowId)
+                                .replace('{{componentIndex}}', childIndex)
+                                .replace('{{meta_tenantId}}', this.props.dashboard.properties.tenantId);
+                            dataProviderConf.configs.config.queryData = {query: formattedQuery};
+                            // Request data store with the modified query
+                            super.getWidgetChannelManager()
+                                .subscribeWidget(
+                                    this.props.id,
+                                    "EIAnalyticsMediatorProperties",
+                                    this.handleChildMessageFlowData(messageInfoBefore).bind(this),
+                                    dataProviderConf,
+                                );
+                        })
+                        .catch((error) => {
+                            console.error("Unable to load configurations of " + this.props.widgetID + " widget.");
+                        });
+                    /*
+                    If DB returned nothing, still continue the process
+                     */
+                    this.handleChildMessageFlowData(messageInfoBefore)('');
+                } else {
+                    /* If child details are not available, continue  with the normal flow */
+                    this.handleChildMessageFlowData(messageInfoBefore)('');
+                }
+            });
         };
     }
 
     handleChildMessageFlowData(messageInfoBefore) {
         return (childMessageDetails) => {
-            let messageInfoAfter = {};
-            if (childMessageDetails !== '') {
-                messageInfoAfter = parseDatastoreMessage(childMessageDetails)[0];
+            if (childMessageDetails === '') {
+                this.compareMessageInfo(messageInfoBefore, {}, false);
+                return;
             }
-            const result = {};
-            result.payload = {
-                before: messageInfoBefore.beforePayload,
-                after: messageInfoBefore.afterPayload
-            };
-
-            const transportProperties = [];
-            const contextProperties = [];
-            let transportPropertyMapBefore;
-            let contextPropertyMapBefore;
-
-            if (messageInfoBefore.transportPropertyMap != null) {
-                transportPropertyMapBefore = processProperties(messageInfoBefore.transportPropertyMap);
+            this.resolvePayloadReferences(parseDatastoreMessage(childMessageDetails)[0], (messageInfoAfter) => {
+                this.compareMessageInfo(messageInfoBefore, messageInfoAfter, true);
+            });
+        };
+    }
+
+    /**
+     * Compare the payload and properties of the mediator with the properties of its child, and show them
+     */
+    compareMessageInfo(messageInfoBefore, messageInfoAfter, isChildData) {
+        const result = {};
+        result.payload = {
+            before: messageInfoBefore.beforePayload,
+            after: messageInfoBefore.afterPayload
+        };
+
+        const transportProperties = [];
+        const contextProperties = [];
+        let transportPropertyMapBefore;
+        let contextPropertyMapBefore;
+
+        if (messageInfoBefore.transportPropertyMap != null) {
+            transportPropertyMapBefore = processProperties(messageInfoBefore.transportPropertyMap);
+        } else {
+            transportPropertyMapBefore = {};
+        }
+        if (messageInfoBefore.contextPropertyMap != null) {
+            contextPropertyMapBefore = processProperties(messageInfoBefore.contextPropertyMap);
+        } else {
+            contextPropertyMapBefore = {};
+        }
+
+        const allTransportProperties = Object.keys(transportPropertyMapBefore);
+        const allContextProperties = Object.keys(contextPropertyMapBefore);
+        let transportPorpertyMapAfter;
+        let contextPorpertyMapAfter;
+
+        if (messageInfoAfter != null) {
+            if (messageInfoAfter.transportPropertyMap != null) {
+                transportPorpertyMapAfter = processProperties(messageInfoAfter.transportPropertyMap);
             } else {
-                transportPropertyMapBefore = {};
+                transportPorpertyMapAfter = {};
             }
-            if (messageInfoBefore.contextPropertyMap != null) {
-                contextPropertyMapBefore = processProperties(messageInfoBefore.contextPropertyMap);
+            if (messageInfoAfter.contextPropertyMap != null) {
+                contextPorpertyMapAfter = processProperties(messageInfoAfter.contextPropertyMap);
             } else {
-                contextPropertyMapBefore = {};
+                contextPorpertyMapAfter = {};
             }
 
-            const allTransportProperties = Object.keys(transportPropertyMapBefore);
-            const allContextProperties = Object.keys(contextPropertyMapBefore);
-            let transportPorpertyMapAfter;
-            let contextPorpertyMapAfter;
-
-            if (messageInfoAfter != null) {
-                if (messageInfoAfter.transportPropertyMap != null) {
-                    transportPorpertyMapAfter = processProperties(messageInfoAfter.transportPropertyMap);
-                } else {
-                    transportPorpertyMapAfter = {};
-                }
-                if (messageInfoAfter.contextPropertyMap != null) {
-                    contextPorpertyMapAfter = processProperties(messageInfoAfter.contextPropertyMap);
-                } else {
-                    contextPorpertyMapAfter = {};
-                }
-
-                for (const property in transportPorpertyMapAfter) {
-                    if (allTransportProperties.indexOf(property) < 0) {
-                        allTransportProperties.push(property);
-                    }
-                }
-                for (const property in contextPorpertyMapAfter) {
-                    if (allContextProperties.indexOf(property) < 0) {
-                        allContextProperties.push(property);
-                    }
+            for (const property in transportPorpertyMapAfter) {
+                if (allTransportProperties.indexOf(property) < 0) {
+                    allTransportProperties.push(property);
                 }
             }
-            // Add Transport Properties
-            for (const property in allTransportProperties) {
-                const propertyName = allTransportProperties[property];
-                let beforeValue;
-                let afterValue;
-                if (transportPropertyMapBefore.hasOwnProperty(propertyName)) {
-                    beforeValue = transportPropertyMapBefore[propertyName];
-                } else {
-                    beforeValue = 'N/A';
+            for (const property in contextPorpertyMapAfter) {
+                if (allContextProperties.indexOf(property) < 0) {
+                    allContextProperties.push(property);
                 }
-                if (messageInfoAfter != null) {
-                    if (transportPorpertyMapAfter.hasOwnProperty(propertyName)) {
-                        afterValue = transportPorpertyMapAfter[propertyName];
-                    } else {
-                        afterValue = 'N/A';
-                    }
-                } else {
-                    afterValue = beforeValue;
-                }
-                transportProperties.push({"name": propertyName, before: beforeValue, 'after': afterValue});
             }
-            result.transportProperties = transportProperties;
-
-            // Add Context Properties
-            for (const property in allContextProperties) {
-                const propertyName = allContextProperties[property];
-                let beforeValue;
-                let afterValue;
-                if (contextPropertyMapBefore.hasOwnProperty(propertyName)) {
-                    beforeValue = contextPropertyMapBefore[propertyName];
+        }
+        // Add Transport Properties
+        for (const property in allTransportProperties) {
+            const propertyName = allTransportProperties[property];
+            let beforeValue;
+            let afterValue;
+            if (transportPropertyMapBefore.hasOwnProperty(propertyName)) {
+                beforeValue = transportPropertyMapBefore[propertyName];
+            } else {
+                beforeValue = 'N/A';
+            }
+            if (messageInfoAfter != null) {
+                if (transportPorpertyMapAfter.hasOwnProperty(propertyName)) {
+                    afterValue = transportPorpertyMapAfter[propertyName];
                 } else {
-                    beforeValue = 'N/A';
+                    afterValue = 'N/A';
                 }
-                if (messageInfoAfter != null) {
-                    if (contextPorpertyMapAfter.hasOwnProperty(propertyName)) {
-                        afterValue = contextPorpertyMapAfter[propertyName];
-                    } else {
-                        afterValue = 'N/A';
-                    }
+            } else {
+                afterValue = beforeValue;
+            }
+            transportProperties.push({"name": propertyName, before: beforeValue, 'after': afterValue});
+        }
+        result.transportProperties = transportProperties;
+
+        // Add Context Properties
+        for (const property in allContextProperties) {
+            const propertyName = allContextProperties[property];
+            let beforeValue;
+            let afterValue;
+            if (contextPropertyMapBefore.hasOwnProperty(propertyName)) {
+                beforeValue = contextPropertyMapBefore[propertyName];
+            } else {
+                beforeValue = 'N/A';
+            }
+            if (messageInfoAfter != null) {
+                if (contextPorpertyMapAfter.hasOwnProperty(propertyName)) {
+                    afterValue = contextPorpertyMapAfter[propertyName];
                 } else {
-                    afterValue = beforeValue;
+                    afterValue = 'N/A';
                 }
-                contextProperties.push({"name": propertyName, 'before': beforeValue, after: afterValue});
+            } else {
+                afterValue = beforeValue;
             }
-            result.contextProperties = contextProperties;
+            contextProperties.push({"name": propertyName, 'before': beforeValue, after: afterValue});
+        }
+        result.contextProperties = contextProperties;
+
+        // If child data is not present in recent state update, update state
+        if (!this.isChildDataPresent) {
+            this.isChildDataPresent = isChildData;
+            this.setState({
+                isNoData: false,
+                messageComparisonData: result,
+            }, this.generateMergedView.bind(this));
+        }
+    }
 
-            // If child data is not present in recent state update, update state
-            if (!this.isChildDataPresent) {
-                this.isChildDataPresent = childMessageDetails !== '';
-                this.setState({
-                    isNoData: false,
-                    messageComparisonData: result,
-                }, this.generateMergedView.bind(this));
-            }
-        };
+    /**
+     * Replace the payload references of message flow data by the payloads they refer to in the payload table.
+     * Data stored with inline payloads is passed on as it is.
+     */
+    resolvePayloadReferences(messageInfo, callback) {
+        const payloadRefs = [];
+        if (messageInfo) {
+            PAYLOAD_COLUMNS.forEach((column) => {
+                if (isPayloadReference(messageInfo[column]) && payloadRefs.indexOf(messageInfo[column]) < 0) {
+                    payloadRefs.push(messageInfo[column]);
+                }
+            });
+        }
+        if (payloadRefs.length === 0) {
+            callback(messageInfo);
+            return;
+        }
+        super.getWidgetConfiguration(this.props.widgetID)
+            .then((message) => {
+                // Get data provider sub json string from the widget configuration
+                const dataProviderConf = message.data.configs.providerConfig;
+                let query = dataProviderConf.configs.config.queryData
+                    .GET_PAYLOADS_QUERY;
+                // Insert required parameters to the query string
+                const formattedQuery = query
+                    .replace('{{payloadRefs}}', payloadRefs.map(payloadRef => "payloadRef=='" + payloadRef + "'")
+                        .join(' OR '))
+                    .replace('{{meta_tenantId}}', this.props.dashboard.properties.tenantId);
+                dataProviderConf.configs.config.queryData = {query: formattedQuery};
+                // Request data store with the modified query
+                super.getWidgetChannelManager()
+                    .subscribeWidget(
+                        this.props.id,
+                        "EIAnalyticsMediatorProperties",
+                        (payloadData) => {
+                            const payloads = {};
+                            parseDatastoreMessage(payloadData).forEach((row) => {
+                                payloads[row.payloadRef] = row.payload;
+                            });
+                            PAYLOAD_COLUMNS.forEach((column) => {
+                                if (isPayloadReference(messageInfo[column])) {
+                                    // Payloads purged from the payload table are shown as missing
+                                    messageInfo[column] = payloads[messageInfo[column]] || null;
+                                }
+                            });
+                            callback(messageInfo);
+                        },
+                        dataProviderConf,
+                    );
+            })
+            .catch(() => {
+                console.error("Unable to load widget configurations");
+            });
     }
 
     generateMergedView() {
@@ -373,6 +442,13 @@ function parseDatastoreMessage(recievedData) {
     return parsedArray;
 }
 
+/**
+ * Check whether a value of a payload column is a reference to the payload table, rather than an inline payload
+ */
+function isPayloadReference(value) {
+    return typeof value === 'string' && PAYLOAD_REFERENCE.test(value);
+}
+
 /**
  * Split and process elements in any map of properties, if given in "{name1=value1, name2=value2 }" format.
  * in the publisher-end.
@@ -490,6 +490,7 @@ class EIAnalyticsMessageFlow extends Widget {
 
     /**
      * Draw graph for a flow of a message using the unique messageFlowID for the message.
+     * The assembled flow document of the message is used when available, and the stored component events otherwise.
      * @param messageFlowID Unique ID for the message flow
      * @param tenantId Tenant ID in a multiple tenant scenario
      */
@@ -500,6 +501,64 @@ class EIAnalyticsMessageFlow extends Widget {
         });
 
         // Set message flow id and make db call
+        super.getWidgetConfiguration(this.props.widgetID)
+            .then((message) => {
+                let dataProviderConf = message.data;
+                let query = dataProviderConf.configs.providerConfig.configs.config.queryData
+                    .MESSAGE_FLOW_QUERY_GET_FLOW;
+                let formattedQuery = query
+                    .replace("{{messageFlowId}}", "\'" + messageFlowID + "\'")
+                    .replace("{{meta_tenantId}}", tenantId);
+                dataProviderConf.configs.providerConfig.configs.config.queryData = {query: formattedQuery};
+                super.getWidgetChannelManager()
+                    .subscribeWidget(
+                        this.props.id,
+                        "EIAnalyticsMessageFlow",
+                        this.handleMessageFlowDocument(messageFlowID, tenantId).bind(this),
+                        dataProviderConf.configs.providerConfig
+                    );
+            })
+            .catch((error) => {
+                console.error("Unable to load configurations of " + this.props.widgetID + " widget.");
+            });
+    }
+
+    /**
+     *  Parse the assembled flow document of the message flow, or fall back to its stored component events.
+     *  Incomplete flows are read from the component events, as components received after the flow timed out are
+     *  only stored there
+     */
+    handleMessageFlowDocument(messageFlowID, tenantId) {
+        return (flowData) => {
+            let parsedFlows = this.parseDatastoreMessage(flowData);
+            if (parsedFlows.length === 0 || !parsedFlows[0].flow || !parsedFlows[0].complete) {
+                this.loadMessageFlowComponents(messageFlowID, tenantId);
+                return;
+            }
+            let flow;
+            try {
+                flow = JSON.parse(parsedFlows[0].flow);
+            } catch (error) {
+                console.error("Unable to parse the flow document of message flow " + messageFlowID + ".");
+                this.loadMessageFlowComponents(messageFlowID, tenantId);
+                return;
+            }
+            let parsedComponents = flow.components.map((component) => {
+                component.messageFlowId = flow.messageFlowId;
+                component.entryPoint = flow.entryPoint;
+                component.entryPointHashcode = flow.entryPointHashcode;
+                return component;
+            });
+            this.loadMessageFlowSchema(parsedComponents, tenantId);
+        };
+    }
+
+    /**
+     * Get the stored component events of a message flow, for flows which do not have an assembled flow document
+     * @param messageFlowID Unique ID for the message flow
+     * @param tenantId Tenant ID in a multiple tenant scenario
+     */
+    loadMessageFlowComponents(messageFlowID, tenantId) {
         super.getWidgetConfiguration(this.props.widgetID)
             .then((message) => {
                 let dataProviderConf = message.data;
@@ -527,35 +586,43 @@ class EIAnalyticsMessageFlow extends Widget {
      */
     handleMessageFlowComponentsData(tenantId) {
         return (components) => {
-            let parsedComponents = this.parseDatastoreMessage(components);
-            var entryPointHashCode = parsedComponents[0].entryPointHashcode;
-            var entryPoint = parsedComponents[0].entryPoint;
-
-            // Set query for schema and call datastore for data
-            super.getWidgetConfiguration(this.props.widgetID)
-                .then((message) => {
-                    let dataProviderConf = message.data;
-                    var query = dataProviderConf.configs.providerConfig.configs.config.queryData
-                        .MESSAGE_FLOW_QUERY_GET_FLOW_SCHEMA;
-                    let formattedQuery = query
-                        .replace("{{hashcode}}", "\'" + entryPointHashCode + "\'")
-                        .replace("{{meta_tenantId}}", tenantId);
-                    dataProviderConf.configs.providerConfig.configs.config.queryData.query = formattedQuery;
-                    let formattedProviderConfig = dataProviderConf.configs.providerConfig;
-                    super.getWidgetChannelManager()
-                        .subscribeWidget(
-                            this.props.id,
-                            "EIAnalyticsMessageFlow",
-                            this.handleMessageFlowSchema(parsedComponents, entryPoint, tenantId).bind(this),
-                            formattedProviderConfig
-                        );
-                })
-                .catch(() => {
-                    console.error("Unable to load widget configurations");
-                });
+            this.loadMessageFlowSchema(this.parseDatastoreMessage(components), tenantId);
         };
     }
 
+    /**
+     * Get schema of the entry point of the message flow components
+     * @param parsedComponents Components of the message flow
+     * @param tenantId Tenant ID in a multiple tenant scenario
+     */
+    loadMessageFlowSchema(parsedComponents, tenantId) {
+        var entryPointHashCode = parsedComponents[0].entryPointHashcode;
+        var entryPoint = parsedComponents[0].entryPoint;
+
+        // Set query for schema and call datastore for data
+        super.getWidgetConfiguration(this.props.widgetID)
+            .then((message) => {
+                let dataProviderConf = message.data;
+                var query = dataProviderConf.configs.providerConfig.configs.config.queryData
+                    .MESSAGE_FLOW_QUERY_GET_FLOW_SCHEMA;
+                let formattedQuery = query
+                    .replace("{{hashcode}}", "\'" + entryPointHashCode + "\'")
+                    .replace("{{meta_tenantId}}", tenantId);
+                dataProviderConf.configs.providerConfig.configs.config.queryData.query = formattedQuery;
+                let formattedProviderConfig = dataProviderConf.configs.providerConfig;
+                super.getWidgetChannelManager()
+                    .subscribeWidget(
+                        this.props.id,
+                        "EIAnalyticsMessageFlow",
+                        this.handleMessageFlowSchema(parsedComponents, entryPoint, tenantId).bind(this),
+                        formattedProviderConfig
+                    );
+            })
+            .catch(() => {
+                console.error("Unable to load widget configurations");
+            });
+    }
+
     /**
      * Parse message flow schema and Get schemas for any existing sequences in the components
      */
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.sp.open.tracer.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sampler which aims to record the same number of traces per second for each operation, whatever its traffic.
+ * The traffic of each operation is measured every second, and its probability is set to record the target number
+ * of traces at that traffic. A rate limiter caps each operation at the target while its traffic is not known yet,
+ * or grows within a second. Sampled root spans are tagged with the probability they were recorded with.
+ */
+final class AdaptiveSampler implements Sampler {
+    static final String TYPE = "adaptive";
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double tracesPerSecond;
+    private final int maxOperations;
+    private final SamplingDecision notSampled;
+    private final ConcurrentHashMap<String, OperationSampler> operations = new ConcurrentHashMap<>();
+    // Shared by the operations seen once maxOperations are tracked, so that the memory held stays bounded
+    private final OperationSampler otherOperations;
+
+    /**
+     * @param tracesPerSecond Number of traces recorded per second for each operation
+     * @param maxOperations   Maximum number of operations which are sampled separately
+     */
+    AdaptiveSampler(double tracesPerSecond, int maxOperations) {
+        this.tracesPerSecond = tracesPerSecond;
+        this.maxOperations = maxOperations;
+        this.notSampled = new SamplingDecision(false, TYPE, tracesPerSecond);
+        this.otherOperations = new OperationSampler();
+    }
+
+    @Override
+    public SamplingDecision sample(String operationName) {
+        OperationSampler operationSampler = operations.get(operationName);
+        if (operationSampler == null) {
+            if (operations.size() >= maxOperations) {
+                operationSampler = otherOperations;
+            } else {
+                operationSampler = operations.computeIfAbsent(operationName, key -> new OperationSampler());
+            }
+        }
+        return operationSampler.sample();
+    }
+
+    /**
+     * Probabilistic sampler of an operation, whose probability follows the traffic of the operation.
+     */
+    private final class OperationSampler {
+        private final AtomicLong count = new AtomicLong();
+        private final RateLimiter rateLimiter = new RateLimiter(tracesPerSecond, Math.max(1, tracesPerSecond));
+        private volatile long windowStartNanos = System.nanoTime();
+        // All traces are recorded until the traffic of the operation is known
+        private volatile double probability = 1;
+
+        SamplingDecision sample() {
+            count.incrementAndGet();
+            long windowStart = windowStartNanos;
+            long now = System.nanoTime();
+            if (now - windowStart >= WINDOW_NANOS) {
+                adjust(now, windowStart);
+            }
+            double currentProbability = probability;
+            if (ThreadLocalRandom.current().nextDouble() < currentProbability && rateLimiter.checkCredit(1)) {
+                return new SamplingDecision(true, TYPE, currentProbability);
+            }
+            return notSampled;
+        }
+
+        private synchronized void adjust(long now, long windowStart) {
+            if (windowStartNanos != windowStart) {
+                // Already adjusted by another thread
+                return;
+            }
+            double observedTracesPerSecond = count.getAndSet(0) * (double) WINDOW_NANOS / (now - windowStart);
+            probability = observedTracesPerSecond <= tracesPerSecond ? 1 : tracesPerSecond / observedTracesPerSecond;
+            windowStartNanos = now;
+        }
+    }
+}
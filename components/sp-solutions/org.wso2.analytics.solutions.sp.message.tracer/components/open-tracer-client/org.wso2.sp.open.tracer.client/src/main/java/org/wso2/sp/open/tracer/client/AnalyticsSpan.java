@@ -18,7 +18,7 @@ package org.wso2.sp.open.tracer.client;
 import io.opentracing.References;
 import io.opentracing.Span;
 import io.opentracing.SpanContext;
-import org.wso2.carbon.databridge.agent.DataPublisher;
+import io.opentracing.tag.Tags;
 import org.wso2.carbon.databridge.commons.Event;
 
 import java.util.ArrayList;
@@ -28,24 +28,34 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * AnalyticsSpans are created via AnalyticsTracer.buildSpan(...), but they are also returned via calls to
  * AnalyticsTracer.finishedSpans(). They provide accessors to all Span state.
  **/
-final class AnalyticsSpan implements Span {
+class AnalyticsSpan implements Span {
+
+    // Unit of the span timestamps taken from nowMicros()
+    static final TimeUnit TIMESTAMP_UNIT = TimeUnit.MILLISECONDS;
+    // Rough sizes used to estimate the memory held by a finished span
+    private static final int SPAN_OVERHEAD_BYTES = 512;
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
 
     private static AtomicLong nextId = new AtomicLong();
 
     private AnalyticsSpanContext context;
     private final long parentId; // 0 if there's no parent.
     private final long startMicros;
+    private long finishMicros;
+    private long finishMillis;
     private boolean finished;
     private final Map<String, Object> tags;
     private String operationName;
     private final List<Reference> references;
-    private DataPublisher dataPublisher;
+    private AsyncSpanReporter spanReporter;
     private String componentName;
 
     @Override
@@ -66,16 +76,64 @@ final class AnalyticsSpan implements Span {
     }
 
     @Override
-    public synchronized void finish(long finishMicros) {
-        finishedCheck("Finishing already finished span");
-        this.finished = true;
-        this.dataPublisher.
-                publish(new Event(Constants.ANALYTICS_SPAN_STREAM_ID,
-                        System.currentTimeMillis(), null, null,
-                        new Object[]{this.componentName, this.context.traceId, this.context.spanId,
-                                Utils.getJSONString(this.context.baggage), parentId, operationName,
-                                this.startMicros, finishMicros, Utils.getJSONString(tags),
-                                Utils.getJSONString(references)}));
+    public void finish(long finishMicros) {
+        synchronized (this) {
+            finishedCheck("Finishing already finished span");
+            this.finished = true;
+            this.finishMicros = finishMicros;
+            this.finishMillis = System.currentTimeMillis();
+        }
+        // The span can no longer be modified, so it is serialized and published later by the reporter thread
+        this.spanReporter.report(this);
+    }
+
+    /**
+     * Build the span event of a finished span. This is called from the reporter thread.
+     */
+    synchronized Event toEvent() {
+        return new Event(Constants.ANALYTICS_SPAN_STREAM_ID, this.finishMillis, null, null,
+                new Object[]{this.componentName, this.context.traceId, this.context.spanId,
+                        Utils.getJSONString(this.context.baggage), parentId, operationName,
+                        this.startMicros, this.finishMicros, Utils.getJSONString(tags),
+                        Utils.getJSONString(references)});
+    }
+
+    synchronized long getStartMicros() {
+        return startMicros;
+    }
+
+    synchronized long getFinishMicros() {
+        return finishMicros;
+    }
+
+    /**
+     * @return Whether the span is tagged as failed
+     */
+    synchronized boolean isError() {
+        Object error = tags.get(Tags.ERROR.getKey());
+        return error != null && Boolean.parseBoolean(error.toString());
+    }
+
+    /**
+     * @return Estimated number of bytes held by the span
+     */
+    synchronized long estimatedSize() {
+        long size = SPAN_OVERHEAD_BYTES + 2L * operationName.length()
+                + (long) references.size() * ENTRY_OVERHEAD_BYTES;
+        for (Map.Entry<String, Object> tag : tags.entrySet()) {
+            size += ENTRY_OVERHEAD_BYTES + 2L * length(tag.getKey());
+            if (tag.getValue() instanceof String) {
+                size += 2L * ((String) tag.getValue()).length();
+            }
+        }
+        for (Map.Entry<String, String> baggageItem : context.baggage.entrySet()) {
+            size += ENTRY_OVERHEAD_BYTES + 2L * (length(baggageItem.getKey()) + length(baggageItem.getValue()));
+        }
+        return size;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
     }
 
     @Override
@@ -100,12 +158,12 @@ final class AnalyticsSpan implements Span {
     }
 
     @Override
-    public final Span log(Map<String, ?> fields) {
+    public Span log(Map<String, ?> fields) {
         return log(nowMicros(), fields);
     }
 
     @Override
-    public final synchronized AnalyticsSpan log(long timestampMicros, Map<String, ?> fields) {
+    public synchronized AnalyticsSpan log(long timestampMicros, Map<String, ?> fields) {
         finishedCheck("Adding logs %s at %d to already finished span", fields, timestampMicros);
         return this;
     }
@@ -136,12 +194,14 @@ final class AnalyticsSpan implements Span {
      * AnalyticsSpanContext implements a Dapper-like opentracing.SpanContext with a trace- and span-id.
      * <p>
      * Note that parent ids are part of the AnalyticsSpan, not the AnalyticsSpanContext (since they do not need
-     * to propagate between processes).
+     * to propagate between processes). The sampling decision of the trace does propagate, so that all services
+     * record the same traces.
      */
     static final class AnalyticsSpanContext implements SpanContext {
         private final String traceId;
         private final Map<String, String> baggage;
         private final long spanId;
+        private final boolean sampled;
 
         /**
          * A package-protected constructor to create a new AnalyticsSpanContext. This should only be called by
@@ -149,12 +209,14 @@ final class AnalyticsSpan implements Span {
          * AnalyticsTracer.
          *
          * @param baggage the AnalyticsSpanContext takes ownership of the baggage parameter
+         * @param sampled whether the trace is recorded
          * @see AnalyticsSpanContext#withBaggageItem(String, String)
          */
-        AnalyticsSpanContext(String traceId, long spanId, Map<String, String> baggage) {
+        AnalyticsSpanContext(String traceId, long spanId, Map<String, String> baggage, boolean sampled) {
             this.baggage = baggage;
             this.traceId = traceId;
             this.spanId = spanId;
+            this.sampled = sampled;
         }
 
         String getBaggageItem(String key) {
@@ -169,13 +231,17 @@ final class AnalyticsSpan implements Span {
             return spanId;
         }
 
+        boolean isSampled() {
+            return sampled;
+        }
+
         /**
          * Create and return a new (immutable) AnalyticsSpanContext with the added baggage item.
          */
         AnalyticsSpanContext withBaggageItem(String key, String val) {
             Map<String, String> newBaggage = new HashMap<>(this.baggage);
             newBaggage.put(key, val);
-            return new AnalyticsSpanContext(this.traceId, this.spanId, newBaggage);
+            return new AnalyticsSpanContext(this.traceId, this.spanId, newBaggage, this.sampled);
         }
 
         @Override
@@ -221,10 +287,10 @@ final class AnalyticsSpan implements Span {
     }
 
     AnalyticsSpan(String operationName, long startMicros, Map<String, Object> initialTags,
-                  List<Reference> refs, DataPublisher dataPublisher, String componentName) {
+                  List<Reference> refs, AsyncSpanReporter spanReporter, String componentName) {
         this.operationName = operationName;
         this.startMicros = startMicros;
-        this.dataPublisher = dataPublisher;
+        this.spanReporter = spanReporter;
         this.componentName = componentName;
         if (initialTags == null) {
             this.tags = new HashMap<>();
@@ -239,20 +305,50 @@ final class AnalyticsSpan implements Span {
         AnalyticsSpanContext parent = findPreferredParentRef(this.references);
         if (parent == null) {
             // We're a root Span.
-            this.context = new AnalyticsSpanContext(generateTraceId(), nextId(), new HashMap<>());
+            this.context = new AnalyticsSpanContext(generateTraceId(), nextId(), new HashMap<>(), true);
             this.parentId = 0;
         } else {
             // We're a child Span.
-            this.context = new AnalyticsSpanContext(parent.traceId, nextId(), mergeBaggages(this.references));
+            this.context = new AnalyticsSpanContext(parent.traceId, nextId(), mergeBaggages(this.references), true);
             this.parentId = parent.spanId;
         }
     }
 
+    /**
+     * Create a span which is not recorded, for {@link NoopAnalyticsSpan}, which holds its own context and overrides
+     * all the methods of the span
+     */
+    AnalyticsSpan() {
+        this.parentId = 0;
+        this.startMicros = 0;
+        this.tags = Collections.emptyMap();
+        this.references = Collections.emptyList();
+    }
+
     private String generateTraceId() {
         return UUID.randomUUID().toString();
     }
 
-    private static AnalyticsSpanContext findPreferredParentRef(List<Reference> references) {
+    /**
+     * Create the context of a span of a trace which is not sampled. The trace id of a new trace is not taken from
+     * a secure random generator, as the trace is not recorded.
+     *
+     * @param parent     Preferred parent context, or null for the root span of a trace
+     * @param references References of the span
+     * @return Context of the span
+     */
+    static AnalyticsSpanContext unsampledContext(AnalyticsSpanContext parent, List<Reference> references) {
+        if (parent == null) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            return new AnalyticsSpanContext(new UUID(random.nextLong(), random.nextLong()).toString(), nextId(),
+                    Collections.emptyMap(), false);
+        }
+        // Baggage maps are not modified once their context is created, so the baggage of a single parent is shared
+        Map<String, String> baggage = references.size() == 1 ? parent.baggage : mergeBaggages(references);
+        return new AnalyticsSpanContext(parent.traceId, nextId(), baggage, false);
+    }
+
+    static AnalyticsSpanContext findPreferredParentRef(List<Reference> references) {
         if (references.isEmpty()) {
             return null;
         }
@@ -274,7 +370,7 @@ final class AnalyticsSpan implements Span {
         return baggage;
     }
 
-    private long nextId() {
+    private static long nextId() {
         return nextId.incrementAndGet();
     }
 
@@ -39,12 +39,17 @@ public class AnalyticsTracer implements Tracer {
     private Propagator propagator;
     private ScopeManager scopeManager;
     private DataPublisher dataPublisher;
+    private AsyncSpanReporter spanReporter;
+    private Sampler sampler;
     private String componentName;
 
-    AnalyticsTracer(DataPublisher dataPublisher, String componentName, ScopeManager scopeManager) {
+    AnalyticsTracer(DataPublisher dataPublisher, AsyncSpanReporter spanReporter, Sampler sampler,
+                    String componentName, ScopeManager scopeManager) {
         this.propagator = Propagator.TEXT_MAP;
         this.scopeManager = scopeManager;
         this.dataPublisher = dataPublisher;
+        this.spanReporter = spanReporter;
+        this.sampler = sampler;
         this.componentName = componentName;
     }
 
@@ -72,6 +77,7 @@ public class AnalyticsTracer implements Tracer {
         Propagator TEXT_MAP = new Propagator() {
             public static final String SPAN_ID_KEY = "spanid";
             public static final String TRACE_ID_KEY = "traceid";
+            public static final String SAMPLED_KEY = "sampled";
             public static final String BAGGAGE_KEY_PREFIX = "baggage-";
 
             @Override
@@ -83,6 +89,7 @@ public class AnalyticsTracer implements Tracer {
                     }
                     textMap.put(SPAN_ID_KEY, String.valueOf(ctx.spanId()));
                     textMap.put(TRACE_ID_KEY, String.valueOf(ctx.traceId()));
+                    textMap.put(SAMPLED_KEY, ctx.isSampled() ? "1" : "0");
                 } else {
                     throw new IllegalArgumentException("Unknown carrier");
                 }
@@ -93,6 +100,8 @@ public class AnalyticsTracer implements Tracer {
                                                                   DataPublisher dataPublisher) {
                 String traceId = null;
                 Long spanId = null;
+                // Traces of services which do not propagate a decision are recorded, as they record all spans
+                boolean sampled = true;
                 Map<String, String> baggage = new HashMap<>();
 
                 if (carrier instanceof TextMap) {
@@ -102,6 +111,8 @@ public class AnalyticsTracer implements Tracer {
                             traceId = entry.getValue();
                         } else if (SPAN_ID_KEY.equals(entry.getKey())) {
                             spanId = Long.valueOf(entry.getValue());
+                        } else if (SAMPLED_KEY.equals(entry.getKey())) {
+                            sampled = !"0".equals(entry.getValue());
                         } else if (entry.getKey().startsWith(BAGGAGE_KEY_PREFIX)) {
                             String key = entry.getKey().substring((BAGGAGE_KEY_PREFIX.length()));
                             baggage.put(key, entry.getValue());
@@ -112,7 +123,7 @@ public class AnalyticsTracer implements Tracer {
                 }
 
                 if (traceId != null && spanId != null) {
-                    return new AnalyticsSpan.AnalyticsSpanContext(traceId, spanId, baggage);
+                    return new AnalyticsSpan.AnalyticsSpanContext(traceId, spanId, baggage, sampled);
                 }
 
                 return null;
@@ -217,17 +228,32 @@ public class AnalyticsTracer implements Tracer {
             return startManual();
         }
 
+        /**
+         * Start the span. A new trace is recorded depending on the decision of the sampler, while the spans of an
+         * existing trace follow the decision of their parent. Spans of traces which are not recorded are no-op spans.
+         */
         @Override
         public AnalyticsSpan startManual() {
-            if (this.startMicros == 0) {
-                this.startMicros = AnalyticsSpan.nowMicros();
-            }
             SpanContext activeSpanContext = activeSpanContext();
             if (references.isEmpty() && !ignoringActiveSpan && activeSpanContext != null) {
                 references.add(new AnalyticsSpan.Reference((AnalyticsSpan.AnalyticsSpanContext) activeSpanContext,
                         References.CHILD_OF));
             }
-            return new AnalyticsSpan(operationName, startMicros, initialTags, references, dataPublisher, componentName);
+            AnalyticsSpan.AnalyticsSpanContext parent = AnalyticsSpan.findPreferredParentRef(references);
+            if (parent == null) {
+                SamplingDecision decision = sampler.sample(operationName);
+                if (!decision.isSampled()) {
+                    return new NoopAnalyticsSpan(AnalyticsSpan.unsampledContext(null, references));
+                }
+                initialTags.put(SamplingDecision.SAMPLER_TYPE_TAG, decision.getSamplerType());
+                initialTags.put(SamplingDecision.SAMPLER_PARAM_TAG, decision.getSamplerParam());
+            } else if (!parent.isSampled()) {
+                return new NoopAnalyticsSpan(AnalyticsSpan.unsampledContext(parent, references));
+            }
+            if (this.startMicros == 0) {
+                this.startMicros = AnalyticsSpan.nowMicros();
+            }
+            return new AnalyticsSpan(operationName, startMicros, initialTags, references, spanReporter, componentName);
         }
     }
 }
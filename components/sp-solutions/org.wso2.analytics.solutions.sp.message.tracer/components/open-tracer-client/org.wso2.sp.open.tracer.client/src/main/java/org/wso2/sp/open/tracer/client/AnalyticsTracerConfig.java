@@ -26,15 +26,44 @@ class AnalyticsTracerConfig {
     private String analyticsURL;
     private String analyticsAuthURL;
     private String serviceName;
+    private int reporterBufferSize;
+    private int reporterBatchSize;
+    private long reporterFlushInterval;
+    private AsyncSpanReporter.OverflowPolicy reporterOverflowPolicy;
+    private Sampler.Type samplerType;
+    private double samplerParam;
+    private int samplerMaxOperations;
+    private boolean tailSamplingEnabled;
+    private long tailSamplingDecisionWait;
+    private long tailSamplingLatencyThreshold;
+    private double tailSamplingRate;
+    private long tailSamplingMaxBytes;
 
     AnalyticsTracerConfig(String type, String analyticsURL, String analyticsAuthURL, String analyticsUserName,
-                          String analyticsPassword, String serviceName) {
+                          String analyticsPassword, String serviceName, int reporterBufferSize,
+                          int reporterBatchSize, long reporterFlushInterval,
+                          AsyncSpanReporter.OverflowPolicy reporterOverflowPolicy, Sampler.Type samplerType,
+                          double samplerParam, int samplerMaxOperations, boolean tailSamplingEnabled,
+                          long tailSamplingDecisionWait, long tailSamplingLatencyThreshold,
+                          double tailSamplingRate, long tailSamplingMaxBytes) {
         this.type = type;
         this.analyticsUserName = analyticsUserName;
         this.analyticsPassword = analyticsPassword;
         this.analyticsURL = analyticsURL;
         this.analyticsAuthURL = analyticsAuthURL;
         this.serviceName = serviceName;
+        this.reporterBufferSize = reporterBufferSize;
+        this.reporterBatchSize = reporterBatchSize;
+        this.reporterFlushInterval = reporterFlushInterval;
+        this.reporterOverflowPolicy = reporterOverflowPolicy;
+        this.samplerType = samplerType;
+        this.samplerParam = samplerParam;
+        this.samplerMaxOperations = samplerMaxOperations;
+        this.tailSamplingEnabled = tailSamplingEnabled;
+        this.tailSamplingDecisionWait = tailSamplingDecisionWait;
+        this.tailSamplingLatencyThreshold = tailSamplingLatencyThreshold;
+        this.tailSamplingRate = tailSamplingRate;
+        this.tailSamplingMaxBytes = tailSamplingMaxBytes;
     }
 
     String getType() {
@@ -60,4 +89,52 @@ class AnalyticsTracerConfig {
     String getServiceName() {
         return serviceName;
     }
+
+    int getReporterBufferSize() {
+        return reporterBufferSize;
+    }
+
+    int getReporterBatchSize() {
+        return reporterBatchSize;
+    }
+
+    long getReporterFlushInterval() {
+        return reporterFlushInterval;
+    }
+
+    AsyncSpanReporter.OverflowPolicy getReporterOverflowPolicy() {
+        return reporterOverflowPolicy;
+    }
+
+    Sampler.Type getSamplerType() {
+        return samplerType;
+    }
+
+    double getSamplerParam() {
+        return samplerParam;
+    }
+
+    int getSamplerMaxOperations() {
+        return samplerMaxOperations;
+    }
+
+    boolean isTailSamplingEnabled() {
+        return tailSamplingEnabled;
+    }
+
+    long getTailSamplingDecisionWait() {
+        return tailSamplingDecisionWait;
+    }
+
+    long getTailSamplingLatencyThreshold() {
+        return tailSamplingLatencyThreshold;
+    }
+
+    double getTailSamplingRate() {
+        return tailSamplingRate;
+    }
+
+    long getTailSamplingMaxBytes() {
+        return tailSamplingMaxBytes;
+    }
 }
@@ -42,7 +42,19 @@ public class AnalyticsTracerLoader {
         try {
             DataPublisher dataPublisher = new DataPublisher(config.getType(), config.getAnalyticsURL(),
                     config.getAnalyticsAuthURL(), config.getAnalyticsUserName(), config.getAnalyticsPassword());
-            return new AnalyticsTracer(dataPublisher, config.getServiceName(), scopeManager);
+            TailSamplingBuffer tailSamplingBuffer = null;
+            if (config.isTailSamplingEnabled()) {
+                tailSamplingBuffer = new TailSamplingBuffer(config.getTailSamplingDecisionWait(),
+                        config.getTailSamplingLatencyThreshold(), config.getTailSamplingRate(),
+                        config.getTailSamplingMaxBytes());
+            }
+            AsyncSpanReporter spanReporter = new AsyncSpanReporter(dataPublisher, config.getServiceName(),
+                    config.getReporterBufferSize(), config.getReporterBatchSize(),
+                    config.getReporterFlushInterval(), config.getReporterOverflowPolicy(), tailSamplingBuffer);
+            spanReporter.start();
+            Sampler sampler = config.getSamplerType().create(config.getSamplerParam(),
+                    config.getSamplerMaxOperations());
+            return new AnalyticsTracer(dataPublisher, spanReporter, sampler, config.getServiceName(), scopeManager);
         } catch (DataEndpointAgentConfigurationException | DataEndpointException | DataEndpointConfigurationException
                 | DataEndpointAuthenticationException | TransportException e) {
             throw new AnalyticsTracerInitializationException("Error while initializing the data publisher" +
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.sp.open.tracer.client;
+
+import org.wso2.carbon.databridge.agent.DataPublisher;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * This reports finished spans from a background thread, so that finishing a span only adds it to a bounded buffer.
+ * The reporter thread serializes the buffered spans in to events and publishes them in batches, once a batch is
+ * buffered or the flush interval passes. When tail sampling is enabled, the reporter thread passes the spans through
+ * a {@link TailSamplingBuffer}, and only publishes the spans of the traces it decides to report.
+ */
+final class AsyncSpanReporter implements Runnable {
+
+    private static final long BLOCKED_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * What is done with a finished span when the buffer is full.
+     */
+    enum OverflowPolicy {
+        // The span is dropped and counted, and the finishing thread carries on
+        DROP,
+        // The finishing thread waits until the reporter thread makes room for the span
+        BLOCK;
+
+        static OverflowPolicy fromConfig(String value) {
+            return OverflowPolicy.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    private final Consumer<Event> publisher;
+    private final SpanRingBuffer<AnalyticsSpan> spans;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    // Null when tail sampling is disabled
+    private final TailSamplingBuffer tailSamplingBuffer;
+    private final List<AnalyticsSpan> releasedSpans = new ArrayList<>();
+    private final Thread thread;
+    // Set while the reporter thread waits for the flush interval, so that only then it is woken up for a full batch
+    private final AtomicBoolean waiting = new AtomicBoolean();
+    private final AtomicLong droppedSpans = new AtomicLong();
+    private final AtomicLong failedSpans = new AtomicLong();
+    private volatile boolean running = true;
+
+    AsyncSpanReporter(DataPublisher dataPublisher, String componentName, int bufferSize, int batchSize,
+                      long flushIntervalMillis, OverflowPolicy overflowPolicy,
+                      TailSamplingBuffer tailSamplingBuffer) {
+        this(dataPublisher::publish, componentName, bufferSize, batchSize, flushIntervalMillis, overflowPolicy,
+                tailSamplingBuffer);
+    }
+
+    /**
+     * @param publisher Publishes a span event, in place of the data publisher
+     */
+    AsyncSpanReporter(Consumer<Event> publisher, String componentName, int bufferSize, int batchSize,
+                      long flushIntervalMillis, OverflowPolicy overflowPolicy,
+                      TailSamplingBuffer tailSamplingBuffer) {
+        this.publisher = publisher;
+        this.spans = new SpanRingBuffer<>(bufferSize);
+        this.batchSize = Math.min(batchSize, this.spans.capacity());
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.overflowPolicy = overflowPolicy;
+        this.tailSamplingBuffer = tailSamplingBuffer;
+        this.thread = new Thread(this, "wso2sp-span-reporter-" + componentName);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start the reporter thread, and publish the spans still buffered when the JVM shuts down.
+     */
+    void start() {
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, thread.getName() + "-shutdown"));
+    }
+
+    /**
+     * Buffer a finished span to be reported. This does not serialize or publish the span.
+     *
+     * @param span Finished span
+     */
+    void report(AnalyticsSpan span) {
+        while (!spans.offer(span)) {
+            if (overflowPolicy == OverflowPolicy.DROP || !running) {
+                droppedSpans.incrementAndGet();
+                return;
+            }
+            wakeUp();
+            LockSupport.parkNanos(this, BLOCKED_WAIT_NANOS);
+        }
+        if (spans.size() >= batchSize) {
+            wakeUp();
+        }
+    }
+
+    private void wakeUp() {
+        if (waiting.get() && waiting.compareAndSet(true, false)) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                drain(batch, false);
+            } catch (Throwable t) {
+                // The reporter thread is kept alive whatever fails, as finishing threads wait on it when the buffer
+                // is full
+                discard(batch);
+            }
+            waiting.set(true);
+            // Checked again after announcing the wait, as a producer may have filled a batch in between
+            if (running && spans.size() < batchSize) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            waiting.set(false);
+        }
+        try {
+            drain(batch, true);
+        } catch (Throwable t) {
+            discard(batch);
+        }
+    }
+
+    /**
+     * Serialize and publish all buffered spans, a batch at a time
+     *
+     * @param batch   Reusable list of the events of a batch
+     * @param closing Whether the traces held for tail sampling are decided without waiting for their decision
+     */
+    private void drain(List<Event> batch, boolean closing) {
+        AnalyticsSpan span;
+        while ((span = spans.poll()) != null) {
+            if (tailSamplingBuffer == null) {
+                add(batch, span);
+            } else {
+                try {
+                    tailSamplingBuffer.add(span, System.nanoTime(), releasedSpans);
+                } catch (RuntimeException e) {
+                    failedSpans.incrementAndGet();
+                }
+                addReleasedSpans(batch);
+            }
+        }
+        if (tailSamplingBuffer != null) {
+            if (closing) {
+                tailSamplingBuffer.flush(releasedSpans);
+            } else {
+                tailSamplingBuffer.expire(System.nanoTime(), releasedSpans);
+            }
+            addReleasedSpans(batch);
+        }
+        publish(batch);
+    }
+
+    private void addReleasedSpans(List<Event> batch) {
+        for (AnalyticsSpan span : releasedSpans) {
+            add(batch, span);
+        }
+        releasedSpans.clear();
+    }
+
+    private void add(List<Event> batch, AnalyticsSpan span) {
+        Event event;
+        try {
+            event = span.toEvent();
+        } catch (RuntimeException e) {
+            // A span which cannot be serialized is counted as failed, and the rest of the batch is still published
+            failedSpans.incrementAndGet();
+            return;
+        }
+        batch.add(event);
+        if (batch.size() == batchSize) {
+            publish(batch);
+        }
+    }
+
+    private void publish(List<Event> batch) {
+        for (Event event : batch) {
+            try {
+                publisher.accept(event);
+            } catch (RuntimeException e) {
+                // The data publisher logs its own failures, the reporter thread carries on with the rest
+                failedSpans.incrementAndGet();
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * Count the spans of a batch which failed part way as failed, and drop them
+     */
+    private void discard(List<Event> batch) {
+        failedSpans.addAndGet(batch.size() + releasedSpans.size());
+        batch.clear();
+        releasedSpans.clear();
+    }
+
+    /**
+     * Stop the reporter thread after publishing the buffered spans. Spans finished afterwards are dropped.
+     */
+    void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Number of spans dropped because the buffer was full, or the reporter was closed
+     */
+    long getDroppedSpans() {
+        return droppedSpans.get();
+    }
+
+    /**
+     * @return Number of spans which could not be serialized, or which the data publisher failed to publish
+     */
+    long getFailedSpans() {
+        return failedSpans.get();
+    }
+}
@@ -29,6 +29,18 @@ class Constants {
     static final String AUTH_URL_CONFIG = "reporter.wso2sp.publisher.authUrl";
     static final String PUBLISHER_TYPE_CONFIG = "reporter.wso2sp.publisher.type";
     static final String WSO2SP_REPORTER_DATABRIDGE_AGENT_CONFIG = "reporter.wso2sp.publisher.databridge.agent.config";
+    static final String BUFFER_SIZE_CONFIG = "reporter.wso2sp.publisher.buffer.size";
+    static final String BATCH_SIZE_CONFIG = "reporter.wso2sp.publisher.batch.size";
+    static final String FLUSH_INTERVAL_CONFIG = "reporter.wso2sp.publisher.flush.interval";
+    static final String OVERFLOW_POLICY_CONFIG = "reporter.wso2sp.publisher.overflow.policy";
+    static final String SAMPLER_TYPE_CONFIG = "reporter.wso2sp.sampler.type";
+    static final String SAMPLER_PARAM_CONFIG = "reporter.wso2sp.sampler.param";
+    static final String SAMPLER_MAX_OPERATIONS_CONFIG = "reporter.wso2sp.sampler.max.operations";
+    static final String TAIL_SAMPLING_ENABLED_CONFIG = "reporter.wso2sp.sampler.tail.enabled";
+    static final String TAIL_SAMPLING_DECISION_WAIT_CONFIG = "reporter.wso2sp.sampler.tail.decision.wait";
+    static final String TAIL_SAMPLING_LATENCY_THRESHOLD_CONFIG = "reporter.wso2sp.sampler.tail.latency.threshold";
+    static final String TAIL_SAMPLING_RATE_CONFIG = "reporter.wso2sp.sampler.tail.rate";
+    static final String TAIL_SAMPLING_MAX_BYTES_CONFIG = "reporter.wso2sp.sampler.tail.max.bytes";
     static final String WSO2SP_REPORTER_TRUSTSTORE = "javax.net.ssl.trustStore";
     static final String WSO2SP_REPORTER_TRUSTSTORE_PASSWORD = "javax.net.ssl.trustStorePassword";
     static final String TRACER_VALUE = "wso2sp";
@@ -38,4 +50,16 @@ class Constants {
     static final String DEFAULT_URL = "tcp://localhost:7611";
     static final String DEFAULT_AUTH_URL = "ssl://localhost:7711";
     static final String DEFAULT_PUBLISHER_TYPE = "Thrift";
+    static final String DEFAULT_BUFFER_SIZE = "8192";
+    static final String DEFAULT_BATCH_SIZE = "100";
+    static final String DEFAULT_FLUSH_INTERVAL = "1000";
+    static final String DEFAULT_OVERFLOW_POLICY = "drop";
+    static final String DEFAULT_SAMPLER_TYPE = "const";
+    static final String DEFAULT_SAMPLER_PARAM = "1";
+    static final String DEFAULT_SAMPLER_MAX_OPERATIONS = "2000";
+    static final String DEFAULT_TAIL_SAMPLING_ENABLED = "false";
+    static final String DEFAULT_TAIL_SAMPLING_DECISION_WAIT = "5000";
+    static final String DEFAULT_TAIL_SAMPLING_LATENCY_THRESHOLD = "1000";
+    static final String DEFAULT_TAIL_SAMPLING_RATE = "0.01";
+    static final String DEFAULT_TAIL_SAMPLING_MAX_BYTES = "33554432";
 }
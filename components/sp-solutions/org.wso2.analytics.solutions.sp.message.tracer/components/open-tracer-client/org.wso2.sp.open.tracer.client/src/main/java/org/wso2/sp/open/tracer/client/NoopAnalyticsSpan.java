@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.sp.open.tracer.client;
+
+import java.util.Map;
+
+/**
+ * Span of a trace which is not sampled. It only carries its context, so that the decision and the baggage still
+ * propagate to child spans and downstream services. Tags, logs and finishing the span are ignored, and the span is
+ * never reported. It is an AnalyticsSpan, so that callers of the span builder get the same type whether or not the
+ * trace is sampled.
+ */
+final class NoopAnalyticsSpan extends AnalyticsSpan {
+
+    private volatile AnalyticsSpan.AnalyticsSpanContext context;
+
+    NoopAnalyticsSpan(AnalyticsSpan.AnalyticsSpanContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public AnalyticsSpan.AnalyticsSpanContext context() {
+        return context;
+    }
+
+    @Override
+    public NoopAnalyticsSpan setTag(String key, String value) {
+        return this;
+    }
+
+    @Override
+    public NoopAnalyticsSpan setTag(String key, boolean value) {
+        return this;
+    }
+
+    @Override
+    public NoopAnalyticsSpan setTag(String key, Number value) {
+        return this;
+    }
+
+    @Override
+    public NoopAnalyticsSpan log(Map<String, ?> fields) {
+        return this;
+    }
+
+    @Override
+    public NoopAnalyticsSpan log(long timestampMicroseconds, Map<String, ?> fields) {
+        return this;
+    }
+
+    @Override
+    public NoopAnalyticsSpan log(String event) {
+        return this;
+    }
+
+    @Override
+    public NoopAnalyticsSpan log(long timestampMicroseconds, String event) {
+        return this;
+    }
+
+    @Override
+    public synchronized NoopAnalyticsSpan setBaggageItem(String key, String value) {
+        this.context = this.context.withBaggageItem(key, value);
+        return this;
+    }
+
+    @Override
+    public String getBaggageItem(String key) {
+        return this.context.getBaggageItem(key);
+    }
+
+    @Override
+    public NoopAnalyticsSpan setOperationName(String operationName) {
+        return this;
+    }
+
+    @Override
+    public void finish() {
+    }
+
+    @Override
+    public void finish(long finishMicros) {
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "traceId:" + context.traceId() +
+                ", spanId:" + context.spanId() +
+                ", sampled:false}";
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.sp.open.tracer.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sampler which records each trace with a fixed probability.
+ */
+final class ProbabilisticSampler implements Sampler {
+    static final String TYPE = "probabilistic";
+
+    private final double probability;
+    private final SamplingDecision sampled;
+    private final SamplingDecision notSampled;
+
+    /**
+     * @param probability Probability of recording a trace, between 0 and 1
+     */
+    ProbabilisticSampler(double probability) {
+        this.probability = probability;
+        this.sampled = new SamplingDecision(true, TYPE, probability);
+        this.notSampled = new SamplingDecision(false, TYPE, probability);
+    }
+
+    @Override
+    public SamplingDecision sample(String operationName) {
+        return ThreadLocalRandom.current().nextDouble() < probability ? sampled : notSampled;
+    }
+}
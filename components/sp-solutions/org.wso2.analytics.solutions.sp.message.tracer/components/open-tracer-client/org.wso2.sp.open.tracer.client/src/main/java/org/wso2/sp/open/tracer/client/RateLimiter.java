@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.sp.open.tracer.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket which is refilled at a fixed rate, up to a maximum balance.
+ */
+final class RateLimiter {
+
+    private final double creditsPerNano;
+    private final double maxBalance;
+    private double balance;
+    private long lastTickNanos;
+
+    /**
+     * @param creditsPerSecond Rate the bucket is refilled at
+     * @param maxBalance       Maximum number of credits held, which is also the initial balance
+     */
+    RateLimiter(double creditsPerSecond, double maxBalance) {
+        this.creditsPerNano = creditsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.maxBalance = maxBalance;
+        this.balance = maxBalance;
+        this.lastTickNanos = System.nanoTime();
+    }
+
+    /**
+     * Take the given number of credits if they are available
+     *
+     * @param cost Number of credits
+     * @return false if the balance does not cover the cost, and nothing is taken
+     */
+    synchronized boolean checkCredit(double cost) {
+        long now = System.nanoTime();
+        balance = Math.min(maxBalance, balance + (now - lastTickNanos) * creditsPerNano);
+        lastTickNanos = now;
+        if (balance >= cost) {
+            balance -= cost;
+            return true;
+        }
+        return false;
+    }
+}
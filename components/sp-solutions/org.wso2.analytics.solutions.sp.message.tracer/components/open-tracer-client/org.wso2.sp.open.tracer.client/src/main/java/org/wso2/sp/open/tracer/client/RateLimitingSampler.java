@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.sp.open.tracer.client;
+
+/**
+ * Sampler which records up to a fixed number of traces per second, allowing bursts of up to a second's worth.
+ */
+final class RateLimitingSampler implements Sampler {
+    static final String TYPE = "ratelimiting";
+
+    private final RateLimiter rateLimiter;
+    private final SamplingDecision sampled;
+    private final SamplingDecision notSampled;
+
+    /**
+     * @param maxTracesPerSecond Maximum number of traces recorded per second
+     */
+    RateLimitingSampler(double maxTracesPerSecond) {
+        this.rateLimiter = new RateLimiter(maxTracesPerSecond, Math.max(1, maxTracesPerSecond));
+        this.sampled = new SamplingDecision(true, TYPE, maxTracesPerSecond);
+        this.notSampled = new SamplingDecision(false, TYPE, maxTracesPerSecond);
+    }
+
+    @Override
+    public SamplingDecision sample(String operationName) {
+        return rateLimiter.checkCredit(1) ? sampled : notSampled;
+    }
+}
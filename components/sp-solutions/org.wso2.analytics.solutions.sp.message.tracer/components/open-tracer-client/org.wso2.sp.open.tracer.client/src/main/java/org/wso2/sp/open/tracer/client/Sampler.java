@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.sp.open.tracer.client;
+
+import java.util.Locale;
+
+/**
+ * Sampler decides whether a new trace is recorded. It is only consulted for root spans, as the spans of a trace
+ * follow the decision taken for its root span, including the spans of downstream services.
+ */
+interface Sampler {
+
+    /**
+     * Decide whether a new trace is recorded
+     *
+     * @param operationName Operation name of the root span of the trace
+     * @return Sampling decision
+     */
+    SamplingDecision sample(String operationName);
+
+    /**
+     * Types of the samplers, which are configured through the tracer properties.
+     */
+    enum Type {
+        // Records all traces when the parameter is 1, and none when it is 0
+        CONST,
+        // Records a trace with the probability given by the parameter
+        PROBABILISTIC,
+        // Records up to the number of traces per second given by the parameter
+        RATELIMITING,
+        // Records about the number of traces per second given by the parameter for each operation, by adjusting
+        // the probability of each operation to its traffic
+        ADAPTIVE;
+
+        static Type fromConfig(String value) {
+            return Type.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+        }
+
+        Sampler create(double param, int maxOperations) {
+            switch (this) {
+                case CONST:
+                    return new ConstSampler(param != 0);
+                case PROBABILISTIC:
+                    return new ProbabilisticSampler(param);
+                case RATELIMITING:
+                    return new RateLimitingSampler(param);
+                default:
+                    return new AdaptiveSampler(param, maxOperations);
+            }
+        }
+    }
+}
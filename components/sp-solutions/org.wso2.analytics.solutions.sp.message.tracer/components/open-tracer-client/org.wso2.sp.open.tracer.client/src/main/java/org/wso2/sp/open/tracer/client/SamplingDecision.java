@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.sp.open.tracer.client;
+
+/**
+ * Decision of a {@link Sampler}. Sampled root spans are tagged with the sampler type and parameter, so that the
+ * number of traces can be estimated from the recorded ones.
+ */
+final class SamplingDecision {
+    static final String SAMPLER_TYPE_TAG = "sampler.type";
+    static final String SAMPLER_PARAM_TAG = "sampler.param";
+
+    private final boolean sampled;
+    private final String samplerType;
+    private final double samplerParam;
+
+    SamplingDecision(boolean sampled, String samplerType, double samplerParam) {
+        this.sampled = sampled;
+        this.samplerType = samplerType;
+        this.samplerParam = samplerParam;
+    }
+
+    boolean isSampled() {
+        return sampled;
+    }
+
+    String getSamplerType() {
+        return samplerType;
+    }
+
+    double getSamplerParam() {
+        return samplerParam;
+    }
+}
@@ -19,16 +19,41 @@ import io.opentracing.ScopeManager;
 import io.opentracing.Tracer;
 import org.wso2.carbon.databridge.agent.AgentHolder;
 
+import java.util.Locale;
 import java.util.Properties;
 
 import static org.wso2.sp.open.tracer.client.Constants.AUTH_URL_CONFIG;
+import static org.wso2.sp.open.tracer.client.Constants.BATCH_SIZE_CONFIG;
+import static org.wso2.sp.open.tracer.client.Constants.BUFFER_SIZE_CONFIG;
 import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_AUTH_URL;
+import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_BATCH_SIZE;
+import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_BUFFER_SIZE;
+import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_FLUSH_INTERVAL;
+import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_OVERFLOW_POLICY;
 import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_PASSWORD;
 import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_PUBLISHER_TYPE;
+import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_SAMPLER_MAX_OPERATIONS;
+import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_SAMPLER_PARAM;
+import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_SAMPLER_TYPE;
+import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_TAIL_SAMPLING_DECISION_WAIT;
+import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_TAIL_SAMPLING_ENABLED;
+import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_TAIL_SAMPLING_LATENCY_THRESHOLD;
+import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_TAIL_SAMPLING_MAX_BYTES;
+import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_TAIL_SAMPLING_RATE;
 import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_URL;
 import static org.wso2.sp.open.tracer.client.Constants.DEFAULT_USERNAME;
+import static org.wso2.sp.open.tracer.client.Constants.FLUSH_INTERVAL_CONFIG;
+import static org.wso2.sp.open.tracer.client.Constants.OVERFLOW_POLICY_CONFIG;
 import static org.wso2.sp.open.tracer.client.Constants.PASSWORD_CONFIG;
 import static org.wso2.sp.open.tracer.client.Constants.PUBLISHER_TYPE_CONFIG;
+import static org.wso2.sp.open.tracer.client.Constants.SAMPLER_MAX_OPERATIONS_CONFIG;
+import static org.wso2.sp.open.tracer.client.Constants.SAMPLER_PARAM_CONFIG;
+import static org.wso2.sp.open.tracer.client.Constants.SAMPLER_TYPE_CONFIG;
+import static org.wso2.sp.open.tracer.client.Constants.TAIL_SAMPLING_DECISION_WAIT_CONFIG;
+import static org.wso2.sp.open.tracer.client.Constants.TAIL_SAMPLING_ENABLED_CONFIG;
+import static org.wso2.sp.open.tracer.client.Constants.TAIL_SAMPLING_LATENCY_THRESHOLD_CONFIG;
+import static org.wso2.sp.open.tracer.client.Constants.TAIL_SAMPLING_MAX_BYTES_CONFIG;
+import static org.wso2.sp.open.tracer.client.Constants.TAIL_SAMPLING_RATE_CONFIG;
 import static org.wso2.sp.open.tracer.client.Constants.TRACER_NAME;
 import static org.wso2.sp.open.tracer.client.Constants.TRACER_VALUE;
 import static org.wso2.sp.open.tracer.client.Constants.URL_CONFIG;
@@ -64,7 +89,19 @@ public class StreamProcessorTracerClient {
                 properties.getProperty(AUTH_URL_CONFIG),
                 properties.getProperty(USERNAME_CONFIG),
                 properties.getProperty(PASSWORD_CONFIG),
-                serviceName
+                serviceName,
+                Integer.parseInt(properties.getProperty(BUFFER_SIZE_CONFIG)),
+                Integer.parseInt(properties.getProperty(BATCH_SIZE_CONFIG)),
+                Long.parseLong(properties.getProperty(FLUSH_INTERVAL_CONFIG)),
+                AsyncSpanReporter.OverflowPolicy.fromConfig(properties.getProperty(OVERFLOW_POLICY_CONFIG)),
+                Sampler.Type.fromConfig(properties.getProperty(SAMPLER_TYPE_CONFIG)),
+                Double.parseDouble(properties.getProperty(SAMPLER_PARAM_CONFIG)),
+                Integer.parseInt(properties.getProperty(SAMPLER_MAX_OPERATIONS_CONFIG)),
+                Boolean.parseBoolean(properties.getProperty(TAIL_SAMPLING_ENABLED_CONFIG)),
+                Long.parseLong(properties.getProperty(TAIL_SAMPLING_DECISION_WAIT_CONFIG)),
+                Long.parseLong(properties.getProperty(TAIL_SAMPLING_LATENCY_THRESHOLD_CONFIG)),
+                Double.parseDouble(properties.getProperty(TAIL_SAMPLING_RATE_CONFIG)),
+                Long.parseLong(properties.getProperty(TAIL_SAMPLING_MAX_BYTES_CONFIG))
         );
         Tracer tracer = AnalyticsTracerLoader.getInstance().getTracer(tracerConfig, scopeManager);
         return tracer;
@@ -76,6 +113,19 @@ public class StreamProcessorTracerClient {
         setValidatedStringConfig(configuration, URL_CONFIG, DEFAULT_URL);
         setValidatedStringConfig(configuration, AUTH_URL_CONFIG, DEFAULT_AUTH_URL);
         setValidatedStringConfig(configuration, PUBLISHER_TYPE_CONFIG, DEFAULT_PUBLISHER_TYPE);
+        setValidatedIntConfig(configuration, BUFFER_SIZE_CONFIG, DEFAULT_BUFFER_SIZE);
+        setValidatedIntConfig(configuration, BATCH_SIZE_CONFIG, DEFAULT_BATCH_SIZE);
+        setValidatedIntConfig(configuration, FLUSH_INTERVAL_CONFIG, DEFAULT_FLUSH_INTERVAL);
+        setValidatedStringConfig(configuration, OVERFLOW_POLICY_CONFIG, DEFAULT_OVERFLOW_POLICY);
+        try {
+            AsyncSpanReporter.OverflowPolicy.fromConfig(configuration.getProperty(OVERFLOW_POLICY_CONFIG));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidTracerConfigurationException("Unexpected span overflow policy for tracer: " +
+                    TRACER_NAME + "! Expected drop or block, but found : " +
+                    configuration.getProperty(OVERFLOW_POLICY_CONFIG));
+        }
+        validateSamplerConfiguration(configuration);
+        validateTailSamplingConfiguration(configuration);
         if (null == configuration.getProperty(WSO2SP_REPORTER_DATABRIDGE_AGENT_CONFIG)) {
             throw new InvalidTracerConfigurationException("Databridge agent config location is needed for tracer: " +
                     TRACER_NAME + ".");
@@ -85,6 +135,104 @@ public class StreamProcessorTracerClient {
         }
     }
 
+    private void validateSamplerConfiguration(Properties configuration) throws InvalidTracerConfigurationException {
+        setValidatedStringConfig(configuration, SAMPLER_TYPE_CONFIG, DEFAULT_SAMPLER_TYPE);
+        setValidatedStringConfig(configuration, SAMPLER_PARAM_CONFIG, DEFAULT_SAMPLER_PARAM);
+        setValidatedIntConfig(configuration, SAMPLER_MAX_OPERATIONS_CONFIG, DEFAULT_SAMPLER_MAX_OPERATIONS);
+        Sampler.Type samplerType;
+        try {
+            samplerType = Sampler.Type.fromConfig(configuration.getProperty(SAMPLER_TYPE_CONFIG));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidTracerConfigurationException("Unexpected sampler type for tracer: " + TRACER_NAME +
+                    "! Expected const, probabilistic, ratelimiting or adaptive, but found : " +
+                    configuration.getProperty(SAMPLER_TYPE_CONFIG));
+        }
+        String samplerParam = configuration.getProperty(SAMPLER_PARAM_CONFIG);
+        double param;
+        try {
+            param = Double.parseDouble(samplerParam);
+        } catch (NumberFormatException e) {
+            param = Double.NaN;
+        }
+        boolean valid;
+        String expected;
+        switch (samplerType) {
+            case CONST:
+                valid = param == 0 || param == 1;
+                expected = "0 or 1";
+                break;
+            case PROBABILISTIC:
+                valid = param >= 0 && param <= 1;
+                expected = "a probability between 0 and 1";
+                break;
+            default:
+                valid = param > 0 && !Double.isInfinite(param);
+                expected = "a positive number of traces per second";
+                break;
+        }
+        if (!valid) {
+            throw new InvalidTracerConfigurationException("Expected " + expected + " for " + SAMPLER_PARAM_CONFIG +
+                    " of " + samplerType.name().toLowerCase(Locale.ENGLISH) + " sampler of tracer: " + TRACER_NAME +
+                    ", but found : " + samplerParam);
+        }
+    }
+
+    private void validateTailSamplingConfiguration(Properties configuration)
+            throws InvalidTracerConfigurationException {
+        setValidatedStringConfig(configuration, TAIL_SAMPLING_ENABLED_CONFIG, DEFAULT_TAIL_SAMPLING_ENABLED);
+        setValidatedLongConfig(configuration, TAIL_SAMPLING_DECISION_WAIT_CONFIG, DEFAULT_TAIL_SAMPLING_DECISION_WAIT);
+        setValidatedLongConfig(configuration, TAIL_SAMPLING_LATENCY_THRESHOLD_CONFIG,
+                DEFAULT_TAIL_SAMPLING_LATENCY_THRESHOLD);
+        setValidatedLongConfig(configuration, TAIL_SAMPLING_MAX_BYTES_CONFIG, DEFAULT_TAIL_SAMPLING_MAX_BYTES);
+        setValidatedStringConfig(configuration, TAIL_SAMPLING_RATE_CONFIG, DEFAULT_TAIL_SAMPLING_RATE);
+        String enabled = configuration.getProperty(TAIL_SAMPLING_ENABLED_CONFIG);
+        if (!enabled.equalsIgnoreCase("true") && !enabled.equalsIgnoreCase("false")) {
+            throw new InvalidTracerConfigurationException("Expected true or false for " +
+                    TAIL_SAMPLING_ENABLED_CONFIG + " of tracer: " + TRACER_NAME + ", but found : " + enabled);
+        }
+        String rate = configuration.getProperty(TAIL_SAMPLING_RATE_CONFIG);
+        try {
+            double value = Double.parseDouble(rate);
+            if (value >= 0 && value <= 1) {
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new InvalidTracerConfigurationException("Expected a fraction between 0 and 1 for " +
+                TAIL_SAMPLING_RATE_CONFIG + " of tracer: " + TRACER_NAME + ", but found : " + rate);
+    }
+
+    private void setValidatedIntConfig(Properties configuration, String configName, String defaultValue)
+            throws InvalidTracerConfigurationException {
+        setValidatedStringConfig(configuration, configName, defaultValue);
+        String configValue = configuration.getProperty(configName);
+        try {
+            if (Integer.parseInt(configValue) > 0) {
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new InvalidTracerConfigurationException("Expected a positive integer for " + configName +
+                " of tracer: " + TRACER_NAME + ", but found : " + configValue);
+    }
+
+    private void setValidatedLongConfig(Properties configuration, String configName, String defaultValue)
+            throws InvalidTracerConfigurationException {
+        setValidatedStringConfig(configuration, configName, defaultValue);
+        String configValue = configuration.getProperty(configName);
+        try {
+            if (Long.parseLong(configValue) > 0) {
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new InvalidTracerConfigurationException("Expected a positive long for " + configName +
+                " of tracer: " + TRACER_NAME + ", but found : " + configValue);
+    }
+
     private void setValidatedStringConfig(Properties configuration, String configName, String defaultValue) {
         Object configValue = configuration.get(configName);
         if (configValue == null || configValue.toString().trim().isEmpty()) {
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.sp.open.tracer.client;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tail sampling stage of the span reporter, which holds back the finished spans of each trace until it is decided
+ * whether the trace is reported. Traces which carry an error tag, or take longer than the latency threshold, are
+ * reported as a whole as soon as that is known. Other traces are decided once the decision wait passes since their
+ * first span finished, and only a random fraction of them is reported.
+ * <p>
+ * The estimated size of the buffered spans is kept within a hard limit, by deciding the oldest traces early.
+ * This is only used by the reporter thread, and is not thread safe.
+ */
+final class TailSamplingBuffer {
+
+    // Number of recent decisions kept, so that spans finishing after the decision of their trace follow it
+    private static final int MAX_DECIDED_TRACES = 10000;
+
+    private final long decisionWaitNanos;
+    private final long latencyThreshold;
+    private final double sampleRate;
+    private final long maxBufferedBytes;
+    // Traces waiting for a decision, in the order their first span finished
+    private final LinkedHashMap<String, PendingTrace> pendingTraces = new LinkedHashMap<>();
+    private final Map<String, Boolean> decidedTraces = new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_DECIDED_TRACES;
+        }
+    };
+    private final AtomicLong evictedTraces = new AtomicLong();
+    private long bufferedBytes;
+
+    /**
+     * @param decisionWaitMillis      Time a trace is held for after its first span finished
+     * @param latencyThresholdMillis  Latency from which a trace is always reported
+     * @param sampleRate              Fraction of the other traces which is reported
+     * @param maxBufferedBytes        Maximum estimated size of the spans held
+     */
+    TailSamplingBuffer(long decisionWaitMillis, long latencyThresholdMillis, double sampleRate,
+                       long maxBufferedBytes) {
+        this.decisionWaitNanos = TimeUnit.MILLISECONDS.toNanos(decisionWaitMillis);
+        this.latencyThreshold = AnalyticsSpan.TIMESTAMP_UNIT.convert(latencyThresholdMillis, TimeUnit.MILLISECONDS);
+        this.sampleRate = sampleRate;
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * Hold back a finished span until the decision of its trace
+     *
+     * @param span     Finished span
+     * @param nowNanos Current value of {@link System#nanoTime()}
+     * @param released List the spans of the traces which are decided to be reported are added to
+     */
+    void add(AnalyticsSpan span, long nowNanos, List<AnalyticsSpan> released) {
+        String traceId = span.context().traceId();
+        Boolean decision = decidedTraces.get(traceId);
+        if (decision != null) {
+            if (decision) {
+                released.add(span);
+            }
+            return;
+        }
+        PendingTrace trace = pendingTraces.get(traceId);
+        if (trace == null) {
+            trace = new PendingTrace(nowNanos);
+            pendingTraces.put(traceId, trace);
+        }
+        long spanBytes = span.estimatedSize();
+        trace.add(span, spanBytes);
+        bufferedBytes += spanBytes;
+        if (trace.error || trace.latency() >= latencyThreshold) {
+            pendingTraces.remove(traceId);
+            decide(traceId, trace, true, released);
+            return;
+        }
+        Iterator<Map.Entry<String, PendingTrace>> iterator = pendingTraces.entrySet().iterator();
+        while (bufferedBytes > maxBufferedBytes && iterator.hasNext()) {
+            Map.Entry<String, PendingTrace> oldest = iterator.next();
+            iterator.remove();
+            evictedTraces.incrementAndGet();
+            decide(oldest.getKey(), oldest.getValue(), isSampledAtRandom(), released);
+        }
+    }
+
+    /**
+     * Decide the traces whose decision wait has passed
+     *
+     * @param nowNanos Current value of {@link System#nanoTime()}
+     * @param released List the spans of the traces which are decided to be reported are added to
+     */
+    void expire(long nowNanos, List<AnalyticsSpan> released) {
+        Iterator<Map.Entry<String, PendingTrace>> iterator = pendingTraces.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PendingTrace> oldest = iterator.next();
+            if (nowNanos - oldest.getValue().firstFinishedNanos < decisionWaitNanos) {
+                // Later traces started waiting after this one
+                return;
+            }
+            iterator.remove();
+            decide(oldest.getKey(), oldest.getValue(), isSampledAtRandom(), released);
+        }
+    }
+
+    /**
+     * Decide all the traces held, without waiting for the rest of their spans
+     *
+     * @param released List the spans of the traces which are decided to be reported are added to
+     */
+    void flush(List<AnalyticsSpan> released) {
+        Iterator<Map.Entry<String, PendingTrace>> iterator = pendingTraces.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PendingTrace> oldest = iterator.next();
+            iterator.remove();
+            decide(oldest.getKey(), oldest.getValue(), isSampledAtRandom(), released);
+        }
+    }
+
+    /**
+     * @return Number of traces decided before their decision wait passed, to keep within the size limit
+     */
+    long getEvictedTraces() {
+        return evictedTraces.get();
+    }
+
+    private void decide(String traceId, PendingTrace trace, boolean report, List<AnalyticsSpan> released) {
+        bufferedBytes -= trace.bytes;
+        decidedTraces.put(traceId, report);
+        if (report) {
+            released.addAll(trace.spans);
+        }
+    }
+
+    private boolean isSampledAtRandom() {
+        return ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * Finished spans of a trace which is not decided yet.
+     */
+    private static final class PendingTrace {
+        private final long firstFinishedNanos;
+        private final List<AnalyticsSpan> spans = new ArrayList<>();
+        private long bytes;
+        private boolean error;
+        private long earliestStart = Long.MAX_VALUE;
+        private long latestFinish = Long.MIN_VALUE;
+
+        PendingTrace(long firstFinishedNanos) {
+            this.firstFinishedNanos = firstFinishedNanos;
+        }
+
+        void add(AnalyticsSpan span, long spanBytes) {
+            spans.add(span);
+            bytes += spanBytes;
+            error |= span.isError();
+            earliestStart = Math.min(earliestStart, span.getStartMicros());
+            latestFinish = Math.max(latestFinish, span.getFinishMicros());
+        }
+
+        long latency() {
+            return latestFinish - earliestStart;
+        }
+    }
+}
@@ -33,14 +33,18 @@ public class Utils {
     private static Gson gson = new Gson();
 
     public static String getJSONString(Map properties) {
+        // The map is left as it is, as the baggage of a finished span is still shared with its child spans
         Iterator it = properties.entrySet().iterator();
         JSONArray jsonArray = new JSONArray();
         while (it.hasNext()) {
             JSONObject jsonObject = new JSONObject();
             Map.Entry pair = (Map.Entry) it.next();
+            if (pair.getKey() == null || pair.getValue() == null) {
+                // Tags and baggage items set to null carry no value, and are left out
+                continue;
+            }
             jsonObject.put(pair.getKey().toString(), pair.getValue().toString());
             jsonArray.put(jsonObject);
-            it.remove();
         }
         return jsonArray.toString();
     }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.sp.open.tracer.client;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMapExtractAdapter;
+import io.opentracing.propagation.TextMapInjectAdapter;
+import io.opentracing.util.ThreadLocalScopeManager;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class AnalyticsTracerTestCase {
+
+    private static AnalyticsTracer tracer(Sampler sampler) {
+        AsyncSpanReporter reporter = new AsyncSpanReporter(event -> { }, "test", 1024, 16, 50,
+                AsyncSpanReporter.OverflowPolicy.DROP, null);
+        return new AnalyticsTracer(null, reporter, sampler, "test", new ThreadLocalScopeManager());
+    }
+
+    private static Map<String, String> inject(AnalyticsTracer tracer, Span span) {
+        Map<String, String> carrier = new HashMap<>();
+        tracer.inject(span.context(), Format.Builtin.TEXT_MAP, new TextMapInjectAdapter(carrier));
+        return carrier;
+    }
+
+    private static AnalyticsSpan.AnalyticsSpanContext extract(AnalyticsTracer tracer, Map<String, String> carrier) {
+        SpanContext context = tracer.extract(Format.Builtin.TEXT_MAP, new TextMapExtractAdapter(carrier));
+        return (AnalyticsSpan.AnalyticsSpanContext) context;
+    }
+
+    @Test
+    public void testSampledContextPropagation() {
+        AnalyticsTracer tracer = tracer(new ConstSampler(true));
+        Span span = tracer.buildSpan("client").startManual();
+        span.setBaggageItem("user", "admin");
+        Map<String, String> carrier = inject(tracer, span);
+        AssertJUnit.assertEquals("1", carrier.get("sampled"));
+
+        AnalyticsSpan.AnalyticsSpanContext extracted = extract(tracer, carrier);
+        AnalyticsSpan.AnalyticsSpanContext context = (AnalyticsSpan.AnalyticsSpanContext) span.context();
+        AssertJUnit.assertEquals(context.traceId(), extracted.traceId());
+        AssertJUnit.assertEquals(context.spanId(), extracted.spanId());
+        AssertJUnit.assertTrue(extracted.isSampled());
+        AssertJUnit.assertEquals("admin", extracted.getBaggageItem("user"));
+
+        Span server = tracer.buildSpan("server").asChildOf(extracted).startManual();
+        AssertJUnit.assertTrue(server instanceof AnalyticsSpan);
+        AssertJUnit.assertEquals(context.traceId(), ((AnalyticsSpan) server).context().traceId());
+        AssertJUnit.assertEquals("admin", server.getBaggageItem("user"));
+    }
+
+    @Test
+    public void testUnsampledContextPropagation() {
+        AnalyticsTracer tracer = tracer(new ConstSampler(false));
+        // Spans of unsampled traces are still AnalyticsSpans to callers of the span builder
+        AnalyticsSpan span = tracer.buildSpan("client").startManual();
+        AssertJUnit.assertTrue(span instanceof NoopAnalyticsSpan);
+        span.setBaggageItem("user", "admin");
+        Map<String, String> carrier = inject(tracer, span);
+        AssertJUnit.assertEquals("0", carrier.get("sampled"));
+
+        // A service sampling all traces still follows the decision of the caller
+        AnalyticsTracer serverTracer = tracer(new ConstSampler(true));
+        AnalyticsSpan.AnalyticsSpanContext extracted = extract(serverTracer, carrier);
+        AssertJUnit.assertFalse(extracted.isSampled());
+        Span server = serverTracer.buildSpan("server").asChildOf(extracted).startManual();
+        AssertJUnit.assertTrue(server instanceof NoopAnalyticsSpan);
+        AssertJUnit.assertEquals("admin", server.getBaggageItem("user"));
+    }
+
+    @Test
+    public void testContextWithoutDecisionIsSampled() {
+        AnalyticsTracer tracer = tracer(new ConstSampler(false));
+        Map<String, String> carrier = new HashMap<>();
+        carrier.put("traceid", "trace");
+        carrier.put("spanid", "7");
+        AnalyticsSpan.AnalyticsSpanContext extracted = extract(tracer, carrier);
+        AssertJUnit.assertTrue(extracted.isSampled());
+        AssertJUnit.assertEquals(7, extracted.spanId());
+    }
+
+    @Test
+    public void testContextWithoutIdsIsNotExtracted() {
+        AnalyticsTracer tracer = tracer(new ConstSampler(true));
+        Map<String, String> carrier = new HashMap<>();
+        carrier.put("traceid", "trace");
+        AssertJUnit.assertNull(extract(tracer, carrier));
+    }
+
+    @Test
+    public void testRootSpanCarriesSamplerTags() {
+        AnalyticsTracer tracer = tracer(new ProbabilisticSampler(1));
+        AnalyticsSpan span = (AnalyticsSpan) tracer.buildSpan("root").startManual();
+        String tags = (String) span.toEvent().getPayloadData()[8];
+        AssertJUnit.assertTrue(tags, tags.contains("\"sampler.type\":\"probabilistic\""));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.sp.open.tracer.client;
+
+import io.opentracing.Span;
+import io.opentracing.util.ThreadLocalScopeManager;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+public class AsyncSpanReporterTestCase {
+
+    private static final int SPANS = 8;
+    private static final long WAIT_MILLIS = 5000;
+
+    private static AnalyticsTracer tracer(AsyncSpanReporter reporter) {
+        return new AnalyticsTracer(null, reporter, new ConstSampler(true), "test", new ThreadLocalScopeManager());
+    }
+
+    private static void waitFor(Queue<Event> events, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (events.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        AssertJUnit.assertEquals(count, events.size());
+    }
+
+    @Test
+    public void testSpansArePublishedInBackground() throws InterruptedException {
+        Queue<Event> events = new ConcurrentLinkedQueue<>();
+        AsyncSpanReporter reporter = new AsyncSpanReporter(events::add, "test", 1024, 10, 50,
+                AsyncSpanReporter.OverflowPolicy.DROP, null);
+        reporter.start();
+        AnalyticsTracer tracer = tracer(reporter);
+        for (int i = 0; i < 25; i++) {
+            tracer.buildSpan("operation").startManual().finish();
+        }
+        // Two full batches are published at once, and the rest once the flush interval passes
+        waitFor(events, 25);
+        reporter.close();
+        Event event = events.peek();
+        AssertJUnit.assertEquals("test", event.getPayloadData()[0]);
+        AssertJUnit.assertEquals("operation", event.getPayloadData()[5]);
+        AssertJUnit.assertEquals(0, reporter.getDroppedSpans());
+        AssertJUnit.assertEquals(0, reporter.getFailedSpans());
+    }
+
+    @Test
+    public void testDropWhenBufferIsFull() {
+        Queue<Event> events = new ConcurrentLinkedQueue<>();
+        AsyncSpanReporter reporter = new AsyncSpanReporter(events::add, "test", 4, 4, 50,
+                AsyncSpanReporter.OverflowPolicy.DROP, null);
+        AnalyticsTracer tracer = tracer(reporter);
+        // The reporter thread is not started, so nothing makes room in the buffer
+        for (int i = 0; i < 10; i++) {
+            tracer.buildSpan("operation").startManual().finish();
+        }
+        AssertJUnit.assertEquals(6, reporter.getDroppedSpans());
+        reporter.start();
+        reporter.close();
+        AssertJUnit.assertEquals(4, events.size());
+    }
+
+    @Test
+    public void testBlockWhenBufferIsFull() throws InterruptedException {
+        Queue<Event> events = new ConcurrentLinkedQueue<>();
+        AsyncSpanReporter reporter = new AsyncSpanReporter(events::add, "test", 4, 4, 50,
+                AsyncSpanReporter.OverflowPolicy.BLOCK, null);
+        AnalyticsTracer tracer = tracer(reporter);
+        Thread finishing = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                tracer.buildSpan("operation").startManual().finish();
+            }
+        });
+        finishing.start();
+        finishing.join(200);
+        AssertJUnit.assertTrue("The finishing thread waits for room in the buffer", finishing.isAlive());
+        reporter.start();
+        finishing.join(WAIT_MILLIS);
+        AssertJUnit.assertFalse(finishing.isAlive());
+        reporter.close();
+        AssertJUnit.assertEquals(10, events.size());
+        AssertJUnit.assertEquals(0, reporter.getDroppedSpans());
+    }
+
+    @Test
+    public void testNullTagsAreLeftOut() throws InterruptedException {
+        Queue<Event> events = new ConcurrentLinkedQueue<>();
+        AsyncSpanReporter reporter = new AsyncSpanReporter(events::add, "test", 16, 16, 50,
+                AsyncSpanReporter.OverflowPolicy.DROP, null);
+        reporter.start();
+        Span span = tracer(reporter).buildSpan("operation").startManual();
+        span.setTag("empty", (String) null);
+        span.setTag("key", "value");
+        span.setBaggageItem("item", null);
+        span.finish();
+        waitFor(events, 1);
+        reporter.close();
+        String tags = (String) events.peek().getPayloadData()[8];
+        AssertJUnit.assertTrue(tags.contains("\"key\":\"value\""));
+        AssertJUnit.assertFalse(tags.contains("empty"));
+        AssertJUnit.assertEquals(0, reporter.getFailedSpans());
+    }
+
+    @Test
+    public void testSpanFailingToSerializeIsCounted() throws InterruptedException {
+        Queue<Event> events = new ConcurrentLinkedQueue<>();
+        AsyncSpanReporter reporter = new AsyncSpanReporter(events::add, "test", 16, 16, 50,
+                AsyncSpanReporter.OverflowPolicy.DROP, null);
+        reporter.start();
+        AnalyticsTracer tracer = tracer(reporter);
+        tracer.buildSpan("before").startManual().finish();
+        tracer.buildSpan("broken").withTag("number", new UnprintableNumber()).startManual().finish();
+        tracer.buildSpan("after").startManual().finish();
+        waitFor(events, 2);
+        reporter.close();
+        AssertJUnit.assertEquals(1, reporter.getFailedSpans());
+    }
+
+    @Test
+    public void testReporterSurvivesPublisherErrors() throws InterruptedException {
+        Queue<Event> events = new ConcurrentLinkedQueue<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        Consumer<Event> publisher = event -> {
+            if (failed.compareAndSet(false, true)) {
+                throw new AssertionError("Publisher failure");
+            }
+            events.add(event);
+        };
+        AsyncSpanReporter reporter = new AsyncSpanReporter(publisher, "test", 4, 1, 50,
+                AsyncSpanReporter.OverflowPolicy.BLOCK, null);
+        reporter.start();
+        AnalyticsTracer tracer = tracer(reporter);
+        tracer.buildSpan("failing").startManual().finish();
+        TimeUnit.MILLISECONDS.sleep(100);
+        // The buffer is smaller than the spans finished, so this only returns if the reporter thread still runs
+        for (int i = 0; i < SPANS; i++) {
+            tracer.buildSpan("operation").startManual().finish();
+        }
+        waitFor(events, SPANS);
+        reporter.close();
+        AssertJUnit.assertEquals(1, reporter.getFailedSpans());
+    }
+
+    /**
+     * Tag value whose serialization fails.
+     */
+    private static final class UnprintableNumber extends Number {
+
+        @Override
+        public int intValue() {
+            return 0;
+        }
+
+        @Override
+        public long longValue() {
+            return 0;
+        }
+
+        @Override
+        public float floatValue() {
+            return 0;
+        }
+
+        @Override
+        public double doubleValue() {
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            throw new IllegalStateException("Unprintable tag value");
+        }
+    }
+}
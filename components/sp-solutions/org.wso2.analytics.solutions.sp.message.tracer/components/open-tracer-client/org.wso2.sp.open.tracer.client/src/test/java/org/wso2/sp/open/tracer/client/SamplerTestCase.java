@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.sp.open.tracer.client;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+public class SamplerTestCase {
+
+    private static int countSampled(Sampler sampler, String operationName, int traces) {
+        int sampled = 0;
+        for (int i = 0; i < traces; i++) {
+            if (sampler.sample(operationName).isSampled()) {
+                sampled++;
+            }
+        }
+        return sampled;
+    }
+
+    @Test
+    public void testConstSampler() {
+        AssertJUnit.assertEquals(100, countSampled(new ConstSampler(true), "operation", 100));
+        AssertJUnit.assertEquals(0, countSampled(new ConstSampler(false), "operation", 100));
+        SamplingDecision decision = new ConstSampler(true).sample("operation");
+        AssertJUnit.assertEquals(ConstSampler.TYPE, decision.getSamplerType());
+        AssertJUnit.assertEquals(1.0, decision.getSamplerParam());
+    }
+
+    @Test
+    public void testProbabilisticSampler() {
+        AssertJUnit.assertEquals(0, countSampled(new ProbabilisticSampler(0), "operation", 1000));
+        AssertJUnit.assertEquals(1000, countSampled(new ProbabilisticSampler(1), "operation", 1000));
+        int sampled = countSampled(new ProbabilisticSampler(0.1), "operation", 100000);
+        AssertJUnit.assertTrue("Sampled " + sampled, sampled > 9000 && sampled < 11000);
+    }
+
+    @Test
+    public void testRateLimitingSampler() {
+        // Traces sampled in a tight loop are limited to the initial balance of one second
+        int sampled = countSampled(new RateLimitingSampler(10), "operation", 100000);
+        AssertJUnit.assertTrue("Sampled " + sampled, sampled >= 10 && sampled <= 12);
+    }
+
+    @Test
+    public void testAdaptiveSamplerLimitsEachOperation() {
+        AdaptiveSampler sampler = new AdaptiveSampler(5, 10);
+        int busy = countSampled(sampler, "busy", 100000);
+        AssertJUnit.assertTrue("Sampled " + busy, busy >= 5 && busy <= 7);
+        // An operation keeps its own rate however busy the other operations are
+        int quiet = countSampled(sampler, "quiet", 5);
+        AssertJUnit.assertEquals(5, quiet);
+    }
+
+    @Test
+    public void testAdaptiveSamplerSharesRateBeyondMaxOperations() {
+        AdaptiveSampler sampler = new AdaptiveSampler(1, 2);
+        AssertJUnit.assertEquals(1, countSampled(sampler, "first", 10));
+        AssertJUnit.assertEquals(1, countSampled(sampler, "second", 10));
+        // Operations seen once the limit is reached share one sampler
+        int others = countSampled(sampler, "third", 10) + countSampled(sampler, "fourth", 10);
+        AssertJUnit.assertEquals(1, others);
+    }
+
+    @Test
+    public void testSamplerFromConfig() {
+        AssertJUnit.assertTrue(Sampler.Type.fromConfig(" const ").create(1, 10) instanceof ConstSampler);
+        AssertJUnit.assertTrue(Sampler.Type.fromConfig("Probabilistic").create(0.5, 10)
+                instanceof ProbabilisticSampler);
+        AssertJUnit.assertTrue(Sampler.Type.fromConfig("ratelimiting").create(1, 10) instanceof RateLimitingSampler);
+        AssertJUnit.assertTrue(Sampler.Type.fromConfig("adaptive").create(1, 10) instanceof AdaptiveSampler);
+    }
+}
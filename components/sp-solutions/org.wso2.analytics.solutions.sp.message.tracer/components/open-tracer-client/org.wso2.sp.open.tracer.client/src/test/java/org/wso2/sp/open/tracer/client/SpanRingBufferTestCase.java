@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.sp.open.tracer.client;
+
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class SpanRingBufferTestCase {
+
+    @Test
+    public void testCapacityIsRoundedUp() {
+        AssertJUnit.assertEquals(1, new SpanRingBuffer<Integer>(0).capacity());
+        AssertJUnit.assertEquals(8, new SpanRingBuffer<Integer>(5).capacity());
+        AssertJUnit.assertEquals(8, new SpanRingBuffer<Integer>(8).capacity());
+    }
+
+    @Test
+    public void testOverflow() {
+        SpanRingBuffer<Integer> buffer = new SpanRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            AssertJUnit.assertTrue(buffer.offer(i));
+        }
+        AssertJUnit.assertFalse(buffer.offer(4));
+        AssertJUnit.assertEquals(4, buffer.size());
+        AssertJUnit.assertEquals(Integer.valueOf(0), buffer.poll());
+        AssertJUnit.assertTrue(buffer.offer(4));
+        AssertJUnit.assertFalse(buffer.offer(5));
+    }
+
+    @Test
+    public void testWraparound() {
+        SpanRingBuffer<Integer> buffer = new SpanRingBuffer<>(4);
+        int next = 0;
+        int expected = 0;
+        // Runs over many laps of the slots, with the buffer partly filled
+        for (int lap = 0; lap < 100; lap++) {
+            for (int i = 0; i < 3; i++) {
+                AssertJUnit.assertTrue(buffer.offer(next++));
+            }
+            for (int i = 0; i < 3; i++) {
+                AssertJUnit.assertEquals(Integer.valueOf(expected++), buffer.poll());
+            }
+            AssertJUnit.assertNull(buffer.poll());
+            AssertJUnit.assertEquals(0, buffer.size());
+        }
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        SpanRingBuffer<Integer> buffer = new SpanRingBuffer<>(64);
+        int producers = 4;
+        int perProducer = 20000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(producer * perProducer + i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        boolean[] seen = new boolean[producers * perProducer];
+        int[] lastOfProducer = new int[producers];
+        Arrays.fill(lastOfProducer, -1);
+        int received = 0;
+        while (received < seen.length) {
+            Integer element = buffer.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            AssertJUnit.assertFalse("Element polled twice: " + element, seen[element]);
+            seen[element] = true;
+            // The elements of each producer keep their order
+            int producer = element / perProducer;
+            AssertJUnit.assertTrue(element > lastOfProducer[producer]);
+            lastOfProducer[producer] = element;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        AssertJUnit.assertNull(buffer.poll());
+    }
+}
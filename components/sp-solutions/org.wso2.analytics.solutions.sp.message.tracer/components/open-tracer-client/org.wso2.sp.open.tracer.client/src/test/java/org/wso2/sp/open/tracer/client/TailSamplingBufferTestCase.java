@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.sp.open.tracer.client;
+
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+import io.opentracing.util.ThreadLocalScopeManager;
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TailSamplingBufferTestCase {
+
+    private static final long DECISION_WAIT_MILLIS = 100;
+    private static final long DECISION_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(DECISION_WAIT_MILLIS);
+    private static final long LATENCY_THRESHOLD_MILLIS = 1000;
+    private static final long MAX_BUFFERED_BYTES = 1024 * 1024;
+
+    private AnalyticsTracer tracer;
+    private List<AnalyticsSpan> released;
+
+    @BeforeMethod
+    public void init() {
+        // The reporter thread is not started, the finished spans are handed to the buffer by the tests
+        AsyncSpanReporter reporter = new AsyncSpanReporter(event -> { }, "test", 1024, 16, 50,
+                AsyncSpanReporter.OverflowPolicy.DROP, null);
+        tracer = new AnalyticsTracer(null, reporter, new ConstSampler(true), "test", new ThreadLocalScopeManager());
+        released = new ArrayList<>();
+    }
+
+    private AnalyticsSpan finish(Span span, long finishMillis) {
+        span.finish(finishMillis);
+        return (AnalyticsSpan) span;
+    }
+
+    private Span start(String operationName, Span parent, long startMillis) {
+        AnalyticsTracer.SpanBuilder builder = tracer.buildSpan(operationName).withStartTimestamp(startMillis);
+        if (parent != null) {
+            builder.asChildOf(parent);
+        }
+        return builder.startManual();
+    }
+
+    private AnalyticsSpan span(Span parent, long startMillis, long finishMillis) {
+        return finish(start("operation", parent, startMillis), finishMillis);
+    }
+
+    @Test
+    public void testErrorTraceIsReportedAtOnce() {
+        TailSamplingBuffer buffer = new TailSamplingBuffer(DECISION_WAIT_MILLIS, LATENCY_THRESHOLD_MILLIS, 0,
+                MAX_BUFFERED_BYTES);
+        Span root = start("root", null, 1000);
+        AnalyticsSpan child = span(root, 1000, 1010);
+        buffer.add(child, 0, released);
+        AssertJUnit.assertTrue(released.isEmpty());
+        root.setTag(Tags.ERROR.getKey(), true);
+        AnalyticsSpan failedRoot = finish(root, 1020);
+        buffer.add(failedRoot, 1, released);
+        AssertJUnit.assertEquals(2, released.size());
+        AssertJUnit.assertTrue(released.contains(child));
+        AssertJUnit.assertTrue(released.contains(failedRoot));
+    }
+
+    @Test
+    public void testSlowTraceIsReportedAtOnce() {
+        TailSamplingBuffer buffer = new TailSamplingBuffer(DECISION_WAIT_MILLIS, LATENCY_THRESHOLD_MILLIS, 0,
+                MAX_BUFFERED_BYTES);
+        buffer.add(span(null, 1000, 1000 + LATENCY_THRESHOLD_MILLIS), 0, released);
+        AssertJUnit.assertEquals(1, released.size());
+    }
+
+    @Test
+    public void testTraceIsDecidedAfterDecisionWait() {
+        TailSamplingBuffer buffer = new TailSamplingBuffer(DECISION_WAIT_MILLIS, LATENCY_THRESHOLD_MILLIS, 1,
+                MAX_BUFFERED_BYTES);
+        buffer.add(span(null, 1000, 1010), 0, released);
+        buffer.expire(DECISION_WAIT_NANOS - 1, released);
+        AssertJUnit.assertTrue(released.isEmpty());
+        buffer.expire(DECISION_WAIT_NANOS, released);
+        AssertJUnit.assertEquals(1, released.size());
+    }
+
+    @Test
+    public void testUnsampledTraceIsDropped() {
+        TailSamplingBuffer buffer = new TailSamplingBuffer(DECISION_WAIT_MILLIS, LATENCY_THRESHOLD_MILLIS, 0,
+                MAX_BUFFERED_BYTES);
+        buffer.add(span(null, 1000, 1010), 0, released);
+        buffer.expire(DECISION_WAIT_NANOS, released);
+        buffer.flush(released);
+        AssertJUnit.assertTrue(released.isEmpty());
+    }
+
+    @Test
+    public void testLateSpanFollowsReportedTrace() {
+        TailSamplingBuffer buffer = new TailSamplingBuffer(DECISION_WAIT_MILLIS, LATENCY_THRESHOLD_MILLIS, 1,
+                MAX_BUFFERED_BYTES);
+        Span root = start("root", null, 1000);
+        buffer.add(span(root, 1000, 1010), 0, released);
+        buffer.expire(DECISION_WAIT_NANOS, released);
+        AssertJUnit.assertEquals(1, released.size());
+        // The root finishes after its trace was decided, and is reported without waiting again
+        AnalyticsSpan lateRoot = finish(root, 1020);
+        buffer.add(lateRoot, DECISION_WAIT_NANOS + 1, released);
+        AssertJUnit.assertEquals(2, released.size());
+        AssertJUnit.assertSame(lateRoot, released.get(1));
+    }
+
+    @Test
+    public void testLateSpanFollowsDroppedTrace() {
+        TailSamplingBuffer buffer = new TailSamplingBuffer(DECISION_WAIT_MILLIS, LATENCY_THRESHOLD_MILLIS, 0,
+                MAX_BUFFERED_BYTES);
+        Span root = start("root", null, 1000);
+        buffer.add(span(root, 1000, 1010), 0, released);
+        buffer.expire(DECISION_WAIT_NANOS, released);
+        // The root is dropped with its trace, even though its latency is over the threshold
+        buffer.add(finish(root, 1000 + LATENCY_THRESHOLD_MILLIS), DECISION_WAIT_NANOS + 1, released);
+        buffer.flush(released);
+        AssertJUnit.assertTrue(released.isEmpty());
+    }
+
+    @Test
+    public void testOldestTracesAreEvictedAtSizeLimit() {
+        AnalyticsSpan first = span(null, 1000, 1010);
+        long spanBytes = first.estimatedSize();
+        TailSamplingBuffer buffer = new TailSamplingBuffer(DECISION_WAIT_MILLIS, LATENCY_THRESHOLD_MILLIS, 1,
+                3 * spanBytes);
+        buffer.add(first, 0, released);
+        for (int i = 1; i < 3; i++) {
+            buffer.add(span(null, 1000, 1010), i, released);
+        }
+        AssertJUnit.assertEquals(0, buffer.getEvictedTraces());
+        AssertJUnit.assertTrue(released.isEmpty());
+        buffer.add(span(null, 1000, 1010), 3, released);
+        // The oldest trace is decided early to make room, and is reported as it is sampled
+        AssertJUnit.assertEquals(1, buffer.getEvictedTraces());
+        AssertJUnit.assertEquals(1, released.size());
+        AssertJUnit.assertSame(first, released.get(0));
+        buffer.flush(released);
+        AssertJUnit.assertEquals(4, released.size());
+    }
+}
@@ -0,0 +1,35 @@
+--
+-- Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+--
+-- WSO2 Inc. licenses this file to you under the Apache License,
+-- Version 2.0 (the "License"); you may not use this file except
+-- in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--   http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing,
+-- software distributed under the License is distributed on an
+-- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+-- KIND, either express or implied.  See the License for the
+-- specific language governing permissions and limitations
+-- under the License.
+--
+
+-- Adds the latency sketch columns of ESBStatAgg and MediatorStatAgg to the aggregation tables of an existing
+-- EI_ANALYTICS database. Run this script before upgrading EI_Analytics_StatApp on a database whose aggregation tables
+-- were created by an earlier version. New databases do not need it, as the tables are created with these columns.
+
+ALTER TABLE ESBStatAgg_SECONDS ADD COLUMN AGG_LATENCY_SKETCH_duration BYTEA;
+ALTER TABLE ESBStatAgg_MINUTES ADD COLUMN AGG_LATENCY_SKETCH_duration BYTEA;
+ALTER TABLE ESBStatAgg_HOURS ADD COLUMN AGG_LATENCY_SKETCH_duration BYTEA;
+ALTER TABLE ESBStatAgg_DAYS ADD COLUMN AGG_LATENCY_SKETCH_duration BYTEA;
+ALTER TABLE ESBStatAgg_MONTHS ADD COLUMN AGG_LATENCY_SKETCH_duration BYTEA;
+ALTER TABLE ESBStatAgg_YEARS ADD COLUMN AGG_LATENCY_SKETCH_duration BYTEA;
+
+ALTER TABLE MediatorStatAgg_SECONDS ADD COLUMN AGG_LATENCY_SKETCH_durationSketch BYTEA;
+ALTER TABLE MediatorStatAgg_MINUTES ADD COLUMN AGG_LATENCY_SKETCH_durationSketch BYTEA;
+ALTER TABLE MediatorStatAgg_HOURS ADD COLUMN AGG_LATENCY_SKETCH_durationSketch BYTEA;
+ALTER TABLE MediatorStatAgg_DAYS ADD COLUMN AGG_LATENCY_SKETCH_durationSketch BYTEA;
+ALTER TABLE MediatorStatAgg_MONTHS ADD COLUMN AGG_LATENCY_SKETCH_durationSketch BYTEA;
+ALTER TABLE MediatorStatAgg_YEARS ADD COLUMN AGG_LATENCY_SKETCH_durationSketch BYTEA;
@@ -0,0 +1,69 @@
+--
+-- Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+--
+-- WSO2 Inc. licenses this file to you under the Apache License,
+-- Version 2.0 (the "License"); you may not use this file except
+-- in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--   http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing,
+-- software distributed under the License is distributed on an
+-- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+-- KIND, either express or implied.  See the License for the
+-- specific language governing permissions and limitations
+-- under the License.
+--
+
+-- Moves the MediatorStatAgg aggregation tables of an existing EI_ANALYTICS database to the columns of the
+-- pre-aggregated MediatorStatAgg. EI_Analytics_StatApp now sums per second partial rows of
+-- PreProcessedMediatorStatStream, so the durations and invocation counts are kept in AGG_SUM_totalDuration,
+-- AGG_MIN_minDuration, AGG_MAX_maxDuration and AGG_SUM_noOfInvocation instead of AGG_SUM_duration, AGG_MIN_duration,
+-- AGG_MAX_duration and AGG_COUNT. The average duration is no longer stored; the dashboards compute it at read time
+-- as sum(totalDuration) / sum(noOfInvocation).
+-- Run this script, together with ei_analytics_latency_sketch_columns.sql, before upgrading EI_Analytics_StatApp on a
+-- database whose aggregation tables were created by an earlier version. Stop EI_Analytics_StatApp and the dashboards
+-- while it runs. New databases do not need it, as the tables are created with these columns.
+
+ALTER TABLE MediatorStatAgg_SECONDS ADD COLUMN AGG_SUM_totalDuration BIGINT, ADD COLUMN AGG_MIN_minDuration BIGINT,
+    ADD COLUMN AGG_MAX_maxDuration BIGINT, ADD COLUMN AGG_SUM_noOfInvocation BIGINT;
+UPDATE MediatorStatAgg_SECONDS SET AGG_SUM_totalDuration = AGG_SUM_duration, AGG_MIN_minDuration = AGG_MIN_duration,
+    AGG_MAX_maxDuration = AGG_MAX_duration, AGG_SUM_noOfInvocation = AGG_COUNT;
+ALTER TABLE MediatorStatAgg_SECONDS DROP COLUMN AGG_SUM_duration, DROP COLUMN AGG_MIN_duration,
+    DROP COLUMN AGG_MAX_duration, DROP COLUMN AGG_COUNT;
+
+ALTER TABLE MediatorStatAgg_MINUTES ADD COLUMN AGG_SUM_totalDuration BIGINT, ADD COLUMN AGG_MIN_minDuration BIGINT,
+    ADD COLUMN AGG_MAX_maxDuration BIGINT, ADD COLUMN AGG_SUM_noOfInvocation BIGINT;
+UPDATE MediatorStatAgg_MINUTES SET AGG_SUM_totalDuration = AGG_SUM_duration, AGG_MIN_minDuration = AGG_MIN_duration,
+    AGG_MAX_maxDuration = AGG_MAX_duration, AGG_SUM_noOfInvocation = AGG_COUNT;
+ALTER TABLE MediatorStatAgg_MINUTES DROP COLUMN AGG_SUM_duration, DROP COLUMN AGG_MIN_duration,
+    DROP COLUMN AGG_MAX_duration, DROP COLUMN AGG_COUNT;
+
+ALTER TABLE MediatorStatAgg_HOURS ADD COLUMN AGG_SUM_totalDuration BIGINT, ADD COLUMN AGG_MIN_minDuration BIGINT,
+    ADD COLUMN AGG_MAX_maxDuration BIGINT, ADD COLUMN AGG_SUM_noOfInvocation BIGINT;
+UPDATE MediatorStatAgg_HOURS SET AGG_SUM_totalDuration = AGG_SUM_duration, AGG_MIN_minDuration = AGG_MIN_duration,
+    AGG_MAX_maxDuration = AGG_MAX_duration, AGG_SUM_noOfInvocation = AGG_COUNT;
+ALTER TABLE MediatorStatAgg_HOURS DROP COLUMN AGG_SUM_duration, DROP COLUMN AGG_MIN_duration,
+    DROP COLUMN AGG_MAX_duration, DROP COLUMN AGG_COUNT;
+
+ALTER TABLE MediatorStatAgg_DAYS ADD COLUMN AGG_SUM_totalDuration BIGINT, ADD COLUMN AGG_MIN_minDuration BIGINT,
+    ADD COLUMN AGG_MAX_maxDuration BIGINT, ADD COLUMN AGG_SUM_noOfInvocation BIGINT;
+UPDATE MediatorStatAgg_DAYS SET AGG_SUM_totalDuration = AGG_SUM_duration, AGG_MIN_minDuration = AGG_MIN_duration,
+    AGG_MAX_maxDuration = AGG_MAX_duration, AGG_SUM_noOfInvocation = AGG_COUNT;
+ALTER TABLE MediatorStatAgg_DAYS DROP COLUMN AGG_SUM_duration, DROP COLUMN AGG_MIN_duration,
+    DROP COLUMN AGG_MAX_duration, DROP COLUMN AGG_COUNT;
+
+ALTER TABLE MediatorStatAgg_MONTHS ADD COLUMN AGG_SUM_totalDuration BIGINT, ADD COLUMN AGG_MIN_minDuration BIGINT,
+    ADD COLUMN AGG_MAX_maxDuration BIGINT, ADD COLUMN AGG_SUM_noOfInvocation BIGINT;
+UPDATE MediatorStatAgg_MONTHS SET AGG_SUM_totalDuration = AGG_SUM_duration, AGG_MIN_minDuration = AGG_MIN_duration,
+    AGG_MAX_maxDuration = AGG_MAX_duration, AGG_SUM_noOfInvocation = AGG_COUNT;
+ALTER TABLE MediatorStatAgg_MONTHS DROP COLUMN AGG_SUM_duration, DROP COLUMN AGG_MIN_duration,
+    DROP COLUMN AGG_MAX_duration, DROP COLUMN AGG_COUNT;
+
+ALTER TABLE MediatorStatAgg_YEARS ADD COLUMN AGG_SUM_totalDuration BIGINT, ADD COLUMN AGG_MIN_minDuration BIGINT,
+    ADD COLUMN AGG_MAX_maxDuration BIGINT, ADD COLUMN AGG_SUM_noOfInvocation BIGINT;
+UPDATE MediatorStatAgg_YEARS SET AGG_SUM_totalDuration = AGG_SUM_duration, AGG_MIN_minDuration = AGG_MIN_duration,
+    AGG_MAX_maxDuration = AGG_MAX_duration, AGG_SUM_noOfInvocation = AGG_COUNT;
+ALTER TABLE MediatorStatAgg_YEARS DROP COLUMN AGG_SUM_duration, DROP COLUMN AGG_MIN_duration,
+    DROP COLUMN AGG_MAX_duration, DROP COLUMN AGG_COUNT;
@@ -0,0 +1,76 @@
+--
+-- Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+--
+-- WSO2 Inc. licenses this file to you under the Apache License,
+-- Version 2.0 (the "License"); you may not use this file except
+-- in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--   http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing,
+-- software distributed under the License is distributed on an
+-- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+-- KIND, either express or implied.  See the License for the
+-- specific language governing permissions and limitations
+-- under the License.
+--
+
+-- Day partitioned ESBEventTable, ESBPayloadTable and ConfigEntryTable of EI_Analytics_StatApp, for the EI_ANALYTICS
+-- database (PostgreSQL 11 or later). Run this script before EI_Analytics_StatApp is deployed for the first time.
+-- EI_Analytics_StatApp then adds the partitions of the coming days, and retires data by dropping whole day
+-- partitions instead of deleting rows. The day partition <table>_pYYYYMMDD holds the rows with an eventTimestamp
+-- before the end of that day (UTC), and the default partition <table>_pmax holds the rows no day partition holds.
+-- PostgreSQL requires the partitioning column in every unique key, hence the primary keys of ESBPayloadTable and
+-- ConfigEntryTable include eventTimestamp. EI_Analytics_StatApp still keeps a single row per payload reference and
+-- per hashcode, as it updates rows on them, which moves a refreshed row to the partition of its new eventTimestamp.
+
+CREATE TABLE ESBEventTable (
+    metaTenantId INTEGER,
+    messageFlowId VARCHAR(254),
+    host VARCHAR(254),
+    hashCode VARCHAR(254),
+    componentName VARCHAR(254),
+    componentType VARCHAR(254),
+    componentIndex INTEGER,
+    componentId VARCHAR(254),
+    startTime BIGINT,
+    endTime BIGINT,
+    duration BIGINT,
+    beforePayload TEXT,
+    afterPayload TEXT,
+    contextPropertyMap TEXT,
+    transportPropertyMap TEXT,
+    children VARCHAR(254),
+    entryPoint VARCHAR(254),
+    entryPointHashcode VARCHAR(254),
+    faultCount INTEGER,
+    eventTimestamp BIGINT NOT NULL
+) PARTITION BY RANGE (eventTimestamp);
+
+CREATE TABLE ESBEventTable_pmax PARTITION OF ESBEventTable DEFAULT;
+
+CREATE INDEX ESBEventTable_INDEX ON ESBEventTable (metaTenantId, messageFlowId);
+
+CREATE TABLE ESBPayloadTable (
+    metaTenantId INTEGER NOT NULL,
+    payloadRef VARCHAR(254) NOT NULL,
+    payload TEXT,
+    eventTimestamp BIGINT NOT NULL,
+    PRIMARY KEY (metaTenantId, payloadRef, eventTimestamp)
+) PARTITION BY RANGE (eventTimestamp);
+
+CREATE TABLE ESBPayloadTable_pmax PARTITION OF ESBPayloadTable DEFAULT;
+
+CREATE TABLE ConfigEntryTable (
+    metaTenantId INTEGER,
+    hashcode VARCHAR(254) NOT NULL,
+    entryName VARCHAR(254),
+    configData TEXT,
+    eventTimestamp BIGINT NOT NULL,
+    PRIMARY KEY (hashcode, eventTimestamp)
+) PARTITION BY RANGE (eventTimestamp);
+
+CREATE TABLE ConfigEntryTable_pmax PARTITION OF ConfigEntryTable DEFAULT;
+
+CREATE INDEX ConfigEntryTable_INDEX ON ConfigEntryTable (metaTenantId, entryName);